@@ -13,6 +13,7 @@ import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
 import de.fu_berlin.imp.apiua.core.extensionPoints.DateRangeUtil;
+import de.fu_berlin.imp.apiua.core.metrics.MetricsRegistry;
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDateRange;
 import de.fu_berlin.imp.apiua.core.preferences.SUACorePreferenceUtil;
@@ -111,6 +112,8 @@ public class Activator extends AbstractUIPlugin {
 				.getDateRangeStartEnabled();
 		this.oldDateRangeEndEnabled = this.corePreferenceUtil
 				.getDateRangeEndEnabled();
+
+		MetricsRegistry.getDefault().registerMBean();
 	}
 
 	/*
@@ -122,6 +125,8 @@ public class Activator extends AbstractUIPlugin {
 	 */
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		MetricsRegistry.getDefault().logReport();
+		MetricsRegistry.getDefault().unregisterMBean();
 		this.corePreferenceUtil
 				.removePropertyChangeListener(this.dateRangeChangeListener);
 		plugin = null;
@@ -0,0 +1,41 @@
+package de.fu_berlin.imp.apiua.core.extensionPoints;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+
+/**
+ * {@link IDataLoadProvider} that can adapt already loaded data to added and
+ * removed {@link IBaseDataContainer}s.
+ * <p>
+ * {@link IDataLoadProvider}s not implementing this interface are unloaded and
+ * loaded again whenever the active {@link IBaseDataContainer}s change.
+ *
+ * @author bkahlert
+ */
+public interface IIncrementalDataLoadProvider extends IDataLoadProvider {
+
+	/**
+	 * Updates the loaded data so it reflects the given
+	 * {@link IBaseDataContainer}s. Data of {@link IBaseDataContainer}s that
+	 * were neither added nor removed should be kept.
+	 *
+	 * @param baseDataContainers
+	 *            all {@link IBaseDataContainer}s to be active afterwards
+	 * @param added
+	 *            {@link IBaseDataContainer}s that were not active before
+	 * @param removed
+	 *            {@link IBaseDataContainer}s that are no more active
+	 * @param progressMonitor
+	 * @return
+	 */
+	public IDataContainer update(
+			List<? extends IBaseDataContainer> baseDataContainers,
+			List<? extends IBaseDataContainer> added,
+			List<? extends IBaseDataContainer> removed,
+			IProgressMonitor progressMonitor);
+
+}
@@ -0,0 +1,166 @@
+package de.fu_berlin.imp.apiua.core.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.fu_berlin.imp.apiua.core.util.Cache;
+
+/**
+ * Statistics of all {@link Cache}s registered under the same name.
+ * <p>
+ * Size and weight are read from the {@link Cache}s themselves. They are only
+ * weakly referenced so that discarded {@link Cache}s are not kept alive.
+ *
+ * @author bkahlert
+ */
+public class CacheMetrics {
+
+	private final String name;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loadFailures = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final Histogram loadTimes = new Histogram();
+
+	private final List<WeakReference<Cache<?, ?>>> caches = new CopyOnWriteArrayList<WeakReference<Cache<?, ?>>>();
+
+	CacheMetrics(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	void register(Cache<?, ?> cache) {
+		for (WeakReference<Cache<?, ?>> reference : this.caches) {
+			if (reference.get() == null) {
+				this.caches.remove(reference);
+			}
+		}
+		this.caches.add(new WeakReference<Cache<?, ?>>(cache));
+	}
+
+	/**
+	 * Removes the given {@link Cache}.
+	 *
+	 * @param cache
+	 * @return true if no {@link Cache} is left and nothing was recorded yet
+	 */
+	boolean unregister(Cache<?, ?> cache) {
+		for (WeakReference<Cache<?, ?>> reference : this.caches) {
+			if (reference.get() == null || reference.get() == cache) {
+				this.caches.remove(reference);
+			}
+		}
+		return this.caches.isEmpty() && this.hits.sum() == 0
+				&& this.misses.sum() == 0;
+	}
+
+	public void recordHit() {
+		this.hits.increment();
+	}
+
+	public void recordMiss() {
+		this.misses.increment();
+	}
+
+	/**
+	 * Records a fetch of the given duration.
+	 *
+	 * @param nanos
+	 * @param succeeded
+	 *            false if the fetch failed or was cancelled
+	 */
+	public void recordLoad(long nanos, boolean succeeded) {
+		this.loadTimes.record(nanos);
+		if (!succeeded) {
+			this.loadFailures.increment();
+		}
+	}
+
+	public void recordEviction() {
+		this.evictions.increment();
+	}
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * @return the share of requests served from the {@link Cache}; 0 if no
+	 *         request was made
+	 */
+	public double getHitRate() {
+		long hits = this.hits.sum();
+		long requests = hits + this.misses.sum();
+		return requests == 0 ? 0 : hits / (double) requests;
+	}
+
+	public long getLoadFailures() {
+		return this.loadFailures.sum();
+	}
+
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	public Histogram getLoadTimes() {
+		return this.loadTimes;
+	}
+
+	/**
+	 * @return the number of entries currently held
+	 */
+	public int getSize() {
+		int size = 0;
+		for (WeakReference<Cache<?, ?>> reference : this.caches) {
+			Cache<?, ?> cache = reference.get();
+			if (cache != null) {
+				size += cache.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the estimated number of bytes currently held; 0 if the
+	 *         {@link Cache}s are not weighed
+	 */
+	public long getWeight() {
+		long weight = 0;
+		for (WeakReference<Cache<?, ?>> reference : this.caches) {
+			Cache<?, ?> cache = reference.get();
+			if (cache != null) {
+				weight += cache.getWeight();
+			}
+		}
+		return weight;
+	}
+
+	public void reset() {
+		this.hits.reset();
+		this.misses.reset();
+		this.loadFailures.reset();
+		this.evictions.reset();
+		this.loadTimes.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%s: hit rate=%.1f%% hits=%d misses=%d failed loads=%d "
+						+ "evictions=%d size=%d weight=%dKB loads[%s]",
+				this.name, this.getHitRate() * 100, this.getHits(),
+				this.getMisses(), this.getLoadFailures(), this.getEvictions(),
+				this.getSize(), this.getWeight() / 1024, this.loadTimes);
+	}
+
+}
@@ -0,0 +1,110 @@
+package de.fu_berlin.imp.apiua.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of durations.
+ * <p>
+ * Durations are counted in buckets whose bounds grow by powers of two starting
+ * at one microsecond. Percentiles are therefore reported as the upper bound of
+ * the bucket they fall in.
+ *
+ * @author bkahlert
+ */
+public class Histogram {
+
+	static final int NUM_BUCKETS = 40;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records the given duration.
+	 *
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		long micros = nanos / 1000;
+		int bucket = micros == 0 ? 0 : Math.min(NUM_BUCKETS - 1,
+				64 - Long.numberOfLeadingZeros(micros));
+		this.buckets.incrementAndGet(bucket);
+		this.count.increment();
+		this.sum.add(nanos);
+		long max = this.max.get();
+		while (nanos > max && !this.max.compareAndSet(max, nanos)) {
+			max = this.max.get();
+		}
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	/**
+	 * @return the mean duration in milliseconds
+	 */
+	public double getMean() {
+		long count = this.count.sum();
+		return count == 0 ? 0 : this.sum.sum() / (double) count / 1000000d;
+	}
+
+	/**
+	 * @return the maximum duration in milliseconds
+	 */
+	public double getMax() {
+		return this.max.get() / 1000000d;
+	}
+
+	/**
+	 * @return the total of all durations in milliseconds
+	 */
+	public double getTotal() {
+		return this.sum.sum() / 1000000d;
+	}
+
+	/**
+	 * Returns the duration the given share of all recorded durations does not
+	 * exceed.
+	 *
+	 * @param percentile
+	 *            between 0 and 1
+	 * @return the upper bound in milliseconds
+	 */
+	public double getPercentile(double percentile) {
+		long count = this.count.sum();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile * count);
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += this.buckets.get(i);
+			if (seen >= rank) {
+				return Math.min((1l << i) / 1000d, this.getMax());
+			}
+		}
+		return this.getMax();
+	}
+
+	public void reset() {
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			this.buckets.set(i, 0);
+		}
+		this.count.reset();
+		this.sum.reset();
+		this.max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.1fms p50=%.1fms p95=%.1fms max=%.1fms",
+				this.getCount(), this.getMean(), this.getPercentile(0.5),
+				this.getPercentile(0.95), this.getMax());
+	}
+
+}
@@ -0,0 +1,42 @@
+package de.fu_berlin.imp.apiua.core.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link MetricsRegistry}.
+ *
+ * @author bkahlert
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * @return a human readable report of all metrics
+	 */
+	public String getReport();
+
+	/**
+	 * @return the hit rate of each cache
+	 */
+	public Map<String, Double> getHitRates();
+
+	/**
+	 * @return the estimated number of bytes held by each cache
+	 */
+	public Map<String, Long> getWeights();
+
+	/**
+	 * @return the total load time in milliseconds of each loader
+	 */
+	public Map<String, Double> getTotalLoadTimes();
+
+	/**
+	 * Writes the {@link #getReport() report} to the log.
+	 */
+	public void logReport();
+
+	/**
+	 * Resets all counters and histograms.
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,216 @@
+package de.fu_berlin.imp.apiua.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import de.fu_berlin.imp.apiua.core.extensionPoints.IDataLoadProvider;
+import de.fu_berlin.imp.apiua.core.util.Cache;
+
+/**
+ * Collects the {@link CacheMetrics} of all {@link Cache}s and the load times
+ * of all {@link IDataLoadProvider}s.
+ * <p>
+ * The metrics can be inspected in the Metrics view, via JMX as
+ * {@value #OBJECT_NAME} or by {@link #logReport() logging} them.
+ *
+ * @author bkahlert
+ */
+public class MetricsRegistry implements MetricsMXBean {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(MetricsRegistry.class);
+
+	public static final String OBJECT_NAME = "de.fu_berlin.imp.apiua:type=Metrics";
+
+	private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+	public static MetricsRegistry getDefault() {
+		return INSTANCE;
+	}
+
+	private final ConcurrentMap<String, CacheMetrics> cacheMetrics = new ConcurrentHashMap<String, CacheMetrics>();
+	private final ConcurrentMap<String, Histogram> loadTimes = new ConcurrentHashMap<String, Histogram>();
+
+	MetricsRegistry() {
+	}
+
+	/**
+	 * Returns the {@link CacheMetrics} of the given name and adds the given
+	 * {@link Cache} to them.
+	 *
+	 * @param name
+	 * @param cache
+	 * @return
+	 */
+	public CacheMetrics register(String name, Cache<?, ?> cache) {
+		CacheMetrics metrics = this.getCacheMetrics(name);
+		metrics.register(cache);
+		return metrics;
+	}
+
+	/**
+	 * Removes the given {@link Cache} from the {@link CacheMetrics} of the given
+	 * name. Unused {@link CacheMetrics} are discarded.
+	 *
+	 * @param name
+	 * @param cache
+	 */
+	public void unregister(String name, Cache<?, ?> cache) {
+		CacheMetrics metrics = this.cacheMetrics.get(name);
+		if (metrics != null && metrics.unregister(cache)) {
+			this.cacheMetrics.remove(name, metrics);
+		}
+	}
+
+	public CacheMetrics getCacheMetrics(String name) {
+		CacheMetrics metrics = this.cacheMetrics.get(name);
+		if (metrics == null) {
+			CacheMetrics newMetrics = new CacheMetrics(name);
+			metrics = this.cacheMetrics.putIfAbsent(name, newMetrics);
+			if (metrics == null) {
+				metrics = newMetrics;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Returns the {@link Histogram} of the load durations of the given loader.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public Histogram getLoadTimes(String name) {
+		Histogram histogram = this.loadTimes.get(name);
+		if (histogram == null) {
+			Histogram newHistogram = new Histogram();
+			histogram = this.loadTimes.putIfAbsent(name, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return all {@link CacheMetrics} ordered by their names
+	 */
+	public List<CacheMetrics> getCacheMetrics() {
+		List<CacheMetrics> metrics = new ArrayList<CacheMetrics>(
+				this.cacheMetrics.values());
+		Collections.sort(metrics, new Comparator<CacheMetrics>() {
+			@Override
+			public int compare(CacheMetrics metrics1, CacheMetrics metrics2) {
+				return metrics1.getName().compareTo(metrics2.getName());
+			}
+		});
+		return metrics;
+	}
+
+	/**
+	 * @return all load time {@link Histogram}s ordered by the names of their
+	 *         loaders
+	 */
+	public Map<String, Histogram> getLoadTimes() {
+		return Collections.unmodifiableMap(new TreeMap<String, Histogram>(
+				this.loadTimes));
+	}
+
+	@Override
+	public Map<String, Double> getHitRates() {
+		Map<String, Double> hitRates = new TreeMap<String, Double>();
+		for (CacheMetrics metrics : this.cacheMetrics.values()) {
+			hitRates.put(metrics.getName(), metrics.getHitRate());
+		}
+		return hitRates;
+	}
+
+	@Override
+	public Map<String, Long> getWeights() {
+		Map<String, Long> weights = new TreeMap<String, Long>();
+		for (CacheMetrics metrics : this.cacheMetrics.values()) {
+			weights.put(metrics.getName(), metrics.getWeight());
+		}
+		return weights;
+	}
+
+	@Override
+	public Map<String, Double> getTotalLoadTimes() {
+		Map<String, Double> totals = new TreeMap<String, Double>();
+		for (Map.Entry<String, Histogram> entry : this.loadTimes.entrySet()) {
+			totals.put(entry.getKey(), entry.getValue().getTotal());
+		}
+		return totals;
+	}
+
+	@Override
+	public String getReport() {
+		StringBuilder report = new StringBuilder("Caches:");
+		for (CacheMetrics metrics : this.getCacheMetrics()) {
+			report.append("\n  ").append(metrics);
+		}
+		report.append("\nLoaders:");
+		for (Map.Entry<String, Histogram> entry : this.getLoadTimes()
+				.entrySet()) {
+			report.append("\n  ").append(entry.getKey()).append(": ")
+					.append(entry.getValue());
+		}
+		return report.toString();
+	}
+
+	@Override
+	public void logReport() {
+		LOGGER.info(this.getReport());
+	}
+
+	@Override
+	public void reset() {
+		for (CacheMetrics metrics : this.cacheMetrics.values()) {
+			metrics.reset();
+		}
+		for (Histogram histogram : this.loadTimes.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Makes this registry accessible via JMX.
+	 */
+	public void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(this, objectName);
+			}
+		} catch (JMException e) {
+			LOGGER.warn("Could not register " + OBJECT_NAME, e);
+		}
+	}
+
+	public void unregisterMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException e) {
+			LOGGER.warn("Could not unregister " + OBJECT_NAME, e);
+		}
+	}
+
+}
@@ -3,6 +3,8 @@ package de.fu_berlin.imp.apiua.core.model.data;
 import java.io.File;
 import java.io.IOException;
 
+import de.fu_berlin.imp.apiua.core.util.AtomicFileOutputStream;
+
 public interface IBaseDataContainer extends IDataContainer {
 
 	public IDataSetInfo getInfo();
@@ -12,7 +14,8 @@ public interface IBaseDataContainer extends IDataContainer {
 	 * only locally created once.
 	 * <p>
 	 * The {@link File} is read-only, must not be edited and lives outside the
-	 * {@link IBaseDataContainer}'s life cycle.
+	 * {@link IBaseDataContainer}'s life cycle. It may be the stored resource
+	 * itself.
 	 * 
 	 * @param scope
 	 * @param name
@@ -33,7 +36,12 @@ public interface IBaseDataContainer extends IDataContainer {
 	 * Returns a {@link File} the caller can work with.
 	 * <p>
 	 * In order to save the changes made to the file use
-	 * {@link #putFile(String, String, File)}.
+	 * {@link #putFile(String, String, File)}. The {@link File} may share its
+	 * contents with the stored resource (e.g. as a hard link). Therefore
+	 * changes must be written to a new {@link File} that replaces the returned
+	 * one instead of modifying it in place.
+	 * <p>
+	 * Call {@link #releaseFile(File)} if the {@link File} is no more needed.
 	 * 
 	 * @param scope
 	 * @param filename
@@ -42,6 +50,14 @@ public interface IBaseDataContainer extends IDataContainer {
 	 */
 	public File getFile(String scope, String name) throws IOException;
 
+	/**
+	 * Releases a {@link File} returned by {@link #getFile(String, String)}.
+	 * The {@link File} must not be used afterwards.
+	 * 
+	 * @param file
+	 */
+	public void releaseFile(File file);
+
 	/**
 	 * Puts a {@link File} into the {@link IBaseDataContainer}.
 	 * <p>
@@ -59,6 +75,22 @@ public interface IBaseDataContainer extends IDataContainer {
 	public void putFile(String scope, String name, File file)
 			throws IOException;
 
+	/**
+	 * Returns a stream whose contents replace the resource in the
+	 * {@link IBaseDataContainer} when it is closed. Call
+	 * {@link AtomicFileOutputStream#abort()} to discard the contents instead.
+	 * <p>
+	 * In contrast to {@link #putFile(String, String, File)} no intermediate
+	 * {@link File} needs to be written by the caller.
+	 * 
+	 * @param scope
+	 * @param name
+	 * @return
+	 * @throws IOException
+	 */
+	public AtomicFileOutputStream putFile(String scope, String name)
+			throws IOException;
+
 	/**
 	 * Deleted all {@link File}s in the given scope.
 	 * 
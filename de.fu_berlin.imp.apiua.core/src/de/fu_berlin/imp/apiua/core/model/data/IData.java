@@ -2,6 +2,7 @@ package de.fu_berlin.imp.apiua.core.model.data;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import de.fu_berlin.imp.apiua.core.model.IRevealableInOS;
 
@@ -52,6 +53,30 @@ public interface IData extends Iterable<String>, IRevealableInOS {
 	 */
 	public String read(long from, long to);
 
+	/**
+	 * Returns the content denoted by its first and last byte as a read-only
+	 * {@link ByteBuffer}. Implementations avoid copying if possible.
+	 * 
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            exclusive
+	 * @return
+	 */
+	public ByteBuffer readBytes(long from, long to);
+
+	/**
+	 * Returns the decoded content denoted by its first and last byte.
+	 * Implementations avoid copying if possible.
+	 * 
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            exclusive
+	 * @return
+	 */
+	public CharSequence readChars(long from, long to);
+
 	/**
 	 * Returns the very first line of the {@link IData}'s content.
 	 * 
@@ -67,6 +92,14 @@ public interface IData extends Iterable<String>, IRevealableInOS {
 	 */
 	public String readLastLines(int numLines);
 
+	/**
+	 * Returns the {@link LineIndex} of this {@link IData}'s content.
+	 * Implementations build it lazily and may persist it.
+	 * 
+	 * @return
+	 */
+	public LineIndex getLineIndex();
+
 	/**
 	 * Returns the length/size of this {@link IData}.
 	 * 
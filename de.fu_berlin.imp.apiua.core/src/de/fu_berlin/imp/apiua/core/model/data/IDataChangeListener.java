@@ -0,0 +1,37 @@
+package de.fu_berlin.imp.apiua.core.model.data;
+
+/**
+ * Listener for changes of {@link IData}s contained in an
+ * {@link IWatchableDataContainer}.
+ * <p>
+ * Notifications are sent from a background thread.
+ * 
+ * @author bkahlert
+ * 
+ */
+public interface IDataChangeListener {
+
+	/**
+	 * Called if an {@link IData} was created.
+	 * 
+	 * @param data
+	 */
+	public void dataAdded(IData data);
+
+	/**
+	 * Called if the content of an {@link IData} changed, e.g. because lines
+	 * were appended.
+	 * 
+	 * @param data
+	 */
+	public void dataModified(IData data);
+
+	/**
+	 * Called if an {@link IData} was deleted.
+	 * 
+	 * @param data
+	 *            no more readable
+	 */
+	public void dataRemoved(IData data);
+
+}
@@ -0,0 +1,28 @@
+package de.fu_berlin.imp.apiua.core.model.data;
+
+/**
+ * {@link IDataContainer} that reports changes of the {@link IData}s it
+ * contains, including those in nested {@link IDataContainer}s.
+ * 
+ * @author bkahlert
+ * 
+ */
+public interface IWatchableDataContainer extends IDataContainer {
+
+	/**
+	 * Adds an {@link IDataChangeListener} that is notified about changes of
+	 * all {@link IData}s in this and all nested {@link IDataContainer}s.
+	 * 
+	 * @param dataChangeListener
+	 */
+	public void addDataChangeListener(IDataChangeListener dataChangeListener);
+
+	/**
+	 * Removes an {@link IDataChangeListener} previously added to this
+	 * {@link IWatchableDataContainer}.
+	 * 
+	 * @param dataChangeListener
+	 */
+	public void removeDataChangeListener(IDataChangeListener dataChangeListener);
+
+}
@@ -0,0 +1,280 @@
+package de.fu_berlin.imp.apiua.core.model.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.Assert;
+
+/**
+ * Maps the line numbers of an {@link IData} to the byte offsets of their
+ * content.
+ * <p>
+ * Lines are terminated by LF, CR or CR+LF just like
+ * {@link java.io.BufferedReader#readLine()} does, so line <code>n</code>
+ * corresponds to the <code>n</code>th element of {@link IData#iterator()}. The
+ * content is expected to be encoded in an ASCII compatible charset.
+ * <p>
+ * Instances are immutable and can be {@link #save(File, long) saved} as a
+ * sidecar file that is only {@link #load(File, long, long) loaded} as long as
+ * the indexed file keeps its length and modification time.
+ *
+ * @author bkahlert
+ */
+public class LineIndex {
+
+	private static final Logger LOGGER = Logger.getLogger(LineIndex.class);
+
+	private static final int MAGIC = 0x4C494458; // LIDX
+	private static final int VERSION = 1;
+	private static final int CHUNK_SIZE = 1024 * 1024;
+
+	private static final byte LF = 0x0A;
+	private static final byte CR = 0x0D;
+
+	/**
+	 * Collects the lines while scanning the content.
+	 */
+	private static class Builder {
+		private long[] starts = new long[16];
+		private long[] ends = new long[16];
+		private int count = 0;
+		private long lineStart = 0;
+		private boolean afterCR = false;
+
+		public void scan(long position, int c) {
+			if (this.afterCR) {
+				this.afterCR = false;
+				if (c == LF) {
+					this.lineStart = position + 1;
+					return;
+				}
+			}
+			if (c == LF || c == CR) {
+				this.add(this.lineStart, position);
+				this.lineStart = position + 1;
+				this.afterCR = c == CR;
+			}
+		}
+
+		private void add(long start, long end) {
+			if (this.count == this.starts.length) {
+				this.starts = Arrays.copyOf(this.starts, this.count * 2);
+				this.ends = Arrays.copyOf(this.ends, this.count * 2);
+			}
+			this.starts[this.count] = start;
+			this.ends[this.count] = end;
+			this.count++;
+		}
+
+		public LineIndex build(long length) {
+			if (this.lineStart < length) {
+				this.add(this.lineStart, length);
+			}
+			return new LineIndex(length, Arrays.copyOf(this.starts,
+					this.count), Arrays.copyOf(this.ends, this.count));
+		}
+	}
+
+	/**
+	 * Indexes the given {@link IData}'s content by scanning its bytes.
+	 *
+	 * @param data
+	 * @return
+	 */
+	public static LineIndex build(IData data) {
+		long length = data.getLength();
+		Builder builder = new Builder();
+		for (long chunkStart = 0; chunkStart < length; chunkStart += CHUNK_SIZE) {
+			ByteBuffer chunk = data.readBytes(chunkStart,
+					Math.min(chunkStart + CHUNK_SIZE, length));
+			for (int i = 0, n = chunk.remaining(); i < n; i++) {
+				builder.scan(chunkStart + i, chunk.get(chunk.position() + i));
+			}
+		}
+		return builder.build(length);
+	}
+
+	/**
+	 * Indexes the given content. Offsets are character instead of byte
+	 * offsets.
+	 *
+	 * @param content
+	 * @return
+	 */
+	public static LineIndex build(CharSequence content) {
+		Builder builder = new Builder();
+		for (int i = 0, n = content.length(); i < n; i++) {
+			builder.scan(i, content.charAt(i));
+		}
+		return builder.build(content.length());
+	}
+
+	/**
+	 * Loads a {@link LineIndex} {@link #save(File, long) saved} for a file of
+	 * the given length and modification time.
+	 *
+	 * @param indexFile
+	 * @param length
+	 * @param lastModified
+	 * @return null if no valid {@link LineIndex} exists for the given file
+	 *         state
+	 */
+	public static LineIndex load(File indexFile, long length, long lastModified) {
+		if (indexFile == null || !indexFile.isFile()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(indexFile)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION
+						|| in.readLong() != length
+						|| in.readLong() != lastModified) {
+					return null;
+				}
+				int count = in.readInt();
+				long[] starts = new long[count];
+				long[] ends = new long[count];
+				for (int i = 0; i < count; i++) {
+					starts[i] = in.readLong();
+					ends[i] = in.readLong();
+				}
+				return new LineIndex(length, starts, ends);
+			} finally {
+				in.close();
+			}
+		} catch (EOFException e) {
+			LOGGER.warn("Ignoring truncated " + indexFile);
+			return null;
+		} catch (IOException e) {
+			LOGGER.warn("Could not load " + indexFile, e);
+			return null;
+		}
+	}
+
+	private final long length;
+	private final long[] starts;
+	private final long[] ends;
+
+	private LineIndex(long length, long[] starts, long[] ends) {
+		Assert.isLegal(starts.length == ends.length);
+		this.length = length;
+		this.starts = starts;
+		this.ends = ends;
+	}
+
+	/**
+	 * Writes this {@link LineIndex} to the given file. The file is replaced
+	 * atomically so concurrent {@link #load(File, long, long) loads} never
+	 * see partial content.
+	 *
+	 * @param indexFile
+	 * @param lastModified
+	 *            modification time of the indexed file
+	 * @throws IOException
+	 */
+	public void save(File indexFile, long lastModified) throws IOException {
+		File directory = indexFile.getAbsoluteFile().getParentFile();
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		File tmpFile = File.createTempFile(indexFile.getName(), ".tmp",
+				directory);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(this.length);
+				out.writeLong(lastModified);
+				out.writeInt(this.starts.length);
+				for (int i = 0; i < this.starts.length; i++) {
+					out.writeLong(this.starts[i]);
+					out.writeLong(this.ends[i]);
+				}
+			} finally {
+				out.close();
+			}
+			Files.move(tmpFile.toPath(), indexFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * @return the length of the indexed content in bytes
+	 */
+	public long getLength() {
+		return this.length;
+	}
+
+	public int getLineCount() {
+		return this.starts.length;
+	}
+
+	/**
+	 * Returns the offset of the given line's first byte.
+	 *
+	 * @param line
+	 *            0-based
+	 * @return
+	 */
+	public long getStart(int line) {
+		return this.starts[line];
+	}
+
+	/**
+	 * Returns the offset directly after the given line's last byte not
+	 * counting the line terminator.
+	 *
+	 * @param line
+	 *            0-based
+	 * @return
+	 */
+	public long getEnd(int line) {
+		return this.ends[line];
+	}
+
+	/**
+	 * Returns the offset directly after the given line's terminator.
+	 *
+	 * @param line
+	 *            0-based
+	 * @return
+	 */
+	public long getNextStart(int line) {
+		return line + 1 < this.starts.length ? this.starts[line + 1]
+				: this.length;
+	}
+
+	/**
+	 * Returns the line the given offset belongs to. Offsets of line
+	 * terminators belong to the line they terminate.
+	 *
+	 * @param offset
+	 * @return 0-based line; -1 if the offset lies outside of the content
+	 */
+	public int getLine(long offset) {
+		if (offset < 0 || offset >= this.length || this.starts.length == 0) {
+			return -1;
+		}
+		int line = Arrays.binarySearch(this.starts, offset);
+		return line >= 0 ? line : -line - 2;
+	}
+
+}
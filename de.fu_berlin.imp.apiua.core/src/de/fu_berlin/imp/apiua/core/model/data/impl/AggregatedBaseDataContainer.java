@@ -12,6 +12,7 @@ import org.apache.commons.lang.StringUtils;
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDateRange;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IDataSetInfo;
+import de.fu_berlin.imp.apiua.core.util.AtomicFileOutputStream;
 
 public class AggregatedBaseDataContainer extends AggregatedDataContainer
 		implements IBaseDataContainer {
@@ -94,10 +95,18 @@ public class AggregatedBaseDataContainer extends AggregatedDataContainer
 			if (file.exists()) {
 				return file;
 			}
+			baseDataContainer.releaseFile(file);
 		}
 		return this.baseContainers.get(0).getFile(scope, name);
 	}
 
+	@Override
+	public void releaseFile(File file) {
+		for (IBaseDataContainer baseDataContainer : this.baseContainers) {
+			baseDataContainer.releaseFile(file);
+		}
+	}
+
 	/**
 	 * Returns all files found under the given filename.
 	 * <p>
@@ -117,6 +126,8 @@ public class AggregatedBaseDataContainer extends AggregatedDataContainer
 			File file = baseDataContainer.getFile(scope, name);
 			if (file.exists()) {
 				files.add(file);
+			} else {
+				baseDataContainer.releaseFile(file);
 			}
 		}
 		return files.size() > 0 ? files : null;
@@ -130,6 +141,32 @@ public class AggregatedBaseDataContainer extends AggregatedDataContainer
 		}
 	}
 
+	/**
+	 * Buffers the contents in a temporary {@link File} that is put into all
+	 * encapsulated containers on close.
+	 */
+	@Override
+	public AtomicFileOutputStream putFile(final String scope,
+			final String name) throws IOException {
+		final File tmp = File.createTempFile("aggregated-", ".tmp");
+		return new AtomicFileOutputStream(tmp, tmp.getParentFile()) {
+			@Override
+			protected void replaced(File file) throws IOException {
+				try {
+					AggregatedBaseDataContainer.this.putFile(scope, name, file);
+				} finally {
+					file.delete();
+				}
+			}
+
+			@Override
+			public void abort() {
+				super.abort();
+				tmp.delete();
+			}
+		};
+	}
+
 	@Override
 	public void deleteScope(String scope) {
 		for (IBaseDataContainer baseDataContainer : this.baseContainers) {
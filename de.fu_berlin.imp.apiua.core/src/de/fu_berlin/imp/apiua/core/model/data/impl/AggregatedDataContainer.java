@@ -6,7 +6,9 @@ import java.util.List;
 
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
+import de.fu_berlin.imp.apiua.core.model.data.IDataChangeListener;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.IWatchableDataContainer;
 
 /**
  * Instances of this class wrap a list of {@link IDataContainer}s and displays
@@ -15,7 +17,7 @@ import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
  * @author bkahlert
  * 
  */
-public class AggregatedDataContainer implements IDataContainer {
+public class AggregatedDataContainer implements IWatchableDataContainer {
 
 	private List<? extends IDataContainer> containers;
 
@@ -128,4 +130,28 @@ public class AggregatedDataContainer implements IDataContainer {
 		return datas.iterator();
 	}
 
+	/**
+	 * Registers the {@link IDataChangeListener} with all wrapped
+	 * {@link IWatchableDataContainer}s.
+	 */
+	@Override
+	public void addDataChangeListener(IDataChangeListener dataChangeListener) {
+		for (IDataContainer container : this.containers) {
+			if (container instanceof IWatchableDataContainer) {
+				((IWatchableDataContainer) container)
+						.addDataChangeListener(dataChangeListener);
+			}
+		}
+	}
+
+	@Override
+	public void removeDataChangeListener(IDataChangeListener dataChangeListener) {
+		for (IDataContainer container : this.containers) {
+			if (container instanceof IWatchableDataContainer) {
+				((IWatchableDataContainer) container)
+						.removeDataChangeListener(dataChangeListener);
+			}
+		}
+	}
+
 }
@@ -3,6 +3,7 @@ package de.fu_berlin.imp.apiua.core.model.data.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,9 +15,8 @@ import org.eclipse.core.runtime.InvalidRegistryObjectException;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Platform;
 
-import com.bkahlert.nebula.data.DependencyGraph;
-
 import de.fu_berlin.imp.apiua.core.extensionPoints.IDataLoadProvider;
+import de.fu_berlin.imp.apiua.core.extensionPoints.IIncrementalDataLoadProvider;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
 
@@ -29,7 +29,7 @@ public class DataLoaderManager {
 	 * This {@link IDataLoadProvider} is executed before the first and after the
 	 * last registered {@link IDataLoadProvider}.
 	 */
-	private IDataLoadProvider dataServiceLoaderBracket = new IDataLoadProvider() {
+	private IIncrementalDataLoadProvider dataServiceLoaderBracket = new IIncrementalDataLoadProvider() {
 		private List<? extends IBaseDataContainer> baseDataContainer = null;
 
 		@Override
@@ -52,11 +52,26 @@ public class DataLoaderManager {
 			return new AggregatedBaseDataContainer(baseDataContainer);
 		}
 
+		@Override
+		public IDataContainer update(
+				List<? extends IBaseDataContainer> baseDataContainer,
+				List<? extends IBaseDataContainer> added,
+				List<? extends IBaseDataContainer> removed,
+				IProgressMonitor progressMonitor) {
+			this.dispose(removed);
+			return this.load(baseDataContainer, progressMonitor);
+		}
+
 		@Override
 		public void unload(IProgressMonitor progressMonitor) {
 			if (this.baseDataContainer == null)
 				return;
-			for (IBaseDataContainer baseDataContainer : this.baseDataContainer) {
+			this.dispose(this.baseDataContainer);
+		}
+
+		private void dispose(
+				List<? extends IBaseDataContainer> baseDataContainers) {
+			for (IBaseDataContainer baseDataContainer : baseDataContainers) {
 				LOGGER.info("Disposing " + baseDataContainer);
 				baseDataContainer.dispose();
 				LOGGER.info("Disposed " + baseDataContainer);
@@ -64,7 +79,7 @@ public class DataLoaderManager {
 		}
 	};
 
-	private final DependencyGraph<String> loaderDependencies = new DependencyGraph<String>();
+	private final Map<String, List<String>> loaderDependencies = new LinkedHashMap<String, List<String>>();
 	private final Map<String, IDataLoadProvider> dataLoadProviders = new HashMap<String, IDataLoadProvider>();
 
 	public DataLoaderManager() {
@@ -99,17 +114,38 @@ public class DataLoaderManager {
 
 	public void addDataLoaderProvider(String source, List<String> dependencies,
 			IDataLoadProvider dataLoadProvider) {
-		loaderDependencies.addNode(source, dependencies);
+		loaderDependencies.put(source, new ArrayList<String>(dependencies));
 		dataLoadProviders.put(source, dataLoadProvider);
 	}
 
-	public List<List<String>> getLoadDependencies() {
-		return loaderDependencies.getOrderedValues();
+	/**
+	 * Returns the sources each source has to be loaded after.
+	 * 
+	 * @return
+	 */
+	public Map<String, List<String>> getLoadDependencies() {
+		return Collections.unmodifiableMap(this.loaderDependencies);
 	}
 
-	public List<List<String>> getUnloadDependencies() {
-		List<List<String>> unloadDependencies = getLoadDependencies();
-		Collections.reverse(unloadDependencies);
+	/**
+	 * Returns the sources each source has to be unloaded after, that is the
+	 * sources depending on it.
+	 * 
+	 * @return
+	 */
+	public Map<String, List<String>> getUnloadDependencies() {
+		Map<String, List<String>> unloadDependencies = new LinkedHashMap<String, List<String>>();
+		for (String source : this.loaderDependencies.keySet()) {
+			unloadDependencies.put(source, new ArrayList<String>());
+		}
+		for (Map.Entry<String, List<String>> entry : this.loaderDependencies
+				.entrySet()) {
+			for (String dependency : entry.getValue()) {
+				if (unloadDependencies.containsKey(dependency)) {
+					unloadDependencies.get(dependency).add(entry.getKey());
+				}
+			}
+		}
 		return unloadDependencies;
 	}
 
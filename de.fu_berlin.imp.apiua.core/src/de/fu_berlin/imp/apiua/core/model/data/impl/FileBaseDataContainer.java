@@ -2,8 +2,12 @@ package de.fu_berlin.imp.apiua.core.model.data.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -11,8 +15,11 @@ import org.apache.log4j.Logger;
 
 import de.fu_berlin.imp.apiua.core.model.DataSetInfo;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.IDataChangeListener;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IDataSetInfo;
+import de.fu_berlin.imp.apiua.core.util.AtomicFileOutputStream;
+import de.fu_berlin.imp.apiua.core.util.MappedFile;
 
 public class FileBaseDataContainer extends FileDataContainer implements
 		IBaseDataContainer {
@@ -20,12 +27,40 @@ public class FileBaseDataContainer extends FileDataContainer implements
 	public static final Logger LOGGER = Logger
 			.getLogger(FileBaseDataContainer.class);
 
-	private List<File> returnedFiles;
+	/**
+	 * Maximum number of bytes released working copies may occupy until they
+	 * are deleted.
+	 */
+	public static final long MAX_IDLE_WORKING_FILES_SIZE = 64l * 1024 * 1024;
+
+	/**
+	 * Maximum number of {@link MappedFile}s shared by the {@link FileData}s of
+	 * this {@link FileBaseDataContainer}.
+	 */
+	public static final int MAX_MAPPED_FILES = 64;
+
+	private final WorkingFiles workingFiles;
 	private IDataSetInfo info;
+	private volatile FileDataWatcher watcher;
+	private final Map<File, MappedFile> mappedFiles = new LinkedHashMap<File, MappedFile>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, MappedFile> eldest) {
+			if (this.size() > MAX_MAPPED_FILES) {
+				eldest.getValue().close();
+				return true;
+			}
+			return false;
+		}
+	};
+	private final Map<String, ScanCatalog> scanCatalogs = new HashMap<String, ScanCatalog>();
 
 	protected FileBaseDataContainer(File file, boolean expectDataSetInfo) {
 		super(file);
-		this.returnedFiles = new ArrayList<File>();
+		this.workingFiles = new WorkingFiles(new File(new File(file, "tmp"),
+				"working-files"), MAX_IDLE_WORKING_FILES_SIZE);
 		this.info = expectDataSetInfo ? new DataSetInfo(
 				this.getResource("__dataset.txt")) : null;
 	}
@@ -58,6 +93,115 @@ public class FileBaseDataContainer extends FileDataContainer implements
 		return new FileDataContainer(this, this, directory);
 	}
 
+	/**
+	 * Notifies the given {@link IDataChangeListener} about changes within the
+	 * given directory. The directory tree is watched as long as at least one
+	 * {@link IDataChangeListener} is registered.
+	 * 
+	 * @param dataChangeListener
+	 * @param scope
+	 */
+	synchronized void watch(IDataChangeListener dataChangeListener, File scope) {
+		if (this.watcher == null) {
+			this.watcher = new FileDataWatcher(this);
+		}
+		this.watcher.addDataChangeListener(dataChangeListener, scope);
+		try {
+			this.watcher.start();
+		} catch (IOException e) {
+			LOGGER.error("Could not watch " + this, e);
+		}
+	}
+
+	synchronized void unwatch(IDataChangeListener dataChangeListener,
+			File scope) {
+		if (this.watcher == null) {
+			return;
+		}
+		this.watcher.removeDataChangeListener(dataChangeListener, scope);
+		if (!this.watcher.hasListeners()) {
+			this.watcher.stop();
+			this.watcher = null;
+		}
+	}
+
+	/**
+	 * Returns the shared {@link MappedFile} of the given {@link File}.
+	 * <p>
+	 * The {@link MappedFile} is closed as soon as the {@link FileDataWatcher}
+	 * or {@link #putFile(String, String, File)} reports a change. Since file
+	 * system events may be delayed or lost it is also checked for staleness
+	 * on every lookup.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	MappedFile getMappedFile(File file) throws IOException {
+		file = file.getAbsoluteFile();
+		synchronized (this.mappedFiles) {
+			MappedFile mappedFile = this.mappedFiles.get(file);
+			if (mappedFile != null && !mappedFile.isClosed()
+					&& !mappedFile.isStale()) {
+				return mappedFile;
+			}
+			if (mappedFile != null) {
+				mappedFile.close();
+			}
+			mappedFile = new MappedFile(file);
+			this.mappedFiles.put(file, mappedFile);
+			return mappedFile;
+		}
+	}
+
+	/**
+	 * Closes the {@link MappedFile} of the given {@link File} since it is
+	 * about to be replaced or was changed.
+	 * 
+	 * @param file
+	 */
+	void closeMappedFile(File file) {
+		MappedFile mappedFile;
+		synchronized (this.mappedFiles) {
+			mappedFile = this.mappedFiles.remove(file.getAbsoluteFile());
+		}
+		if (mappedFile != null) {
+			mappedFile.close();
+		}
+	}
+
+	/**
+	 * Closes all {@link MappedFile}s, e.g. if changes might have been missed.
+	 */
+	void closeMappedFiles() {
+		List<MappedFile> mappedFiles;
+		synchronized (this.mappedFiles) {
+			mappedFiles = new ArrayList<MappedFile>(this.mappedFiles.values());
+			this.mappedFiles.clear();
+		}
+		for (MappedFile mappedFile : mappedFiles) {
+			mappedFile.close();
+		}
+	}
+
+	/**
+	 * Returns the {@link ScanCatalog} with the given name. It is stored in
+	 * this {@link FileBaseDataContainer}'s temp directory.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public synchronized ScanCatalog getScanCatalog(String name) {
+		ScanCatalog scanCatalog = this.scanCatalogs.get(name);
+		if (scanCatalog == null) {
+			scanCatalog = new ScanCatalog(this.getFile(), new File(new File(
+					this.getTempDirectory(), "scan-catalogs"), name
+					+ ".catalog"));
+			this.scanCatalogs.put(name, scanCatalog);
+		}
+		return scanCatalog;
+	}
+
 	protected File getTempDirectory() {
 		File tmp = new File(this.getFile(), "tmp");
 		if (!tmp.exists()) {
@@ -80,58 +224,103 @@ public class FileBaseDataContainer extends FileDataContainer implements
 		return new File(scopeDir, name);
 	}
 
+	/**
+	 * Returns the resource itself since callers must not modify it. As
+	 * {@link #putFile(String, String, File)} replaces resources atomically
+	 * readers never see partially written contents.
+	 */
 	@Override
 	public File getStaticFile(String scope, String name) throws IOException {
 		File file = this.getLocation(scope, name);
 		if (!file.exists()) {
 			return null;
 		}
-
-		File staticFile = new File(new File(new File(this.getTempDirectory(),
-				"static-files"), scope), name);
-		if (!staticFile.exists()
-				|| staticFile.lastModified() != file.lastModified()) {
-			FileUtils.copyFile(file, staticFile);
-		}
-
-		return staticFile;
+		return file;
 	}
 
+	/**
+	 * Static {@link File}s are no more copied. Only copies created by former
+	 * versions are removed.
+	 */
 	@Override
 	public void resetStaticFile(String scope, String name) throws IOException {
-		File staticFile = this.getStaticFile(scope, name);
-		if (staticFile != null && staticFile.exists()) {
+		File staticFile = new File(new File(new File(this.getTempDirectory(),
+				"static-files"), scope), name);
+		if (staticFile.exists()) {
 			staticFile.delete();
 		}
 	}
 
+	/**
+	 * Returns a working copy in this {@link FileBaseDataContainer}'s temp
+	 * directory. If supported by the file system the copy is a hard link to
+	 * the resource.
+	 */
 	@Override
 	public File getFile(String scope, String name) throws IOException {
-		File file = this.getLocation(scope, name);
-
-		File tmpFile = File.createTempFile("sua-tmp-",
+		return this.workingFiles.acquire(this.getLocation(scope, name),
 				FilenameUtils.getName(name));
-		tmpFile.delete();
-		if (file.exists()) {
-			FileUtils.copyFile(file, tmpFile);
-		}
-		this.returnedFiles.add(tmpFile);
-		return tmpFile;
 	}
 
+	@Override
+	public void releaseFile(File file) {
+		this.workingFiles.release(file);
+	}
+
+	/**
+	 * Replaces the resource atomically so that {@link File}s returned by
+	 * {@link #getStaticFile(String, String)} and
+	 * {@link #getFile(String, String)} are never modified.
+	 */
 	@Override
 	public void putFile(String scope, String name, File file)
 			throws IOException {
+		File location = this.getLocation(scope, name);
+		this.workingFiles.invalidate(location);
+		this.closeMappedFile(location);
 		if (file == null) {
-			this.getLocation(scope, name).delete();
-		} else {
-			if (file.exists()) {
-				FileUtils.copyFile(file, this.getLocation(scope, name));
+			location.delete();
+		} else if (file.exists()) {
+			AtomicFileOutputStream out = new AtomicFileOutputStream(location,
+					this.getTempDirectory());
+			try {
+				Files.copy(file.toPath(), out);
+			} catch (IOException e) {
+				out.abort();
+				throw e;
 			}
+			out.close();
+			// readers may have mapped the old content meanwhile
+			this.closeMappedFile(location);
 		}
 		this.resetStaticFile(scope, name);
 	}
 
+	/**
+	 * The returned stream writes to this {@link FileBaseDataContainer}'s temp
+	 * directory and replaces the resource atomically on close.
+	 */
+	@Override
+	public AtomicFileOutputStream putFile(String scope, String name)
+			throws IOException {
+		final File location = this.getLocation(scope, name);
+		this.workingFiles.invalidate(location);
+		this.resetStaticFile(scope, name);
+		return new AtomicFileOutputStream(location, this.getTempDirectory()) {
+			@Override
+			public void close() throws IOException {
+				FileBaseDataContainer.this.closeMappedFile(location);
+				super.close();
+			}
+
+			@Override
+			protected void replaced(File file) throws IOException {
+				// readers may have mapped the old content meanwhile
+				FileBaseDataContainer.this.closeMappedFile(file);
+			}
+		};
+	}
+
 	@Override
 	public void deleteScope(String scope) {
 		try {
@@ -148,11 +337,14 @@ public class FileBaseDataContainer extends FileDataContainer implements
 
 	@Override
 	public void dispose() {
-		for (File returnedFile : this.returnedFiles) {
-			if (returnedFile != null && returnedFile.exists()) {
-				returnedFile.delete();
+		synchronized (this) {
+			if (this.watcher != null) {
+				this.watcher.stop();
+				this.watcher = null;
 			}
 		}
+		this.workingFiles.dispose();
+		this.closeMappedFiles();
 	}
 
 }
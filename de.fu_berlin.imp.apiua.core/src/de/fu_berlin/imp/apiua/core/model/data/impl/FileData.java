@@ -1,13 +1,14 @@
 package de.fu_berlin.imp.apiua.core.model.data.impl;
 
 import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -20,14 +21,25 @@ import org.eclipse.core.runtime.Assert;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.LineIndex;
+import de.fu_berlin.imp.apiua.core.util.MappedFile;
 
 public class FileData implements IData {
 
 	private static Logger LOGGER = Logger.getLogger(FileData.class);
 
+	private static final byte LF = 0x0A;
+	private static final byte CR = 0x0D;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String LINE_INDICES = "line-indices";
+
 	private IBaseDataContainer baseDataContainer;
 	private IDataContainer dataContainer;
 	private final File file;
+	private final Charset charset;
+	private volatile MappedFile mappedFile = null;
+	private MappedFile indexedFile = null;
+	private LineIndex lineIndex = null;
 
 	public FileData(IBaseDataContainer baseDataContainer,
 			IDataContainer parentDataContainer, File file) {
@@ -47,7 +59,18 @@ public class FileData implements IData {
 	}
 
 	public FileData(File file) {
+		this(file, Charset.defaultCharset());
+	}
+
+	/**
+	 * @param file
+	 * @param charset
+	 *            used to decode the content
+	 */
+	public FileData(File file, Charset charset) {
+		Assert.isNotNull(charset);
 		this.file = file;
+		this.charset = charset;
 	}
 
 	@Override
@@ -65,10 +88,52 @@ public class FileData implements IData {
 		return this.file.getName();
 	}
 
+	/**
+	 * Returns a {@link MappedFile} of the current version of the underlying
+	 * {@link File}.
+	 * <p>
+	 * If this {@link FileData} belongs to a {@link FileBaseDataContainer} the
+	 * {@link MappedFile} is shared and closed by it on changes. Otherwise it is
+	 * checked for staleness.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private MappedFile getMappedFile() throws IOException {
+		if (this.baseDataContainer instanceof FileBaseDataContainer) {
+			return ((FileBaseDataContainer) this.baseDataContainer)
+					.getMappedFile(this.file);
+		}
+		MappedFile mappedFile = this.mappedFile;
+		if (mappedFile == null || mappedFile.isClosed() || mappedFile.isStale()) {
+			mappedFile = new MappedFile(this.file);
+			this.mappedFile = mappedFile;
+		}
+		return mappedFile;
+	}
+
+	/**
+	 * Releases the {@link MappedFile} of this {@link FileData} if it does not
+	 * belong to a {@link FileBaseDataContainer}. Further reads map the
+	 * {@link File} again.
+	 */
+	public void close() {
+		MappedFile mappedFile = this.mappedFile;
+		this.mappedFile = null;
+		if (mappedFile != null) {
+			mappedFile.close();
+		}
+	}
+
+	public Charset getCharset() {
+		return this.charset;
+	}
+
 	@Override
 	public String read() {
 		try {
-			return org.apache.commons.io.FileUtils.readFileToString(this.file);
+			MappedFile mappedFile = this.getMappedFile();
+			return mappedFile.getString(0, mappedFile.length(), this.charset);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -77,9 +142,33 @@ public class FileData implements IData {
 	@Override
 	public String read(long from, long to) {
 		try {
-			return new String(
-					de.fu_berlin.imp.apiua.core.util.FileUtils
-							.readBytesFromTo(this.file, from, to));
+			return this.getMappedFile().getString(from, to, this.charset);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns a copy since the {@link MappedFile} is unmapped as soon as the
+	 * {@link File} changes.
+	 */
+	@Override
+	public ByteBuffer readBytes(long from, long to) {
+		try {
+			return this.getMappedFile().copy(from, to);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns a copy since the {@link MappedFile} is unmapped as soon as the
+	 * {@link File} changes.
+	 */
+	@Override
+	public CharSequence readChars(long from, long to) {
+		try {
+			return this.getMappedFile().getString(from, to, this.charset);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -87,51 +176,50 @@ public class FileData implements IData {
 
 	@Override
 	public String readFirstLine() {
-		String lineData = "";
 		try {
-			RandomAccessFile inFile = new RandomAccessFile(this.file, "r");
-			lineData = inFile.readLine();
-			inFile.close();
+			MappedFile mappedFile = this.getMappedFile();
+			if (mappedFile.length() == 0) {
+				return null;
+			}
+			long end = mappedFile.indexOf(LF, 0, mappedFile.length());
+			if (end < 0) {
+				end = mappedFile.length();
+			}
+			long cr = mappedFile.indexOf(CR, 0, end);
+			return mappedFile.getString(0, cr >= 0 ? cr : end, this.charset);
 		} catch (IOException e) {
-			e.printStackTrace();
+			LOGGER.error("Could not read " + this.file, e);
 			return null;
 		}
-		return lineData;
 	}
 
+	/**
+	 * Returns the last lines. A trailing line feed is only omitted if a single
+	 * line is requested.
+	 */
 	@Override
 	public String readLastLines(int numLines) {
 		try {
-			RandomAccessFile fileHandler = new RandomAccessFile(this.file, "r");
-			long fileLength = this.file.length() - 1;
-			StringBuilder sb = new StringBuilder();
+			MappedFile mappedFile = this.getMappedFile();
+			long start = 0;
+			long end = mappedFile.length();
 			int line = 0;
-
-			for (long filePointer = fileLength; filePointer != -1; filePointer--) {
-				fileHandler.seek(filePointer);
-				int readByte = fileHandler.readByte();
-
-				if (readByte == 0xA) {
-					line++;
-					if (line >= numLines) {
-						if (filePointer == fileLength) {
-							continue;
-						} else {
-							break;
-						}
+			long position = mappedFile.lastIndexOf(LF, 0, end);
+			while (position >= 0) {
+				line++;
+				if (line >= numLines) {
+					if (position == mappedFile.length() - 1) {
+						end = position;
+					} else {
+						start = position + 1;
+						break;
 					}
 				}
-				sb.append((char) readByte);
+				position = mappedFile.lastIndexOf(LF, 0, position);
 			}
-
-			String lastLine = sb.reverse().toString();
-			fileHandler.close();
-			return lastLine;
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-			return null;
+			return mappedFile.getString(start, end, this.charset);
 		} catch (IOException e) {
-			e.printStackTrace();
+			LOGGER.error("Could not read " + this.file, e);
 			return null;
 		}
 	}
@@ -148,7 +236,7 @@ public class FileData implements IData {
 				{
 					this.fstream = new FileInputStream(FileData.this.file);
 					this.br = new BufferedReader(new InputStreamReader(
-							new DataInputStream(this.fstream)));
+							this.fstream, FileData.this.charset), BUFFER_SIZE);
 					this.next();
 				}
 
@@ -193,6 +281,59 @@ public class FileData implements IData {
 		}
 	}
 
+	/**
+	 * Returns the {@link LineIndex} of the current version of the underlying
+	 * {@link File}. If this {@link FileData} belongs to a
+	 * {@link FileBaseDataContainer} the {@link LineIndex} is persisted in its
+	 * temp directory and reused as long as the {@link File} is not changed.
+	 */
+	@Override
+	public synchronized LineIndex getLineIndex() {
+		try {
+			MappedFile mappedFile = this.getMappedFile();
+			if (this.lineIndex == null || this.indexedFile != mappedFile) {
+				long lastModified = this.file.lastModified();
+				File indexFile = this.getLineIndexFile();
+				LineIndex lineIndex = LineIndex.load(indexFile,
+						mappedFile.length(), lastModified);
+				if (lineIndex == null) {
+					lineIndex = LineIndex.build(this);
+					if (indexFile != null) {
+						try {
+							lineIndex.save(indexFile, lastModified);
+						} catch (IOException e) {
+							LOGGER.warn("Could not save " + indexFile, e);
+						}
+					}
+				}
+				this.lineIndex = lineIndex;
+				this.indexedFile = mappedFile;
+			}
+			return this.lineIndex;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the sidecar file the {@link LineIndex} is persisted in.
+	 * 
+	 * @return null if the {@link LineIndex} can't be persisted
+	 */
+	private File getLineIndexFile() {
+		if (!(this.baseDataContainer instanceof FileBaseDataContainer)) {
+			return null;
+		}
+		FileBaseDataContainer baseDataContainer = (FileBaseDataContainer) this.baseDataContainer;
+		URI relative = baseDataContainer.getFile().toURI()
+				.relativize(this.file.toURI());
+		if (relative.isAbsolute()) {
+			return null;
+		}
+		return new File(new File(baseDataContainer.getTempDirectory(),
+				LINE_INDICES), relative.getPath() + ".idx");
+	}
+
 	@Override
 	public long getLength() {
 		return this.file.length();
@@ -221,6 +362,15 @@ public class FileData implements IData {
 		return this.getStaticFile();
 	}
 
+	/**
+	 * Returns the {@link File} this {@link FileData} reads from.
+	 * 
+	 * @return
+	 */
+	File getLocalFile() {
+		return this.file;
+	}
+
 	@Override
 	public String toString() {
 		return this.file.getAbsolutePath()
@@ -228,4 +378,30 @@ public class FileData implements IData {
 				+ ((this.baseDataContainer == null) ? "null"
 						: this.baseDataContainer.toString());
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return this.file.hashCode();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof FileData)) {
+			return false;
+		}
+		return this.file.equals(((FileData) obj).file);
+	}
 }
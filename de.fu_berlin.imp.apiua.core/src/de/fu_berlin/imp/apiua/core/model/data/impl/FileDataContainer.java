@@ -7,13 +7,19 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
+import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.Assert;
 
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
+import de.fu_berlin.imp.apiua.core.model.data.IDataChangeListener;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.IWatchableDataContainer;
 
-public class FileDataContainer implements IDataContainer {
+public class FileDataContainer implements IWatchableDataContainer {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(FileDataContainer.class);
 
 	private IBaseDataContainer baseDataContainer;
 	private IDataContainer parentDataContainer;
@@ -135,6 +141,31 @@ public class FileDataContainer implements IDataContainer {
 		return datas.iterator();
 	}
 
+	/**
+	 * Changes are detected by the {@link FileDataWatcher} of the
+	 * {@link FileBaseDataContainer} this {@link FileDataContainer} belongs to.
+	 */
+	@Override
+	public void addDataChangeListener(IDataChangeListener dataChangeListener) {
+		IBaseDataContainer baseDataContainer = this.getBaseDataContainer();
+		if (baseDataContainer instanceof FileBaseDataContainer) {
+			((FileBaseDataContainer) baseDataContainer).watch(
+					dataChangeListener, this.file);
+		} else {
+			LOGGER.warn("Can't watch " + this + " since it does not belong to a "
+					+ FileBaseDataContainer.class.getSimpleName());
+		}
+	}
+
+	@Override
+	public void removeDataChangeListener(IDataChangeListener dataChangeListener) {
+		IBaseDataContainer baseDataContainer = this.getBaseDataContainer();
+		if (baseDataContainer instanceof FileBaseDataContainer) {
+			((FileBaseDataContainer) baseDataContainer).unwatch(
+					dataChangeListener, this.file);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,362 @@
+package de.fu_berlin.imp.apiua.core.model.data.impl;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import de.fu_berlin.imp.apiua.core.model.data.IData;
+import de.fu_berlin.imp.apiua.core.model.data.IDataChangeListener;
+import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.util.MappedFile;
+
+/**
+ * Watches the directory tree of a {@link FileBaseDataContainer} using a
+ * {@link WatchService} and notifies {@link IDataChangeListener}s about added,
+ * modified and removed {@link FileData}s.
+ * <p>
+ * Events are collected until the file system was quiet for
+ * {@link #QUIET_PERIOD} milliseconds so a file that is still being written
+ * results in a single notification. The temporary directory of the
+ * {@link FileBaseDataContainer} is not watched.
+ * <p>
+ * The {@link MappedFile}s of changed {@link FileData}s are closed before the
+ * {@link IDataChangeListener}s are notified so that they read the new content.
+ *
+ * @author bkahlert
+ *
+ */
+public class FileDataWatcher {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(FileDataWatcher.class);
+
+	/**
+	 * Milliseconds without file system events after which the collected
+	 * changes are reported.
+	 */
+	public static final long QUIET_PERIOD = 500;
+
+	/**
+	 * Milliseconds after which collected changes are reported even if the file
+	 * system is still busy.
+	 */
+	public static final long MAX_DELAY = 5000;
+
+	private static enum Kind {
+		ADDED, MODIFIED, REMOVED;
+	}
+
+	private static class Registration {
+		private final IDataChangeListener dataChangeListener;
+		private final Path scope;
+
+		public Registration(IDataChangeListener dataChangeListener, Path scope) {
+			this.dataChangeListener = dataChangeListener;
+			this.scope = scope;
+		}
+	}
+
+	private final FileBaseDataContainer baseDataContainer;
+	private final Path root;
+	private final Path tempDirectory;
+	private final List<Registration> registrations = new CopyOnWriteArrayList<Registration>();
+
+	/**
+	 * Watched directories; only accessed by the watching thread once started.
+	 */
+	private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+	private WatchService watchService;
+	private Thread thread;
+
+	public FileDataWatcher(FileBaseDataContainer baseDataContainer) {
+		this.baseDataContainer = baseDataContainer;
+		this.root = baseDataContainer.getFile().toPath().toAbsolutePath();
+		this.tempDirectory = baseDataContainer.getTempDirectory().toPath()
+				.toAbsolutePath();
+	}
+
+	/**
+	 * Adds an {@link IDataChangeListener} that is only notified about changes
+	 * within the given directory.
+	 *
+	 * @param dataChangeListener
+	 * @param scope
+	 */
+	public void addDataChangeListener(IDataChangeListener dataChangeListener,
+			File scope) {
+		this.registrations.add(new Registration(dataChangeListener, scope
+				.toPath().toAbsolutePath()));
+	}
+
+	public void removeDataChangeListener(
+			IDataChangeListener dataChangeListener, File scope) {
+		Path path = scope.toPath().toAbsolutePath();
+		for (Registration registration : this.registrations) {
+			if (registration.dataChangeListener == dataChangeListener
+					&& registration.scope.equals(path)) {
+				this.registrations.remove(registration);
+				break;
+			}
+		}
+	}
+
+	public boolean hasListeners() {
+		return !this.registrations.isEmpty();
+	}
+
+	public synchronized boolean isRunning() {
+		return this.thread != null;
+	}
+
+	/**
+	 * Starts watching if not already done.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void start() throws IOException {
+		if (this.thread != null) {
+			return;
+		}
+
+		final WatchService watchService = this.root.getFileSystem()
+				.newWatchService();
+		this.watchService = watchService;
+		this.directories.clear();
+		this.register(watchService, this.root, null);
+
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				FileDataWatcher.this.watch(watchService);
+			}
+		}, FileDataWatcher.class.getSimpleName() + " " + this.root);
+		this.thread.setDaemon(true);
+		this.thread.start();
+		LOGGER.info("Watching " + this.root);
+	}
+
+	/**
+	 * Stops watching. Changes not yet reported are discarded.
+	 */
+	public synchronized void stop() {
+		if (this.thread == null) {
+			return;
+		}
+		try {
+			this.watchService.close();
+		} catch (IOException e) {
+			LOGGER.error("Error closing " + WatchService.class.getSimpleName(),
+					e);
+		}
+		this.thread.interrupt();
+		this.thread = null;
+		this.watchService = null;
+		LOGGER.info("Stopped watching " + this.root);
+	}
+
+	private void watch(WatchService watchService) {
+		Map<Path, Kind> changes = new LinkedHashMap<Path, Kind>();
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				long firstEvent = System.currentTimeMillis();
+				while (key != null) {
+					this.process(watchService, key, changes);
+					if (System.currentTimeMillis() - firstEvent > MAX_DELAY) {
+						break;
+					}
+					key = watchService.poll(QUIET_PERIOD,
+							TimeUnit.MILLISECONDS);
+				}
+				this.notify(changes);
+				changes.clear();
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		} catch (ClosedWatchServiceException e) {
+			// stopped
+		}
+	}
+
+	private void process(WatchService watchService, WatchKey key,
+			Map<Path, Kind> changes) {
+		Path directory = this.directories.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				LOGGER.warn("Lost file system events in " + this.root
+						+ "; reload the data directory to see all changes");
+				this.baseDataContainer.closeMappedFiles();
+				continue;
+			}
+			if (directory == null) {
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			if (path.startsWith(this.tempDirectory)) {
+				continue;
+			}
+
+			if (event.kind() == ENTRY_CREATE) {
+				if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+					this.register(watchService, path, changes);
+				} else {
+					record(changes, path, Kind.ADDED);
+				}
+			} else if (event.kind() == ENTRY_MODIFY) {
+				if (!Files.isDirectory(path)) {
+					record(changes, path, Kind.MODIFIED);
+				}
+			} else if (event.kind() == ENTRY_DELETE) {
+				// deleted directories are dropped when their key is reset
+				if (!this.directories.containsValue(path)) {
+					record(changes, path, Kind.REMOVED);
+				}
+			}
+		}
+		if (!key.reset()) {
+			this.directories.remove(key);
+		}
+	}
+
+	/**
+	 * Registers the given directory and all its sub directories.
+	 *
+	 * @param watchService
+	 * @param start
+	 * @param changes
+	 *            if not null, the files found are recorded as added
+	 */
+	private void register(final WatchService watchService, Path start,
+			final Map<Path, Kind> changes) {
+		try {
+			Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path directory,
+						BasicFileAttributes attributes) throws IOException {
+					if (directory.startsWith(FileDataWatcher.this.tempDirectory)) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					WatchKey key = directory.register(watchService,
+							ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+					FileDataWatcher.this.directories.put(key, directory);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file,
+						BasicFileAttributes attributes) {
+					if (changes != null) {
+						record(changes, file, Kind.ADDED);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file,
+						IOException e) {
+					LOGGER.warn("Could not watch " + file, e);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			LOGGER.error("Could not watch " + start, e);
+		}
+	}
+
+	/**
+	 * Merges a change into the already collected ones.
+	 */
+	private static void record(Map<Path, Kind> changes, Path path, Kind kind) {
+		Kind previous = changes.get(path);
+		if (previous == null) {
+			changes.put(path, kind);
+		} else if (previous == Kind.ADDED) {
+			if (kind == Kind.REMOVED) {
+				changes.remove(path);
+			}
+		} else if (previous == Kind.REMOVED) {
+			if (kind != Kind.REMOVED) {
+				changes.put(path, Kind.MODIFIED);
+			}
+		} else if (kind == Kind.REMOVED) {
+			changes.put(path, Kind.REMOVED);
+		}
+	}
+
+	private void notify(Map<Path, Kind> changes) {
+		for (Map.Entry<Path, Kind> change : changes.entrySet()) {
+			Path path = change.getKey();
+			this.baseDataContainer.closeMappedFile(path.toFile());
+			IData data = null;
+			for (Registration registration : this.registrations) {
+				if (!path.startsWith(registration.scope)) {
+					continue;
+				}
+				if (data == null) {
+					data = this.createData(path);
+				}
+				try {
+					switch (change.getValue()) {
+					case ADDED:
+						registration.dataChangeListener.dataAdded(data);
+						break;
+					case MODIFIED:
+						registration.dataChangeListener.dataModified(data);
+						break;
+					case REMOVED:
+						registration.dataChangeListener.dataRemoved(data);
+						break;
+					}
+				} catch (RuntimeException e) {
+					LOGGER.error("Error notifying about " + change.getValue()
+							+ " " + path, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the {@link FileData} for the given path with the
+	 * {@link FileDataContainer}s it is nested in. If one of those directories
+	 * no more exists a {@link FileData} without containers is returned.
+	 */
+	private IData createData(Path path) {
+		IDataContainer container = this.baseDataContainer;
+		File directory = this.root.toFile();
+		Path relative = this.root.relativize(path.getParent());
+		if (!relative.toString().isEmpty()) {
+			for (Path segment : relative) {
+				directory = new File(directory, segment.toString());
+				if (!directory.isDirectory()) {
+					return new FileData(path.toFile());
+				}
+				container = new FileDataContainer(this.baseDataContainer,
+						container, directory);
+			}
+		}
+		return new FileData(this.baseDataContainer, container, path.toFile());
+	}
+
+}
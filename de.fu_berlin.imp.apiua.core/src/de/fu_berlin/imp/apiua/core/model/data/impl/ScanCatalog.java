@@ -0,0 +1,350 @@
+package de.fu_berlin.imp.apiua.core.model.data.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.log4j.Logger;
+
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDateRange;
+import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.IData;
+import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+
+/**
+ * Persistent catalog of metadata derived while scanning the files of a
+ * {@link FileBaseDataContainer}, e.g. the date range of a log file.
+ * <p>
+ * Entries are keyed by the path of a file or directory relative to the
+ * {@link FileBaseDataContainer} and are only returned as long as the file
+ * keeps its length and modification time. This way unchanged files don't need
+ * to be read again on the next start. Changes are written on {@link #save()}.
+ *
+ * @author bkahlert
+ */
+public class ScanCatalog {
+
+	private static final Logger LOGGER = Logger.getLogger(ScanCatalog.class);
+
+	private static final int MAGIC = 0x53434154; // SCAT
+	private static final int VERSION = 1;
+
+	private static class Entry {
+		private final long length;
+		private final long lastModified;
+		private final Map<String, String> values;
+
+		public Entry(long length, long lastModified, Map<String, String> values) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.values = values;
+		}
+	}
+
+	/**
+	 * Returns the {@link ScanCatalog} with the given name of the
+	 * {@link FileBaseDataContainer} the given {@link IData} belongs to.
+	 *
+	 * @param data
+	 * @param name
+	 * @return null if the {@link IData} is not stored in a
+	 *         {@link FileBaseDataContainer}
+	 */
+	public static ScanCatalog get(IData data, String name) {
+		return get(data.getBaseDataContainer(), name);
+	}
+
+	/**
+	 * Returns the {@link ScanCatalog} with the given name of the
+	 * {@link FileBaseDataContainer} the given {@link IDataContainer} belongs
+	 * to.
+	 *
+	 * @param dataContainer
+	 * @param name
+	 * @return null if the {@link IDataContainer} is not stored in a
+	 *         {@link FileBaseDataContainer}
+	 */
+	public static ScanCatalog get(IDataContainer dataContainer, String name) {
+		IBaseDataContainer baseDataContainer = dataContainer
+				.getBaseDataContainer();
+		if (baseDataContainer instanceof FileBaseDataContainer) {
+			return ((FileBaseDataContainer) baseDataContainer)
+					.getScanCatalog(name);
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the given {@link TimeZoneDateRange} in the given values without
+	 * losing precision or time zone.
+	 * 
+	 * @param values
+	 * @param dateRange
+	 *            may be null
+	 */
+	public static void putDateRange(Map<String, String> values,
+			TimeZoneDateRange dateRange) {
+		if (dateRange == null) {
+			return;
+		}
+		putDate(values, "start", dateRange.getStartDate());
+		putDate(values, "end", dateRange.getEndDate());
+	}
+
+	/**
+	 * Returns the {@link TimeZoneDateRange} stored using
+	 * {@link #putDateRange(Map, TimeZoneDateRange)}.
+	 * 
+	 * @param values
+	 * @return
+	 */
+	public static TimeZoneDateRange getDateRange(Map<String, String> values) {
+		return new TimeZoneDateRange(getDate(values, "start"), getDate(
+				values, "end"));
+	}
+
+	private static void putDate(Map<String, String> values, String key,
+			TimeZoneDate date) {
+		if (date != null) {
+			values.put(key, date.getTime() + " " + date.getTimeZone().getID());
+		}
+	}
+
+	private static TimeZoneDate getDate(Map<String, String> values, String key) {
+		String value = values.get(key);
+		if (value == null) {
+			return null;
+		}
+		int space = value.indexOf(' ');
+		return new TimeZoneDate(new Date(Long.parseLong(value.substring(0,
+				space))), TimeZone.getTimeZone(value.substring(space + 1)));
+	}
+
+	/**
+	 * In contrast to {@link DataOutputStream#writeUTF(String)} strings are not
+	 * limited to 64KB.
+	 */
+	private static void writeString(DataOutputStream out, String string)
+			throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private final File root;
+	private final File catalogFile;
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	private boolean dirty = false;
+
+	/**
+	 * Creates a {@link ScanCatalog} and loads the entries previously saved to
+	 * the given file.
+	 *
+	 * @param root
+	 *            directory the keys are relative to
+	 * @param catalogFile
+	 */
+	public ScanCatalog(File root, File catalogFile) {
+		this.root = root;
+		this.catalogFile = catalogFile;
+		this.load();
+	}
+
+	private void load() {
+		if (!this.catalogFile.isFile()) {
+			return;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(this.catalogFile)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					return;
+				}
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					String path = readString(in);
+					long length = in.readLong();
+					long lastModified = in.readLong();
+					int numValues = in.readInt();
+					Map<String, String> values = new LinkedHashMap<String, String>();
+					for (int j = 0; j < numValues; j++) {
+						values.put(readString(in), readString(in));
+					}
+					this.entries.put(path, new Entry(length, lastModified,
+							values));
+				}
+			} finally {
+				in.close();
+			}
+		} catch (EOFException e) {
+			LOGGER.warn("Ignoring truncated " + this.catalogFile);
+			this.entries.clear();
+		} catch (IOException e) {
+			LOGGER.warn("Could not load " + this.catalogFile, e);
+			this.entries.clear();
+		}
+	}
+
+	private String getKey(File file) {
+		URI relative = this.root.toURI().relativize(file.toURI());
+		return relative.isAbsolute() ? null : relative.getPath();
+	}
+
+	/**
+	 * Returns the metadata stored for the given {@link File}.
+	 *
+	 * @param file
+	 * @return null if nothing was stored or the {@link File} changed since
+	 */
+	public synchronized Map<String, String> get(File file) {
+		String key = this.getKey(file);
+		Entry entry = key != null ? this.entries.get(key) : null;
+		if (entry == null || entry.length != file.length()
+				|| entry.lastModified != file.lastModified()) {
+			return null;
+		}
+		return Collections.unmodifiableMap(entry.values);
+	}
+
+	/**
+	 * Stores metadata for the given {@link File} in its current state.
+	 *
+	 * @param file
+	 * @param values
+	 *            keys and values must not be null
+	 */
+	public synchronized void put(File file, Map<String, String> values) {
+		String key = this.getKey(file);
+		if (key == null) {
+			return;
+		}
+		this.entries.put(key, new Entry(file.length(), file.lastModified(),
+				new LinkedHashMap<String, String>(values)));
+		this.dirty = true;
+	}
+
+	/**
+	 * @see #get(File)
+	 */
+	public Map<String, String> get(IData data) {
+		return data instanceof FileData ? this.get(((FileData) data)
+				.getLocalFile()) : null;
+	}
+
+	/**
+	 * @see #put(File, Map)
+	 */
+	public void put(IData data, Map<String, String> values) {
+		if (data instanceof FileData) {
+			this.put(((FileData) data).getLocalFile(), values);
+		}
+	}
+
+	/**
+	 * @see #get(File)
+	 */
+	public Map<String, String> get(IDataContainer dataContainer) {
+		return dataContainer instanceof FileDataContainer ? this
+				.get(((FileDataContainer) dataContainer).getFile()) : null;
+	}
+
+	/**
+	 * @see #put(File, Map)
+	 */
+	public void put(IDataContainer dataContainer, Map<String, String> values) {
+		if (dataContainer instanceof FileDataContainer) {
+			this.put(((FileDataContainer) dataContainer).getFile(), values);
+		}
+	}
+
+	/**
+	 * Writes the catalog if it changed since it was loaded or last saved.
+	 * Entries of files that no more exist are dropped. The file is replaced
+	 * atomically.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException {
+		if (!this.dirty) {
+			return;
+		}
+		for (Iterator<String> it = this.entries.keySet().iterator(); it
+				.hasNext();) {
+			if (!new File(this.root, it.next()).exists()) {
+				it.remove();
+			}
+		}
+
+		File directory = this.catalogFile.getAbsoluteFile().getParentFile();
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		File tmpFile = File.createTempFile(this.catalogFile.getName(), ".tmp",
+				directory);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(this.entries.size());
+				for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+					writeString(out, entry.getKey());
+					out.writeLong(entry.getValue().length);
+					out.writeLong(entry.getValue().lastModified);
+					out.writeInt(entry.getValue().values.size());
+					for (Map.Entry<String, String> value : entry.getValue().values
+							.entrySet()) {
+						writeString(out, value.getKey());
+						writeString(out, value.getValue());
+					}
+				}
+			} finally {
+				out.close();
+			}
+			Files.move(tmpFile.toPath(), this.catalogFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			this.dirty = false;
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Like {@link #save()} but only logs errors.
+	 */
+	public void saveQuietly() {
+		try {
+			this.save();
+		} catch (IOException e) {
+			LOGGER.warn("Could not save " + this.catalogFile, e);
+		}
+	}
+
+}
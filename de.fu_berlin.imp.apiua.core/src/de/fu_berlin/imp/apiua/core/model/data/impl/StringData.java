@@ -2,6 +2,7 @@ package de.fu_berlin.imp.apiua.core.model.data.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -14,6 +15,7 @@ import org.eclipse.core.runtime.Assert;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.LineIndex;
 
 public class StringData implements IData {
 
@@ -21,6 +23,7 @@ public class StringData implements IData {
 	private IDataContainer dataContainer;
 	private final String name;
 	private final String content;
+	private LineIndex lineIndex = null;
 
 	public StringData(IBaseDataContainer baseDataContainer,
 			IDataContainer parentDataContainer, String name, String content) {
@@ -69,6 +72,17 @@ public class StringData implements IData {
 		return this.content.substring((int) from, (int) to);
 	}
 
+	@Override
+	public ByteBuffer readBytes(long from, long to) {
+		return ByteBuffer.wrap(this.read(from, to).getBytes())
+				.asReadOnlyBuffer();
+	}
+
+	@Override
+	public CharSequence readChars(long from, long to) {
+		return this.content.subSequence((int) from, (int) to);
+	}
+
 	@Override
 	public String readFirstLine() {
 		return this.content.split("\n", 1)[0];
@@ -112,6 +126,14 @@ public class StringData implements IData {
 		};
 	}
 
+	@Override
+	public synchronized LineIndex getLineIndex() {
+		if (this.lineIndex == null) {
+			this.lineIndex = LineIndex.build(this.content);
+		}
+		return this.lineIndex;
+	}
+
 	@Override
 	public long getLength() {
 		return this.content.length();
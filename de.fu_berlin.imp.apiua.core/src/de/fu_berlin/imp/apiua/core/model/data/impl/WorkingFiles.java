@@ -0,0 +1,170 @@
+package de.fu_berlin.imp.apiua.core.model.data.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Manages the working copies handed out by
+ * {@link FileBaseDataContainer#getFile(String, String)}.
+ * <p>
+ * Working copies are hard links to their source where the file system
+ * supports them and plain copies otherwise. Released working copies that were
+ * not modified are kept and handed out again for the same unchanged source
+ * until they exceed the given size.
+ *
+ * @author bkahlert
+ */
+class WorkingFiles {
+
+	private static final Logger LOGGER = Logger.getLogger(WorkingFiles.class);
+
+	private final File directory;
+	private final long maxIdleSize;
+
+	/**
+	 * Working copies in use mapped to their source.
+	 */
+	private final Map<File, File> used = new HashMap<File, File>();
+
+	/**
+	 * Sources mapped to their released working copy; least recently released
+	 * first.
+	 */
+	private final LinkedHashMap<File, File> idle = new LinkedHashMap<File, File>();
+	private long idleSize = 0;
+
+	private boolean linksSupported = true;
+
+	/**
+	 * @param directory
+	 *            where to create the working copies
+	 * @param maxIdleSize
+	 *            number of bytes released working copies may occupy
+	 */
+	public WorkingFiles(File directory, long maxIdleSize) {
+		this.directory = directory;
+		this.maxIdleSize = maxIdleSize;
+	}
+
+	/**
+	 * Returns a working copy of the given source.
+	 *
+	 * @param source
+	 * @param suffix
+	 *            the working copy's name ends with
+	 * @return a not existing {@link File} if the source does not exist
+	 * @throws IOException
+	 */
+	public synchronized File acquire(File source, String suffix)
+			throws IOException {
+		File workingFile = this.idle.remove(source);
+		if (workingFile != null) {
+			this.idleSize -= workingFile.length();
+			if (isUnchanged(workingFile, source)) {
+				this.used.put(workingFile, source);
+				return workingFile;
+			}
+			workingFile.delete();
+		}
+
+		this.directory.mkdirs();
+		workingFile = File.createTempFile("sua-tmp-", suffix, this.directory);
+		workingFile.delete();
+		if (source.exists()) {
+			this.createCopy(source, workingFile);
+		}
+		this.used.put(workingFile, source);
+		return workingFile;
+	}
+
+	private void createCopy(File source, File workingFile) throws IOException {
+		if (this.linksSupported) {
+			try {
+				Files.createLink(workingFile.toPath(), source.toPath());
+				return;
+			} catch (IOException e) {
+				LOGGER.debug("Could not link " + source + "; copying instead",
+						e);
+			} catch (UnsupportedOperationException e) {
+				this.linksSupported = false;
+			}
+		}
+		FileUtils.copyFile(source, workingFile);
+	}
+
+	private static boolean isUnchanged(File workingFile, File source) {
+		return workingFile.exists() && source.exists()
+				&& workingFile.length() == source.length()
+				&& workingFile.lastModified() == source.lastModified();
+	}
+
+	/**
+	 * Releases a working copy returned by {@link #acquire(File, String)}.
+	 * Unknown {@link File}s are ignored.
+	 *
+	 * @param workingFile
+	 */
+	public synchronized void release(File workingFile) {
+		File source = this.used.remove(workingFile);
+		if (source == null) {
+			return;
+		}
+		if (!isUnchanged(workingFile, source)) {
+			workingFile.delete();
+			return;
+		}
+
+		File previous = this.idle.put(source, workingFile);
+		if (previous != null) {
+			this.idleSize -= previous.length();
+			previous.delete();
+		}
+		this.idleSize += workingFile.length();
+
+		for (Iterator<File> it = this.idle.values().iterator(); it.hasNext()
+				&& this.idleSize > this.maxIdleSize;) {
+			File evicted = it.next();
+			this.idleSize -= evicted.length();
+			evicted.delete();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Drops the released working copy of the given source, e.g. because the
+	 * source was replaced.
+	 *
+	 * @param source
+	 */
+	public synchronized void invalidate(File source) {
+		File workingFile = this.idle.remove(source);
+		if (workingFile != null) {
+			this.idleSize -= workingFile.length();
+			workingFile.delete();
+		}
+	}
+
+	/**
+	 * Deletes all working copies whether released or not.
+	 */
+	public synchronized void dispose() {
+		for (File workingFile : this.used.keySet()) {
+			workingFile.delete();
+		}
+		for (File workingFile : this.idle.values()) {
+			workingFile.delete();
+		}
+		this.used.clear();
+		this.idle.clear();
+		this.idleSize = 0;
+	}
+
+}
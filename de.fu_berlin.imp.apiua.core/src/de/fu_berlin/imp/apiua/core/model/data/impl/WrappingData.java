@@ -2,11 +2,13 @@ package de.fu_berlin.imp.apiua.core.model.data.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.LineIndex;
 
 /**
  * This class can be used to extend an {@link IData} instance and add
@@ -58,6 +60,21 @@ public abstract class WrappingData implements IData {
 		return this.data.read(from, to);
 	}
 
+	@Override
+	public ByteBuffer readBytes(long from, long to) {
+		return this.data.readBytes(from, to);
+	}
+
+	@Override
+	public CharSequence readChars(long from, long to) {
+		return this.data.readChars(from, to);
+	}
+
+	@Override
+	public LineIndex getLineIndex() {
+		return this.data.getLineIndex();
+	}
+
 	@Override
 	public String readFirstLine() {
 		return this.data.readFirstLine();
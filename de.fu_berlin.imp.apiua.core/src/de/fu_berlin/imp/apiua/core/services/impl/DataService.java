@@ -2,26 +2,28 @@ package de.fu_berlin.imp.apiua.core.services.impl;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.Map;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 
 import com.bkahlert.nebula.utils.CollectionUtils;
-import com.bkahlert.nebula.utils.ExecUtils;
 import com.bkahlert.nebula.utils.IConverter;
 import com.bkahlert.nebula.utils.NamedJob;
 import com.bkahlert.nebula.utils.selection.ArrayUtils;
 
+import de.fu_berlin.imp.apiua.core.Activator;
 import de.fu_berlin.imp.apiua.core.extensionPoints.IDataLoadProvider;
+import de.fu_berlin.imp.apiua.core.extensionPoints.IIncrementalDataLoadProvider;
+import de.fu_berlin.imp.apiua.core.metrics.MetricsRegistry;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.impl.DataLoaderManager;
 import de.fu_berlin.imp.apiua.core.model.data.impl.FileBaseDataContainer;
@@ -29,6 +31,9 @@ import de.fu_berlin.imp.apiua.core.model.data.impl.FileDataContainer;
 import de.fu_berlin.imp.apiua.core.preferences.SUACorePreferenceUtil;
 import de.fu_berlin.imp.apiua.core.services.IDataService;
 import de.fu_berlin.imp.apiua.core.services.IDataServiceListener;
+import de.fu_berlin.imp.apiua.core.util.DependencyScheduler;
+import de.fu_berlin.imp.apiua.core.util.DependencyScheduler.Result;
+import de.fu_berlin.imp.apiua.core.util.DependencyScheduler.State;
 
 public class DataService implements IDataService {
 
@@ -113,19 +118,72 @@ public class DataService implements IDataService {
 			baseDataContainers = new ArrayList<IBaseDataContainer>();
 		}
 
-		unloadData(this.dataLoaderManager, this.activeBaseDataDirectories);
-		this.notifier.dataDirectoriesUnloaded(this.activeBaseDataDirectories);
+		List<IBaseDataContainer> activeBaseDataDirectories = this.activeBaseDataDirectories;
+		if (activeBaseDataDirectories.isEmpty()
+				|| baseDataContainers.isEmpty()) {
+			unloadData(this.dataLoaderManager, activeBaseDataDirectories);
+			this.notifier.dataDirectoriesUnloaded(activeBaseDataDirectories);
 
-		saveActiveToPreferences(baseDataContainers);
-		loadData(this.dataLoaderManager, baseDataContainers);
-		this.activeBaseDataDirectories = baseDataContainers;
+			saveActiveToPreferences(baseDataContainers);
+			loadData(this.dataLoaderManager, baseDataContainers, null, null);
+			this.activeBaseDataDirectories = baseDataContainers;
+		} else {
+			// keep the instances of unchanged directories with their caches
+			List<IBaseDataContainer> containers = new ArrayList<IBaseDataContainer>();
+			for (IBaseDataContainer baseDataContainer : baseDataContainers) {
+				int index = activeBaseDataDirectories
+						.indexOf(baseDataContainer);
+				containers.add(index >= 0 ? activeBaseDataDirectories
+						.get(index) : baseDataContainer);
+			}
+			if (containers.equals(activeBaseDataDirectories)) {
+				LOGGER.info(containers + " already loaded");
+				return;
+			}
+			List<IBaseDataContainer> added = new ArrayList<IBaseDataContainer>(
+					containers);
+			added.removeAll(activeBaseDataDirectories);
+			List<IBaseDataContainer> removed = new ArrayList<IBaseDataContainer>(
+					activeBaseDataDirectories);
+			removed.removeAll(containers);
+
+			this.notifier.dataDirectoriesUnloaded(activeBaseDataDirectories);
+
+			saveActiveToPreferences(containers);
+			loadData(this.dataLoaderManager, containers, added, removed);
+			this.activeBaseDataDirectories = containers;
+		}
 
 		this.notifier.dataDirectoriesLoaded(this.activeBaseDataDirectories);
 	}
 
+	/**
+	 * Maximum number of {@link IDataLoadProvider}s running at the same time.
+	 */
+	private static final int LOADER_THREADS = Math.max(2, Runtime
+			.getRuntime().availableProcessors());
+
+	/**
+	 * Loads the given {@link IBaseDataContainer}s.
+	 * <p>
+	 * If the added and removed {@link IBaseDataContainer}s are given only
+	 * {@link IIncrementalDataLoadProvider}s are {@link
+	 * IIncrementalDataLoadProvider#update(List, List, List, IProgressMonitor)
+	 * updated}. All other {@link IDataLoadProvider}s are unloaded and loaded
+	 * from scratch.
+	 * 
+	 * @param dataLoaderManager
+	 * @param baseDataContainers
+	 * @param added
+	 *            null if all {@link IDataLoadProvider}s are unloaded
+	 * @param removed
+	 *            null if all {@link IDataLoadProvider}s are unloaded
+	 */
 	private static void loadData(final DataLoaderManager dataLoaderManager,
-			final List<IBaseDataContainer> baseDataContainers) {
-		String jobName = "Loading "
+			final List<IBaseDataContainer> baseDataContainers,
+			final List<IBaseDataContainer> added,
+			final List<IBaseDataContainer> removed) {
+		String jobName = (added != null ? "Updating " : "Loading ")
 				+ StringUtils.join(CollectionUtils.apply(baseDataContainers,
 						new IConverter<IBaseDataContainer, String>() {
 							@Override
@@ -139,64 +197,45 @@ public class DataService implements IDataService {
 		final NamedJob loader = new NamedJob(DataService.class, jobName) {
 			@Override
 			protected IStatus runNamed(final IProgressMonitor progressMonitor) {
-				long loadStart = System.currentTimeMillis();
-				SubMonitor monitor = SubMonitor.convert(progressMonitor,
-						dataLoaderManager.getNumDataLoaderProviders());
-				for (List<String> sources : dataLoaderManager
-						.getLoadDependencies()) {
-					LOGGER.info("-- set: " + sources);
-					List<Future<Job>> futures = ExecUtils.nonUIAsyncExec(
-							DataService.class, this.getName(), sources,
-							new ExecUtils.ParametrizedCallable<String, Job>() {
-								@Override
-								public Job call(final String source)
-										throws Exception {
-									final IDataLoadProvider dataLoadProvider = dataLoaderManager
-											.getDataLoadProvider(source);
-									NamedJob loader = new NamedJob(
-											DataService.class,
-											dataLoadProvider
-													.getLoaderJobName(baseDataContainers)) {
-										@Override
-										protected IStatus runNamed(
-												IProgressMonitor monitor) {
-											final SubMonitor subMonitor = SubMonitor
-													.convert(monitor);
-
-											long start = System
-													.currentTimeMillis();
-											dataLoadProvider.load(
-													baseDataContainers,
-													subMonitor);
-											LOGGER.info("---- loaded "
-													+ source
-													+ " within "
-													+ (System
-															.currentTimeMillis() - start)
-													+ "ms");
-
-											subMonitor.done();
-											return Status.OK_STATUS;
-										}
-									};
-									loader.schedule();
-									return loader;
+				DependencyScheduler<String> scheduler = new DependencyScheduler<String>(
+						dataLoaderManager.getLoadDependencies(), LOADER_THREADS);
+				Result<String> result = scheduler.run(
+						new DependencyScheduler.ITask<String>() {
+							@Override
+							public void run(String source,
+									IProgressMonitor monitor) {
+								IDataLoadProvider dataLoadProvider = dataLoaderManager
+										.getDataLoadProvider(source);
+								monitor.setTaskName(dataLoadProvider
+										.getLoaderJobName(baseDataContainers));
+								long start = System.nanoTime();
+								try {
+									if (added == null) {
+										dataLoadProvider.load(
+												baseDataContainers, monitor);
+									} else if (dataLoadProvider instanceof IIncrementalDataLoadProvider) {
+										((IIncrementalDataLoadProvider) dataLoadProvider)
+												.update(baseDataContainers,
+														added, removed, monitor);
+									} else {
+										dataLoadProvider.unload(monitor);
+										dataLoadProvider.load(
+												baseDataContainers, monitor);
+									}
+								} finally {
+									MetricsRegistry.getDefault()
+											.getLoadTimes(source)
+											.record(System.nanoTime() - start);
 								}
-							});
-					for (Future<Job> future : futures) {
-						try {
-							future.get().join();
-							monitor.worked(1);
-						} catch (InterruptedException e) {
-							LOGGER.error(e);
-						} catch (ExecutionException e) {
-							LOGGER.error(e);
-						}
-					}
-				}
+							}
+						}, progressMonitor);
+				logResult("loaded", result,
+						dataLoaderManager.getLoadDependencies().keySet());
 				LOGGER.info("Finished loading within "
-						+ (System.currentTimeMillis() - loadStart) + "ms");
-				return Status.OK_STATUS;
+						+ result.getTotalTime() / 1000000 + "ms");
+				MetricsRegistry.getDefault().logReport();
+				return getStatus("Error loading " + baseDataContainers,
+						result);
 			}
 		};
 		loader.schedule();
@@ -215,63 +254,27 @@ public class DataService implements IDataService {
 				+ StringUtils.join(baseDataContainers, ", ") + "...") {
 			@Override
 			protected IStatus run(final IProgressMonitor monitor) {
-				long unloadStart = System.currentTimeMillis();
-				monitor.beginTask(this.getName(),
-						dataLoaderManager.getNumDataLoaderProviders());
-				for (List<String> sources : dataLoaderManager
-						.getUnloadDependencies()) {
-					LOGGER.info("-- set: " + sources);
-					List<Future<Job>> futures = ExecUtils.nonUIAsyncExec(
-							DataService.class, this.getName(), sources,
-							new ExecUtils.ParametrizedCallable<String, Job>() {
-								@Override
-								public Job call(final String source)
-										throws Exception {
-									final IDataLoadProvider dataLoadProvider = dataLoaderManager
-											.getDataLoadProvider(source);
-									Job loader = new Job(
-											dataLoadProvider
-													.getUnloaderJobName(baseDataContainers)) {
-										@Override
-										protected IStatus run(
-												IProgressMonitor monitor) {
-											final SubMonitor subMonitor = SubMonitor
-													.convert(monitor);
-
-											long start = System
-													.currentTimeMillis();
-											dataLoadProvider.unload(subMonitor);
-											LOGGER.info("---- unloaded "
-													+ source
-													+ " within "
-													+ (System
-															.currentTimeMillis() - start)
-													+ "ms");
-
-											subMonitor.done();
-											return Status.OK_STATUS;
-										}
-									};
-									loader.setProgressGroup(monitor, 1);
-									loader.setSystem(true);
-									loader.schedule();
-									return loader;
-								}
-							});
-					for (Future<Job> future : futures) {
-						try {
-							future.get().join();
-							monitor.worked(1);
-						} catch (InterruptedException e) {
-							LOGGER.error(e);
-						} catch (ExecutionException e) {
-							LOGGER.error(e);
-						}
-					}
-				}
+				DependencyScheduler<String> scheduler = new DependencyScheduler<String>(
+						dataLoaderManager.getUnloadDependencies(),
+						LOADER_THREADS);
+				Result<String> result = scheduler.run(
+						new DependencyScheduler.ITask<String>() {
+							@Override
+							public void run(String source,
+									IProgressMonitor monitor) {
+								IDataLoadProvider dataLoadProvider = dataLoaderManager
+										.getDataLoadProvider(source);
+								monitor.setTaskName(dataLoadProvider
+										.getUnloaderJobName(baseDataContainers));
+								dataLoadProvider.unload(monitor);
+							}
+						}, monitor);
+				logResult("unloaded", result, dataLoaderManager
+						.getUnloadDependencies().keySet());
 				LOGGER.info("Finished unloading within "
-						+ (System.currentTimeMillis() - unloadStart) + "ms");
-				return Status.OK_STATUS;
+						+ result.getTotalTime() / 1000000 + "ms");
+				return getStatus("Error unloading " + baseDataContainers,
+						result);
 			}
 		};
 		unloader.schedule();
@@ -282,6 +285,38 @@ public class DataService implements IDataService {
 		}
 	}
 
+	private static void logResult(String verb, Result<String> result,
+			Collection<String> sources) {
+		for (String source : sources) {
+			if (result.getState(source) == State.SUCCEEDED) {
+				LOGGER.info("---- " + verb + " " + source + " within "
+						+ result.getRunTime(source) / 1000000
+						+ "ms (waited " + result.getWaitTime(source)
+						/ 1000000 + "ms for a free thread)");
+			} else {
+				LOGGER.warn("---- " + source + ": "
+						+ result.getState(source).toString().toLowerCase());
+			}
+		}
+	}
+
+	private static IStatus getStatus(String message, Result<String> result) {
+		if (result.isSuccessful()) {
+			return Status.OK_STATUS;
+		}
+		if (result.getErrors().isEmpty()) {
+			return Status.CANCEL_STATUS;
+		}
+		MultiStatus status = new MultiStatus(Activator.PLUGIN_ID, 0, message,
+				null);
+		for (Map.Entry<String, Throwable> error : result.getErrors()
+				.entrySet()) {
+			status.add(new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+					error.getKey(), error.getValue()));
+		}
+		return status;
+	}
+
 	@Override
 	public List<IBaseDataContainer> getDataDirectories() {
 		return loadFromPreferences();
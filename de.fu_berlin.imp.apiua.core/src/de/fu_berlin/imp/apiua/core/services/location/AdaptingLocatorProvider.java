@@ -1,10 +1,14 @@
 package de.fu_berlin.imp.apiua.core.services.location;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.IAdapterFactory;
 import org.eclipse.core.runtime.IAdapterManager;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 
 import com.bkahlert.nebula.utils.AdapterFactoryProxy;
 
@@ -51,6 +55,21 @@ public abstract class AdaptingLocatorProvider implements ILocatorProvider,
 		adapterFactoryProxy.registerAdapters(this);
 	}
 
+	/**
+	 * Resolves the {@link URI}s one by one using
+	 * {@link #getObject(URI, IProgressMonitor)}.
+	 */
+	@Override
+	public List<ILocatable> getObjects(List<URI> uris,
+			IProgressMonitor monitor) {
+		SubMonitor subMonitor = SubMonitor.convert(monitor, uris.size());
+		List<ILocatable> locatables = new ArrayList<ILocatable>(uris.size());
+		for (URI uri : uris) {
+			locatables.add(this.getObject(uri, subMonitor.newChild(1)));
+		}
+		return locatables;
+	}
+
 	@Override
 	@SuppressWarnings("rawtypes")
 	public Class[] getAdapterList() {
@@ -1,7 +1,10 @@
 package de.fu_berlin.imp.apiua.core.services.location;
 
+import java.util.List;
+
 import de.fu_berlin.imp.apiua.core.model.ILocatable;
 import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
@@ -56,6 +59,21 @@ public interface ILocatorProvider {
 	 */
 	public ILocatable getObject(URI uri, IProgressMonitor monitor);
 
+	/**
+	 * Returns the {@link ILocatable}s that are addressed by the given URIs.
+	 * <p>
+	 * The {@link URI}s passed by the {@link ILocatorService} share their
+	 * resource and {@link IIdentifier}. Implementations can use this to look up
+	 * shared data only once.
+	 * 
+	 * @param uris
+	 * @param monitor
+	 * 
+	 * @return a list of the same size; unresolvable {@link URI}s are mapped to
+	 *         null
+	 */
+	public List<ILocatable> getObjects(List<URI> uris, IProgressMonitor monitor);
+
 	/**
 	 * Shows the given {@link ILocatable}s in the active Eclipse Workbench.
 	 * <p>
@@ -1,12 +1,15 @@
 package de.fu_berlin.imp.apiua.core.services.location;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
 import de.fu_berlin.imp.apiua.core.model.ILocatable;
 import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.core.services.IWorkSession;
 import de.fu_berlin.imp.apiua.core.util.Cache;
 
@@ -100,6 +103,23 @@ public interface ILocatorService {
 	public <T extends ILocatable> Future<List<T>> resolve(List<URI> uris,
 			Class<T> clazz, IProgressMonitor monitor);
 
+	/**
+	 * Returns the {@link ILocatable}s that are addressed by the given
+	 * {@link URI}s.
+	 * <p>
+	 * In contrast to {@link #resolve(List, IProgressMonitor)} the {@link URI}s
+	 * are grouped by their resource and {@link IIdentifier}. Each group is
+	 * passed at once to {@link ILocatorProvider#getObjects(List, IProgressMonitor)}
+	 * and the groups are resolved in parallel.
+	 * 
+	 * @param uris
+	 * @param monitor
+	 * @return the {@link ILocatable}s in the order of the given {@link URI}s;
+	 *         {@link URI}s that could not be resolved are mapped to null
+	 */
+	public Future<Map<URI, ILocatable>> resolveAll(Collection<URI> uris,
+			IProgressMonitor monitor);
+
 	/**
 	 * Removes an eventually cached resolve attempt.
 	 * <p>
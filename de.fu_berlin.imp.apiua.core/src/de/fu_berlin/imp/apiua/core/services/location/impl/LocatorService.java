@@ -2,13 +2,23 @@ package de.fu_berlin.imp.apiua.core.services.location.impl;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -16,6 +26,8 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SubMonitor;
 
@@ -26,8 +38,10 @@ import com.bkahlert.nebula.utils.IConverter;
 
 import de.fu_berlin.imp.apiua.core.model.ILocatable;
 import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.core.services.location.ILocatorProvider;
 import de.fu_berlin.imp.apiua.core.services.location.ILocatorService;
+import de.fu_berlin.imp.apiua.core.services.location.URIUtils;
 import de.fu_berlin.imp.apiua.core.util.Cache;
 import de.fu_berlin.imp.apiua.core.util.Cache.CacheFetcher;
 
@@ -38,6 +52,47 @@ public class LocatorService implements ILocatorService {
 	private static final boolean LOG_SLOW_RUNTIME = true;
 	private static final int DEFAULT_CACHE_SIZE = 500;
 
+	/**
+	 * Maximum number of groups {@link #resolveAll(Collection, IProgressMonitor)}
+	 * resolves concurrently.
+	 */
+	private static final int BATCH_THREADS = Math.max(2, Runtime.getRuntime()
+			.availableProcessors());
+
+	/**
+	 * {@link Thread} of the {@link #BATCH_EXECUTOR}.
+	 */
+	private static class BatchThread extends Thread {
+		public BatchThread(Runnable runnable, String name) {
+			super(runnable, name);
+			this.setDaemon(true);
+		}
+	}
+
+	/**
+	 * Resolves the groups of all
+	 * {@link #resolveAll(Collection, IProgressMonitor)} calls. Its threads
+	 * terminate if idle.
+	 */
+	private static final ExecutorService BATCH_EXECUTOR = createBatchExecutor();
+
+	private static ExecutorService createBatchExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(BATCH_THREADS,
+				BATCH_THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						return new BatchThread(runnable,
+								LocatorService.class.getSimpleName() + "-"
+										+ this.count.incrementAndGet());
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
 	private static ILocatorProvider[] locatorProviders = null;
 
 	private static ILocatorProvider[] getRegisteredLocatorProviders() {
@@ -64,24 +119,38 @@ public class LocatorService implements ILocatorService {
 		return locatorProviders;
 	}
 
-	private List<ILocatorProvider> getFastLocatorProviders(URI uri) {
-		List<ILocatorProvider> fastLocatorProviders = new ArrayList<ILocatorProvider>(
-				getRegisteredLocatorProviders().length);
-		for (final ILocatorProvider locatorProvider : getRegisteredLocatorProviders()) {
+	/**
+	 * Returns the {@link ILocatorProvider}s this {@link LocatorService} uses.
+	 */
+	private ILocatorProvider[] getLocatorProviders() {
+		return this.providers != null ? this.providers
+				: getRegisteredLocatorProviders();
+	}
+
+	/**
+	 * Adds all {@link ILocatorProvider}s that might resolve the given
+	 * {@link URI} to the fast or slow ones by asking each
+	 * {@link ILocatorProvider} only once.
+	 */
+	private void partitionLocatorProviders(URI uri,
+			List<ILocatorProvider> fastLocatorProviders,
+			List<ILocatorProvider> slowLocatorProviders) {
+		for (final ILocatorProvider locatorProvider : this.getLocatorProviders()) {
 			if (locatorProvider.isResolvabilityImpossible(uri)) {
 				continue;
 			}
 			if (locatorProvider.getObjectIsShortRunning(uri)) {
 				fastLocatorProviders.add(locatorProvider);
+			} else {
+				slowLocatorProviders.add(locatorProvider);
 			}
 		}
-		return fastLocatorProviders;
 	}
 
 	private List<ILocatorProvider> getSlowLocatorProviders(URI uri) {
 		List<ILocatorProvider> slowLocatorProviders = new ArrayList<ILocatorProvider>(
-				getRegisteredLocatorProviders().length);
-		for (final ILocatorProvider locatorProvider : getRegisteredLocatorProviders()) {
+				this.getLocatorProviders().length);
+		for (final ILocatorProvider locatorProvider : this.getLocatorProviders()) {
 			if (locatorProvider.isResolvabilityImpossible(uri)) {
 				continue;
 			}
@@ -92,107 +161,151 @@ public class LocatorService implements ILocatorService {
 		return slowLocatorProviders;
 	}
 
-	private final Map<String, Cache<URI, ILocatable>> caches = new HashMap<String, Cache<URI, ILocatable>>();
+	/**
+	 * Resolves {@link URI}s for all caches. Concurrent requests of the same
+	 * {@link URI} on the same cache are resolved only once.
+	 */
+	private final CacheFetcher<URI, ILocatable> locatableFetcher = new CacheFetcher<URI, ILocatable>() {
+
+		@Override
+		public ILocatable fetch(final URI uri,
+				IProgressMonitor monitor) {
+			Assert.isLegal(uri != null);
+
+			ILocatorProvider[] locatorProviders = LocatorService.this
+					.getLocatorProviders();
+			if (locatorProviders == null || locatorProviders.length == 0) {
+				return null;
+			}
 
-	public LocatorService() {
-		this.createCache(null, DEFAULT_CACHE_SIZE);
-	}
+			List<ILocatorProvider> fastLocatorProviders = new ArrayList<ILocatorProvider>();
+			List<ILocatorProvider> slowLocatorProviders = new ArrayList<ILocatorProvider>();
+			LocatorService.this.partitionLocatorProviders(uri,
+					fastLocatorProviders, slowLocatorProviders);
 
-	@Override
-	public void createCache(String key, int cacheSize) {
-		if (this.caches.containsKey(key)) {
-			this.caches.get(key).setCacheSize(cacheSize);
-		} else {
-			this.caches.put(key, new Cache<URI, ILocatable>(
-					new CacheFetcher<URI, ILocatable>() {
+			for (final ILocatorProvider fastLocatorProvider : fastLocatorProviders) {
+				ILocatable locatable = fastLocatorProvider
+						.getObject(uri, null);
+				if (locatable != null) {
+					return locatable;
+				}
+			}
 
-						@Override
-						public ILocatable fetch(final URI uri,
-								IProgressMonitor monitor) {
-							Assert.isLegal(uri != null);
+			if (slowLocatorProviders.size() > 0
+					&& ExecUtils.isUIThread()) {
+				LOGGER.fatal("Implementation Error - Slow "
+						+ URI.class.getSimpleName()
+						+ " resolution in the UI thread detected!");
+			}
 
-							if (getRegisteredLocatorProviders() == null
-									|| getRegisteredLocatorProviders().length == 0) {
-								return null;
-							}
+			final SubMonitor subMonitor = SubMonitor.convert(
+					monitor, slowLocatorProviders.size());
+			List<Future<ILocatable>> futureLocatables = new ArrayList<Future<ILocatable>>(
+					slowLocatorProviders.size());
+			for (final ILocatorProvider slowLocatorProvider : slowLocatorProviders) {
+				Future<ILocatable> futureLocatable = ExecUtils
+						.nonUIAsyncExec(LocatorService.class,
+								"Resolving " + uri,
+								new Callable<ILocatable>() {
+									@Override
+									public ILocatable call()
+											throws Exception {
+										return slowLocatorProvider
+												.getObject(
+														uri,
+														subMonitor
+																.newChild(1));
+									}
+								});
+				futureLocatables.add(futureLocatable);
+			}
+			for (Future<ILocatable> futureLocatable : futureLocatables) {
+				ILocatable finding = null;
+				try {
+					finding = futureLocatable.get();
+				} catch (InterruptedException e) {
+					LOGGER.error(
+							"Error while resolving "
+									+ URI.class.getSimpleName()
+									+ " "
+									+ uri
+									+ " to "
+									+ ILocatable.class
+											.getSimpleName(), e);
+				} catch (ExecutionException e) {
+					LOGGER.error(
+							"Error while resolving "
+									+ URI.class.getSimpleName()
+									+ " "
+									+ uri
+									+ " to "
+									+ ILocatable.class
+											.getSimpleName(), e);
+				}
+				if (finding != null) {
+					return finding;
+				}
+			}
+			return null;
+		}
+	};
 
-							List<ILocatorProvider> fastLocatorProviders = LocatorService.this
-									.getFastLocatorProviders(uri);
+	/**
+	 * Cache used if no cache key is given.
+	 */
+	private final Cache<URI, ILocatable> defaultCache = new Cache<URI, ILocatable>(
+			this.locatableFetcher, DEFAULT_CACHE_SIZE);
 
-							for (final ILocatorProvider fastLocatorProvider : fastLocatorProviders) {
-								ILocatable locatable = fastLocatorProvider
-										.getObject(uri, null);
-								if (locatable != null) {
-									return locatable;
-								}
-							}
+	private final Map<String, Cache<URI, ILocatable>> caches = new ConcurrentHashMap<String, Cache<URI, ILocatable>>();
 
-							List<ILocatorProvider> slowLocatorProviders = LocatorService.this
-									.getSlowLocatorProviders(uri);
-							if (slowLocatorProviders.size() > 0
-									&& ExecUtils.isUIThread()) {
-								LOGGER.fatal("Implementation Error - Slow "
-										+ URI.class.getSimpleName()
-										+ " resolution in the UI thread detected!");
-							}
+	/**
+	 * {@link ILocatorProvider}s to use instead of the registered ones.
+	 */
+	private final ILocatorProvider[] providers;
 
-							final SubMonitor subMonitor = SubMonitor.convert(
-									monitor, slowLocatorProviders.size());
-							List<Future<ILocatable>> futureLocatables = new ArrayList<Future<ILocatable>>(
-									slowLocatorProviders.size());
-							for (final ILocatorProvider slowLocatorProvider : slowLocatorProviders) {
-								Future<ILocatable> futureLocatable = ExecUtils
-										.nonUIAsyncExec(LocatorService.class,
-												"Resolving " + uri,
-												new Callable<ILocatable>() {
-													@Override
-													public ILocatable call()
-															throws Exception {
-														return slowLocatorProvider
-																.getObject(
-																		uri,
-																		subMonitor
-																				.newChild(1));
-													}
-												});
-								futureLocatables.add(futureLocatable);
-							}
-							for (Future<ILocatable> futureLocatable : futureLocatables) {
-								ILocatable finding = null;
-								try {
-									finding = futureLocatable.get();
-								} catch (InterruptedException e) {
-									LOGGER.error(
-											"Error while resolving "
-													+ URI.class.getSimpleName()
-													+ " "
-													+ uri
-													+ " to "
-													+ ILocatable.class
-															.getSimpleName(), e);
-								} catch (ExecutionException e) {
-									LOGGER.error(
-											"Error while resolving "
-													+ URI.class.getSimpleName()
-													+ " "
-													+ uri
-													+ " to "
-													+ ILocatable.class
-															.getSimpleName(), e);
-								}
-								if (finding != null) {
-									return finding;
-								}
-							}
-							return null;
-						}
-					}, cacheSize));
+	public LocatorService() {
+		this(null);
+	}
+
+	/**
+	 * Creates a {@link LocatorService} that uses the given
+	 * {@link ILocatorProvider}s instead of the registered ones.
+	 *
+	 * @param providers
+	 */
+	LocatorService(ILocatorProvider[] providers) {
+		this.providers = providers;
+		this.defaultCache.setMetricsName(LocatorService.class.getSimpleName());
+	}
+
+	private Cache<URI, ILocatable> getCache(String key) {
+		return key == null ? this.defaultCache : this.caches.get(key);
+	}
+
+	private List<Cache<URI, ILocatable>> getCaches() {
+		List<Cache<URI, ILocatable>> caches = new ArrayList<Cache<URI, ILocatable>>(
+				this.caches.values());
+		caches.add(0, this.defaultCache);
+		return caches;
+	}
+
+	@Override
+	public synchronized void createCache(String key, int cacheSize) {
+		Cache<URI, ILocatable> cache = this.getCache(key);
+		if (cache != null) {
+			cache.setCacheSize(cacheSize);
+		} else {
+			cache = new Cache<URI, ILocatable>(this.locatableFetcher,
+					cacheSize);
+			cache.setMetricsName(LocatorService.class.getSimpleName() + "/"
+					+ key);
+			this.caches.put(key, cache);
 		}
 	}
 
 	@Override
-	public void destroyCache(String key) {
-		if (this.caches.containsKey(key)) {
+	public synchronized void destroyCache(String key) {
+		if (key != null) {
 			this.caches.remove(key);
 		}
 	}
@@ -200,38 +313,220 @@ public class LocatorService implements ILocatorService {
 	@Override
 	public Future<List<ILocatable>> preload(String key, final List<URI> uris,
 			final IProgressMonitor monitor) {
-		if (!this.caches.containsKey(key)) {
+		final Cache<URI, ILocatable> cache = this.getCache(key);
+		if (cache == null) {
 			return new CompletedFuture<List<ILocatable>>(null,
 					new IllegalArgumentException("key is invalid"));
 		}
-		final Cache<URI, ILocatable> cache = this.caches.get(key);
 		return ExecUtils.nonUIAsyncExec(LocatorService.class, "Resolving "
 				+ uris, new Callable<List<ILocatable>>() {
 			@Override
 			public List<ILocatable> call() throws Exception {
-				List<ILocatable> locatables = new ArrayList<ILocatable>();
-				SubMonitor subMonitor = SubMonitor.convert(monitor, uris.size());
+				Map<URI, ILocatable> resolved = LocatorService.this
+						.resolveAll(cache, uris, monitor);
+				List<ILocatable> locatables = new ArrayList<ILocatable>(uris
+						.size());
 				for (URI uri : uris) {
-					ILocatable locatable = cache.getPayload(uri,
-							subMonitor.newChild(1));
-					locatables.add(locatable);
+					locatables.add(resolved.get(uri));
 				}
 				return locatables;
 			}
 		});
 	}
 
+	@Override
+	public Future<Map<URI, ILocatable>> resolveAll(final Collection<URI> uris,
+			final IProgressMonitor monitor) {
+		Assert.isLegal(uris != null);
+		return ExecUtils.nonUIAsyncExec(LocatorService.class, "Resolving "
+				+ uris.size() + " " + URI.class.getSimpleName() + "s",
+				new Callable<Map<URI, ILocatable>>() {
+					@Override
+					public Map<URI, ILocatable> call() throws Exception {
+						return LocatorService.this.resolveAll(
+								LocatorService.this.defaultCache, uris, monitor);
+					}
+				});
+	}
+
+	/**
+	 * Resolves the given {@link URI}s and stores the results in the given
+	 * {@link Cache}. {@link URI}s already cached in any {@link Cache} are not
+	 * resolved again. The others are grouped by resource and
+	 * {@link IIdentifier} and each group is resolved at once by the
+	 * {@link ILocatorProvider}s. The groups of all calls share the
+	 * {@link #BATCH_EXECUTOR} so at most {@link #BATCH_THREADS} groups are
+	 * resolved concurrently.
+	 * 
+	 * @throws OperationCanceledException
+	 *             if the given {@link IProgressMonitor} is canceled
+	 */
+	private Map<URI, ILocatable> resolveAll(Cache<URI, ILocatable> cache,
+			Collection<URI> uris, IProgressMonitor monitor)
+			throws InterruptedException {
+		final Map<URI, ILocatable> locatables = new LinkedHashMap<URI, ILocatable>();
+		Map<String, List<URI>> groups = new LinkedHashMap<String, List<URI>>();
+		for (URI uri : uris) {
+			if (locatables.containsKey(uri)) {
+				continue;
+			}
+			locatables.put(uri, null);
+			Cache<URI, ILocatable> cachingCache = null;
+			for (Cache<URI, ILocatable> c : this.getCaches()) {
+				if (c.isCached(uri)) {
+					cachingCache = c;
+					break;
+				}
+			}
+			if (cachingCache != null) {
+				ILocatable locatable = cachingCache.getPayload(uri, null);
+				locatables.put(uri, locatable);
+				if (cachingCache != cache) {
+					cache.putPayload(uri, locatable);
+				}
+				continue;
+			}
+
+			String group = uri.getScheme() + "://" + URIUtils.getResource(uri)
+					+ "/" + URIUtils.getIdentifier(uri);
+			List<URI> groupUris = groups.get(group);
+			if (groupUris == null) {
+				groupUris = new ArrayList<URI>();
+				groups.put(group, groupUris);
+			}
+			groupUris.add(uri);
+		}
+
+		if (groups.isEmpty() || this.getLocatorProviders() == null
+				|| this.getLocatorProviders().length == 0) {
+			return locatables;
+		}
+
+		final SubMonitor subMonitor = SubMonitor.convert(monitor,
+				groups.size());
+		if (Thread.currentThread() instanceof BatchThread) {
+			// called by a provider; waiting for other batch threads could
+			// deadlock
+			for (List<URI> groupUris : groups.values()) {
+				if (subMonitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				this.putAll(cache, locatables,
+						this.resolveGroup(groupUris, subMonitor.newChild(1)));
+			}
+			return locatables;
+		}
+
+		CompletionService<Map<URI, ILocatable>> completionService = new ExecutorCompletionService<Map<URI, ILocatable>>(
+				BATCH_EXECUTOR);
+		List<Future<Map<URI, ILocatable>>> futures = new ArrayList<Future<Map<URI, ILocatable>>>();
+		for (final List<URI> groupUris : groups.values()) {
+			// SubMonitor children must not be used concurrently, so the groups
+			// only forward the cancellation and the work is reported here
+			final IProgressMonitor groupMonitor = new NullProgressMonitor() {
+				@Override
+				public boolean isCanceled() {
+					return super.isCanceled() || subMonitor.isCanceled();
+				}
+			};
+			futures.add(completionService
+					.submit(new Callable<Map<URI, ILocatable>>() {
+						@Override
+						public Map<URI, ILocatable> call() throws Exception {
+							return LocatorService.this.resolveGroup(groupUris,
+									groupMonitor);
+						}
+					}));
+		}
+		try {
+			for (int i = 0, m = groups.size(); i < m;) {
+				if (subMonitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				Future<Map<URI, ILocatable>> future = completionService.poll(
+						100, TimeUnit.MILLISECONDS);
+				if (future == null) {
+					continue;
+				}
+				try {
+					this.putAll(cache, locatables, future.get());
+				} catch (ExecutionException e) {
+					LOGGER.error("Error while resolving "
+							+ URI.class.getSimpleName() + "s to "
+							+ ILocatable.class.getSimpleName() + "s", e);
+				}
+				subMonitor.worked(1);
+				i++;
+			}
+		} finally {
+			for (Future<Map<URI, ILocatable>> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return locatables;
+	}
+
+	private void putAll(Cache<URI, ILocatable> cache,
+			Map<URI, ILocatable> locatables, Map<URI, ILocatable> resolved) {
+		for (Map.Entry<URI, ILocatable> entry : resolved.entrySet()) {
+			locatables.put(entry.getKey(), entry.getValue());
+			cache.putPayload(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Resolves {@link URI}s sharing their resource and {@link IIdentifier}.
+	 * The {@link ILocatorProvider}s are determined once for the whole group.
+	 */
+	private Map<URI, ILocatable> resolveGroup(List<URI> uris,
+			IProgressMonitor monitor) {
+		List<ILocatorProvider> locatorProviders = new ArrayList<ILocatorProvider>();
+		List<ILocatorProvider> slowLocatorProviders = new ArrayList<ILocatorProvider>();
+		this.partitionLocatorProviders(uris.get(0), locatorProviders,
+				slowLocatorProviders);
+		locatorProviders.addAll(slowLocatorProviders);
+		SubMonitor subMonitor = SubMonitor.convert(monitor,
+				locatorProviders.size());
+
+		Map<URI, ILocatable> locatables = new HashMap<URI, ILocatable>();
+		List<URI> unresolved = uris;
+		for (ILocatorProvider locatorProvider : locatorProviders) {
+			if (subMonitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			List<ILocatable> objects = locatorProvider.getObjects(unresolved,
+					subMonitor.newChild(1));
+			List<URI> stillUnresolved = new ArrayList<URI>();
+			for (int i = 0, m = unresolved.size(); i < m; i++) {
+				ILocatable locatable = objects.get(i);
+				if (locatable != null) {
+					locatables.put(unresolved.get(i), locatable);
+				} else {
+					stillUnresolved.add(unresolved.get(i));
+				}
+			}
+			unresolved = stillUnresolved;
+			if (unresolved.isEmpty()) {
+				break;
+			}
+		}
+		for (URI uri : unresolved) {
+			locatables.put(uri, null);
+		}
+		return locatables;
+	}
+
 	@Override
 	public Class<? extends ILocatable> getType(URI uri) {
 		Assert.isLegal(uri != null);
 
-		if (getRegisteredLocatorProviders() == null
-				|| getRegisteredLocatorProviders().length == 0) {
+		if (this.getLocatorProviders() == null
+				|| this.getLocatorProviders().length == 0) {
 			return null;
 		}
 
 		List<Class<? extends ILocatable>> types = new ArrayList<Class<? extends ILocatable>>();
-		for (final ILocatorProvider locatorProvider : getRegisteredLocatorProviders()) {
+		for (final ILocatorProvider locatorProvider : this.getLocatorProviders()) {
 			if (locatorProvider.isResolvabilityImpossible(uri)) {
 				continue;
 			}
@@ -267,17 +562,16 @@ public class LocatorService implements ILocatorService {
 				.currentTimeMillis() : 0l;
 
 		Cache<URI, ILocatable> cachingCache = null;
-		for (Entry<String, Cache<URI, ILocatable>> entry : this.caches
-				.entrySet()) {
-			if (entry.getValue().isCached(uri)) {
-				cachingCache = entry.getValue();
+		for (Cache<URI, ILocatable> cache : this.getCaches()) {
+			if (cache.isCached(uri)) {
+				cachingCache = cache;
 				break;
 			}
 		}
 		if (cachingCache != null
 				|| this.getSlowLocatorProviders(uri).size() == 0) {
 			if (cachingCache == null) {
-				cachingCache = this.caches.get(null);
+				cachingCache = this.defaultCache;
 			}
 			ILocatable locatable = cachingCache.getPayload(uri, monitor);
 			if (!clazz.isInstance(locatable)) {
@@ -293,7 +587,7 @@ public class LocatorService implements ILocatorService {
 					+ uri, new Callable<T>() {
 				@Override
 				public T call() throws Exception {
-					ILocatable locatable = LocatorService.this.caches.get(null)
+					ILocatable locatable = LocatorService.this.defaultCache
 							.getPayload(uri, monitor);
 					if (!clazz.isInstance(locatable)) {
 						locatable = null;
@@ -390,7 +684,7 @@ public class LocatorService implements ILocatorService {
 	@Override
 	public void uncache(URI[] uris) {
 		for (URI uri : uris) {
-			for (Cache<URI, ILocatable> cache : this.caches.values()) {
+			for (Cache<URI, ILocatable> cache : this.getCaches()) {
 				cache.removeKey(uri);
 			}
 		}
@@ -405,7 +699,7 @@ public class LocatorService implements ILocatorService {
 	@Override
 	public Future<Boolean> showInWorkspace(final URI[] uris,
 			final boolean open, IProgressMonitor monitor) {
-		final ILocatorProvider[] locatorProviders = getRegisteredLocatorProviders();
+		final ILocatorProvider[] locatorProviders = this.getLocatorProviders();
 		if (locatorProviders == null || locatorProviders.length == 0) {
 			return new CompletedFuture<Boolean>(true, null);
 		}
@@ -0,0 +1,102 @@
+package de.fu_berlin.imp.apiua.core.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * {@link java.io.OutputStream} that writes to a temporary {@link File} and
+ * replaces the target {@link File} with it on {@link #close()}. Readers of the
+ * target therefore never see partially written contents.
+ * <p>
+ * Call {@link #abort()} instead of {@link #close()} to discard the written
+ * contents, e.g. if writing failed.
+ *
+ * @author bkahlert
+ */
+public class AtomicFileOutputStream extends FilterOutputStream {
+
+	private final File file;
+	private final File tmpFile;
+	private boolean closed = false;
+
+	/**
+	 * @param file
+	 *            to be replaced
+	 * @param tmpDirectory
+	 *            to write to; should reside on the same file system as the
+	 *            given {@link File} so that it can be moved atomically
+	 * @throws IOException
+	 */
+	public AtomicFileOutputStream(File file, File tmpDirectory)
+			throws IOException {
+		super(null);
+		this.file = file;
+		tmpDirectory.mkdirs();
+		this.tmpFile = File.createTempFile("put-", ".tmp", tmpDirectory);
+		this.out = new BufferedOutputStream(new FileOutputStream(this.tmpFile));
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		this.out.write(b, off, len);
+	}
+
+	/**
+	 * Closes the stream and replaces the target {@link File}.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			super.close();
+			this.file.getParentFile().mkdirs();
+			try {
+				Files.move(this.tmpFile.toPath(), this.file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(this.tmpFile.toPath(), this.file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			this.tmpFile.delete();
+		}
+		this.replaced(this.file);
+	}
+
+	/**
+	 * Called once the target {@link File} has been replaced.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	protected void replaced(File file) throws IOException {
+	}
+
+	/**
+	 * Closes the stream without replacing the target {@link File}.
+	 */
+	public void abort() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			super.close();
+		} catch (IOException e) {
+			// the contents are discarded anyway
+		} finally {
+			this.tmpFile.delete();
+		}
+	}
+
+}
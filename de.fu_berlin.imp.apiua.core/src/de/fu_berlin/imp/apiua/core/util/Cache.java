@@ -1,72 +1,254 @@
 package de.fu_berlin.imp.apiua.core.util;
 
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.PriorityQueue;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 
-import com.bkahlert.nebula.widgets.timeline.impl.TimePassed;
+import de.fu_berlin.imp.apiua.core.metrics.CacheMetrics;
+import de.fu_berlin.imp.apiua.core.metrics.MetricsRegistry;
 
 /**
  * Thread-safe {@link Cache} that retrieves elements using a provided
  * {@link CacheFetcher}. The results are cached. Accessing a cached result a
  * further time results in a speed-up since it does not need to be recalculated.
- * 
+ * <p>
+ * Lookups do not lock. Concurrent requests of the same key are served by a
+ * single fetch. Failed or cancelled fetches are not cached.
+ * <p>
+ * The {@link Cache} is bounded by its number of entries and optionally by the
+ * summed up {@link Weigher weight} of its entries. Whenever a bound is exceeded
+ * the {@link EvictionPolicy} decides which entries to evict.
+ * <p>
+ * Hits, misses, loads and evictions are recorded in the {@link CacheMetrics}
+ * registered under the {@link #setMetricsName(String) metrics name}.
+ *
  * @author bkahlert
- * 
+ *
  * @param <KEY>
  * @param <PAYLOAD>
  */
 public class Cache<KEY, PAYLOAD> {
 
 	private static final boolean DISABLE_CACHE = false;
-	static final float SHRINK_BY = 0.25f;
+
+	/**
+	 * Number of recorded accesses after which they are passed to the
+	 * {@link EvictionPolicy}.
+	 */
+	static final int ACCESS_BUFFER_SIZE = 64;
 
 	public static interface CacheFetcher<KEY, PAYLOAD> {
 		public PAYLOAD fetch(KEY key, IProgressMonitor progressMonitor);
 	}
 
-	private class CacheEntry {
-		private int usedCount;
-		private PAYLOAD payload;
+	/**
+	 * Estimates the memory footprint of a cached payload.
+	 */
+	public static interface Weigher<KEY, PAYLOAD> {
+		public long weigh(KEY key, PAYLOAD payload);
+	}
 
-		public CacheEntry(KEY key) {
-			this.usedCount = 0;
-		}
+	/**
+	 * Decides which entries of a {@link Cache} are evicted.
+	 * <p>
+	 * An instance must only be used by a single {@link Cache} which calls it
+	 * exclusively.
+	 */
+	public static interface EvictionPolicy<KEY> {
+		/**
+		 * Called if the given key was added to the {@link Cache}.
+		 */
+		public void onInsert(KEY key);
 
-		public PAYLOAD getPayload(KEY key, IProgressMonitor progressMonitor) {
-			synchronized (this) {
-				if (this.usedCount == 0) {
-					this.payload = Cache.this.cacheFetcher.fetch(key,
-							progressMonitor);
-				}
-				this.usedCount++;
-			}
-			return this.payload;
-		}
+		/**
+		 * Called if the given key was requested. The key is not necessarily
+		 * cached.
+		 */
+		public void onAccess(KEY key);
 
-		public int getUsedCount() {
-			return this.usedCount;
-		}
+		/**
+		 * Called if the given key was removed from the {@link Cache}.
+		 */
+		public void onRemove(KEY key);
+
+		/**
+		 * Returns the key to be evicted next.
+		 *
+		 * @return null if no key is known
+		 */
+		public KEY getVictim();
+	}
+
+	private class CacheEntry {
+		private final CountDownLatch loaded = new CountDownLatch(1);
+		private volatile boolean admitted = false;
+		private PAYLOAD payload;
+		private RuntimeException error;
+		private boolean cancelled;
+		private long weight;
 	}
 
 	private final CacheFetcher<KEY, PAYLOAD> cacheFetcher;
-	private int cacheSize;
-	private final HashMap<KEY, CacheEntry> cache;
+	private final Weigher<? super KEY, ? super PAYLOAD> weigher;
+	private final EvictionPolicy<KEY> evictionPolicy;
+	private final ConcurrentMap<KEY, CacheEntry> cache = new ConcurrentHashMap<KEY, CacheEntry>();
+
+	private final Queue<KEY> accesses = new ConcurrentLinkedQueue<KEY>();
+	private final AtomicInteger numAccesses = new AtomicInteger();
 
+	/**
+	 * Guards the {@link EvictionPolicy} and the bounds.
+	 */
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private volatile int cacheSize;
+	private volatile long maxWeight;
+	private int size = 0;
+	private long weight = 0;
+
+	private volatile CacheMetrics metrics;
+
+	/**
+	 * Creates a {@link Cache} holding at most the given number of entries
+	 * using a {@link TinyLfuEvictionPolicy}.
+	 *
+	 * @param cacheFetcher
+	 * @param cacheSize
+	 */
 	public Cache(CacheFetcher<KEY, PAYLOAD> cacheFetcher, int cacheSize) {
+		this(cacheFetcher, cacheSize, null, 0);
+	}
+
+	/**
+	 * Creates a {@link Cache} holding at most the given number of entries
+	 * whose summed up weight does not exceed the given maximum using a
+	 * {@link TinyLfuEvictionPolicy}.
+	 *
+	 * @param cacheFetcher
+	 * @param cacheSize
+	 * @param weigher
+	 *            if null all entries weigh 0
+	 * @param maxWeight
+	 *            0 if the weight is not bounded
+	 */
+	public Cache(CacheFetcher<KEY, PAYLOAD> cacheFetcher, int cacheSize,
+			Weigher<? super KEY, ? super PAYLOAD> weigher, long maxWeight) {
+		this(cacheFetcher, cacheSize, weigher, maxWeight,
+				new TinyLfuEvictionPolicy<KEY>(cacheSize));
+	}
+
+	/**
+	 * Creates a {@link Cache} holding at most the given number of entries
+	 * whose summed up weight does not exceed the given maximum.
+	 *
+	 * @param cacheFetcher
+	 * @param cacheSize
+	 * @param weigher
+	 *            if null all entries weigh 0
+	 * @param maxWeight
+	 *            0 if the weight is not bounded
+	 * @param evictionPolicy
+	 *            exclusively used by this {@link Cache}
+	 */
+	public Cache(CacheFetcher<KEY, PAYLOAD> cacheFetcher, int cacheSize,
+			Weigher<? super KEY, ? super PAYLOAD> weigher, long maxWeight,
+			EvictionPolicy<KEY> evictionPolicy) {
 		Assert.isNotNull(cacheFetcher);
+		Assert.isNotNull(evictionPolicy);
+		Assert.isLegal(maxWeight >= 0);
 		this.cacheFetcher = cacheFetcher;
 		this.cacheSize = cacheSize;
-		this.cache = new HashMap<KEY, CacheEntry>(cacheSize);
+		this.weigher = weigher;
+		this.maxWeight = maxWeight;
+		this.evictionPolicy = evictionPolicy;
+		String name = this.getClass().getSimpleName();
+		this.setMetricsName(name.isEmpty() ? Cache.class.getSimpleName()
+				: name);
+	}
+
+	/**
+	 * Sets the name under which this {@link Cache} records its
+	 * {@link CacheMetrics}. Defaults to the simple name of its class.
+	 *
+	 * @param name
+	 */
+	public void setMetricsName(String name) {
+		Assert.isNotNull(name);
+		if (this.metrics != null) {
+			MetricsRegistry.getDefault().unregister(this.metrics.getName(),
+					this);
+		}
+		this.metrics = MetricsRegistry.getDefault().register(name, this);
+	}
+
+	public CacheMetrics getMetrics() {
+		return this.metrics;
 	}
 
 	public void setCacheSize(int cacheSize) {
-		this.cacheSize = cacheSize;
+		this.evictionLock.lock();
+		try {
+			this.cacheSize = cacheSize;
+			this.evict();
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Sets the maximum summed up weight of all cached entries.
+	 *
+	 * @param maxWeight
+	 *            0 if the weight is not bounded
+	 */
+	public void setMaxWeight(long maxWeight) {
+		Assert.isLegal(maxWeight >= 0);
+		this.evictionLock.lock();
+		try {
+			this.maxWeight = maxWeight;
+			this.evict();
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the summed up weight of all cached entries.
+	 *
+	 * @return
+	 */
+	public long getWeight() {
+		this.evictionLock.lock();
+		try {
+			return this.weight;
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of cached entries.
+	 *
+	 * @return
+	 */
+	public int size() {
+		this.evictionLock.lock();
+		try {
+			return this.size;
+		} finally {
+			this.evictionLock.unlock();
+		}
 	}
 
 	public PAYLOAD getPayload(KEY key, IProgressMonitor progressMonitor) {
@@ -77,89 +259,213 @@ public class Cache<KEY, PAYLOAD> {
 		Assert.isNotNull(key);
 
 		if (DISABLE_CACHE || this.cacheSize == 0) {
-			return this.cacheFetcher.fetch(key, progressMonitor);
+			this.metrics.recordMiss();
+			long start = System.nanoTime();
+			boolean succeeded = false;
+			try {
+				PAYLOAD payload = this.cacheFetcher.fetch(key, progressMonitor);
+				succeeded = true;
+				return payload;
+			} finally {
+				this.metrics.recordLoad(System.nanoTime() - start, succeeded);
+			}
 		}
 
-		CacheEntry cacheEntry;
-		synchronized (this.cache) {
-			if (!this.cache.containsKey(key)) {
-				this.shrinkCache();
-				this.cache.put(key, new CacheEntry(key));
+		while (true) {
+			CacheEntry cacheEntry = this.cache.get(key);
+			if (cacheEntry == null) {
+				CacheEntry newCacheEntry = new CacheEntry();
+				cacheEntry = this.cache.putIfAbsent(key, newCacheEntry);
+				if (cacheEntry == null) {
+					this.metrics.recordMiss();
+					return this.load(key, newCacheEntry, progressMonitor);
+				}
 			}
-			cacheEntry = this.cache.get(key);
+
+			this.metrics.recordHit();
+			this.recordAccess(key);
+			try {
+				cacheEntry.loaded.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			}
+			if (cacheEntry.error != null) {
+				throw cacheEntry.error;
+			}
+			if (!cacheEntry.cancelled) {
+				return cacheEntry.payload;
+			}
+			// the loading request was cancelled; try again with ours
 		}
+	}
 
-		return cacheEntry.getPayload(key, progressMonitor);
+	/**
+	 * Fetches the payload of the given entry and admits it if the fetch
+	 * neither failed nor was cancelled.
+	 */
+	private PAYLOAD load(KEY key, CacheEntry cacheEntry,
+			IProgressMonitor progressMonitor) {
+		long start = System.nanoTime();
+		boolean succeeded = false;
+		try {
+			cacheEntry.payload = this.cacheFetcher.fetch(key, progressMonitor);
+			succeeded = progressMonitor == null
+					|| !progressMonitor.isCanceled();
+			return cacheEntry.payload;
+		} catch (OperationCanceledException e) {
+			// treated like a cancelled progress monitor
+			throw e;
+		} catch (RuntimeException e) {
+			cacheEntry.error = e;
+			throw e;
+		} finally {
+			this.metrics.recordLoad(System.nanoTime() - start, succeeded);
+			if (succeeded) {
+				this.admit(key, cacheEntry);
+			} else {
+				cacheEntry.cancelled = cacheEntry.error == null;
+				this.cache.remove(key, cacheEntry);
+			}
+			cacheEntry.loaded.countDown();
+		}
 	}
 
-	public Set<KEY> getCachedKeys() {
-		return Collections.unmodifiableSet(this.cache.keySet());
+	private void admit(KEY key, CacheEntry cacheEntry) {
+		long weight = this.weigher != null ? this.weigher.weigh(key,
+				cacheEntry.payload) : 0;
+		this.evictionLock.lock();
+		try {
+			if (this.cache.get(key) != cacheEntry) {
+				// removed while loading
+				return;
+			}
+			this.drainAccesses();
+			cacheEntry.weight = weight;
+			cacheEntry.admitted = true;
+			this.size++;
+			this.weight += weight;
+			this.evictionPolicy.onInsert(key);
+			this.evict();
+		} finally {
+			this.evictionLock.unlock();
+		}
 	}
 
-	public boolean isCached(KEY key) {
-		return this.cache.containsKey(key);
+	private void recordAccess(KEY key) {
+		this.accesses.add(key);
+		if (this.numAccesses.incrementAndGet() >= ACCESS_BUFFER_SIZE
+				&& this.evictionLock.tryLock()) {
+			try {
+				this.drainAccesses();
+			} finally {
+				this.evictionLock.unlock();
+			}
+		}
 	}
 
-	private void shrinkCache() {
-		synchronized (this.cache) {
-			if (this.cache.size() < this.cacheSize) {
-				return;
+	/**
+	 * Passes the recorded accesses to the {@link EvictionPolicy}. Must only be
+	 * called while holding the {@link #evictionLock}.
+	 */
+	private void drainAccesses() {
+		KEY key;
+		while ((key = this.accesses.poll()) != null) {
+			this.numAccesses.decrementAndGet();
+			this.evictionPolicy.onAccess(key);
+		}
+	}
+
+	/**
+	 * Evicts entries until all bounds are met. Must only be called while
+	 * holding the {@link #evictionLock}.
+	 */
+	private void evict() {
+		this.drainAccesses();
+		while (this.size > this.cacheSize
+				|| (this.maxWeight > 0 && this.weight > this.maxWeight)) {
+			KEY victim = this.evictionPolicy.getVictim();
+			if (victim == null) {
+				break;
 			}
+			this.remove(victim);
+			this.metrics.recordEviction();
+		}
+	}
 
-			TimePassed passed = new TimePassed(true, "cache shrink");
-
-			int numDelete = this.cacheSize > 10 ? (int) (this.cacheSize * SHRINK_BY)
-					: 1;
-			if (numDelete == 1) {
-				KEY delete = null;
-				int minUsedCount = Integer.MAX_VALUE;
-				for (KEY key : this.cache.keySet()) {
-					int usedCount = this.cache.get(key).getUsedCount();
-					if (usedCount < minUsedCount) {
-						delete = key;
-						minUsedCount = usedCount;
-					}
-				}
-				this.cache.remove(delete);
-			} else {
-				PriorityQueue<KEY> sortedKeys = new PriorityQueue<KEY>(
-						this.cache.size(), new Comparator<KEY>() {
-							@Override
-							public int compare(KEY arg0, KEY arg1) {
-								int o1 = Cache.this.cache.get(arg0).usedCount;
-								int o2 = Cache.this.cache.get(arg1).usedCount;
-								if (o1 < o2) {
-									return -1;
-								}
-								if (o1 == o2) {
-									return 0;
-								}
-								return 1;
-							}
-						});
-				sortedKeys.addAll(this.cache.keySet());
-
-				passed.tell("elements sorted");
-
-				for (int i = 0; i < numDelete; i++) {
-					KEY key = sortedKeys.poll();
-					if (key == null) {
-						throw new RuntimeException("IMPLEMENTATION ERROR");
-					}
-					this.cache.remove(key);
-				}
+	/**
+	 * Removes the given key. Must only be called while holding the
+	 * {@link #evictionLock}.
+	 */
+	private void remove(KEY key) {
+		CacheEntry cacheEntry = this.cache.get(key);
+		if (cacheEntry != null) {
+			this.cache.remove(key);
+		}
+		if (cacheEntry != null && cacheEntry.admitted) {
+			cacheEntry.admitted = false;
+			this.size--;
+			this.weight -= cacheEntry.weight;
+		}
+		this.evictionPolicy.onRemove(key);
+	}
+
+	public Set<KEY> getCachedKeys() {
+		Set<KEY> keys = new HashSet<KEY>();
+		for (Map.Entry<KEY, CacheEntry> entry : this.cache.entrySet()) {
+			if (entry.getValue().admitted) {
+				keys.add(entry.getKey());
 			}
+		}
+		return Collections.unmodifiableSet(keys);
+	}
 
-			passed.tell("removed " + numDelete + " element"
-					+ (numDelete == 1 ? "" : "s"));
+	public boolean isCached(KEY key) {
+		CacheEntry cacheEntry = this.cache.get(key);
+		return cacheEntry != null && cacheEntry.admitted;
+	}
+
+	/**
+	 * Returns the cached payload without fetching it.
+	 *
+	 * @param key
+	 * @return null if the key is not cached
+	 */
+	public PAYLOAD getCachedPayload(KEY key) {
+		CacheEntry cacheEntry = this.cache.get(key);
+		return cacheEntry != null && cacheEntry.admitted ? cacheEntry.payload
+				: null;
+	}
+
+	/**
+	 * Caches the given payload unless the key is already cached or being
+	 * fetched.
+	 *
+	 * @param key
+	 * @param payload
+	 * @return true if the payload was cached
+	 */
+	public boolean putPayload(KEY key, PAYLOAD payload) {
+		Assert.isNotNull(key);
+		if (DISABLE_CACHE || this.cacheSize == 0) {
+			return false;
 		}
+		CacheEntry cacheEntry = new CacheEntry();
+		cacheEntry.payload = payload;
+		cacheEntry.loaded.countDown();
+		if (this.cache.putIfAbsent(key, cacheEntry) != null) {
+			return false;
+		}
+		this.admit(key, cacheEntry);
+		return true;
 	}
 
 	public void removeKey(KEY key) {
-		synchronized (this.cache) {
-			if (this.cache.containsKey(key)) {
-				this.cache.remove(key);
-			}
+		this.evictionLock.lock();
+		try {
+			this.remove(key);
+		} finally {
+			this.evictionLock.unlock();
 		}
 	}
 }
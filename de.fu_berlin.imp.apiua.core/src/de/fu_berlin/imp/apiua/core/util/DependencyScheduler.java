@@ -0,0 +1,473 @@
+package de.fu_berlin.imp.apiua.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
+
+/**
+ * Runs a task for each node of a dependency graph. Each node is started as
+ * soon as all of its dependencies finished; independent nodes run in parallel
+ * on a bounded number of threads.
+ * <p>
+ * If a node fails or is cancelled none of the nodes depending on it is run.
+ * Cancelling the {@link IProgressMonitor} passed to
+ * {@link #run(ITask, IProgressMonitor)} cancels the monitors of all running
+ * nodes and prevents further nodes from being started.
+ * <p>
+ * Each node reports its progress as one unit of work of that
+ * {@link IProgressMonitor}. The task names set by the running nodes are shown
+ * as its sub task.
+ *
+ * @author bkahlert
+ */
+public class DependencyScheduler<NODE> {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(DependencyScheduler.class);
+
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
+	/**
+	 * Work to be done for a single node.
+	 */
+	public static interface ITask<NODE> {
+		public void run(NODE node, IProgressMonitor monitor) throws Exception;
+	}
+
+	/**
+	 * State of a node after {@link DependencyScheduler#run(ITask,
+	 * IProgressMonitor)} returned.
+	 */
+	public static enum State {
+		/**
+		 * the node's task finished successfully
+		 */
+		SUCCEEDED,
+		/**
+		 * the node's task threw an exception
+		 */
+		FAILED,
+		/**
+		 * the node's task was cancelled or never started because the run was
+		 * cancelled
+		 */
+		CANCELLED,
+		/**
+		 * the node's task was never started because a dependency did not
+		 * succeed
+		 */
+		SKIPPED;
+	}
+
+	/**
+	 * Outcome and timings of a run.
+	 */
+	public static class Result<NODE> {
+		private final Map<NODE, State> states = new LinkedHashMap<NODE, State>();
+		private final Map<NODE, Throwable> errors = new LinkedHashMap<NODE, Throwable>();
+		private final Map<NODE, Long> waitTimes = new HashMap<NODE, Long>();
+		private final Map<NODE, Long> runTimes = new HashMap<NODE, Long>();
+		private long totalTime;
+
+		public State getState(NODE node) {
+			return this.states.get(node);
+		}
+
+		/**
+		 * @return true if all nodes succeeded
+		 */
+		public boolean isSuccessful() {
+			for (State state : this.states.values()) {
+				if (state != State.SUCCEEDED) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return the exceptions of all {@link State#FAILED failed} nodes
+		 */
+		public Map<NODE, Throwable> getErrors() {
+			return Collections.unmodifiableMap(this.errors);
+		}
+
+		/**
+		 * Returns the nanoseconds the given node waited for a free thread
+		 * after its dependencies had finished.
+		 *
+		 * @param node
+		 * @return null if the node was never started
+		 */
+		public Long getWaitTime(NODE node) {
+			return this.waitTimes.get(node);
+		}
+
+		/**
+		 * Returns the nanoseconds the given node's task ran.
+		 *
+		 * @param node
+		 * @return null if the node was never started
+		 */
+		public Long getRunTime(NODE node) {
+			return this.runTimes.get(node);
+		}
+
+		/**
+		 * @return the nanoseconds the whole run took
+		 */
+		public long getTotalTime() {
+			return this.totalTime;
+		}
+	}
+
+	/**
+	 * {@link IProgressMonitor} of a single node that may be used from the
+	 * node's thread while {@link DependencyScheduler#run(ITask,
+	 * IProgressMonitor)} reports its progress to the run's
+	 * {@link IProgressMonitor}. A {@link SubMonitor#newChild(int) child} of
+	 * the run's {@link SubMonitor} cannot be used instead since children of
+	 * the same {@link SubMonitor} must not be active at the same time.
+	 */
+	private static class NodeMonitor implements IProgressMonitor {
+		private volatile boolean canceled = false;
+		private volatile String taskName = null;
+		private double totalWork = 0;
+		private double worked = 0;
+		private double reported = 0;
+
+		@Override
+		public synchronized void beginTask(String name, int totalWork) {
+			this.setTaskName(name);
+			this.totalWork = totalWork;
+			this.worked = 0;
+		}
+
+		@Override
+		public synchronized void done() {
+			this.worked = this.totalWork;
+		}
+
+		@Override
+		public synchronized void internalWorked(double work) {
+			this.worked += work;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return this.canceled;
+		}
+
+		@Override
+		public void setCanceled(boolean value) {
+			this.canceled = value;
+		}
+
+		/**
+		 * Sets the task name unless it is empty. Empty names are passed by
+		 * {@link SubMonitor#convert(IProgressMonitor, int)} and would hide
+		 * the name set by the node's task.
+		 */
+		@Override
+		public void setTaskName(String name) {
+			if (name != null && !name.isEmpty()) {
+				this.taskName = name;
+			}
+		}
+
+		@Override
+		public void subTask(String name) {
+		}
+
+		@Override
+		public void worked(int work) {
+			this.internalWorked(work);
+		}
+
+		public String getTaskName() {
+			return this.taskName;
+		}
+
+		/**
+		 * Returns the fraction of the node's work done since the last call.
+		 *
+		 * @param finished
+		 *            if true the remaining work is returned
+		 * @return
+		 */
+		public synchronized double takeProgress(boolean finished) {
+			double progress = finished ? 1 : (this.totalWork > 0 ? Math.min(
+					1, this.worked / this.totalWork) : 0);
+			double delta = Math.max(0, progress - this.reported);
+			this.reported += delta;
+			return delta;
+		}
+	}
+
+	private static class Completion<NODE> {
+		private final NODE node;
+		private final Throwable error;
+		private final long waitTime;
+		private final long runTime;
+
+		public Completion(NODE node, Throwable error, long waitTime,
+				long runTime) {
+			this.node = node;
+			this.error = error;
+			this.waitTime = waitTime;
+			this.runTime = runTime;
+		}
+	}
+
+	private final Map<NODE, List<NODE>> dependencies = new LinkedHashMap<NODE, List<NODE>>();
+	private final Map<NODE, List<NODE>> dependents = new HashMap<NODE, List<NODE>>();
+	private final int numThreads;
+
+	/**
+	 * @param dependencies
+	 *            the dependencies of each node; dependencies that are not nodes
+	 *            themselves are ignored
+	 * @param numThreads
+	 *            maximum number of nodes running at the same time
+	 * @throws IllegalArgumentException
+	 *             if the dependencies contain a cycle
+	 */
+	public DependencyScheduler(
+			Map<NODE, ? extends Collection<NODE>> dependencies, int numThreads) {
+		Assert.isLegal(numThreads > 0);
+		this.numThreads = numThreads;
+		for (NODE node : dependencies.keySet()) {
+			this.dependencies.put(node, new ArrayList<NODE>());
+			this.dependents.put(node, new ArrayList<NODE>());
+		}
+		for (Map.Entry<NODE, ? extends Collection<NODE>> entry : dependencies
+				.entrySet()) {
+			for (NODE dependency : entry.getValue()) {
+				if (!this.dependencies.containsKey(dependency)) {
+					LOGGER.warn(entry.getKey() + " depends on unknown "
+							+ dependency);
+					continue;
+				}
+				if (!this.dependencies.get(entry.getKey()).contains(dependency)) {
+					this.dependencies.get(entry.getKey()).add(dependency);
+					this.dependents.get(dependency).add(entry.getKey());
+				}
+			}
+		}
+		this.checkAcyclic();
+	}
+
+	private void checkAcyclic() {
+		Map<NODE, Integer> pending = this.getPendingDependencyCounts();
+		LinkedList<NODE> ready = this.getReadyNodes(pending);
+		int visited = 0;
+		while (!ready.isEmpty()) {
+			NODE node = ready.removeFirst();
+			visited++;
+			for (NODE dependent : this.dependents.get(node)) {
+				if (pending.put(dependent, pending.get(dependent) - 1) == 1) {
+					ready.add(dependent);
+				}
+			}
+		}
+		if (visited < this.dependencies.size()) {
+			List<NODE> cycle = new ArrayList<NODE>();
+			for (Map.Entry<NODE, Integer> entry : pending.entrySet()) {
+				if (entry.getValue() > 0) {
+					cycle.add(entry.getKey());
+				}
+			}
+			throw new IllegalArgumentException("Cyclic dependencies between "
+					+ cycle);
+		}
+	}
+
+	private Map<NODE, Integer> getPendingDependencyCounts() {
+		Map<NODE, Integer> pending = new LinkedHashMap<NODE, Integer>();
+		for (Map.Entry<NODE, List<NODE>> entry : this.dependencies.entrySet()) {
+			pending.put(entry.getKey(), entry.getValue().size());
+		}
+		return pending;
+	}
+
+	private LinkedList<NODE> getReadyNodes(Map<NODE, Integer> pending) {
+		LinkedList<NODE> ready = new LinkedList<NODE>();
+		for (Map.Entry<NODE, Integer> entry : pending.entrySet()) {
+			if (entry.getValue() == 0) {
+				ready.add(entry.getKey());
+			}
+		}
+		return ready;
+	}
+
+	public List<NODE> getDependencies(NODE node) {
+		return Collections.unmodifiableList(this.dependencies.get(node));
+	}
+
+	/**
+	 * Runs the given task for all nodes and blocks until no node is running
+	 * anymore.
+	 *
+	 * @param task
+	 * @param progressMonitor
+	 * @return
+	 */
+	public Result<NODE> run(final ITask<NODE> task,
+			IProgressMonitor progressMonitor) {
+		SubMonitor monitor = SubMonitor.convert(progressMonitor,
+				this.dependencies.size());
+		final long start = System.nanoTime();
+		final Result<NODE> result = new Result<NODE>();
+		final BlockingQueue<Completion<NODE>> completions = new LinkedBlockingQueue<Completion<NODE>>();
+		final Map<NODE, NodeMonitor> running = new LinkedHashMap<NODE, NodeMonitor>();
+		Map<NODE, Integer> pending = this.getPendingDependencyCounts();
+		LinkedList<NODE> ready = this.getReadyNodes(pending);
+		for (NODE node : this.dependencies.keySet()) {
+			result.states.put(node, State.SKIPPED);
+		}
+
+		ExecutorService executorService = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(this.numThreads, this.dependencies.size())),
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								DependencyScheduler.class.getSimpleName()
+										+ "-" + this.count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		boolean cancelled = false;
+		try {
+			while (!ready.isEmpty() || !running.isEmpty()) {
+				if (!cancelled && monitor.isCanceled()) {
+					cancelled = true;
+					for (IProgressMonitor nodeMonitor : running.values()) {
+						nodeMonitor.setCanceled(true);
+					}
+				}
+
+				while (!cancelled && !ready.isEmpty()) {
+					final NODE node = ready.removeFirst();
+					final NodeMonitor nodeMonitor = new NodeMonitor();
+					final long readyTime = System.nanoTime();
+					running.put(node, nodeMonitor);
+					executorService.execute(new Runnable() {
+						@Override
+						public void run() {
+							long runStart = System.nanoTime();
+							Throwable error = null;
+							try {
+								if (!nodeMonitor.isCanceled()) {
+									SubMonitor subMonitor = SubMonitor
+											.convert(nodeMonitor);
+									task.run(node, subMonitor);
+									subMonitor.done();
+								}
+							} catch (Throwable e) {
+								error = e;
+							}
+							completions.add(new Completion<NODE>(node, error,
+									runStart - readyTime, System.nanoTime()
+											- runStart));
+						}
+					});
+				}
+				if (cancelled) {
+					ready.clear();
+					if (running.isEmpty()) {
+						break;
+					}
+				}
+				this.reportProgress(monitor, running);
+
+				Completion<NODE> completion = completions.poll(
+						CANCEL_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (completion == null) {
+					continue;
+				}
+				NodeMonitor nodeMonitor = running.remove(completion.node);
+				result.waitTimes.put(completion.node, completion.waitTime);
+				result.runTimes.put(completion.node, completion.runTime);
+				monitor.internalWorked(nodeMonitor.takeProgress(true));
+
+				if (completion.error == null && !nodeMonitor.isCanceled()) {
+					result.states.put(completion.node, State.SUCCEEDED);
+					for (NODE dependent : this.dependents.get(completion.node)) {
+						if (pending.put(dependent, pending.get(dependent) - 1) == 1) {
+							ready.add(dependent);
+						}
+					}
+				} else if (completion.error == null
+						|| completion.error instanceof OperationCanceledException) {
+					result.states.put(completion.node, State.CANCELLED);
+				} else {
+					result.states.put(completion.node, State.FAILED);
+					result.errors.put(completion.node, completion.error);
+					LOGGER.error("Error running " + completion.node,
+							completion.error);
+				}
+			}
+		} catch (InterruptedException e) {
+			cancelled = true;
+			for (IProgressMonitor nodeMonitor : running.values()) {
+				nodeMonitor.setCanceled(true);
+			}
+			Thread.currentThread().interrupt();
+		} finally {
+			executorService.shutdown();
+		}
+
+		if (cancelled) {
+			for (Map.Entry<NODE, State> entry : result.states.entrySet()) {
+				if (entry.getValue() == State.SKIPPED
+						&& !result.runTimes.containsKey(entry.getKey())) {
+					entry.setValue(State.CANCELLED);
+				}
+			}
+		}
+		result.totalTime = System.nanoTime() - start;
+		monitor.done();
+		return result;
+	}
+
+	/**
+	 * Reports the progress of the running nodes and shows their task names.
+	 *
+	 * @param monitor
+	 * @param running
+	 */
+	private void reportProgress(SubMonitor monitor,
+			Map<NODE, NodeMonitor> running) {
+		List<String> names = new ArrayList<String>(running.size());
+		for (Map.Entry<NODE, NodeMonitor> entry : running.entrySet()) {
+			monitor.internalWorked(entry.getValue().takeProgress(false));
+			String taskName = entry.getValue().getTaskName();
+			names.add(taskName != null ? taskName : String.valueOf(entry
+					.getKey()));
+		}
+		monitor.subTask(StringUtils.join(names, ", "));
+	}
+}
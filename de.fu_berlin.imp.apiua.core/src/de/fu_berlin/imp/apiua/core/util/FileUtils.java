@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -125,11 +126,15 @@ public class FileUtils {
 	}
 
 	public static int getNewlineLengthAt(IData data, long position) {
-		byte[] separator = data.read(position, position + 2).getBytes();
-		if (separator[0] == 0x0A) { // LF / \n
+		ByteBuffer separator = data.readBytes(position,
+				Math.min(position + 2, data.getLength()));
+		if (!separator.hasRemaining()) {
+			return 0;
+		}
+		if (separator.get(0) == 0x0A) { // LF / \n
 			return 1;
-		} else if (separator[0] == 0x0D) { // CR / \r
-			if (separator[1] == 0x0A) {
+		} else if (separator.get(0) == 0x0D) { // CR / \r
+			if (separator.remaining() > 1 && separator.get(1) == 0x0A) {
 				return 2; // CR+LF
 			} else {
 				return 1;
@@ -0,0 +1,89 @@
+package de.fu_berlin.imp.apiua.core.util;
+
+/**
+ * Count-Min sketch estimating how often a key was accessed.
+ * <p>
+ * Each key is counted by four 4-bit counters. Once the number of increments
+ * reaches ten times the expected number of keys all counters are halved so
+ * that older accesses lose their influence.
+ *
+ * @author bkahlert
+ */
+class FrequencySketch {
+
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L,
+			0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final int MAX_COUNT = 15;
+
+	/**
+	 * 16 counters per long.
+	 */
+	private long[] table = new long[0];
+	private int mask;
+	private int sampleSize;
+	private int additions;
+
+	FrequencySketch(int expectedSize) {
+		this.ensureCapacity(expectedSize);
+	}
+
+	/**
+	 * Grows the sketch to fit the given number of keys. Growing discards all
+	 * counts.
+	 *
+	 * @param expectedSize
+	 */
+	void ensureCapacity(int expectedSize) {
+		// 16 counters per key
+		int counters = Integer.highestOneBit(Math.max(16,
+				Math.min(expectedSize, 1 << 22)) - 1) << 5;
+		if (counters <= this.table.length * 16) {
+			return;
+		}
+		this.table = new long[counters / 16];
+		this.mask = counters - 1;
+		this.sampleSize = 10 * Math.max(16, expectedSize);
+		this.additions = 0;
+	}
+
+	private int indexOf(Object key, int i) {
+		long hash = (key.hashCode() + SEEDS[i]) * SEEDS[i];
+		hash += hash >>> 32;
+		return (int) hash & this.mask;
+	}
+
+	private int getCount(int index) {
+		return (int) (this.table[index >>> 4] >>> ((index & 15) << 2)) & 0xf;
+	}
+
+	public int frequency(Object key) {
+		int frequency = MAX_COUNT;
+		for (int i = 0; i < SEEDS.length; i++) {
+			frequency = Math.min(frequency, this.getCount(this.indexOf(key, i)));
+		}
+		return frequency;
+	}
+
+	public void increment(Object key) {
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int index = this.indexOf(key, i);
+			if (this.getCount(index) < MAX_COUNT) {
+				this.table[index >>> 4] += 1L << ((index & 15) << 2);
+				added = true;
+			}
+		}
+		if (added && ++this.additions >= this.sampleSize) {
+			this.reset();
+		}
+	}
+
+	private void reset() {
+		for (int i = 0; i < this.table.length; i++) {
+			this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+		}
+		this.additions /= 2;
+	}
+
+}
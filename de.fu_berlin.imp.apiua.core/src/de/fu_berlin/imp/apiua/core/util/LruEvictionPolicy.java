@@ -0,0 +1,42 @@
+package de.fu_berlin.imp.apiua.core.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import de.fu_berlin.imp.apiua.core.util.Cache.EvictionPolicy;
+
+/**
+ * {@link EvictionPolicy} that evicts the least recently used key.
+ *
+ * @author bkahlert
+ *
+ * @param <KEY>
+ */
+public class LruEvictionPolicy<KEY> implements EvictionPolicy<KEY> {
+
+	private final LinkedHashMap<KEY, Boolean> keys = new LinkedHashMap<KEY, Boolean>(
+			16, 0.75f, true);
+
+	@Override
+	public void onInsert(KEY key) {
+		this.keys.put(key, Boolean.TRUE);
+	}
+
+	@Override
+	public void onAccess(KEY key) {
+		// reorders the key if known
+		this.keys.get(key);
+	}
+
+	@Override
+	public void onRemove(KEY key) {
+		this.keys.remove(key);
+	}
+
+	@Override
+	public KEY getVictim() {
+		Iterator<KEY> iterator = this.keys.keySet().iterator();
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+}
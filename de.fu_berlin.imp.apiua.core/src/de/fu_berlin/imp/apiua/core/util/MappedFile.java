@@ -0,0 +1,396 @@
+package de.fu_berlin.imp.apiua.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.core.runtime.Assert;
+
+/**
+ * Read-only, memory-mapped view of a {@link File}.
+ * <p>
+ * Files are mapped in overlapping regions so that slices not longer than the
+ * overlap never span two regions and can be returned without copying. Instances
+ * are thread-safe.
+ * <p>
+ * Call {@link #close()} once the {@link File} is about to be replaced. Some
+ * platforms refuse to replace mapped {@link File}s, which is why the regions
+ * are unmapped immediately rather than on garbage collection.
+ *
+ * @author bkahlert
+ */
+public class MappedFile {
+
+	static final long REGION_STEP = 256l * 1024 * 1024;
+	static final long REGION_OVERLAP = 4l * 1024 * 1024;
+
+	/**
+	 * {@link CharSequence} view of single-byte encoded content.
+	 */
+	private static class Latin1CharSequence implements CharSequence {
+		private final ByteBuffer bytes;
+
+		public Latin1CharSequence(ByteBuffer bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int length() {
+			return this.bytes.remaining();
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (this.bytes.get(this.bytes.position() + index) & 0xff);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			ByteBuffer bytes = this.bytes.duplicate();
+			bytes.limit(this.bytes.position() + end);
+			bytes.position(this.bytes.position() + start);
+			return new Latin1CharSequence(bytes.slice());
+		}
+
+		@Override
+		public String toString() {
+			return StandardCharsets.ISO_8859_1.decode(this.bytes.duplicate())
+					.toString();
+		}
+	}
+
+	/**
+	 * Unmaps the given {@link MappedByteBuffer} immediately instead of waiting
+	 * for it to be garbage collected. Uses {@code Unsafe.invokeCleaner} on
+	 * Java 9 and later and the buffer's cleaner on Java 8. If neither is
+	 * accessible the buffer is left to the garbage collector.
+	 *
+	 * @param buffer
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner;
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+						ByteBuffer.class);
+			} catch (NoSuchMethodException e) {
+				Method getCleaner = buffer.getClass().getMethod("cleaner");
+				getCleaner.setAccessible(true);
+				Object cleaner = getCleaner.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+				return;
+			}
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		} catch (Exception e) {
+			return;
+		}
+	}
+
+	private final File file;
+	private final long length;
+	private final long lastModified;
+	private final long regionStep;
+	private volatile MappedByteBuffer[] regions;
+
+	/**
+	 * Held while reading the regions and exclusively while unmapping them.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public MappedFile(File file) throws IOException {
+		this(file, REGION_STEP, REGION_OVERLAP);
+	}
+
+	MappedFile(File file, long regionStep, long regionOverlap)
+			throws IOException {
+		Assert.isLegal(regionStep > 0 && regionOverlap >= 0
+				&& regionStep + regionOverlap <= Integer.MAX_VALUE);
+		this.file = file;
+		this.lastModified = file.lastModified();
+		this.regionStep = regionStep;
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			this.length = channel.size();
+			int numRegions = (int) Math.max(1, (this.length + regionStep - 1)
+					/ regionStep);
+			MappedByteBuffer[] regions = new MappedByteBuffer[numRegions];
+			for (int i = 0; i < numRegions; i++) {
+				long position = i * regionStep;
+				long size = Math.min(this.length - position, regionStep
+						+ regionOverlap);
+				regions[i] = channel.map(MapMode.READ_ONLY, position,
+						Math.max(0, size));
+			}
+			this.regions = regions;
+		}
+	}
+
+	/**
+	 * Must only be called while holding the read lock.
+	 *
+	 * @return
+	 */
+	private MappedByteBuffer[] getRegions() {
+		MappedByteBuffer[] regions = this.regions;
+		if (regions == null) {
+			throw new IllegalStateException(this.file + " is closed");
+		}
+		return regions;
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	public long length() {
+		return this.length;
+	}
+
+	/**
+	 * Returns true if the {@link File} was changed after it had been mapped.
+	 *
+	 * @return
+	 */
+	public boolean isStale() {
+		return this.file.length() != this.length
+				|| this.file.lastModified() != this.lastModified;
+	}
+
+	/**
+	 * Unmaps the regions. Waits for running reads to finish. Further accesses
+	 * throw an {@link IllegalStateException}.
+	 * <p>
+	 * {@link ByteBuffer}s and {@link CharSequence}s returned by
+	 * {@link #slice(long, long)} and {@link #getChars(long, long, Charset)}
+	 * must not be used anymore afterwards.
+	 */
+	public void close() {
+		this.lock.writeLock().lock();
+		try {
+			MappedByteBuffer[] regions = this.regions;
+			this.regions = null;
+			if (regions != null) {
+				for (MappedByteBuffer region : regions) {
+					unmap(region);
+				}
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	public boolean isClosed() {
+		return this.regions == null;
+	}
+
+	public byte get(long position) {
+		Assert.isLegal(position >= 0 && position < this.length);
+		this.lock.readLock().lock();
+		try {
+			int region = (int) (position / this.regionStep);
+			return this.getRegions()[region].get((int) (position - region
+					* this.regionStep));
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns a read-only {@link ByteBuffer} of the given range. The content
+	 * is only copied if the range spans more than one region. The returned
+	 * {@link ByteBuffer} is only valid until {@link #close()}.
+	 *
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            exclusive
+	 * @return
+	 */
+	public ByteBuffer slice(long from, long to) {
+		this.lock.readLock().lock();
+		try {
+			return this.doSlice(from, to);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private ByteBuffer doSlice(long from, long to) {
+		Assert.isLegal(0 <= from && from <= to && to <= this.length, "Range "
+				+ from + "-" + to + " exceeds " + this.file + " of length "
+				+ this.length);
+		MappedByteBuffer[] regions = this.getRegions();
+		int region = (int) Math.min(from / this.regionStep,
+				regions.length - 1);
+		long regionStart = region * this.regionStep;
+		if (to - regionStart <= regions[region].capacity()) {
+			ByteBuffer slice = regions[region].duplicate();
+			slice.limit((int) (to - regionStart));
+			slice.position((int) (from - regionStart));
+			return slice.slice();
+		}
+
+		Assert.isLegal(to - from <= Integer.MAX_VALUE);
+		ByteBuffer copy = ByteBuffer.allocate((int) (to - from));
+		for (long position = from; position < to;) {
+			region = (int) (position / this.regionStep);
+			regionStart = region * this.regionStep;
+			ByteBuffer part = regions[region].duplicate();
+			part.limit((int) Math.min(to - regionStart, this.regionStep));
+			part.position((int) (position - regionStart));
+			position += part.remaining();
+			copy.put(part);
+		}
+		copy.flip();
+		return copy.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns a read-only copy of the given range that stays valid after
+	 * {@link #close()}.
+	 *
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            exclusive
+	 * @return
+	 */
+	public ByteBuffer copy(long from, long to) {
+		this.lock.readLock().lock();
+		try {
+			ByteBuffer slice = this.doSlice(from, to);
+			ByteBuffer copy = ByteBuffer.allocate(slice.remaining());
+			copy.put(slice);
+			copy.flip();
+			return copy.asReadOnlyBuffer();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the given range as characters. Single-byte ISO-8859-1 content is
+	 * not copied and only valid until {@link #close()}.
+	 *
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            exclusive
+	 * @param charset
+	 * @return
+	 */
+	public CharSequence getChars(long from, long to, Charset charset) {
+		this.lock.readLock().lock();
+		try {
+			ByteBuffer bytes = this.doSlice(from, to);
+			if (StandardCharsets.ISO_8859_1.equals(charset)) {
+				return new Latin1CharSequence(bytes);
+			}
+			return charset.decode(bytes);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the given range as a {@link String}.
+	 *
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            exclusive
+	 * @param charset
+	 * @return
+	 */
+	public String getString(long from, long to, Charset charset) {
+		this.lock.readLock().lock();
+		try {
+			return charset.decode(this.doSlice(from, to)).toString();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the position of the first occurrence of the given byte.
+	 *
+	 * @param b
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            exclusive
+	 * @return -1 if not found
+	 */
+	public long indexOf(byte b, long from, long to) {
+		Assert.isLegal(0 <= from && to <= this.length);
+		this.lock.readLock().lock();
+		try {
+			MappedByteBuffer[] regions = this.getRegions();
+			for (long position = from; position < to;) {
+				int region = (int) (position / this.regionStep);
+				long regionStart = region * this.regionStep;
+				MappedByteBuffer buffer = regions[region];
+				int end = (int) (Math.min(to, regionStart
+						+ this.regionStep) - regionStart);
+				for (int i = (int) (position - regionStart); i < end; i++) {
+					if (buffer.get(i) == b) {
+						return regionStart + i;
+					}
+				}
+				position = regionStart + end;
+			}
+			return -1;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the position of the last occurrence of the given byte.
+	 *
+	 * @param b
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            exclusive
+	 * @return -1 if not found
+	 */
+	public long lastIndexOf(byte b, long from, long to) {
+		Assert.isLegal(0 <= from && to <= this.length);
+		this.lock.readLock().lock();
+		try {
+			MappedByteBuffer[] regions = this.getRegions();
+			for (long position = to - 1; position >= from;) {
+				int region = (int) (position / this.regionStep);
+				long regionStart = region * this.regionStep;
+				MappedByteBuffer buffer = regions[region];
+				int start = (int) (Math.max(from, regionStart) - regionStart);
+				for (int i = (int) (position - regionStart); i >= start; i--) {
+					if (buffer.get(i) == b) {
+						return regionStart + i;
+					}
+				}
+				position = regionStart + start - 1;
+			}
+			return -1;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+}
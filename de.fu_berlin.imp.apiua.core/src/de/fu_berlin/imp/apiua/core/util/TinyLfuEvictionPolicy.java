@@ -0,0 +1,130 @@
+package de.fu_berlin.imp.apiua.core.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import de.fu_berlin.imp.apiua.core.util.Cache.EvictionPolicy;
+
+/**
+ * W-TinyLFU {@link EvictionPolicy}.
+ * <p>
+ * New keys enter a small LRU window. Keys leaving the window become candidates
+ * for the main area which is a segmented LRU consisting of a probation and a
+ * protected segment. Keys accessed while on probation are protected. If an
+ * entry has to be evicted the candidate only replaces the least recently used
+ * key on probation if it was accessed more often according to a
+ * {@link FrequencySketch}. This way a burst of keys requested only once does
+ * not flush frequently used keys.
+ *
+ * @author bkahlert
+ *
+ * @param <KEY>
+ */
+public class TinyLfuEvictionPolicy<KEY> implements EvictionPolicy<KEY> {
+
+	/**
+	 * Share of the keys in the window.
+	 */
+	static final double WINDOW = 0.01;
+
+	/**
+	 * Share of the keys of the main area in the protected segment.
+	 */
+	static final double PROTECTED = 0.8;
+
+	private final FrequencySketch sketch;
+	private final LinkedHashMap<KEY, Boolean> window = new LinkedHashMap<KEY, Boolean>(
+			16, 0.75f, true);
+	private final LinkedHashMap<KEY, Boolean> probation = new LinkedHashMap<KEY, Boolean>(
+			16, 0.75f, true);
+	private final LinkedHashMap<KEY, Boolean> protectedKeys = new LinkedHashMap<KEY, Boolean>(
+			16, 0.75f, true);
+
+	/**
+	 * The key that most recently left the window.
+	 */
+	private KEY candidate = null;
+
+	/**
+	 * @param expectedSize
+	 *            the expected number of keys
+	 */
+	public TinyLfuEvictionPolicy(int expectedSize) {
+		this.sketch = new FrequencySketch(Math.min(expectedSize, 1024));
+	}
+
+	private int size() {
+		return this.window.size() + this.probation.size()
+				+ this.protectedKeys.size();
+	}
+
+	private static <KEY> KEY getEldest(LinkedHashMap<KEY, Boolean> keys) {
+		Iterator<KEY> iterator = keys.keySet().iterator();
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	@Override
+	public void onInsert(KEY key) {
+		this.sketch.increment(key);
+		this.window.put(key, Boolean.TRUE);
+		this.sketch.ensureCapacity(this.size());
+
+		int windowSize = Math.max(1, (int) (this.size() * WINDOW));
+		while (this.window.size() > windowSize) {
+			KEY eldest = getEldest(this.window);
+			this.window.remove(eldest);
+			this.probation.put(eldest, Boolean.TRUE);
+			this.candidate = eldest;
+		}
+	}
+
+	@Override
+	public void onAccess(KEY key) {
+		this.sketch.increment(key);
+		if (this.window.containsKey(key)) {
+			this.window.get(key);
+		} else if (this.probation.remove(key) != null) {
+			this.protectedKeys.put(key, Boolean.TRUE);
+			if (key.equals(this.candidate)) {
+				this.candidate = null;
+			}
+			int protectedSize = Math.max(1, (int) ((this.probation.size() + this
+					.protectedKeys.size()) * PROTECTED));
+			while (this.protectedKeys.size() > protectedSize) {
+				KEY eldest = getEldest(this.protectedKeys);
+				this.protectedKeys.remove(eldest);
+				this.probation.put(eldest, Boolean.TRUE);
+			}
+		} else if (this.protectedKeys.containsKey(key)) {
+			this.protectedKeys.get(key);
+		}
+	}
+
+	@Override
+	public void onRemove(KEY key) {
+		if (this.window.remove(key) == null
+				&& this.probation.remove(key) == null) {
+			this.protectedKeys.remove(key);
+		}
+		if (key.equals(this.candidate)) {
+			this.candidate = null;
+		}
+	}
+
+	@Override
+	public KEY getVictim() {
+		KEY victim = getEldest(this.probation);
+		if (victim == null) {
+			victim = getEldest(this.protectedKeys);
+		}
+		if (victim == null) {
+			return getEldest(this.window);
+		}
+		if (this.candidate == null || this.candidate.equals(victim)) {
+			return victim;
+		}
+		return this.sketch.frequency(this.candidate) > this.sketch
+				.frequency(victim) ? victim : this.candidate;
+	}
+
+}
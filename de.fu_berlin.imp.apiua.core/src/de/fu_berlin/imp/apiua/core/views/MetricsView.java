@@ -0,0 +1,223 @@
+package de.fu_berlin.imp.apiua.core.views;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.layout.GridDataFactory;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ColumnLabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.ui.part.ViewPart;
+
+import de.fu_berlin.imp.apiua.core.metrics.CacheMetrics;
+import de.fu_berlin.imp.apiua.core.metrics.Histogram;
+import de.fu_berlin.imp.apiua.core.metrics.MetricsRegistry;
+
+/**
+ * Shows the {@link MetricsRegistry} so caches can be sized based on their
+ * actual usage.
+ *
+ * @author bkahlert
+ */
+public class MetricsView extends ViewPart {
+
+	public static final String ID = "de.fu_berlin.imp.apiua.core.views.MetricsView";
+
+	private static final int REFRESH_INTERVAL = 2000;
+
+	private static abstract class Column<T> {
+		private final String name;
+		private final int width;
+
+		public Column(String name, int width) {
+			this.name = name;
+			this.width = width;
+		}
+
+		public abstract String getText(T element);
+	}
+
+	private TableViewer cacheViewer;
+	private TableViewer loaderViewer;
+
+	private final Runnable refresher = new Runnable() {
+		@Override
+		public void run() {
+			if (MetricsView.this.cacheViewer == null
+					|| MetricsView.this.cacheViewer.getControl().isDisposed()) {
+				return;
+			}
+			MetricsView.this.refresh();
+			MetricsView.this.cacheViewer.getControl().getDisplay()
+					.timerExec(REFRESH_INTERVAL, this);
+		}
+	};
+
+	public MetricsView() {
+	}
+
+	@Override
+	public void createPartControl(Composite parent) {
+		parent.setLayout(new GridLayout(1, false));
+
+		this.createLabel(parent, "Caches");
+		List<Column<CacheMetrics>> cacheColumns = new ArrayList<Column<CacheMetrics>>();
+		cacheColumns.add(new Column<CacheMetrics>("Cache", 180) {
+			@Override
+			public String getText(CacheMetrics metrics) {
+				return metrics.getName();
+			}
+		});
+		cacheColumns.add(new Column<CacheMetrics>("Hit Rate", 70) {
+			@Override
+			public String getText(CacheMetrics metrics) {
+				return String.format("%.1f%%", metrics.getHitRate() * 100);
+			}
+		});
+		cacheColumns.add(new Column<CacheMetrics>("Hits", 70) {
+			@Override
+			public String getText(CacheMetrics metrics) {
+				return Long.toString(metrics.getHits());
+			}
+		});
+		cacheColumns.add(new Column<CacheMetrics>("Misses", 70) {
+			@Override
+			public String getText(CacheMetrics metrics) {
+				return Long.toString(metrics.getMisses());
+			}
+		});
+		cacheColumns.add(new Column<CacheMetrics>("Failed Loads", 80) {
+			@Override
+			public String getText(CacheMetrics metrics) {
+				return Long.toString(metrics.getLoadFailures());
+			}
+		});
+		cacheColumns.add(new Column<CacheMetrics>("Evictions", 70) {
+			@Override
+			public String getText(CacheMetrics metrics) {
+				return Long.toString(metrics.getEvictions());
+			}
+		});
+		cacheColumns.add(new Column<CacheMetrics>("Size", 60) {
+			@Override
+			public String getText(CacheMetrics metrics) {
+				return Integer.toString(metrics.getSize());
+			}
+		});
+		cacheColumns.add(new Column<CacheMetrics>("Weight", 80) {
+			@Override
+			public String getText(CacheMetrics metrics) {
+				return metrics.getWeight() / 1024 + " KB";
+			}
+		});
+		cacheColumns.add(new Column<CacheMetrics>("Load Times", 320) {
+			@Override
+			public String getText(CacheMetrics metrics) {
+				return metrics.getLoadTimes().toString();
+			}
+		});
+		this.cacheViewer = this.createTableViewer(parent, cacheColumns);
+
+		this.createLabel(parent, "Loaders");
+		List<Column<Map.Entry<String, Histogram>>> loaderColumns = new ArrayList<Column<Map.Entry<String, Histogram>>>();
+		loaderColumns.add(new Column<Map.Entry<String, Histogram>>("Loader",
+				180) {
+			@Override
+			public String getText(Map.Entry<String, Histogram> entry) {
+				return entry.getKey();
+			}
+		});
+		loaderColumns.add(new Column<Map.Entry<String, Histogram>>(
+				"Total", 80) {
+			@Override
+			public String getText(Map.Entry<String, Histogram> entry) {
+				return String.format("%.0fms", entry.getValue().getTotal());
+			}
+		});
+		loaderColumns.add(new Column<Map.Entry<String, Histogram>>(
+				"Load Times", 320) {
+			@Override
+			public String getText(Map.Entry<String, Histogram> entry) {
+				return entry.getValue().toString();
+			}
+		});
+		this.loaderViewer = this.createTableViewer(parent, loaderColumns);
+
+		this.createActions();
+		this.refresher.run();
+	}
+
+	private Label createLabel(Composite parent, String text) {
+		Label label = new Label(parent, SWT.NONE);
+		label.setLayoutData(GridDataFactory.swtDefaults().create());
+		label.setText(text);
+		return label;
+	}
+
+	private <T> TableViewer createTableViewer(Composite parent,
+			List<Column<T>> columns) {
+		TableViewer viewer = new TableViewer(parent, SWT.BORDER
+				| SWT.FULL_SELECTION);
+		viewer.getTable().setLayoutData(
+				GridDataFactory.fillDefaults().grab(true, true).create());
+		viewer.getTable().setHeaderVisible(true);
+		viewer.getTable().setLinesVisible(true);
+		viewer.setContentProvider(ArrayContentProvider.getInstance());
+		for (final Column<T> column : columns) {
+			TableViewerColumn viewerColumn = new TableViewerColumn(viewer,
+					SWT.NONE);
+			viewerColumn.getColumn().setText(column.name);
+			viewerColumn.getColumn().setWidth(column.width);
+			viewerColumn.setLabelProvider(new ColumnLabelProvider() {
+				@SuppressWarnings("unchecked")
+				@Override
+				public String getText(Object element) {
+					return column.getText((T) element);
+				}
+			});
+		}
+		return viewer;
+	}
+
+	private void createActions() {
+		IToolBarManager toolBarManager = this.getViewSite().getActionBars()
+				.getToolBarManager();
+		toolBarManager.add(new Action("Reset") {
+			@Override
+			public void run() {
+				MetricsRegistry.getDefault().reset();
+				MetricsView.this.refresh();
+			}
+		});
+		toolBarManager.add(new Action("Log") {
+			@Override
+			public void run() {
+				MetricsRegistry.getDefault().logReport();
+			}
+		});
+	}
+
+	private void refresh() {
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		this.cacheViewer.setInput(registry.getCacheMetrics());
+		this.loaderViewer.setInput(registry.getLoadTimes().entrySet());
+	}
+
+	@Override
+	public void setFocus() {
+		if (this.cacheViewer != null
+				&& !this.cacheViewer.getControl().isDisposed()) {
+			this.cacheViewer.getControl().setFocus();
+			this.refresh();
+		}
+	}
+
+}
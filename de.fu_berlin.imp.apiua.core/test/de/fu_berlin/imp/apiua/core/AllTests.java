@@ -7,7 +7,9 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
 		de.fu_berlin.imp.apiua.core.util.AllTests.class,
-		de.fu_berlin.imp.apiua.core.model.AllTests.class })
+		de.fu_berlin.imp.apiua.core.metrics.AllTests.class,
+		de.fu_berlin.imp.apiua.core.model.AllTests.class,
+		de.fu_berlin.imp.apiua.core.services.location.impl.AllTests.class })
 public class AllTests {
 
 }
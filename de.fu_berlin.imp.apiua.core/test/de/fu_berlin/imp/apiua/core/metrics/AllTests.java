@@ -0,0 +1,11 @@
+package de.fu_berlin.imp.apiua.core.metrics;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+@RunWith(Suite.class)
+@SuiteClasses({ HistogramTest.class, MetricsRegistryTest.class })
+public class AllTests {
+
+}
@@ -0,0 +1,43 @@
+package de.fu_berlin.imp.apiua.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void testEmpty() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getPercentile(0.95), 0);
+	}
+
+	@Test
+	public void testPercentiles() {
+		Histogram histogram = new Histogram();
+		for (int i = 0; i < 90; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(10.9, histogram.getMean(), 0.001);
+		assertEquals(100, histogram.getMax(), 0.001);
+		assertEquals(1090, histogram.getTotal(), 0.001);
+
+		// upper bucket bound
+		double p50 = histogram.getPercentile(0.5);
+		assertTrue(p50 >= 1 && p50 < 2.1);
+		assertEquals(100, histogram.getPercentile(0.95), 0.001);
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax(), 0);
+	}
+}
@@ -0,0 +1,102 @@
+package de.fu_berlin.imp.apiua.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.util.Cache;
+import de.fu_berlin.imp.apiua.core.util.Cache.CacheFetcher;
+import de.fu_berlin.imp.apiua.core.util.Cache.Weigher;
+
+public class MetricsRegistryTest {
+
+	private static Cache<Integer, Integer> createCache(String name,
+			int cacheSize) {
+		Cache<Integer, Integer> cache = new Cache<Integer, Integer>(
+				new CacheFetcher<Integer, Integer>() {
+					@Override
+					public Integer fetch(Integer key,
+							IProgressMonitor progressMonitor) {
+						if (key < 0) {
+							throw new IllegalArgumentException();
+						}
+						return key;
+					}
+				}, cacheSize, new Weigher<Integer, Integer>() {
+					@Override
+					public long weigh(Integer key, Integer payload) {
+						return payload;
+					}
+				}, 0);
+		cache.setMetricsName(name);
+		return cache;
+	}
+
+	@Test
+	public void testCacheMetrics() {
+		Cache<Integer, Integer> cache = createCache("testCacheMetrics", 2);
+		CacheMetrics metrics = MetricsRegistry.getDefault().getCacheMetrics(
+				"testCacheMetrics");
+		assertEquals(metrics, cache.getMetrics());
+
+		cache.getPayload(1, null);
+		cache.getPayload(1, null);
+		cache.getPayload(2, null);
+		cache.getPayload(3, null);
+		try {
+			cache.getPayload(-1, null);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+
+		assertEquals(1, metrics.getHits());
+		assertEquals(4, metrics.getMisses());
+		assertEquals(0.2, metrics.getHitRate(), 0.001);
+		assertEquals(1, metrics.getLoadFailures());
+		assertEquals(1, metrics.getEvictions());
+		assertEquals(4, metrics.getLoadTimes().getCount());
+		assertEquals(2, metrics.getSize());
+		assertEquals(cache.getWeight(), metrics.getWeight());
+
+		assertTrue(MetricsRegistry.getDefault().getReport()
+				.contains("testCacheMetrics"));
+		assertEquals(0.2, MetricsRegistry.getDefault().getHitRates()
+				.get("testCacheMetrics"), 0.001);
+
+		metrics.reset();
+		assertEquals(0, metrics.getHits());
+		assertEquals(2, metrics.getSize());
+	}
+
+	@Test
+	public void testSharedName() {
+		Cache<Integer, Integer> cache1 = createCache("testSharedName", 10);
+		Cache<Integer, Integer> cache2 = createCache("testSharedName", 10);
+		cache1.getPayload(1, null);
+		cache2.getPayload(2, null);
+		cache2.getPayload(3, null);
+
+		CacheMetrics metrics = MetricsRegistry.getDefault().getCacheMetrics(
+				"testSharedName");
+		assertEquals(3, metrics.getMisses());
+		assertEquals(3, metrics.getSize());
+		assertEquals(6, metrics.getWeight());
+
+		cache2.setMetricsName("testSharedName2");
+		assertEquals(1, metrics.getSize());
+	}
+
+	@Test
+	public void testLoadTimes() {
+		Histogram histogram = MetricsRegistry.getDefault().getLoadTimes(
+				"testLoadTimes");
+		assertEquals(histogram, MetricsRegistry.getDefault().getLoadTimes(
+				"testLoadTimes"));
+		histogram.record(1000000);
+		assertEquals(1, MetricsRegistry.getDefault().getTotalLoadTimes()
+				.get("testLoadTimes"), 0.001);
+	}
+}
@@ -5,7 +5,8 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ FileBaseDataContainerTest.class })
+@SuiteClasses({ FileBaseDataContainerTest.class, LineIndexTest.class,
+		FileDataWatcherTest.class, ScanCatalogTest.class })
 public class AllTests {
 
 }
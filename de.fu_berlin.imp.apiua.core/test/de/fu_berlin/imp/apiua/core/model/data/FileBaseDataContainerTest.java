@@ -3,6 +3,7 @@ package de.fu_berlin.imp.apiua.core.model.data;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 
 import java.io.File;
 import java.io.IOException;
@@ -13,6 +14,7 @@ import org.junit.Test;
 
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.impl.FileBaseDataContainer;
+import de.fu_berlin.imp.apiua.core.util.AtomicFileOutputStream;
 
 public class FileBaseDataContainerTest {
 
@@ -57,4 +59,127 @@ public class FileBaseDataContainerTest {
 		File file4 = baseDataContainer.getFile("test", "my_name");
 		assertFalse(file4.exists());
 	}
+
+	@Test
+	public void testStaticAndWorkingFiles() throws IOException {
+		File dir = createTempDirectory();
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			File resource = new File(new File(dir, "test"), "my_name");
+			FileUtils.write(resource, "Hello World!", "UTF-8");
+
+			IBaseDataContainer baseDataContainer = new FileBaseDataContainer(
+					dir);
+			assertNull(baseDataContainer.getStaticFile("test", "missing"));
+			File staticFile = baseDataContainer.getStaticFile("test",
+					"my_name");
+			assertEquals(resource, staticFile);
+
+			File file = baseDataContainer.getFile("test", "my_name");
+			assertEquals("Hello World!",
+					FileUtils.readFileToString(file, "UTF-8"));
+
+			// released working copies are reused as long as nothing changed
+			baseDataContainer.releaseFile(file);
+			assertEquals(file, baseDataContainer.getFile("test", "my_name"));
+			baseDataContainer.releaseFile(file);
+
+			// putting replaces instead of overwriting
+			File changed = File.createTempFile("changed", ".txt");
+			FileUtils.write(changed, "Changed!", "UTF-8");
+			baseDataContainer.putFile("test", "my_name", changed);
+			changed.delete();
+			assertFalse(file.exists());
+			assertEquals("Changed!",
+					FileUtils.readFileToString(resource, "UTF-8"));
+			File file2 = baseDataContainer.getFile("test", "my_name");
+			assertEquals("Changed!",
+					FileUtils.readFileToString(file2, "UTF-8"));
+
+			baseDataContainer.dispose();
+			assertFalse(file2.exists());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testPutFileStream() throws IOException {
+		File dir = createTempDirectory();
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			File resource = new File(new File(dir, "test"), "my_name");
+			FileUtils.write(resource, "Hello World!", "UTF-8");
+
+			IBaseDataContainer baseDataContainer = new FileBaseDataContainer(
+					dir);
+
+			// the resource is replaced not before the stream is closed
+			AtomicFileOutputStream out = baseDataContainer.putFile("test",
+					"my_name");
+			out.write("Streamed!".getBytes("UTF-8"));
+			out.flush();
+			assertEquals("Hello World!",
+					FileUtils.readFileToString(resource, "UTF-8"));
+			out.close();
+			assertEquals("Streamed!",
+					FileUtils.readFileToString(resource, "UTF-8"));
+
+			// aborted streams leave the resource untouched
+			out = baseDataContainer.putFile("test", "my_name");
+			out.write("Aborted!".getBytes("UTF-8"));
+			out.abort();
+			assertEquals("Streamed!",
+					FileUtils.readFileToString(resource, "UTF-8"));
+
+			// new resources are created
+			out = baseDataContainer.putFile("test", "sub/new_name");
+			out.write("New!".getBytes("UTF-8"));
+			out.close();
+			assertEquals("New!", FileUtils.readFileToString(
+					baseDataContainer.getStaticFile("test", "sub/new_name"),
+					"UTF-8"));
+
+			baseDataContainer.dispose();
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testMappedFiles() throws IOException {
+		File dir = createTempDirectory();
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			File resource = new File(new File(dir, "test"), "my_name");
+			FileUtils.write(resource, "Hello World!", "UTF-8");
+
+			IBaseDataContainer baseDataContainer = new FileBaseDataContainer(
+					dir);
+			IData data = baseDataContainer.getSubContainer("test")
+					.getResource("my_name");
+			assertEquals("Hello World!", data.read());
+
+			// putting closes the mapped file
+			File changed = File.createTempFile("changed", ".txt");
+			FileUtils.write(changed, "Changed!", "UTF-8");
+			baseDataContainer.putFile("test", "my_name", changed);
+			changed.delete();
+			assertEquals("Changed!", data.read());
+
+			AtomicFileOutputStream out = baseDataContainer.putFile("test",
+					"my_name");
+			out.write("Streamed!".getBytes("UTF-8"));
+			out.close();
+			assertEquals("Streamed!", data.read());
+
+			// files are checked for staleness
+			FileUtils.write(resource, "Written!", "UTF-8");
+			assertEquals("Written!", data.read());
+
+			baseDataContainer.dispose();
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
 }
@@ -0,0 +1,126 @@
+package de.fu_berlin.imp.apiua.core.model.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.data.impl.FileBaseDataContainer;
+
+public class FileDataWatcherTest {
+
+	private static final long TIMEOUT = 10;
+
+	private static class RecordingListener implements IDataChangeListener {
+		private final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+
+		@Override
+		public void dataAdded(IData data) {
+			this.events.add("added " + data.getParentDataContainer().getName()
+					+ "/" + data.getName());
+		}
+
+		@Override
+		public void dataModified(IData data) {
+			this.events.add("modified " + data.getName());
+		}
+
+		@Override
+		public void dataRemoved(IData data) {
+			this.events.add("removed " + data.getName());
+		}
+
+		public String next() throws InterruptedException {
+			return this.events.poll(TIMEOUT, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void testChangeFeed() throws IOException, InterruptedException {
+		File dir = FileBaseDataContainerTest.createTempDirectory();
+		FileBaseDataContainer baseDataContainer = null;
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			File diffDir = new File(dir, "diff");
+			diffDir.mkdir();
+
+			baseDataContainer = new FileBaseDataContainer(dir);
+			IWatchableDataContainer diffContainer = (IWatchableDataContainer) baseDataContainer
+					.getSubContainer("diff");
+			RecordingListener listener = new RecordingListener();
+			diffContainer.addDataChangeListener(listener);
+
+			File file = new File(diffDir, "a.txt");
+			FileUtils.write(file, "first\n", "UTF-8");
+			assertEquals("added diff/a.txt", listener.next());
+
+			FileUtils.write(file, "second\n", "UTF-8", true);
+			assertEquals("modified a.txt", listener.next());
+
+			File subDir = new File(diffDir, "sub");
+			subDir.mkdir();
+			FileUtils.write(new File(subDir, "b.txt"), "b", "UTF-8");
+			assertEquals("added sub/b.txt", listener.next());
+
+			// changes outside the scope or in the temp directory are ignored
+			FileUtils.write(new File(dir, "outside.txt"), "c", "UTF-8");
+			FileUtils.write(new File(dir, "tmp/ignored.txt"), "d", "UTF-8");
+			file.delete();
+			assertEquals("removed a.txt", listener.next());
+
+			diffContainer.removeDataChangeListener(listener);
+			FileUtils.write(new File(diffDir, "c.txt"), "c", "UTF-8");
+			Thread.sleep(2 * 500);
+			assertNull(listener.events.poll());
+		} finally {
+			if (baseDataContainer != null) {
+				baseDataContainer.dispose();
+			}
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testMappedFilesAreClosedOnChanges() throws IOException,
+			InterruptedException {
+		File dir = FileBaseDataContainerTest.createTempDirectory();
+		FileBaseDataContainer baseDataContainer = null;
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			File diffDir = new File(dir, "diff");
+			diffDir.mkdir();
+			File file = new File(diffDir, "a.txt");
+			FileUtils.write(file, "first", "UTF-8");
+
+			baseDataContainer = new FileBaseDataContainer(dir);
+			IWatchableDataContainer diffContainer = (IWatchableDataContainer) baseDataContainer
+					.getSubContainer("diff");
+			RecordingListener listener = new RecordingListener();
+			diffContainer.addDataChangeListener(listener);
+
+			IData data = diffContainer.getResource("a.txt");
+			assertEquals("first", data.read());
+
+			FileUtils.write(file, "second", "UTF-8");
+			assertEquals("modified a.txt", listener.next());
+			assertEquals("second", data.read());
+
+			// changes are seen before their events are delivered
+			FileUtils.write(file, "third", "UTF-8");
+			assertEquals("third", data.read());
+		} finally {
+			if (baseDataContainer != null) {
+				baseDataContainer.dispose();
+			}
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+}
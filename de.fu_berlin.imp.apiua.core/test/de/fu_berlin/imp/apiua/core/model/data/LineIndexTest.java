@@ -0,0 +1,107 @@
+package de.fu_berlin.imp.apiua.core.model.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.data.impl.FileBaseDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.impl.FileData;
+import de.fu_berlin.imp.apiua.core.model.data.impl.StringData;
+
+public class LineIndexTest {
+
+	private static final String CONTENT = "first\r\nsecond\n\rfourth\rfifth";
+
+	@Test
+	public void testBuild() {
+		LineIndex lineIndex = LineIndex.build(CONTENT);
+		assertEquals(5, lineIndex.getLineCount());
+		assertEquals(CONTENT.length(), lineIndex.getLength());
+
+		String[] lines = { "first", "second", "", "fourth", "fifth" };
+		for (int i = 0; i < lines.length; i++) {
+			assertEquals(lines[i], CONTENT.substring(
+					(int) lineIndex.getStart(i), (int) lineIndex.getEnd(i)));
+		}
+		assertEquals(7, lineIndex.getNextStart(0));
+		assertEquals(CONTENT.length(), lineIndex.getNextStart(4));
+
+		assertEquals(0, lineIndex.getLine(0));
+		assertEquals(0, lineIndex.getLine(6));
+		assertEquals(1, lineIndex.getLine(7));
+		assertEquals(4, lineIndex.getLine(CONTENT.length() - 1));
+		assertEquals(-1, lineIndex.getLine(CONTENT.length()));
+
+		assertEquals(0, LineIndex.build("").getLineCount());
+		assertEquals(1, LineIndex.build("a\n").getLineCount());
+		assertEquals(2, LineIndex.build("\n\n").getLineCount());
+	}
+
+	@Test
+	public void testMatchesIterator() throws IOException {
+		File file = File.createTempFile("lineIndex", ".txt");
+		try {
+			FileUtils.write(file, CONTENT + "\r\n", "UTF-8");
+			IData data = new FileData(file);
+			LineIndex lineIndex = data.getLineIndex();
+			Iterator<String> lines = data.iterator();
+			for (int i = 0; i < lineIndex.getLineCount(); i++) {
+				assertEquals(lines.next(), data.read(lineIndex.getStart(i),
+						lineIndex.getEnd(i)));
+			}
+			assertTrue(!lines.hasNext());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testPersistence() throws IOException {
+		File dir = FileBaseDataContainerTest.createTempDirectory();
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			File file = new File(dir, "data.txt");
+			FileUtils.write(file, CONTENT, "UTF-8");
+
+			IBaseDataContainer baseDataContainer = new FileBaseDataContainer(
+					dir);
+			IData data = new FileData(baseDataContainer, baseDataContainer,
+					file);
+			LineIndex lineIndex = data.getLineIndex();
+			assertSame(lineIndex, data.getLineIndex());
+
+			File indexFile = new File(dir, "tmp/line-indices/data.txt.idx");
+			assertTrue(indexFile.isFile());
+			LineIndex loaded = LineIndex.load(indexFile, file.length(),
+					file.lastModified());
+			assertEquals(lineIndex.getLineCount(), loaded.getLineCount());
+			assertEquals(lineIndex.getEnd(3), loaded.getEnd(3));
+			assertNull(LineIndex.load(indexFile, file.length() + 1,
+					file.lastModified()));
+
+			// changes invalidate the index
+			FileUtils.write(file, CONTENT + "\nsixth", "UTF-8");
+			file.setLastModified(file.lastModified() + 2000);
+			LineIndex changed = data.getLineIndex();
+			assertNotSame(lineIndex, changed);
+			assertEquals(6, changed.getLineCount());
+			assertEquals(6, new FileData(baseDataContainer, baseDataContainer,
+					file).getLineIndex().getLineCount());
+
+			assertEquals(1, new StringData("name", "a").getLineIndex()
+					.getLineCount());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+}
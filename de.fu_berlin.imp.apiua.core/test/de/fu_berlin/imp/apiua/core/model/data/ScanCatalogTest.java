@@ -0,0 +1,72 @@
+package de.fu_berlin.imp.apiua.core.model.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDateRange;
+import de.fu_berlin.imp.apiua.core.model.data.impl.FileBaseDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.impl.FileData;
+import de.fu_berlin.imp.apiua.core.model.data.impl.ScanCatalog;
+
+public class ScanCatalogTest {
+
+	@Test
+	public void testPersistence() throws IOException {
+		File dir = FileBaseDataContainerTest.createTempDirectory();
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			File file = new File(dir, "data.txt");
+			FileUtils.write(file, "content", "UTF-8");
+
+			FileBaseDataContainer baseDataContainer = new FileBaseDataContainer(
+					dir);
+			IData data = new FileData(baseDataContainer, baseDataContainer,
+					file);
+			ScanCatalog scanCatalog = ScanCatalog.get(data, "test");
+			assertSame(scanCatalog, baseDataContainer.getScanCatalog("test"));
+			assertNull(scanCatalog.get(data));
+
+			TimeZoneDateRange dateRange = new TimeZoneDateRange(
+					new TimeZoneDate(new Date(1000123l),
+							TimeZone.getTimeZone("Europe/Berlin")), null);
+			Map<String, String> values = new HashMap<String, String>();
+			ScanCatalog.putDateRange(values, dateRange);
+			values.put("long", StringUtils.repeat("x", 70000));
+			scanCatalog.put(data, values);
+			scanCatalog.put(new File(dir, "deleted.txt"), values);
+			scanCatalog.save();
+
+			ScanCatalog loaded = new ScanCatalog(dir, new File(dir,
+					"tmp/scan-catalogs/test.catalog"));
+			Map<String, String> loadedValues = loaded.get(data);
+			assertEquals(values, loadedValues);
+			TimeZoneDateRange loadedDateRange = ScanCatalog
+					.getDateRange(loadedValues);
+			assertEquals(1000123l, loadedDateRange.getStartDate().getTime());
+			assertEquals("Europe/Berlin", loadedDateRange.getStartDate()
+					.getTimeZone().getID());
+			assertNull(loadedDateRange.getEndDate());
+
+			// changes invalidate the entry
+			FileUtils.write(file, "changed content", "UTF-8");
+			assertNull(loaded.get(data));
+			assertNull(loaded.get(new File(dir, "deleted.txt")));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+}
@@ -0,0 +1,11 @@
+package de.fu_berlin.imp.apiua.core.services.location.impl;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+@RunWith(Suite.class)
+@SuiteClasses({ LocatorServiceTest.class })
+public class AllTests {
+
+}
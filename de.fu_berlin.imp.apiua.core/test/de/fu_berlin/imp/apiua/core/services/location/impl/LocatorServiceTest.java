@@ -0,0 +1,177 @@
+package de.fu_berlin.imp.apiua.core.services.location.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.ILocatable;
+import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.services.location.AdaptingLocatorProvider;
+import de.fu_berlin.imp.apiua.core.services.location.ILocatorProvider;
+import de.fu_berlin.imp.apiua.core.services.location.URIUtils;
+
+public class LocatorServiceTest {
+
+	private static class Locatable implements ILocatable {
+		private static final long serialVersionUID = 1L;
+		private final URI uri;
+
+		public Locatable(URI uri) {
+			this.uri = uri;
+		}
+
+		@Override
+		public URI getUri() {
+			return this.uri;
+		}
+	}
+
+	/**
+	 * Resolves all test {@link URI}s but the ones ending with "unknown" and
+	 * records the batches passed to {@link #getObjects(List, IProgressMonitor)}.
+	 */
+	private static class TestLocatorProvider extends AdaptingLocatorProvider {
+		private final List<List<URI>> batches = Collections
+				.synchronizedList(new ArrayList<List<URI>>());
+		private final List<IProgressMonitor> monitors = Collections
+				.synchronizedList(new ArrayList<IProgressMonitor>());
+
+		public TestLocatorProvider() {
+			super(Locatable.class);
+		}
+
+		@Override
+		public boolean isResolvabilityImpossible(URI uri) {
+			return !"test".equals(URIUtils.getResource(uri));
+		}
+
+		@Override
+		public Class<? extends ILocatable> getType(URI uri) {
+			return Locatable.class;
+		}
+
+		@Override
+		public boolean getObjectIsShortRunning(URI uri) {
+			return false;
+		}
+
+		@Override
+		public ILocatable getObject(URI uri, IProgressMonitor monitor) {
+			this.monitors.add(monitor);
+			return uri.toString().endsWith("unknown") ? null : new Locatable(
+					uri);
+		}
+
+		@Override
+		public List<ILocatable> getObjects(List<URI> uris,
+				IProgressMonitor monitor) {
+			this.batches.add(new ArrayList<URI>(uris));
+			return super.getObjects(uris, monitor);
+		}
+
+		@Override
+		public boolean showInWorkspace(URI[] uris, boolean open,
+				IProgressMonitor monitor) {
+			return false;
+		}
+	}
+
+	private final URI a1 = new URI("apiua://test/a/1");
+	private final URI a2 = new URI("apiua://test/a/2");
+	private final URI b1 = new URI("apiua://test/b/1");
+	private final URI unknown = new URI("apiua://test/b/unknown");
+
+	@Test
+	public void testResolveAllGroups() throws Exception {
+		TestLocatorProvider provider = new TestLocatorProvider();
+		LocatorService locatorService = new LocatorService(
+				new ILocatorProvider[] { provider });
+
+		Map<URI, ILocatable> resolved = locatorService.resolveAll(
+				Arrays.asList(this.a1, this.b1, this.a2, this.unknown, this.a1),
+				new NullProgressMonitor()).get();
+		assertEquals(Arrays.asList(this.a1, this.b1, this.a2, this.unknown),
+				new ArrayList<URI>(resolved.keySet()));
+		assertEquals(this.a1, resolved.get(this.a1).getUri());
+		assertEquals(this.a2, resolved.get(this.a2).getUri());
+		assertEquals(this.b1, resolved.get(this.b1).getUri());
+		assertNull(resolved.get(this.unknown));
+
+		assertEquals(2, provider.batches.size());
+		assertTrue(provider.batches.contains(Arrays.asList(this.a1, this.a2)));
+		assertTrue(provider.batches.contains(Arrays.asList(this.b1,
+				this.unknown)));
+	}
+
+	@Test
+	public void testResolveAllCacheHits() throws Exception {
+		TestLocatorProvider provider = new TestLocatorProvider();
+		LocatorService locatorService = new LocatorService(
+				new ILocatorProvider[] { provider });
+
+		locatorService.resolveAll(Arrays.asList(this.a1, this.a2),
+				new NullProgressMonitor()).get();
+		Map<URI, ILocatable> resolved = locatorService.resolveAll(
+				Arrays.asList(this.a1, this.b1), new NullProgressMonitor())
+				.get();
+		assertEquals(this.a1, resolved.get(this.a1).getUri());
+		assertEquals(this.b1, resolved.get(this.b1).getUri());
+		assertEquals(
+				Arrays.asList(Arrays.asList(this.a1, this.a2),
+						Arrays.asList(this.b1)), provider.batches);
+
+		locatorService.uncache(this.a1);
+		locatorService.resolveAll(Arrays.asList(this.a1, this.a2),
+				new NullProgressMonitor()).get();
+		assertEquals(Arrays.asList(this.a1), provider.batches.get(2));
+	}
+
+	@Test
+	public void testGetObjects() {
+		TestLocatorProvider provider = new TestLocatorProvider();
+		List<ILocatable> locatables = provider.getObjects(
+				Arrays.asList(this.a1, this.unknown, this.b1),
+				new NullProgressMonitor());
+		assertEquals(3, locatables.size());
+		assertEquals(this.a1, locatables.get(0).getUri());
+		assertNull(locatables.get(1));
+		assertEquals(this.b1, locatables.get(2).getUri());
+		assertEquals(3, provider.monitors.size());
+		for (IProgressMonitor monitor : provider.monitors) {
+			assertNotNull(monitor);
+		}
+	}
+
+	@Test
+	public void testResolveAllCanceled() throws Exception {
+		TestLocatorProvider provider = new TestLocatorProvider();
+		LocatorService locatorService = new LocatorService(
+				new ILocatorProvider[] { provider });
+
+		IProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		try {
+			locatorService.resolveAll(Arrays.asList(this.a1, this.b1),
+					monitor).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof OperationCanceledException);
+		}
+		assertTrue(provider.batches.isEmpty());
+	}
+
+}
@@ -5,7 +5,8 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ FileUtilsTest.class, DateUtilsTest.class, CacheTest.class })
+@SuiteClasses({ FileUtilsTest.class, DateUtilsTest.class, CacheTest.class,
+		MappedFileTest.class, DependencySchedulerTest.class })
 public class AllTests {
 
 }
@@ -1,12 +1,21 @@
 package de.fu_berlin.imp.apiua.core.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
@@ -23,6 +32,7 @@ import de.fu_berlin.imp.apiua.core.model.URI;
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.core.util.Cache;
 import de.fu_berlin.imp.apiua.core.util.Cache.CacheFetcher;
+import de.fu_berlin.imp.apiua.core.util.Cache.Weigher;
 
 public class CacheTest {
 	@SuppressWarnings("serial")
@@ -168,14 +178,174 @@ public class CacheTest {
 				}, cacheSize);
 		for (int i = 0; i < cacheSize * 10; i++) {
 			assertEquals(i + 1, (int) cache.getPayload(i, null));
+			assertEquals(Math.min(i + 1, cacheSize), cache.getCachedKeys()
+					.size());
+		}
+		passed.tell("finished");
+	}
+
+	private static class CountingFetcher implements
+			CacheFetcher<Integer, Integer> {
+		private final AtomicInteger numFetches = new AtomicInteger();
+
+		@Override
+		public Integer fetch(Integer key, IProgressMonitor progressMonitor) {
+			this.numFetches.incrementAndGet();
+			return key;
+		}
+	}
+
+	@Test
+	public void testWeightBound() {
+		Cache<Integer, Integer> cache = new Cache<Integer, Integer>(
+				new CountingFetcher(), 100, new Weigher<Integer, Integer>() {
+					@Override
+					public long weigh(Integer key, Integer payload) {
+						return payload;
+					}
+				}, 10);
+
+		cache.getPayload(4, null);
+		cache.getPayload(5, null);
+		assertEquals(9, cache.getWeight());
+		assertEquals(2, cache.getCachedKeys().size());
+
+		cache.getPayload(3, null);
+		assertTrue(cache.getWeight() <= 10);
+		assertEquals(2, cache.getCachedKeys().size());
+
+		cache.setMaxWeight(0);
+		cache.getPayload(3, null);
+		cache.getPayload(4, null);
+		cache.getPayload(5, null);
+		assertEquals(3, cache.getCachedKeys().size());
+		assertEquals(12, cache.getWeight());
 
-			int numCacheEntries = i + 1;
-			while (numCacheEntries > cacheSize) {
-				numCacheEntries -= cacheSize * Cache.SHRINK_BY;
+		cache.setMaxWeight(5);
+		assertTrue(cache.getWeight() <= 5);
+
+		cache.getPayload(20, null);
+		assertFalse("too heavy to be cached", cache.isCached(20));
+	}
+
+	@Test
+	public void testLruEvictionPolicy() {
+		Cache<Integer, Integer> cache = new Cache<Integer, Integer>(
+				new CountingFetcher(), 2, null, 0,
+				new LruEvictionPolicy<Integer>());
+		cache.getPayload(1, null);
+		cache.getPayload(2, null);
+		cache.getPayload(1, null);
+		cache.getPayload(3, null);
+		assertEquals(new HashSet<Integer>(Arrays.asList(1, 3)),
+				cache.getCachedKeys());
+	}
+
+	@Test
+	public void testFrequentKeysSurviveScan() {
+		int cacheSize = 100;
+		Cache<Integer, Integer> cache = new Cache<Integer, Integer>(
+				new CountingFetcher(), cacheSize);
+		for (int run = 0; run < 5; run++) {
+			for (int i = 0; i < cacheSize / 2; i++) {
+				cache.getPayload(i, null);
 			}
-			assertEquals(numCacheEntries, cache.getCachedKeys().size());
 		}
-		passed.tell("finished");
+		for (int i = 1000; i < 1000 + cacheSize * 2; i++) {
+			cache.getPayload(i, null);
+		}
+		for (int i = 0; i < cacheSize / 2; i++) {
+			assertTrue(i + " was evicted by a scan", cache.isCached(i));
+		}
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger numFetches = new AtomicInteger();
+		final Cache<String, String> cache = new Cache<String, String>(
+				new CacheFetcher<String, String>() {
+					@Override
+					public String fetch(String key,
+							IProgressMonitor progressMonitor) {
+						numFetches.incrementAndGet();
+						started.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							throw new RuntimeException(e);
+						}
+						return key + key;
+					}
+				}, 10);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+		List<Future<String>> results = new ArrayList<Future<String>>();
+		for (int i = 0; i < 8; i++) {
+			results.add(executorService.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return cache.getPayload("a", null);
+				}
+			}));
+		}
+		started.await();
+		Thread.sleep(100);
+		release.countDown();
+		for (Future<String> result : results) {
+			assertEquals("aa", result.get());
+		}
+		executorService.shutdown();
+		assertEquals(1, numFetches.get());
+	}
+
+	@Test
+	public void testFailedLoadIsNotCached() {
+		final AtomicInteger numFetches = new AtomicInteger();
+		Cache<String, String> cache = new Cache<String, String>(
+				new CacheFetcher<String, String>() {
+					@Override
+					public String fetch(String key,
+							IProgressMonitor progressMonitor) {
+						if (numFetches.incrementAndGet() == 1) {
+							throw new IllegalStateException("failed");
+						}
+						return key;
+					}
+				}, 10);
+
+		try {
+			cache.getPayload("a", null);
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		assertFalse(cache.isCached("a"));
+		assertEquals("a", cache.getPayload("a", null));
+		assertTrue(cache.isCached("a"));
+		assertEquals(2, numFetches.get());
+	}
+
+	@Test
+	public void testCancelledLoadIsNotCached() {
+		Cache<String, String> cache = new Cache<String, String>(
+				new CacheFetcher<String, String>() {
+					@Override
+					public String fetch(String key,
+							IProgressMonitor progressMonitor) {
+						return key;
+					}
+				}, 10);
+
+		IProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		cache.getPayload("a", monitor);
+		assertFalse(cache.isCached("a"));
+		cache.getPayload("a", new NullProgressMonitor());
+		assertTrue(cache.isCached("a"));
+
+		cache.removeKey("a");
+		assertFalse(cache.isCached("a"));
 	}
 
 	private static class CacheRunner<KEY, PAYLOAD> {
@@ -298,4 +468,20 @@ public class CacheTest {
 						* maxParallelSlowDown > sum2);
 		passed.tell("finished");
 	}
+
+	@Test
+	public void testPutPayload() {
+		CountingFetcher fetcher = new CountingFetcher();
+		Cache<Integer, Integer> cache = new Cache<Integer, Integer>(fetcher,
+				2);
+		assertEquals(null, cache.getCachedPayload(1));
+		assertTrue(cache.putPayload(1, 10));
+		assertFalse(cache.putPayload(1, 20));
+		assertEquals(Integer.valueOf(10), cache.getCachedPayload(1));
+		assertEquals(Integer.valueOf(10),
+				cache.getPayload(1, new NullProgressMonitor()));
+		assertEquals(0, fetcher.numFetches.get());
+		assertEquals(1, cache.size());
+	}
+
 }
@@ -0,0 +1,166 @@
+package de.fu_berlin.imp.apiua.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.util.DependencyScheduler.ITask;
+import de.fu_berlin.imp.apiua.core.util.DependencyScheduler.Result;
+import de.fu_berlin.imp.apiua.core.util.DependencyScheduler.State;
+
+public class DependencySchedulerTest {
+
+	private static Map<String, List<String>> getDependencies() {
+		Map<String, List<String>> dependencies = new LinkedHashMap<String, List<String>>();
+		dependencies.put("base", Collections.<String> emptyList());
+		dependencies.put("diff", Arrays.asList("base"));
+		dependencies.put("survey", Arrays.asList("base"));
+		dependencies.put("stats", Arrays.asList("survey", "unknown"));
+		return dependencies;
+	}
+
+	@Test
+	public void testIndependentNodesDoNotWait() {
+		final CountDownLatch statsFinished = new CountDownLatch(1);
+		Result<String> result = new DependencyScheduler<String>(
+				getDependencies(), 2).run(new ITask<String>() {
+			@Override
+			public void run(String node, IProgressMonitor monitor)
+					throws Exception {
+				if (node.equals("diff")) {
+					// only finishes if stats can run before diff finished
+					assertTrue(statsFinished.await(5, TimeUnit.SECONDS));
+				} else if (node.equals("stats")) {
+					statsFinished.countDown();
+				}
+			}
+		}, new NullProgressMonitor());
+
+		assertTrue(result.isSuccessful());
+		for (String node : getDependencies().keySet()) {
+			assertEquals(State.SUCCEEDED, result.getState(node));
+			assertNotNull(result.getRunTime(node));
+			assertNotNull(result.getWaitTime(node));
+		}
+		assertTrue(result.getRunTime("diff") <= result.getTotalTime());
+	}
+
+	@Test
+	public void testFailure() {
+		final RuntimeException error = new RuntimeException();
+		Result<String> result = new DependencyScheduler<String>(
+				getDependencies(), 1).run(new ITask<String>() {
+			@Override
+			public void run(String node, IProgressMonitor monitor)
+					throws Exception {
+				if (node.equals("survey")) {
+					throw error;
+				}
+			}
+		}, new NullProgressMonitor());
+
+		assertFalse(result.isSuccessful());
+		assertEquals(State.SUCCEEDED, result.getState("base"));
+		assertEquals(State.SUCCEEDED, result.getState("diff"));
+		assertEquals(State.FAILED, result.getState("survey"));
+		assertEquals(State.SKIPPED, result.getState("stats"));
+		assertNull(result.getRunTime("stats"));
+		assertEquals(Collections.singletonMap("survey", error),
+				result.getErrors());
+	}
+
+	@Test
+	public void testCancellation() {
+		final IProgressMonitor progressMonitor = new NullProgressMonitor();
+		Result<String> result = new DependencyScheduler<String>(
+				getDependencies(), 1).run(new ITask<String>() {
+			@Override
+			public void run(String node, IProgressMonitor monitor)
+					throws Exception {
+				if (node.equals("diff")) {
+					progressMonitor.setCanceled(true);
+					while (!monitor.isCanceled()) {
+						Thread.sleep(10);
+					}
+				}
+			}
+		}, progressMonitor);
+
+		assertFalse(result.isSuccessful());
+		assertTrue(result.getErrors().isEmpty());
+		assertEquals(State.SUCCEEDED, result.getState("base"));
+		assertEquals(State.CANCELLED, result.getState("diff"));
+		assertEquals(State.CANCELLED, result.getState("survey"));
+		assertEquals(State.CANCELLED, result.getState("stats"));
+	}
+
+	@Test
+	public void testProgress() {
+		final List<String> subTasks = Collections
+				.synchronizedList(new ArrayList<String>());
+		final double[] progress = new double[2];
+		IProgressMonitor progressMonitor = new NullProgressMonitor() {
+			@Override
+			public void beginTask(String name, int totalWork) {
+				progress[0] = totalWork;
+			}
+
+			@Override
+			public void internalWorked(double work) {
+				progress[1] += work;
+			}
+
+			@Override
+			public void worked(int work) {
+				this.internalWorked(work);
+			}
+
+			@Override
+			public void subTask(String name) {
+				subTasks.add(name);
+			}
+		};
+		Result<String> result = new DependencyScheduler<String>(
+				getDependencies(), 2).run(new ITask<String>() {
+			@Override
+			public void run(String node, IProgressMonitor monitor)
+					throws Exception {
+				monitor.setTaskName("Loading " + node);
+				SubMonitor subMonitor = SubMonitor.convert(monitor, 2);
+				subMonitor.worked(1);
+				Thread.sleep(300);
+				subMonitor.worked(1);
+			}
+		}, progressMonitor);
+
+		assertTrue(result.isSuccessful());
+		assertTrue(subTasks.contains("Loading base"));
+		assertTrue(subTasks.contains("Loading diff, Loading survey")
+				|| subTasks.contains("Loading survey, Loading diff"));
+		assertEquals(progress[0], progress[1], 0.001);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCycle() {
+		Map<String, List<String>> dependencies = getDependencies();
+		dependencies.put("base", Arrays.asList("stats"));
+		new DependencyScheduler<String>(dependencies, 1);
+	}
+
+}
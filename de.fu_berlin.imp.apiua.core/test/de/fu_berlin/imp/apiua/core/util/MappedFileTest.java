@@ -0,0 +1,179 @@
+package de.fu_berlin.imp.apiua.core.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.data.impl.FileData;
+
+public class MappedFileTest {
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = File.createTempFile("mappedFile", ".txt");
+	}
+
+	@After
+	public void tearDown() {
+		this.file.delete();
+	}
+
+	private void write(byte[] content) throws IOException {
+		FileOutputStream out = new FileOutputStream(this.file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String toString(ByteBuffer buffer) {
+		return StandardCharsets.ISO_8859_1.decode(buffer.duplicate())
+				.toString();
+	}
+
+	@Test
+	public void testSlice() throws IOException {
+		this.write("0123456789abcdefghij".getBytes(StandardCharsets.ISO_8859_1));
+		MappedFile mappedFile = new MappedFile(this.file, 8, 4);
+		Assert.assertEquals(20, mappedFile.length());
+		Assert.assertEquals('9', (char) mappedFile.get(9));
+
+		// within one region
+		Assert.assertEquals("234", toString(mappedFile.slice(2, 5)));
+		// within the overlap
+		Assert.assertEquals("6789ab", toString(mappedFile.slice(6, 12)));
+		// spanning several regions
+		Assert.assertEquals("3456789abcdefghi",
+				toString(mappedFile.slice(3, 19)));
+		Assert.assertEquals("0123456789abcdefghij",
+				toString(mappedFile.slice(0, 20)));
+		Assert.assertEquals("", toString(mappedFile.slice(20, 20)));
+		Assert.assertTrue(mappedFile.slice(0, 4).isReadOnly());
+
+		Assert.assertEquals(10, mappedFile.indexOf((byte) 'a', 0, 20));
+		Assert.assertEquals(-1, mappedFile.indexOf((byte) 'a', 11, 20));
+		Assert.assertEquals(19, mappedFile.lastIndexOf((byte) 'j', 0, 20));
+		Assert.assertEquals(-1, mappedFile.lastIndexOf((byte) 'j', 0, 19));
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		this.write(new byte[0]);
+		MappedFile mappedFile = new MappedFile(this.file);
+		Assert.assertEquals(0, mappedFile.length());
+		Assert.assertEquals("", toString(mappedFile.slice(0, 0)));
+	}
+
+	@Test
+	public void testStale() throws IOException {
+		this.write("abc".getBytes(StandardCharsets.ISO_8859_1));
+		MappedFile mappedFile = new MappedFile(this.file);
+		Assert.assertFalse(mappedFile.isStale());
+		this.write("abcdef".getBytes(StandardCharsets.ISO_8859_1));
+		Assert.assertTrue(mappedFile.isStale());
+	}
+
+	@Test
+	public void testClose() throws IOException {
+		this.write("abc".getBytes(StandardCharsets.ISO_8859_1));
+		MappedFile mappedFile = new MappedFile(this.file);
+		ByteBuffer copy = mappedFile.copy(0, 3);
+		mappedFile.close();
+		Assert.assertTrue(mappedFile.isClosed());
+		// copies stay valid
+		Assert.assertEquals("abc", toString(copy));
+		try {
+			mappedFile.get(0);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+		}
+		try {
+			mappedFile.indexOf((byte) 'a', 0, 3);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+		}
+
+		// unmapped files can be replaced
+		File replacement = File.createTempFile("replacement", ".txt");
+		Files.move(replacement.toPath(), this.file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		Assert.assertEquals(0, this.file.length());
+	}
+
+	@Test
+	public void testIndexOf() throws IOException {
+		this.write("a-b-c-d-e-f-g-h-i-j-".getBytes(StandardCharsets.ISO_8859_1));
+		MappedFile mappedFile = new MappedFile(this.file, 8, 4);
+		Assert.assertEquals(8, mappedFile.indexOf((byte) 'e', 0, 20));
+		Assert.assertEquals(8, mappedFile.indexOf((byte) 'e', 8, 20));
+		Assert.assertEquals(-1, mappedFile.indexOf((byte) 'e', 9, 20));
+		Assert.assertEquals(16, mappedFile.indexOf((byte) 'i', 3, 20));
+		Assert.assertEquals(-1, mappedFile.indexOf((byte) 'i', 3, 16));
+		Assert.assertEquals(-1, mappedFile.indexOf((byte) 'a', 5, 5));
+
+		Assert.assertEquals(19, mappedFile.lastIndexOf((byte) '-', 0, 20));
+		Assert.assertEquals(7, mappedFile.lastIndexOf((byte) '-', 0, 8));
+		Assert.assertEquals(0, mappedFile.lastIndexOf((byte) 'a', 0, 20));
+		Assert.assertEquals(-1, mappedFile.lastIndexOf((byte) 'a', 1, 20));
+		Assert.assertEquals(-1, mappedFile.lastIndexOf((byte) 'i', 0, 16));
+		Assert.assertEquals(16, mappedFile.lastIndexOf((byte) 'i', 16, 17));
+	}
+
+	@Test
+	public void testChars() throws IOException {
+		this.write("a\u00e4b\u00f6c".getBytes(StandardCharsets.ISO_8859_1));
+		MappedFile mappedFile = new MappedFile(this.file);
+		CharSequence chars = mappedFile.getChars(0, 5,
+				StandardCharsets.ISO_8859_1);
+		Assert.assertEquals(5, chars.length());
+		Assert.assertEquals('\u00e4', chars.charAt(1));
+		Assert.assertEquals("b\u00f6", chars.subSequence(2, 4).toString());
+		Assert.assertEquals("a\u00e4b\u00f6c", chars.toString());
+
+		this.write("a\u00e4b".getBytes(StandardCharsets.UTF_8));
+		mappedFile = new MappedFile(this.file);
+		Assert.assertEquals("a\u00e4b",
+				mappedFile.getChars(0, 4, StandardCharsets.UTF_8).toString());
+		Assert.assertEquals("\u00e4",
+				mappedFile.getString(1, 3, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testFileData() throws IOException {
+		this.write("first\r\nsecond\nthird\u00e4\n"
+				.getBytes(StandardCharsets.UTF_8));
+		FileData data = new FileData(this.file, StandardCharsets.UTF_8);
+		Assert.assertEquals("first", data.readFirstLine());
+		Assert.assertEquals("third\u00e4", data.readLastLines(1));
+		Assert.assertEquals("third\u00e4\n", data.readLastLines(2));
+		Assert.assertEquals("second\nthird\u00e4\n", data.readLastLines(3));
+		Assert.assertEquals("second", data.read(7, 13));
+		Assert.assertEquals("second", data.readChars(7, 13).toString());
+		Assert.assertEquals(6, data.readBytes(7, 13).remaining());
+		Assert.assertEquals(2, FileUtils.getNewlineLengthAt(data, 5));
+		Assert.assertEquals(1, FileUtils.getNewlineLengthAt(data, 13));
+		Assert.assertEquals(1, FileUtils.getNewlineLengthAt(data, 21));
+
+		// reflects changes
+		this.write("changed".getBytes(StandardCharsets.UTF_8));
+		Assert.assertEquals("changed", data.read());
+		Assert.assertEquals("changed", data.readFirstLine());
+
+		data.close();
+		Assert.assertEquals("changed", data.read());
+	}
+
+}
@@ -0,0 +1,257 @@
+package de.fu_berlin.imp.apiua.diff.jobs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+
+import de.fu_berlin.imp.apiua.core.model.identifier.ID;
+import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
+import de.fu_berlin.imp.apiua.diff.model.DiffContainer;
+import de.fu_berlin.imp.apiua.diff.model.IDiff;
+import de.fu_berlin.imp.apiua.diff.model.IDiffRecord;
+import de.fu_berlin.imp.apiua.diff.model.IDiffs;
+import de.fu_berlin.imp.apiua.diff.util.ISourceStore;
+
+/**
+ * Materializes the sources of all {@link IDiffRecord}s of a
+ * {@link DiffContainer} in the background.
+ * <p>
+ * The {@link IDiffRecord}s describing the same file are patched in revision
+ * order so that each patch starts from the source stored by its predecessor.
+ * These chains are processed in parallel by at most {@link #NUM_THREADS}
+ * threads, regardless of the {@link IIdentifier} they belong to.
+ * <p>
+ * Materialized sources are kept in the {@link ISourceStore} and skipped.
+ * Therefore a canceled job resumes where it stopped when it is scheduled
+ * again.
+ *
+ * @author bkahlert
+ */
+public class SourceWarmUpJob extends Job {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(SourceWarmUpJob.class);
+
+	public static final int NUM_THREADS = Math.max(2, Runtime.getRuntime()
+			.availableProcessors());
+
+	/**
+	 * Maximum number of chains that wait for a free thread. Limits the number
+	 * of loaded {@link IDiffs} that are not yet processed.
+	 */
+	public static final int MAX_PENDING_CHAINS = NUM_THREADS * 4;
+
+	private static final Comparator<IDiffRecord> REVISION_COMPARATOR = new Comparator<IDiffRecord>() {
+		@Override
+		public int compare(IDiffRecord r1, IDiffRecord r2) {
+			int rev1 = r1.getDiffFile().getCalculatedRevision();
+			int rev2 = r2.getDiffFile().getCalculatedRevision();
+			return rev1 < rev2 ? -1 : (rev1 == rev2 ? 0 : 1);
+		}
+	};
+
+	private final DiffContainer diffContainer;
+	private final AtomicBoolean canceled = new AtomicBoolean(false);
+
+	public SourceWarmUpJob(DiffContainer diffContainer) {
+		super("Materializing diff sources");
+		this.diffContainer = diffContainer;
+		this.setPriority(Job.DECORATE);
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		try {
+			return this.materializeSources(monitor);
+		} finally {
+			monitor.done();
+		}
+	}
+
+	private IStatus materializeSources(final IProgressMonitor monitor) {
+		this.canceled.set(false);
+		List<ID> ids = new ArrayList<ID>(this.diffContainer.getIDs());
+		// per identifier: loading and materializing
+		SubMonitor subMonitor = SubMonitor.convert(monitor, ids.size() * 2);
+
+		final AtomicInteger finished = new AtomicInteger(0);
+		final Semaphore pending = new Semaphore(MAX_PENDING_CHAINS);
+		int reported = 0;
+
+		ExecutorService executorService = Executors.newFixedThreadPool(
+				NUM_THREADS, new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								SourceWarmUpJob.class.getSimpleName() + "-"
+										+ this.count.incrementAndGet());
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+		try {
+			for (ID id : ids) {
+				if (this.isCanceled(subMonitor)) {
+					return Status.CANCEL_STATUS;
+				}
+				subMonitor.subTask("Loading diffs of " + id);
+				// bypasses the DiffCache so that the viewed diffs stay cached
+				IDiffs diffs = this.diffContainer.createDiffFiles(id,
+						subMonitor.newChild(1));
+				Collection<List<IDiffRecord>> chains = getChains(diffs);
+				if (chains.isEmpty()) {
+					finished.incrementAndGet();
+					continue;
+				}
+
+				subMonitor.subTask("Materializing sources of " + id);
+				final AtomicInteger remaining = new AtomicInteger(
+						chains.size());
+				for (final List<IDiffRecord> chain : chains) {
+					while (!pending.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+						reported = report(subMonitor, finished, reported);
+						if (this.isCanceled(subMonitor)) {
+							return Status.CANCEL_STATUS;
+						}
+					}
+					executorService.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								SourceWarmUpJob.this.materialize(chain,
+										monitor);
+							} finally {
+								pending.release();
+								if (remaining.decrementAndGet() == 0) {
+									finished.incrementAndGet();
+								}
+							}
+						}
+					});
+				}
+				reported = report(subMonitor, finished, reported);
+			}
+
+			executorService.shutdown();
+			while (!executorService.awaitTermination(100,
+					TimeUnit.MILLISECONDS)) {
+				reported = report(subMonitor, finished, reported);
+				if (this.isCanceled(subMonitor)) {
+					return Status.CANCEL_STATUS;
+				}
+			}
+			report(subMonitor, finished, reported);
+			if (this.isCanceled(subMonitor)) {
+				return Status.CANCEL_STATUS;
+			}
+		} catch (InterruptedException e) {
+			LOGGER.error("Interrupted while materializing sources", e);
+			return Status.CANCEL_STATUS;
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		return Status.OK_STATUS;
+	}
+
+	@Override
+	protected void canceling() {
+		this.canceled.set(true);
+		super.canceling();
+	}
+
+	private boolean isCanceled(IProgressMonitor monitor) {
+		if (monitor.isCanceled()) {
+			this.canceled.set(true);
+		}
+		return this.canceled.get();
+	}
+
+	/**
+	 * Reports the {@link IIdentifier}s finished since the last call.
+	 *
+	 * @return the number of reported {@link IIdentifier}s
+	 */
+	private static int report(SubMonitor monitor, AtomicInteger finished,
+			int reported) {
+		int current = finished.get();
+		if (current > reported) {
+			monitor.worked(current - reported);
+		}
+		return current;
+	}
+
+	/**
+	 * Groups the {@link IDiffRecord}s by development environment and file and
+	 * sorts each group by revision.
+	 *
+	 * @param diffs
+	 * @return
+	 */
+	static Collection<List<IDiffRecord>> getChains(IDiffs diffs) {
+		Map<String, List<IDiffRecord>> chains = new LinkedHashMap<String, List<IDiffRecord>>();
+		if (diffs == null) {
+			return chains.values();
+		}
+		for (IDiff diff : diffs) {
+			if (diff.getDiffFileRecords() == null) {
+				continue;
+			}
+			for (IDiffRecord diffRecord : diff.getDiffFileRecords()) {
+				String key = diff.getLocationHash() + "/"
+						+ diffRecord.getFilename();
+				List<IDiffRecord> chain = chains.get(key);
+				if (chain == null) {
+					chain = new ArrayList<IDiffRecord>();
+					chains.put(key, chain);
+				}
+				chain.add(diffRecord);
+			}
+		}
+		for (List<IDiffRecord> chain : chains.values()) {
+			Collections.sort(chain, REVISION_COMPARATOR);
+		}
+		return chains.values();
+	}
+
+	private void materialize(List<IDiffRecord> chain, IProgressMonitor monitor) {
+		for (IDiffRecord diffRecord : chain) {
+			if (this.isCanceled(monitor)) {
+				return;
+			}
+			try {
+				if (!diffRecord.sourceExists()
+						&& diffRecord.getSource() == null) {
+					LOGGER.warn("Failed to patch " + diffRecord + " of "
+							+ diffRecord.getDiffFile().getIdentifier());
+				}
+			} catch (RuntimeException e) {
+				LOGGER.error("Could not materialize source of " + diffRecord,
+						e);
+				return;
+			}
+		}
+	}
+
+}
@@ -1,9 +1,12 @@
 package de.fu_berlin.imp.apiua.diff.model;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,17 +24,20 @@ import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDateRange;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
+import de.fu_berlin.imp.apiua.core.model.data.IDataChangeListener;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.IWatchableDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.impl.AggregatedBaseDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.impl.ScanCatalog;
 import de.fu_berlin.imp.apiua.core.model.identifier.ID;
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
+import de.fu_berlin.imp.apiua.diff.gt.DiffLocatorProvider;
 import de.fu_berlin.imp.apiua.diff.model.impl.Diff;
 import de.fu_berlin.imp.apiua.diff.model.impl.DiffRecords;
 import de.fu_berlin.imp.apiua.diff.model.impl.Diffs;
 import de.fu_berlin.imp.apiua.diff.util.CachingDiffFileComparator;
 import de.fu_berlin.imp.apiua.diff.util.DiffCache;
 import de.fu_berlin.imp.apiua.diff.util.DiffDataUtils;
-import de.fu_berlin.imp.apiua.diff.util.ISourceStore;
 import de.fu_berlin.imp.apiua.diff.util.ITrunk;
 import de.fu_berlin.imp.apiua.diff.util.SourceCache;
 import de.fu_berlin.imp.apiua.diff.util.Trunk;
@@ -54,6 +60,20 @@ public class DiffContainer extends AggregatedBaseDataContainer {
 
 	public static final int DIFF_CACHE_SIZE = 5;
 
+	/**
+	 * Maximum estimated number of bytes held by the {@link DiffCache}.
+	 */
+	public static final long DIFF_CACHE_WEIGHT = 256l * 1024 * 1024;
+
+	/**
+	 * Name of the {@link ScanCatalog} the order and date range of the
+	 * {@link Diff} files of each {@link IIdentifier} directory are stored in.
+	 * Both only depend on the file names, so an entry stays valid as long as
+	 * its directory's modification time does not change.
+	 */
+	private static final String SCAN_CATALOG = "diff";
+	private static final String ORDER = "order";
+
 	/**
 	 * Scans through the given directory, looks for sub directories with valid
 	 * names (see {@link IIdentifier#isLegal(String)}) and maps all containing
@@ -95,6 +115,60 @@ public class DiffContainer extends AggregatedBaseDataContainer {
 		Collections.sort(diffFiles, fileComparator);
 	}
 
+	/**
+	 * Sorts the given {@link DataList} by the order of names stored in the
+	 * {@link ScanCatalog}.
+	 * 
+	 * @param diffFiles
+	 * @param order
+	 *            names separated by a slash
+	 * @return false if the order does not match the {@link DataList}
+	 */
+	private static boolean sortDiffFiles(DataList diffFiles, String order) {
+		if (order == null) {
+			return false;
+		}
+		String[] names = order.split("/");
+		if (names.length != diffFiles.size()) {
+			return false;
+		}
+		final Map<String, Integer> positions = new HashMap<String, Integer>();
+		for (int i = 0; i < names.length; i++) {
+			positions.put(names[i], i);
+		}
+		for (IData diffFile : diffFiles) {
+			if (!positions.containsKey(diffFile.getName())) {
+				return false;
+			}
+		}
+		Collections.sort(diffFiles, new Comparator<IData>() {
+			@Override
+			public int compare(IData diffFile1, IData diffFile2) {
+				return positions.get(diffFile1.getName()).compareTo(
+						positions.get(diffFile2.getName()));
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Returns the {@link IDataContainer} all given {@link IData}s are located
+	 * in.
+	 * 
+	 * @param dataList
+	 * @return null if they are located in different {@link IDataContainer}s
+	 */
+	private static IDataContainer getDirectory(DataList dataList) {
+		IDataContainer directory = dataList.get(0).getParentDataContainer();
+		for (IData data : dataList) {
+			if (directory == null
+					|| !directory.equals(data.getParentDataContainer())) {
+				return null;
+			}
+		}
+		return directory;
+	}
+
 	private static TimeZoneDateRange calculateDateRange(DataList dataList) {
 		TimeZoneDate start = null;
 		TimeZoneDate end = null;
@@ -106,14 +180,57 @@ public class DiffContainer extends AggregatedBaseDataContainer {
 		return new TimeZoneDateRange(start, end);
 	}
 
+	/**
+	 * Returns true if both {@link DataList}s consist of the same {@link IData}
+	 * s which have not changed their accumulated size.
+	 */
+	private static boolean isUnchanged(DataList previousDataList,
+			Long previousSize, DataList dataList, long size) {
+		if (previousDataList == null || previousSize == null
+				|| previousSize != size
+				|| previousDataList.size() != dataList.size()) {
+			return false;
+		}
+		return new HashSet<IData>(previousDataList).containsAll(dataList);
+	}
+
 	private final IDataContainer diffContainer;
 	private ITrunk trunk;
-	private final ISourceStore sourceCache;
-	private Map<ID, DataList> dataLists;
-	private Map<ID, TimeZoneDateRange> fileDateRanges;
+	private final SourceCache sourceCache;
+	private volatile Map<ID, DataList> dataLists;
+	private volatile Map<ID, TimeZoneDateRange> fileDateRanges;
+	private volatile Map<IIdentifier, Long> dataListSizes;
+
+	/**
+	 * {@link DiffContainer} this one replaces; only set until scanned.
+	 */
+	private DiffContainer previous;
+
+	/**
+	 * True if a {@link DiffContainer} replacing this one took over
+	 * {@link #sourceCache}. It is then disposed by the replacing one.
+	 */
+	private volatile boolean sourcesTakenOver = false;
 
 	private final DiffCache diffCache;
 
+	private final IDataChangeListener diffFileListener = new IDataChangeListener() {
+		@Override
+		public void dataAdded(IData data) {
+			DiffContainer.this.diffFileChanged(data, false);
+		}
+
+		@Override
+		public void dataModified(IData data) {
+			DiffContainer.this.diffFileChanged(data, false);
+		}
+
+		@Override
+		public void dataRemoved(IData data) {
+			DiffContainer.this.diffFileChanged(data, true);
+		}
+	};
+
 	/**
 	 * Returns a {@link DiffContainer} instance that can handle contained
 	 * {@link Diff}s
@@ -126,6 +243,12 @@ public class DiffContainer extends AggregatedBaseDataContainer {
 	 *            that can be used to cache patched {@link Diff}s
 	 */
 	public DiffContainer(List<? extends IBaseDataContainer> baseDataContainers) {
+		this(baseDataContainers, (SourceCache) null);
+	}
+
+	private DiffContainer(
+			List<? extends IBaseDataContainer> baseDataContainers,
+			SourceCache sourceCache) {
 		super(baseDataContainers);
 		this.diffContainer = this.getSubContainer("diff");
 		try {
@@ -133,15 +256,42 @@ public class DiffContainer extends AggregatedBaseDataContainer {
 		} catch (Exception e) {
 			LOGGER.error("Could not access sub directory \"trunk\"", e);
 		}
-		this.sourceCache = new SourceCache(this);
+		if (sourceCache != null) {
+			sourceCache.setBaseDataContainer(this);
+			this.sourceCache = sourceCache;
+		} else {
+			this.sourceCache = new SourceCache(this);
+		}
 
-		this.diffCache = new DiffCache(this, DIFF_CACHE_SIZE);
+		this.diffCache = new DiffCache(this, DIFF_CACHE_SIZE,
+				DIFF_CACHE_WEIGHT);
 	}
 
 	public DiffContainer(IBaseDataContainer baseDataContainer) {
 		this(Arrays.asList(baseDataContainer));
 	}
 
+	/**
+	 * Returns a {@link DiffContainer} that replaces the given one after
+	 * {@link IBaseDataContainer}s were added or removed. The sorted
+	 * {@link Diff}s and cached {@link IDiffs} of all {@link IIdentifier}s whose
+	 * files did not change are taken over on {@link #scan(SubMonitor)}.
+	 * <p>
+	 * Since the taken over {@link IDiffs} read their sources from the
+	 * {@link SourceCache} of the given {@link DiffContainer}, that cache is
+	 * taken over as well and from now on backed by this {@link DiffContainer}.
+	 * 
+	 * @param baseDataContainers
+	 * @param previous
+	 */
+	public DiffContainer(
+			List<? extends IBaseDataContainer> baseDataContainers,
+			DiffContainer previous) {
+		this(baseDataContainers, previous.sourceCache);
+		previous.sourcesTakenOver = true;
+		this.previous = previous;
+	}
+
 	public void scan(SubMonitor monitor) {
 		monitor = SubMonitor.convert(monitor);
 		this.dataLists = readDiffFilesMapping(this);
@@ -159,21 +309,64 @@ public class DiffContainer extends AggregatedBaseDataContainer {
 			size += fileListSize;
 		}
 
+		this.dataListSizes = sizes;
+
 		monitor.beginTask("Loading " + this, (int) (size / 1000l));
+
+		Set<ID> unchanged = new HashSet<ID>();
+		Set<ID> changed = new HashSet<ID>(this.dataLists.keySet());
+		DiffContainer previous = this.previous;
+		if (previous != null && previous.dataLists != null) {
+			for (ID id : this.dataLists.keySet()) {
+				if (isUnchanged(previous.dataLists.get(id),
+						previous.dataListSizes.get(id),
+						this.dataLists.get(id), sizes.get(id))) {
+					this.dataLists.put(id, previous.dataLists.get(id));
+					this.fileDateRanges.put(id,
+							previous.fileDateRanges.get(id));
+					unchanged.add(id);
+					changed.remove(id);
+					monitor.worked((int) (sizes.get(id) / 1000l));
+				}
+			}
+			LOGGER.info("Taking over " + unchanged.size() + " of "
+					+ this.dataLists.size() + " unchanged "
+					+ IIdentifier.class.getSimpleName() + "s");
+		}
+
 		for (Integer worked : ExecUtils.nonUIAsyncExecMerged(
 				DiffContainer.class,
-				"Loading " + StringUtils.join(this.dataLists.keySet(), ", "),
-				this.dataLists.keySet(),
+				"Loading " + StringUtils.join(changed, ", "), changed,
 				new ExecUtils.ParametrizedCallable<ID, Integer>() {
 					@Override
 					public Integer call(ID id) throws Exception {
 						final DataList dataList = DiffContainer.this.dataLists
 								.get(id);
 
-						final CachingDiffFileComparator cachingDiffFileComparator = new CachingDiffFileComparator();
-
-						sortDiffFiles(dataList, cachingDiffFileComparator);
-						TimeZoneDateRange dateRange = calculateDateRange(dataList);
+						TimeZoneDateRange dateRange;
+						IDataContainer directory = getDirectory(dataList);
+						ScanCatalog scanCatalog = directory != null ? ScanCatalog
+								.get(directory, SCAN_CATALOG) : null;
+						Map<String, String> metadata = scanCatalog != null ? scanCatalog
+								.get(directory) : null;
+						if (metadata != null
+								&& sortDiffFiles(dataList, metadata.get(ORDER))) {
+							dateRange = ScanCatalog.getDateRange(metadata);
+						} else {
+							sortDiffFiles(dataList,
+									new CachingDiffFileComparator());
+							dateRange = calculateDateRange(dataList);
+							if (scanCatalog != null) {
+								metadata = new HashMap<String, String>();
+								ScanCatalog.putDateRange(metadata, dateRange);
+								List<String> names = new ArrayList<String>();
+								for (IData diffFile : dataList) {
+									names.add(diffFile.getName());
+								}
+								metadata.put(ORDER, StringUtils.join(names, "/"));
+								scanCatalog.put(directory, metadata);
+							}
+						}
 						synchronized (DiffContainer.this.fileDateRanges) {
 							DiffContainer.this.fileDateRanges
 									.put(id, dateRange);
@@ -184,9 +377,134 @@ public class DiffContainer extends AggregatedBaseDataContainer {
 				})) {
 			monitor.worked(worked);
 		}
+
+		Set<ScanCatalog> scanCatalogs = new HashSet<ScanCatalog>();
+		for (DataList dataList : this.dataLists.values()) {
+			ScanCatalog scanCatalog = ScanCatalog.get(dataList.get(0),
+					SCAN_CATALOG);
+			if (scanCatalog != null && scanCatalogs.add(scanCatalog)) {
+				scanCatalog.saveQuietly();
+			}
+		}
+
+		for (ID id : unchanged) {
+			IDiffs diffs = previous.diffCache.getCachedPayload(id);
+			if (diffs != null) {
+				this.diffCache.putPayload(id, diffs);
+			}
+		}
+		this.previous = null;
 		monitor.done();
 	}
 
+	/**
+	 * Keeps this {@link DiffContainer} up to date by watching for added,
+	 * modified and removed {@link Diff} files.
+	 */
+	public void watch() {
+		if (this.diffContainer instanceof IWatchableDataContainer) {
+			((IWatchableDataContainer) this.diffContainer)
+					.addDataChangeListener(this.diffFileListener);
+		}
+	}
+
+	/**
+	 * Stops watching for changed {@link Diff} files.
+	 */
+	public void unwatch() {
+		if (this.diffContainer instanceof IWatchableDataContainer) {
+			((IWatchableDataContainer) this.diffContainer)
+					.removeDataChangeListener(this.diffFileListener);
+		}
+	}
+
+	/**
+	 * Deletes the temporary {@link File}s of the sources. In contrast to
+	 * {@link #dispose()} the {@link IBaseDataContainer}s are left untouched
+	 * since they may be shared with the {@link DiffContainer} replacing this
+	 * one.
+	 * <p>
+	 * Does nothing if the sources were taken over by a replacing
+	 * {@link DiffContainer}.
+	 */
+	public void disposeSources() {
+		if (!this.sourcesTakenOver) {
+			this.sourceCache.dispose();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		this.disposeSources();
+		super.dispose();
+	}
+
+	/**
+	 * Updates the {@link DataList} of the {@link IIdentifier} the given
+	 * {@link Diff} file belongs to and evicts its {@link IDiffs} from the
+	 * {@link DiffCache}. Failed patches of the {@link IIdentifier} are
+	 * forgotten so they are tried again.
+	 * <p>
+	 * The maps are replaced rather than modified so readers never see them in
+	 * an intermediate state.
+	 * 
+	 * @param diffFile
+	 * @param removed
+	 */
+	private synchronized void diffFileChanged(IData diffFile, boolean removed) {
+		if (this.dataLists == null) {
+			return;
+		}
+		ID id = DiffDataUtils.getId(diffFile);
+		if (id == null) {
+			return;
+		}
+		if (!removed
+				&& IdentifierFactory.createFrom(diffFile
+						.getParentDataContainer().getName()) == null) {
+			return;
+		}
+
+		DataList dataList = new DataList();
+		if (this.dataLists.containsKey(id)) {
+			dataList.addAll(this.dataLists.get(id));
+			dataList.remove(diffFile);
+		}
+		if (!removed) {
+			dataList.add(diffFile);
+			sortDiffFiles(dataList, new CachingDiffFileComparator());
+		}
+
+		Map<ID, DataList> dataLists = new HashMap<ID, DataList>(this.dataLists);
+		Map<ID, TimeZoneDateRange> fileDateRanges = new HashMap<ID, TimeZoneDateRange>(
+				this.fileDateRanges);
+		Map<IIdentifier, Long> dataListSizes = new HashMap<IIdentifier, Long>(
+				this.dataListSizes);
+		if (dataList.isEmpty()) {
+			dataLists.remove(id);
+			fileDateRanges.remove(id);
+			dataListSizes.remove(id);
+		} else {
+			long size = 0;
+			for (IData data : dataList) {
+				size += data.getLength();
+			}
+			dataLists.put(id, dataList);
+			fileDateRanges.put(id, calculateDateRange(dataList));
+			dataListSizes.put(id, size);
+		}
+		this.dataLists = dataLists;
+		this.fileDateRanges = fileDateRanges;
+		this.dataListSizes = dataListSizes;
+		this.diffCache.removeKey(id);
+		this.sourceCache.getPatchStatusIndex().reset(
+				"apiua://" + DiffLocatorProvider.DIFF_NAMESPACE + "/" + id
+						+ "/");
+
+		LOGGER.info((removed ? "Removed " : "Updated ") + diffFile.getName()
+				+ " of " + id);
+	}
+
 	/**
 	 * Returns a list of all {@link IIdentifier}s occurring in the managed
 	 * {@link Diff}s.
@@ -6,12 +6,16 @@ import org.apache.commons.lang.StringUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 
-import de.fu_berlin.imp.apiua.core.extensionPoints.IDataLoadProvider;
+import de.fu_berlin.imp.apiua.core.extensionPoints.IIncrementalDataLoadProvider;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
 import de.fu_berlin.imp.apiua.diff.Activator;
+import de.fu_berlin.imp.apiua.diff.jobs.SourceWarmUpJob;
+import de.fu_berlin.imp.apiua.diff.preferences.SUADiffPreferenceUtil;
 
-public class DiffLoader implements IDataLoadProvider {
+public class DiffLoader implements IIncrementalDataLoadProvider {
+
+	private SourceWarmUpJob sourceWarmUpJob = null;
 
 	@Override
 	public String getLoaderJobName(
@@ -35,12 +39,60 @@ public class DiffLoader implements IDataLoadProvider {
 		DiffContainer diffContainer = new DiffContainer(dataResourceContainers);
 		diffContainer.scan(subMonitor);
 		subMonitor.done();
+		this.replace(diffContainer);
+		Activator.getDefault().setDiffDataDirectory(diffContainer);
+		return diffContainer;
+	}
+
+	@Override
+	public IDataContainer update(
+			List<? extends IBaseDataContainer> baseDataContainers,
+			List<? extends IBaseDataContainer> added,
+			List<? extends IBaseDataContainer> removed,
+			IProgressMonitor progressMonitor) {
+		SubMonitor subMonitor = SubMonitor.convert(progressMonitor);
+		DiffContainer diffContainer = new DiffContainer(baseDataContainers,
+				Activator.getDefault().getDiffDataContainer());
+		diffContainer.scan(subMonitor);
+		subMonitor.done();
+		this.replace(diffContainer);
 		Activator.getDefault().setDiffDataDirectory(diffContainer);
 		return diffContainer;
 	}
 
 	@Override
 	public void unload(IProgressMonitor progressMonitor) {
+		this.replace(null);
+	}
+
+	/**
+	 * Stops watching the currently active {@link DiffContainer}, deletes its
+	 * temporary source files unless the given one took them over and starts
+	 * watching the given one.
+	 * <p>
+	 * If enabled in the preferences the sources of the given
+	 * {@link DiffContainer} are materialized in the background.
+	 * 
+	 * @param diffContainer
+	 *            may be null
+	 */
+	private synchronized void replace(DiffContainer diffContainer) {
+		DiffContainer previous = Activator.getDefault().getDiffDataContainer();
+		if (this.sourceWarmUpJob != null) {
+			this.sourceWarmUpJob.cancel();
+			this.sourceWarmUpJob = null;
+		}
+		if (previous != null && previous != diffContainer) {
+			previous.unwatch();
+			previous.disposeSources();
+		}
+		if (diffContainer != null) {
+			diffContainer.watch();
+			if (new SUADiffPreferenceUtil().getPrematerializeSources()) {
+				this.sourceWarmUpJob = new SourceWarmUpJob(diffContainer);
+				this.sourceWarmUpJob.schedule();
+			}
+		}
 	}
 
 }
@@ -41,6 +41,7 @@ public class Diff extends WrappingData implements IDiff {
 			.compile("([A-Za-z\\d]+)_r([\\d]{8})_([\\d]{4})-([\\d]{2})-([\\d]{2})T([\\d]{2})-([\\d]{2})-([\\d]{2})(([\\+-][\\d]{2})([\\d]{2}))?(_manual)?\\.diff");
 	public static final Pattern ZIPPED_PATTERN = Pattern
 			.compile("([A-Za-z\\d]+)_([\\w]{4})_([\\d]{4})-([\\d]{2})-([\\d]{2})T([\\d]{2})-([\\d]{2})-([\\d]{2})\\.([\\d]+)(([\\+-][\\d]{2})([\\d]{2}))?(_manual)?\\.diff\\.zip");
+	private static final Pattern LINE_SEPARATOR = Pattern.compile("\n");
 
 	private URI uri;
 
@@ -209,7 +210,8 @@ public class Diff extends WrappingData implements IDiff {
 	 */
 	@Override
 	public List<String> getContent(long contentStart, long contentEnd) {
-		return Arrays.asList(this.read(contentStart, contentEnd).split("\n"));
+		return Arrays.asList(LINE_SEPARATOR.split(this.readChars(contentStart,
+				contentEnd)));
 	}
 
 	@Override
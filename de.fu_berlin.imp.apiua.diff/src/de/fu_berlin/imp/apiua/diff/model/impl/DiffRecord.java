@@ -1,18 +1,12 @@
 package de.fu_berlin.imp.apiua.diff.model.impl;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URLEncoder;
-import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
-import com.bkahlert.nebula.utils.DiffUtils;
-
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDateRange;
 import de.fu_berlin.imp.apiua.core.model.URI;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
@@ -61,8 +55,7 @@ public class DiffRecord implements IDiffRecord {
 
 	private IDiffRecord predecessor = null;
 
-	@Deprecated
-	private static List<IDiffRecord> patchFailed = new ArrayList<IDiffRecord>();
+	private static final SourceReconstructor SOURCE_RECONSTRUCTOR = new SourceReconstructor();
 
 	public DiffRecord(IDiff diff, IData originalSource,
 			ISourceStore sourceCache, String filename,
@@ -86,12 +79,6 @@ public class DiffRecord implements IDiffRecord {
 		this.meta = meta;
 		this.patchStart = contentStart;
 		this.patchEnd = contentEnd;
-
-		this.getSource(); // implicitly patches
-		if (patchFailed.contains(this)) {
-			LOGGER.warn("Failed to patch " + originalSource + " of "
-					+ diff.getIdentifier());
-		}
 	}
 
 	/*
@@ -170,6 +157,16 @@ public class DiffRecord implements IDiffRecord {
 	@Override
 	@Deprecated
 	public List<String> getPatchLines() {
+		return this.readPatchLines();
+	}
+
+	/**
+	 * Returns the lines of the patch that leads to this {@link DiffRecord}'s
+	 * source.
+	 * 
+	 * @return
+	 */
+	List<String> readPatchLines() {
 		return this.getDiffFile().getContent(this.patchStart, this.patchEnd);
 	}
 
@@ -225,8 +222,8 @@ public class DiffRecord implements IDiffRecord {
 	@Override
 	public boolean sourceExists() {
 		try {
-			File sourceFile = this.getSourceFile();
-			return sourceFile != null && sourceFile.exists();
+			return this.sourceCache.getSourceLength(this.diff.getIdentifier(),
+					this.diff.getRevision(), this.getFilename()) >= 0;
 		} catch (IOException e) {
 			LOGGER.error(e);
 			return false;
@@ -244,85 +241,61 @@ public class DiffRecord implements IDiffRecord {
 	public String getSource() {
 		// zip file, no patching needed
 		if (this.meta == null) {
-			if (this.sourceExists()) {
-				try {
-					return FileUtils.readFileToString(this.getSourceFile());
-				} catch (IOException e) {
-					LOGGER.debug("Could not find source file for "
-							+ DiffRecord.class.getSimpleName() + ": " + this, e);
-					return null;
-				}
-			} else {
-				return null;
-			}
+			return this.readSource();
 		}
 
-		if (patchFailed.contains(this)) {
-			return null;
-		}
+		return SOURCE_RECONSTRUCTOR.getSource(this);
+	}
 
-		IDiffRecord predecessor = this.getPredecessor();
-		if ((predecessor != null && patchFailed.contains(predecessor))) {
-			patchFailed.add(this);
+	/**
+	 * Returns the source stored in the {@link ISourceStore} without patching.
+	 * 
+	 * @return null if no source is stored
+	 */
+	String readSource() {
+		try {
+			return this.sourceCache.getSource(this.diff.getIdentifier(),
+					this.diff.getRevision(), this.getFilename());
+		} catch (IOException e) {
+			LOGGER.debug("Could not read source of "
+					+ DiffRecord.class.getSimpleName() + ": " + this, e);
 			return null;
 		}
+	}
 
-		if (this.sourceExists()) {
-			try {
-				return FileUtils.readFileToString(this.getSourceFile());
-			} catch (IOException e) {
-				LOGGER.debug("Could not find source file for "
-						+ DiffRecord.class.getSimpleName() + ": " + this, e);
-				return null;
-			}
-		} else {
-			String predecessorSource;
-			if (predecessor == null) {
-				if (this.originalSource != null) {
-					try {
-						predecessorSource = this.originalSource.read();
-					} catch (RuntimeException e) {
-						if (e.getCause() instanceof FileNotFoundException) {
-							predecessorSource = "";
-						} else {
-							throw e;
-						}
-					}
-				} else {
-					predecessorSource = "";
-				}
-			} else {
-				predecessorSource = predecessor.getSource();
-			}
+	IDiffRecordMeta getMeta() {
+		return this.meta;
+	}
 
-			try {
-				List<String> patch = this.getPatchLines();
-				String newSource = DiffUtils.patch(predecessorSource,
-						StringUtils.join(patch, "\n") + "\n");
-				this.setAndPersistSource(newSource);
-				LOGGER.info("Successfully patched " + this.diff.getIdentifier()
-						+ ", " + this.getFilename());
-				return newSource;
-			} catch (Exception e) {
-				String filename = this.getFilename();
-				LOGGER.warn("Could not patch ID: " + this.diff.getIdentifier()
-						+ ", " + filename, e);
-				patchFailed.add(this);
-				return null;
-			}
-		}
+	IData getOriginalSource() {
+		return this.originalSource;
 	}
 
-	@Deprecated
-	void setAndPersistSource(String sourceString) {
-		// this method consumes much space
-		Runtime.getRuntime().gc();
+	/**
+	 * Returns true if this {@link DiffRecord}'s patch is known to fail.
+	 * 
+	 * @return
+	 */
+	boolean isPatchFailed() {
+		return this.meta != null
+				&& this.sourceCache.getPatchStatusIndex().isFailed(
+						this.getUri());
+	}
 
+	void setPatchFailed() {
+		this.sourceCache.getPatchStatusIndex().setFailed(this.getUri());
+	}
+
+	/**
+	 * Streams the given lines as this {@link DiffRecord}'s source into the
+	 * {@link ISourceStore}.
+	 * 
+	 * @param lines
+	 */
+	void persistSource(List<String> lines) {
 		try {
-			File tmp = File.createTempFile("source", ".tmp");
-			FileUtils.write(tmp, sourceString);
-			this.sourceCache.setSourceFile(this.diff.getIdentifier(),
-					this.diff.getRevision(), this.meta.getToFileName(), tmp);
+			this.sourceCache.setSource(this.diff.getIdentifier(),
+					this.diff.getRevision(), this.meta.getToFileName(), lines);
 		} catch (IOException e) {
 			LOGGER.error(
 					"Could not write source file for "
@@ -73,10 +73,6 @@ public class DiffRecords implements IDiffRecords {
 			cluster.add(diff);
 		}
 
-		// clean up since a Diffs creation can temporally consume much
-		// heap
-		Runtime.getRuntime().gc();
-
 		monitor.done();
 
 		List<IDiff> diffs = new ArrayList<IDiff>();
@@ -0,0 +1,145 @@
+package de.fu_berlin.imp.apiua.diff.model.impl;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import difflib.PatchFailedException;
+
+import de.fu_berlin.imp.apiua.diff.model.IDiffRecord;
+import de.fu_berlin.imp.apiua.diff.util.PatchUtils;
+
+/**
+ * Reconstructs the source of a {@link DiffRecord} by applying the patches of
+ * its predecessors.
+ * <p>
+ * The chain of predecessors is walked iteratively back to the nearest
+ * materialized source, i.e. a persisted source, a source from a zipped
+ * {@link Diff} or the original source. From there the patches are applied on
+ * lists of lines. Every {@link #checkpointInterval}-th patched source is
+ * streamed into the source store so that later reconstructions need at most
+ * that many patches.
+ * <p>
+ * Only patches that do not apply are persisted as failed. Sources that could
+ * not be read are tried again on the next reconstruction.
+ *
+ * @author bkahlert
+ */
+class SourceReconstructor {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(SourceReconstructor.class);
+
+	/**
+	 * Default number of patches after which a reconstructed source is
+	 * persisted.
+	 */
+	public static final int CHECKPOINT_INTERVAL = 16;
+
+	private final int checkpointInterval;
+
+	public SourceReconstructor(int checkpointInterval) {
+		this.checkpointInterval = Math.max(1, checkpointInterval);
+	}
+
+	public SourceReconstructor() {
+		this(CHECKPOINT_INTERVAL);
+	}
+
+	/**
+	 * Returns the source of the given {@link DiffRecord}. The source is
+	 * persisted if it had to be patched.
+	 *
+	 * @param diffRecord
+	 * @return null if the source could not be reconstructed
+	 */
+	public String getSource(DiffRecord diffRecord) {
+		List<DiffRecord> chain = new ArrayList<DiffRecord>();
+		List<String> lines = null;
+
+		IDiffRecord current = diffRecord;
+		while (true) {
+			if (current instanceof DiffRecord
+					&& ((DiffRecord) current).isPatchFailed()) {
+				// the failure is persisted for the failed record only
+				return null;
+			}
+			if (!(current instanceof DiffRecord)
+					|| ((DiffRecord) current).getMeta() == null) {
+				// not patchable; getSource does not recurse
+				String source = current.getSource();
+				if (source == null) {
+					// possibly transient, therefore retried next time
+					LOGGER.warn("Could not read source of " + current);
+					return null;
+				}
+				lines = PatchUtils.toLines(source);
+				break;
+			}
+			DiffRecord record = (DiffRecord) current;
+			String source = record.readSource();
+			if (source != null) {
+				if (record == diffRecord) {
+					return source;
+				}
+				lines = PatchUtils.toLines(source);
+				break;
+			}
+			chain.add(record);
+			current = record.getPredecessor();
+			if (current == null) {
+				lines = PatchUtils.toLines(readOriginalSource(record));
+				break;
+			}
+		}
+
+		for (int i = chain.size() - 1; i >= 0; i--) {
+			DiffRecord record = chain.get(i);
+			try {
+				lines = PatchUtils.patch(lines, record.readPatchLines());
+			} catch (PatchFailedException e) {
+				LOGGER.warn("Could not patch ID: " + record.getIdentifier()
+						+ ", " + record.getFilename(), e);
+				this.markFailed(chain.subList(0, i + 1));
+				return null;
+			} catch (RuntimeException e) {
+				// e.g. the diff file could not be read; retried next time
+				LOGGER.warn("Could not read patch of ID: "
+						+ record.getIdentifier() + ", " + record.getFilename(),
+						e);
+				return null;
+			}
+			int patched = chain.size() - i;
+			if (i == 0 || patched % this.checkpointInterval == 0) {
+				record.persistSource(lines);
+				LOGGER.info("Successfully patched "
+						+ record.getIdentifier() + ", "
+						+ record.getFilename());
+			}
+		}
+		return PatchUtils.toSource(lines);
+	}
+
+	private void markFailed(List<DiffRecord> records) {
+		for (DiffRecord record : records) {
+			record.setPatchFailed();
+		}
+	}
+
+	private static String readOriginalSource(DiffRecord diffRecord) {
+		if (diffRecord.getOriginalSource() == null) {
+			return "";
+		}
+		try {
+			return diffRecord.getOriginalSource().read();
+		} catch (RuntimeException e) {
+			if (e.getCause() instanceof FileNotFoundException) {
+				return "";
+			}
+			throw e;
+		}
+	}
+
+}
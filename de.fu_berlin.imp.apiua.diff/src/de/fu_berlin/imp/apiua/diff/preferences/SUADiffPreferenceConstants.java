@@ -4,4 +4,6 @@ public class SUADiffPreferenceConstants {
 
 	public static final String FILE_FILTER_PATTERNS = "file_filter_patterns";
 
+	public static final String PREMATERIALIZE_SOURCES = "prematerialize_sources";
+
 }
@@ -19,5 +19,8 @@ public class SUADiffPreferenceInitializer extends AbstractPreferenceInitializer
 				SUADiffPreferenceConstants.FILE_FILTER_PATTERNS,
 				new String(SerializationUtils
 						.serialize(defaultFileFilterPatterns)));
+
+		store.setDefault(SUADiffPreferenceConstants.PREMATERIALIZE_SOURCES,
+				false);
 	}
 }
@@ -1,5 +1,6 @@
 package de.fu_berlin.imp.apiua.diff.preferences;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
@@ -15,6 +16,10 @@ public class SUADiffPreferencePage extends FieldEditorPreferencePage implements
 	}
 
 	public void createFieldEditors() {
+		this.addField(new BooleanFieldEditor(
+				SUADiffPreferenceConstants.PREMATERIALIZE_SOURCES,
+				"&Materialize all sources in the background after loading",
+				this.getFieldEditorParent()));
 	}
 
 	public void init(IWorkbench workbench) {
@@ -68,4 +68,15 @@ public class SUADiffPreferenceUtil extends EclipsePreferenceUtil {
 		return event.getProperty().equals(
 				SUADiffPreferenceConstants.FILE_FILTER_PATTERNS);
 	}
+
+	public boolean getPrematerializeSources() {
+		return this.getPreferenceStore().getBoolean(
+				SUADiffPreferenceConstants.PREMATERIALIZE_SOURCES);
+	}
+
+	public void setPrematerializeSources(boolean prematerializeSources) {
+		this.getPreferenceStore().setValue(
+				SUADiffPreferenceConstants.PREMATERIALIZE_SOURCES,
+				prematerializeSources);
+	}
 }
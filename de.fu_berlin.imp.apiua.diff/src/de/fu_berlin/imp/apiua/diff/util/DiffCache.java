@@ -5,18 +5,48 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.core.util.Cache;
 import de.fu_berlin.imp.apiua.diff.model.DiffContainer;
+import de.fu_berlin.imp.apiua.diff.model.IDiff;
 import de.fu_berlin.imp.apiua.diff.model.IDiffs;
 
 public class DiffCache extends Cache<IIdentifier, IDiffs> {
 
+	/**
+	 * Estimates the memory footprint of {@link IDiffs} by the size of their
+	 * {@link IDiff}s. Their content is held as UTF-16 and therefore weighs
+	 * twice its length.
+	 */
+	public static final Weigher<IIdentifier, IDiffs> WEIGHER = new Weigher<IIdentifier, IDiffs>() {
+		@Override
+		public long weigh(IIdentifier identifier, IDiffs diffs) {
+			long weight = 0;
+			if (diffs != null) {
+				for (IDiff diff : diffs) {
+					weight += diff.getLength() * 2;
+				}
+			}
+			return weight;
+		}
+	};
+
 	public DiffCache(final DiffContainer diffContainer, int cacheSize) {
+		this(diffContainer, cacheSize, 0);
+	}
+
+	/**
+	 * @param diffContainer
+	 * @param cacheSize
+	 * @param maxWeight
+	 *            maximum estimated number of bytes; 0 if unbounded
+	 */
+	public DiffCache(final DiffContainer diffContainer, int cacheSize,
+			long maxWeight) {
 		super(new CacheFetcher<IIdentifier, IDiffs>() {
 			@Override
 			public IDiffs fetch(IIdentifier identifier,
 					IProgressMonitor progressMonitor) {
 				return diffContainer.createDiffFiles(identifier, progressMonitor);
 			}
-		}, cacheSize);
+		}, cacheSize, WEIGHER, maxWeight);
 	}
 
 }
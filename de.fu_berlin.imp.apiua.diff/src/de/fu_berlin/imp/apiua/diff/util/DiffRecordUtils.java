@@ -20,8 +20,8 @@ import org.eclipse.core.runtime.SubMonitor;
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
 import de.fu_berlin.imp.apiua.core.model.URI;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
+import de.fu_berlin.imp.apiua.core.model.data.LineIndex;
 import de.fu_berlin.imp.apiua.core.services.location.URIUtils;
-import de.fu_berlin.imp.apiua.core.util.FileUtils;
 import de.fu_berlin.imp.apiua.diff.gt.DiffLocatorProvider;
 import de.fu_berlin.imp.apiua.diff.model.impl.Diff;
 import de.fu_berlin.imp.apiua.diff.model.impl.DiffRecord;
@@ -73,26 +73,15 @@ public class DiffRecordUtils {
 		long contentEnd = 0l;
 
 		LinkedList<DiffRecordDescriptor> descriptors = new LinkedList<DiffRecordDescriptor>();
-		Integer newLineLength = null;
 		try {
-			for (String line : data) {
+			LineIndex lineIndex = data.getLineIndex();
+			for (int i = 0, n = lineIndex.getLineCount(); i < n; i++) {
+				String line = data.read(lineIndex.getStart(i),
+						lineIndex.getEnd(i));
 				if (line.equals("RESET")) {
 					break;
 				}
 
-				long lineLength = line.getBytes().length;
-				if (newLineLength == null) {
-					try {
-						newLineLength = FileUtils.getNewlineLengthAt(data,
-								contentEnd + lineLength);
-					} catch (Exception e) {
-						continue;
-					}
-				}
-
-				// On empty lines Windows only uses \r instead of \r\n
-				lineLength += line.isEmpty() ? 1 : newLineLength;
-
 				String[] x = line.split(" ");
 				if (state == PARSE_STATE.READING_CONTENT
 						&& x.length > 0
@@ -102,9 +91,8 @@ public class DiffRecordUtils {
 					if (commandLine != null) {
 						descriptors.add(new DiffRecordDescriptor(commandLine,
 								metaOldLine, metaNewLine, contentStart,
-								contentEnd - newLineLength));
+								contentEnd));
 						commandLine = null;
-						contentStart = contentEnd;
 					}
 
 					if (x[0].equals("diff")) {
@@ -112,7 +100,7 @@ public class DiffRecordUtils {
 						state = PARSE_STATE.EXPECTING_OLD_LINE;
 					}
 
-					contentStart += lineLength;
+					contentStart = lineIndex.getNextStart(i);
 				} else {
 					if (state == PARSE_STATE.EXPECTING_OLD_LINE) {
 						metaOldLine = line;
@@ -123,9 +111,10 @@ public class DiffRecordUtils {
 					}
 				}
 
-				contentEnd += lineLength;
+				contentEnd = lineIndex.getEnd(i);
 
-				monitor.worked((int) (lineLength / 1000));
+				monitor.worked((int) (lineIndex.getNextStart(i) / 1000)
+						- (int) (lineIndex.getStart(i) / 1000));
 				if (progressMonitor.isCanceled()) {
 					throw new OperationCanceledException();
 				}
@@ -141,7 +130,7 @@ public class DiffRecordUtils {
 		// create record if EOF
 		if (commandLine != null) {
 			descriptors.add(new DiffRecordDescriptor(commandLine, metaOldLine,
-					metaNewLine, contentStart, contentEnd - newLineLength));
+					metaNewLine, contentStart, contentEnd));
 		}
 
 		monitor.done();
@@ -189,11 +178,11 @@ public class DiffRecordUtils {
 					monitor.setWorkRemaining(10);
 
 					ZipEntry zipEntry = (ZipEntry) enu.nextElement();
-					File createdSourceFile = sourceCache.getSourceFile(
+					long createdSourceLength = sourceCache.getSourceLength(
 							diff.getIdentifier(), diff.getRevision(),
 							zipEntry.getName());
-					if (createdSourceFile != null
-							&& createdSourceFile.length() == zipEntry.getSize()) {
+					if (createdSourceLength >= 0
+							&& createdSourceLength == zipEntry.getSize()) {
 						LOGGER.info("Skipping "
 								+ zipEntry.getName()
 								+ " because it was already successfully uncompressed.");
@@ -220,6 +209,7 @@ public class DiffRecordUtils {
 
 						sourceCache.setSourceFile(diff.getIdentifier(),
 								diff.getRevision(), zipEntry.getName(), dest);
+						dest.delete();
 
 						LOGGER.info("Successfully uncompressed "
 								+ zipEntry.getName() + " (size: "
@@ -2,17 +2,82 @@ package de.fu_berlin.imp.apiua.diff.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 
 public interface ISourceStore {
 
+	/**
+	 * Returns a {@link File} containing the source.
+	 * <p>
+	 * Prefer {@link #getSource(IIdentifier, String, String)} if the contents
+	 * are only read since the {@link File} may have to be created first.
+	 * 
+	 * @param id
+	 * @param revision
+	 * @param filename
+	 * @return null if the source is not stored
+	 * @throws IOException
+	 */
 	public File getSourceFile(IIdentifier id, String revision, String filename)
 			throws IOException;
 
+	/**
+	 * Returns the length of the source in bytes.
+	 * 
+	 * @param id
+	 * @param revision
+	 * @param filename
+	 * @return -1 if the source is not stored
+	 * @throws IOException
+	 */
+	public long getSourceLength(IIdentifier id, String revision,
+			String filename) throws IOException;
+
+	/**
+	 * Returns the source.
+	 * 
+	 * @param id
+	 * @param revision
+	 * @param filename
+	 * @return null if the source is not stored
+	 * @throws IOException
+	 */
+	public String getSource(IIdentifier id, String revision, String filename)
+			throws IOException;
+
 	public void setSourceFile(IIdentifier id, String revision, String filename,
 			File file) throws IOException;
 
+	/**
+	 * Streams the given lines directly into the store. The previous source is
+	 * replaced atomically once all lines are written.
+	 * 
+	 * @param id
+	 * @param revision
+	 * @param filename
+	 * @param lines
+	 * @throws IOException
+	 */
+	public void setSource(IIdentifier id, String revision, String filename,
+			List<String> lines) throws IOException;
+
+	/**
+	 * Returns the {@link PatchStatusIndex} of the sources in this store.
+	 * 
+	 * @return
+	 */
+	public PatchStatusIndex getPatchStatusIndex();
+
 	public void clear();
 
+	/**
+	 * Saves the pending changes of the {@link PatchStatusIndex} and deletes
+	 * the temporary {@link File}s returned by
+	 * {@link #getSourceFile(IIdentifier, String, String)}. The stored sources
+	 * are kept.
+	 */
+	public void dispose();
+
 }
\ No newline at end of file
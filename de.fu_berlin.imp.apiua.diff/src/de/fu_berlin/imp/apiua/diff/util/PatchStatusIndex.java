@@ -0,0 +1,199 @@
+package de.fu_berlin.imp.apiua.diff.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
+import de.fu_berlin.imp.apiua.diff.model.IDiffRecord;
+
+/**
+ * Index of the {@link IDiffRecord}s whose patch could not be applied.
+ * <p>
+ * The index is stored in an {@link IBaseDataContainer} so that records known
+ * to be unpatchable are not patched again on the next start. Changes are
+ * saved at most every {@link #SAVE_INTERVAL} milliseconds; call
+ * {@link #flush()} to save pending changes immediately.
+ *
+ * @author bkahlert
+ */
+public class PatchStatusIndex {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(PatchStatusIndex.class);
+
+	public static final String NAME = "patch-failed.txt";
+
+	/**
+	 * Minimum number of milliseconds between two saves caused by changes.
+	 */
+	public static final long SAVE_INTERVAL = 10000;
+
+	private volatile IBaseDataContainer baseDataContainer;
+	private final String scope;
+
+	private volatile Set<String> failed = null;
+	private volatile boolean dirty = false;
+	private long lastSave = 0;
+
+	/**
+	 * Creates a {@link PatchStatusIndex} that is not persisted.
+	 */
+	public PatchStatusIndex() {
+		this(null, null);
+	}
+
+	/**
+	 * Creates a {@link PatchStatusIndex} that is persisted as {@link #NAME}
+	 * in the given scope.
+	 *
+	 * @param baseDataContainer
+	 * @param scope
+	 */
+	public PatchStatusIndex(IBaseDataContainer baseDataContainer, String scope) {
+		this.baseDataContainer = baseDataContainer;
+		this.scope = scope;
+	}
+
+	/**
+	 * Persists this index in the given {@link IBaseDataContainer} from now
+	 * on. The failed patches known so far are kept and saved to it with the
+	 * next {@link #flush()}.
+	 *
+	 * @param baseDataContainer
+	 */
+	public synchronized void setBaseDataContainer(
+			IBaseDataContainer baseDataContainer) {
+		this.getFailed();
+		this.baseDataContainer = baseDataContainer;
+		this.dirty = true;
+	}
+
+	private Set<String> getFailed() {
+		if (this.failed == null) {
+			synchronized (this) {
+				if (this.failed == null) {
+					Set<String> failed = Collections
+							.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+					failed.addAll(this.load());
+					this.failed = failed;
+				}
+			}
+		}
+		return this.failed;
+	}
+
+	private List<String> load() {
+		if (this.baseDataContainer == null) {
+			return Collections.emptyList();
+		}
+		try {
+			File file = this.baseDataContainer.getStaticFile(this.scope, NAME);
+			if (file != null && file.exists()) {
+				return FileUtils.readLines(file, "UTF-8");
+			}
+		} catch (IOException e) {
+			LOGGER.error("Could not load " + PatchStatusIndex.class
+					+ " from scope " + this.scope, e);
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Marks the index as changed and saves it unless it was saved less than
+	 * {@link #SAVE_INTERVAL} milliseconds ago.
+	 */
+	private void changed() {
+		this.dirty = true;
+		synchronized (this) {
+			if (System.currentTimeMillis() - this.lastSave >= SAVE_INTERVAL) {
+				this.flush();
+			}
+		}
+	}
+
+	/**
+	 * Saves the pending changes.
+	 */
+	public synchronized void flush() {
+		if (!this.dirty || this.baseDataContainer == null) {
+			return;
+		}
+		this.dirty = false;
+		this.lastSave = System.currentTimeMillis();
+		try {
+			File tmp = File.createTempFile("patch-failed", ".tmp");
+			try {
+				FileUtils.writeLines(tmp, "UTF-8", new ArrayList<String>(
+						this.getFailed()));
+				this.baseDataContainer.putFile(this.scope, NAME, tmp);
+			} finally {
+				tmp.delete();
+			}
+		} catch (IOException e) {
+			this.dirty = true;
+			LOGGER.error("Could not save " + PatchStatusIndex.class
+					+ " to scope " + this.scope, e);
+		}
+	}
+
+	/**
+	 * Returns true if the patch of the {@link IDiffRecord} with the given
+	 * {@link URI} is known to fail.
+	 *
+	 * @param uri
+	 * @return
+	 */
+	public boolean isFailed(URI uri) {
+		return this.getFailed().contains(uri.toString());
+	}
+
+	/**
+	 * Records that the patch of the {@link IDiffRecord} with the given
+	 * {@link URI} failed.
+	 *
+	 * @param uri
+	 */
+	public void setFailed(URI uri) {
+		if (this.getFailed().add(uri.toString())) {
+			this.changed();
+		}
+	}
+
+	/**
+	 * Forgets the failed patches of all {@link IDiffRecord}s whose {@link URI}
+	 * starts with the given prefix, e.g. because their diff changed.
+	 *
+	 * @param uriPrefix
+	 */
+	public void reset(String uriPrefix) {
+		boolean changed = false;
+		for (Iterator<String> it = this.getFailed().iterator(); it.hasNext();) {
+			if (it.next().startsWith(uriPrefix)) {
+				it.remove();
+				changed = true;
+			}
+		}
+		if (changed) {
+			this.changed();
+		}
+	}
+
+	/**
+	 * Forgets all failed patches.
+	 */
+	public void clear() {
+		this.getFailed().clear();
+		this.changed();
+	}
+
+}
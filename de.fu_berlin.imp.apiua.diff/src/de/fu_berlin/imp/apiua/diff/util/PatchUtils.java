@@ -0,0 +1,181 @@
+package de.fu_berlin.imp.apiua.diff.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+import difflib.PatchFailedException;
+
+/**
+ * Applies unified diffs to sources given as lists of lines.
+ * <p>
+ * In contrast to patching joined strings each patch only costs the number of
+ * lines of the source plus the number of lines of the patch.
+ *
+ * @author bkahlert
+ */
+public class PatchUtils {
+
+	private static final Pattern HUNK_HEADER = Pattern
+			.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*");
+
+	/**
+	 * Splits the given source into lines. If the source ends with a line
+	 * separator the last line is empty so that
+	 * <code>toSource(toLines(source)).equals(source)</code> holds.
+	 *
+	 * @param source
+	 * @return
+	 */
+	public static List<String> toLines(String source) {
+		if (source == null || source.isEmpty()) {
+			return new ArrayList<String>();
+		}
+		return new ArrayList<String>(Arrays.asList(source.split("\n", -1)));
+	}
+
+	/**
+	 * Joins the given lines into a source.
+	 *
+	 * @param lines
+	 * @return
+	 */
+	public static String toSource(List<String> lines) {
+		return StringUtils.join(lines, "\n");
+	}
+
+	/**
+	 * Writes the given lines as a source to the given {@link Writer} without
+	 * joining them in memory first.
+	 *
+	 * @param lines
+	 * @param writer
+	 * @throws IOException
+	 */
+	public static void write(List<String> lines, Writer writer)
+			throws IOException {
+		for (int i = 0, size = lines.size(); i < size; i++) {
+			if (i > 0) {
+				writer.write('\n');
+			}
+			writer.write(lines.get(i));
+		}
+	}
+
+	/**
+	 * Applies the hunks of the given unified diff to the given lines. Lines
+	 * preceding the first hunk (e.g. <code>---</code> and <code>+++</code>) are
+	 * ignored.
+	 * <p>
+	 * The lines are expected as returned by {@link #toLines(String)}. Whether
+	 * the patched source ends with a line separator is determined by the
+	 * <code>\ No newline at end of file</code> markers of the hunk touching
+	 * the end of the source.
+	 *
+	 * @param lines
+	 *            are not modified
+	 * @param patchLines
+	 * @return the patched lines
+	 * @throws PatchFailedException
+	 *             if a hunk does not match the given lines
+	 */
+	public static List<String> patch(List<String> lines,
+			List<String> patchLines) throws PatchFailedException {
+		boolean newline = lines.size() > 0
+				&& lines.get(lines.size() - 1).isEmpty();
+		if (newline) {
+			lines = lines.subList(0, lines.size() - 1);
+		}
+
+		List<String> patched = new ArrayList<String>(lines.size()
+				+ patchLines.size() + 1);
+		int position = 0;
+		int i = 0;
+		while (i < patchLines.size()) {
+			Matcher matcher = HUNK_HEADER.matcher(patchLines.get(i++));
+			if (!matcher.matches()) {
+				continue;
+			}
+			int oldStart = Integer.parseInt(matcher.group(1));
+			int oldCount = matcher.group(2) != null ? Integer.parseInt(matcher
+					.group(2)) : 1;
+			int newCount = matcher.group(4) != null ? Integer.parseInt(matcher
+					.group(4)) : 1;
+
+			// an empty old range denotes the line after which to insert
+			int hunkStart = oldCount == 0 ? oldStart : oldStart - 1;
+			if (hunkStart < position || hunkStart > lines.size()) {
+				throw new PatchFailedException("Hunk " + matcher.group()
+						+ " does not fit a source with " + lines.size()
+						+ " lines");
+			}
+			patched.addAll(lines.subList(position, hunkStart));
+			position = hunkStart;
+
+			boolean newNewline = true;
+			char previousType = ' ';
+			while (i < patchLines.size()) {
+				String patchLine = patchLines.get(i);
+				char type = patchLine.isEmpty() ? ' ' : patchLine.charAt(0);
+				if (type == '\\') {
+					// "\ No newline at end of file" refers to the previous line
+					if (previousType != '-') {
+						newNewline = false;
+					}
+					i++;
+					continue;
+				}
+				if (oldCount <= 0 && newCount <= 0) {
+					break;
+				}
+				i++;
+				String content = patchLine.isEmpty() ? "" : patchLine
+						.substring(1);
+				switch (type) {
+				case ' ':
+				case '-':
+					if (position >= lines.size()
+							|| !lines.get(position).equals(content)) {
+						throw new PatchFailedException("Line "
+								+ (position + 1) + " does not match \""
+								+ patchLine + "\"");
+					}
+					if (type == ' ') {
+						patched.add(content);
+						newCount--;
+					}
+					position++;
+					oldCount--;
+					break;
+				case '+':
+					patched.add(content);
+					newCount--;
+					break;
+				default:
+					throw new PatchFailedException("Unexpected line \""
+							+ patchLine + "\" in hunk " + matcher.group());
+				}
+				previousType = type;
+			}
+			if (oldCount > 0 || newCount > 0) {
+				throw new PatchFailedException("Hunk " + matcher.group()
+						+ " is incomplete");
+			}
+			if (position == lines.size()) {
+				newline = newNewline && patched.size() > 0;
+			}
+		}
+		patched.addAll(lines.subList(position, lines.size()));
+		if (newline) {
+			patched.add("");
+		}
+		return patched;
+	}
+
+}
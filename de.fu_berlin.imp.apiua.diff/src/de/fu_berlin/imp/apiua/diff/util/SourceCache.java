@@ -1,26 +1,304 @@
 package de.fu_berlin.imp.apiua.diff.util;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.Assert;
 
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
+import de.fu_berlin.imp.apiua.core.util.AtomicFileOutputStream;
 
+/**
+ * {@link ISourceStore} that stores sources as content-addressed blobs.
+ * <p>
+ * Each distinct content is stored only once as a gzip compressed blob named
+ * after its SHA-1 hash. A small manifest per identifier and revision maps the
+ * filenames to their blobs. Sources stored by former versions as plain
+ * <code>&lt;id&gt;/&lt;revision&gt;/&lt;filename&gt;</code> files are
+ * migrated on first access.
+ * <p>
+ * The {@link File}s returned by
+ * {@link #getSourceFile(IIdentifier, String, String)} are inflated into a
+ * temporary directory whose size is limited to {@link #MAX_FILES_SIZE}. The
+ * least recently used {@link File}s are deleted first.
+ *
+ * @author bkahlert
+ */
 public class SourceCache implements ISourceStore {
-	private IBaseDataContainer baseDataContainer;
+
+	private static final Logger LOGGER = Logger.getLogger(SourceCache.class);
+
+	/**
+	 * Maximum number of manifests kept in memory.
+	 */
+	public static final int MANIFEST_CACHE_SIZE = 1024;
+
+	/**
+	 * Number of bytes the inflated source {@link File}s may occupy.
+	 */
+	public static final long MAX_FILES_SIZE = 64l * 1024 * 1024;
+
+	static final String BLOBS = "blobs";
+	static final String MANIFESTS = "manifests";
+
+	private static final Charset MANIFEST_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * Manifest entry of a single source.
+	 */
+	private static class Entry {
+		private final String hash;
+		private final long length;
+
+		public Entry(String hash, long length) {
+			this.hash = hash;
+			this.length = length;
+		}
+	}
+
+	private volatile IBaseDataContainer baseDataContainer;
 	private String scope;
+	private PatchStatusIndex patchStatusIndex;
+
+	private final long maxFilesSize;
+	private File filesDirectory = null;
+
+	/**
+	 * Inflated {@link File}s relative to {@link #filesDirectory}; least
+	 * recently used first.
+	 */
+	private final Map<String, Entry> files = new LinkedHashMap<String, Entry>(
+			16, 0.75f, true);
+	private long filesSize = 0;
+
+	private final Map<String, Map<String, Entry>> manifests = new LinkedHashMap<String, Map<String, Entry>>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<String, Map<String, Entry>> eldest) {
+			return this.size() > MANIFEST_CACHE_SIZE;
+		}
+	};
 
 	public SourceCache(IBaseDataContainer baseDataContainer) {
+		this(baseDataContainer, "sources");
 		Assert.isNotNull(baseDataContainer);
-		this.baseDataContainer = baseDataContainer;
-		this.scope = "sources";
 	}
 
 	public SourceCache(IBaseDataContainer baseDataContainer, String scope) {
+		this(baseDataContainer, scope, MAX_FILES_SIZE);
+	}
+
+	SourceCache(IBaseDataContainer baseDataContainer, String scope,
+			long maxFilesSize) {
 		this.baseDataContainer = baseDataContainer;
 		this.scope = scope;
+		this.maxFilesSize = maxFilesSize;
+		this.patchStatusIndex = new PatchStatusIndex(baseDataContainer, scope);
+	}
+
+	/**
+	 * Stores the sources in the given {@link IBaseDataContainer} from now on,
+	 * e.g. because the one this cache was created for is replaced. Already
+	 * inflated {@link File}s and failed patches are kept.
+	 * 
+	 * @param baseDataContainer
+	 */
+	public void setBaseDataContainer(IBaseDataContainer baseDataContainer) {
+		Assert.isNotNull(baseDataContainer);
+		synchronized (this.manifests) {
+			this.baseDataContainer = baseDataContainer;
+			this.manifests.clear();
+		}
+		this.patchStatusIndex.setBaseDataContainer(baseDataContainer);
+	}
+
+	private static String getKey(IIdentifier id, String revision) {
+		try {
+			revision = Long.parseLong(revision) + "";
+		} catch (NumberFormatException e) {
+			// just wanted to try to remove the leading zeros
+		}
+		return id + "/" + revision;
+	}
+
+	private static String getManifestName(String key) {
+		return MANIFESTS + "/" + key + ".manifest";
+	}
+
+	private static String getBlobName(String hash) {
+		return BLOBS + "/" + hash.substring(0, 2) + "/" + hash + ".gz";
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the manifest of the given key. The caller must hold the lock
+	 * on {@link #manifests}.
+	 */
+	private Map<String, Entry> getManifest(String key) throws IOException {
+		Map<String, Entry> manifest = this.manifests.get(key);
+		if (manifest == null) {
+			manifest = new LinkedHashMap<String, Entry>();
+			File file = this.baseDataContainer.getStaticFile(this.scope,
+					getManifestName(key));
+			if (file != null) {
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(new FileInputStream(file),
+								MANIFEST_CHARSET));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						String[] parts = line.split("\t", 3);
+						if (parts.length == 3) {
+							manifest.put(parts[2], new Entry(parts[0],
+									Long.parseLong(parts[1])));
+						}
+					}
+				} finally {
+					reader.close();
+				}
+			}
+			this.manifests.put(key, manifest);
+		}
+		return manifest;
+	}
+
+	private void putEntry(String key, String filename, Entry entry)
+			throws IOException {
+		synchronized (this.manifests) {
+			Map<String, Entry> manifest = this.getManifest(key);
+			if (entry != null) {
+				manifest.put(filename, entry);
+			} else if (manifest.remove(filename) == null) {
+				return;
+			}
+
+			AtomicFileOutputStream out = this.baseDataContainer.putFile(
+					this.scope, getManifestName(key));
+			try {
+				Writer writer = new OutputStreamWriter(out, MANIFEST_CHARSET);
+				for (Map.Entry<String, Entry> e : manifest.entrySet()) {
+					writer.write(e.getValue().hash + "\t"
+							+ e.getValue().length + "\t" + e.getKey() + "\n");
+				}
+				writer.flush();
+			} catch (IOException e) {
+				out.abort();
+				throw e;
+			}
+			out.close();
+		}
+	}
+
+	private Entry getEntry(IIdentifier id, String revision, String filename)
+			throws IOException {
+		String key = getKey(id, revision);
+		Entry entry;
+		synchronized (this.manifests) {
+			entry = this.getManifest(key).get(filename);
+		}
+		if (entry == null) {
+			File legacyFile = this.baseDataContainer.getStaticFile(this.scope,
+					key + "/" + filename);
+			if (legacyFile != null) {
+				entry = this.putSource(key, filename, legacyFile);
+				this.baseDataContainer.putFile(this.scope, key + "/"
+						+ filename, null);
+				LOGGER.info("Migrated source " + key + "/" + filename);
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Writes a blob unless it already exists.
+	 */
+	private void putBlob(String hash, InputStream in) throws IOException {
+		String name = getBlobName(hash);
+		if (this.baseDataContainer.getStaticFile(this.scope, name) != null) {
+			return;
+		}
+		AtomicFileOutputStream out = this.baseDataContainer.putFile(
+				this.scope, name);
+		try {
+			GZIPOutputStream gzip = new GZIPOutputStream(out);
+			IOUtils.copy(in, gzip);
+			gzip.finish();
+		} catch (IOException e) {
+			out.abort();
+			throw e;
+		}
+		out.close();
+	}
+
+	private Entry putSource(String key, String filename, File file)
+			throws IOException {
+		MessageDigest digest = createDigest();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = in.read(buffer)) >= 0) {
+				digest.update(buffer, 0, length);
+			}
+		} finally {
+			in.close();
+		}
+		Entry entry = new Entry(new String(Hex.encodeHex(digest.digest())),
+				file.length());
+
+		in = new FileInputStream(file);
+		try {
+			this.putBlob(entry.hash, in);
+		} finally {
+			in.close();
+		}
+		this.putEntry(key, filename, entry);
+		return entry;
+	}
+
+	private InputStream openBlob(Entry entry) throws IOException {
+		File blob = this.baseDataContainer.getStaticFile(this.scope,
+				getBlobName(entry.hash));
+		if (blob == null) {
+			return null;
+		}
+		return new GZIPInputStream(new FileInputStream(blob));
 	}
 
 	/*
@@ -34,13 +312,110 @@ public class SourceCache implements ISourceStore {
 	@Override
 	public File getSourceFile(IIdentifier id, String revision, String filename)
 			throws IOException {
+		Entry entry = this.getEntry(id, revision, filename);
+		if (entry == null) {
+			return null;
+		}
+		String name = entry.hash + "/" + FilenameUtils.getName(filename);
+		synchronized (this.files) {
+			if (this.filesDirectory == null) {
+				this.filesDirectory = File.createTempFile("apiua-sources-", "");
+				this.filesDirectory.delete();
+				this.filesDirectory.mkdirs();
+			}
+			File file = new File(this.filesDirectory, name);
+			if (this.files.get(name) != null && file.exists()) {
+				return file;
+			}
+
+			InputStream in = this.openBlob(entry);
+			if (in == null) {
+				return null;
+			}
+			try {
+				file.getParentFile().mkdirs();
+				OutputStream out = new FileOutputStream(file);
+				try {
+					IOUtils.copy(in, out);
+				} finally {
+					out.close();
+				}
+			} catch (IOException e) {
+				file.delete();
+				throw e;
+			} finally {
+				in.close();
+			}
+			if (this.files.put(name, entry) == null) {
+				this.filesSize += entry.length;
+			}
+			this.evictFiles(name);
+			return file;
+		}
+	}
+
+	/**
+	 * Deletes the least recently used inflated {@link File}s until they fit
+	 * into {@link #maxFilesSize}. The caller must hold the lock on
+	 * {@link #files}.
+	 * 
+	 * @param keep
+	 *            name of the {@link File} that must not be deleted
+	 */
+	private void evictFiles(String keep) {
+		for (Iterator<Map.Entry<String, Entry>> it = this.files.entrySet()
+				.iterator(); it.hasNext() && this.filesSize > this.maxFilesSize;) {
+			Map.Entry<String, Entry> evicted = it.next();
+			if (evicted.getKey().equals(keep)) {
+				continue;
+			}
+			File file = new File(this.filesDirectory, evicted.getKey());
+			file.delete();
+			file.getParentFile().delete();
+			this.filesSize -= evicted.getValue().length;
+			it.remove();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.fu_berlin.imp.apiua.diff.util.ISourceStore#getSourceLength
+	 * (de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier,
+	 * java.lang.String, java.lang.String)
+	 */
+	@Override
+	public long getSourceLength(IIdentifier id, String revision,
+			String filename) throws IOException {
+		Entry entry = this.getEntry(id, revision, filename);
+		return entry != null ? entry.length : -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.fu_berlin.imp.apiua.diff.util.ISourceStore#getSource
+	 * (de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier,
+	 * java.lang.String, java.lang.String)
+	 */
+	@Override
+	public String getSource(IIdentifier id, String revision, String filename)
+			throws IOException {
+		Entry entry = this.getEntry(id, revision, filename);
+		if (entry == null) {
+			return null;
+		}
+		InputStream in = this.openBlob(entry);
+		if (in == null) {
+			LOGGER.warn("Blob of source " + getKey(id, revision) + "/"
+					+ filename + " is missing");
+			return null;
+		}
 		try {
-			revision = Long.parseLong(revision) + "";
-		} catch (NumberFormatException e) {
-			// just wanted to try to remove the leading zeros
+			return IOUtils.toString(in, Charset.defaultCharset().name());
+		} finally {
+			in.close();
 		}
-		return this.baseDataContainer.getStaticFile(this.scope, id + "/"
-				+ revision + "/" + filename);
 	}
 
 	/*
@@ -54,9 +429,65 @@ public class SourceCache implements ISourceStore {
 	@Override
 	public void setSourceFile(IIdentifier id, String revision, String filename,
 			File file) throws IOException {
+		String key = getKey(id, revision);
+		if (file == null) {
+			this.putEntry(key, filename, null);
+		} else if (file.exists()) {
+			this.putSource(key, filename, file);
+		}
+	}
 
-		this.baseDataContainer.putFile(this.scope, id + "/" + revision + "/"
-				+ filename, file);
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see de.fu_berlin.imp.apiua.diff.util.ISourceStore#setSource
+	 * (de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier,
+	 * java.lang.String, java.lang.String, java.util.List)
+	 */
+	@Override
+	public void setSource(IIdentifier id, String revision, String filename,
+			List<String> lines) throws IOException {
+		// hash first so that already stored contents are not written again
+		MessageDigest digest = createDigest();
+		CountingOutputStream counter = new CountingOutputStream(
+				new DigestOutputStream(new NullOutputStream(), digest));
+		this.write(lines, counter);
+		Entry entry = new Entry(new String(Hex.encodeHex(digest.digest())),
+				counter.getByteCount());
+
+		String name = getBlobName(entry.hash);
+		if (this.baseDataContainer.getStaticFile(this.scope, name) == null) {
+			AtomicFileOutputStream out = this.baseDataContainer.putFile(
+					this.scope, name);
+			try {
+				GZIPOutputStream gzip = new GZIPOutputStream(out);
+				this.write(lines, gzip);
+				gzip.finish();
+			} catch (IOException e) {
+				out.abort();
+				throw e;
+			}
+			out.close();
+		}
+		this.putEntry(getKey(id, revision), filename, entry);
+	}
+
+	private void write(List<String> lines, OutputStream out)
+			throws IOException {
+		Writer writer = new OutputStreamWriter(out, Charset.defaultCharset());
+		PatchUtils.write(lines, writer);
+		writer.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.fu_berlin.imp.apiua.diff.util.ISourceStore#getPatchStatusIndex()
+	 */
+	@Override
+	public PatchStatusIndex getPatchStatusIndex() {
+		return this.patchStatusIndex;
 	}
 
 	/*
@@ -67,6 +498,30 @@ public class SourceCache implements ISourceStore {
 	 */
 	@Override
 	public void clear() {
-		this.baseDataContainer.deleteScope("scources");
+		synchronized (this.manifests) {
+			this.manifests.clear();
+		}
+		this.patchStatusIndex.clear();
+		this.baseDataContainer.deleteScope(this.scope);
+		this.dispose();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * de.fu_berlin.imp.apiua.diff.util.ISourceStore#dispose()
+	 */
+	@Override
+	public void dispose() {
+		this.patchStatusIndex.flush();
+		synchronized (this.files) {
+			if (this.filesDirectory != null) {
+				FileUtils.deleteQuietly(this.filesDirectory);
+				this.filesDirectory = null;
+			}
+			this.files.clear();
+			this.filesSize = 0;
+		}
 	}
 }
@@ -9,6 +9,7 @@ import org.junit.runners.Suite.SuiteClasses;
 		de.fu_berlin.imp.apiua.diff.util.AllTests.class,
 		de.fu_berlin.imp.apiua.diff.preferences.AllTests.class,
 		de.fu_berlin.imp.apiua.diff.model.AllTests.class,
+		de.fu_berlin.imp.apiua.diff.jobs.AllTests.class,
 		de.fu_berlin.imp.apiua.diff.services.impl.AllTests.class })
 public class AllTests {
 
@@ -0,0 +1,11 @@
+package de.fu_berlin.imp.apiua.diff.jobs;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+@RunWith(Suite.class)
+@SuiteClasses({ SourceWarmUpJobTest.class })
+public class AllTests {
+
+}
@@ -0,0 +1,278 @@
+package de.fu_berlin.imp.apiua.diff.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.identifier.ID;
+import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
+import de.fu_berlin.imp.apiua.diff.model.DiffContainer;
+import de.fu_berlin.imp.apiua.diff.model.IDiff;
+import de.fu_berlin.imp.apiua.diff.model.IDiffRecord;
+import de.fu_berlin.imp.apiua.diff.model.IDiffs;
+import de.fu_berlin.imp.apiua.diff.model.impl.DiffRecord;
+import de.fu_berlin.imp.apiua.diff.model.impl.DiffRecords;
+import de.fu_berlin.imp.apiua.diff.util.ISourceStore;
+import de.fu_berlin.imp.apiua.diff.util.PatchStatusIndex;
+
+public class SourceWarmUpJobTest {
+
+	/**
+	 * {@link ISourceStore} that only knows which sources exist and records
+	 * the requested ones.
+	 */
+	private static class SourceStore implements ISourceStore {
+		private final PatchStatusIndex patchStatusIndex = new PatchStatusIndex();
+		private final Set<String> existing = new HashSet<String>();
+		private final List<String> requested = Collections
+				.synchronizedList(new ArrayList<String>());
+
+		public SourceStore(String... existing) {
+			this.existing.addAll(Arrays.asList(existing));
+		}
+
+		public List<String> getRequested(String filename) {
+			List<String> requested = new ArrayList<String>();
+			synchronized (this.requested) {
+				for (String source : this.requested) {
+					if (source.endsWith(filename)) {
+						requested.add(source);
+					}
+				}
+			}
+			return requested;
+		}
+
+		@Override
+		public void setSourceFile(IIdentifier id, String revision,
+				String filename, File file) throws IOException {
+			return;
+		}
+
+		@Override
+		public void setSource(IIdentifier id, String revision,
+				String filename, List<String> lines) throws IOException {
+			return;
+		}
+
+		@Override
+		public File getSourceFile(IIdentifier id, String revision,
+				String filename) throws IOException {
+			return null;
+		}
+
+		@Override
+		public long getSourceLength(IIdentifier id, String revision,
+				String filename) throws IOException {
+			return this.existing.contains(revision + "/" + filename) ? 0 : -1;
+		}
+
+		@Override
+		public String getSource(IIdentifier id, String revision,
+				String filename) throws IOException {
+			this.requested.add(revision + "/" + filename);
+			return "";
+		}
+
+		@Override
+		public PatchStatusIndex getPatchStatusIndex() {
+			return this.patchStatusIndex;
+		}
+
+		@Override
+		public void clear() {
+			return;
+		}
+
+		@Override
+		public void dispose() {
+			return;
+		}
+	}
+
+	private static class RecordingMonitor extends NullProgressMonitor {
+		private boolean done = false;
+
+		@Override
+		public void done() {
+			this.done = true;
+		}
+	}
+
+	@Rule
+	public JUnitRuleMockery context = new JUnitRuleMockery() {
+		{
+			this.setImposteriser(ClassImposteriser.INSTANCE);
+			this.setThreadingPolicy(new Synchroniser());
+		}
+	};
+
+	private final ID id = new ID("theID");
+	private int numDiffs = 0;
+
+	/**
+	 * Returns an {@link IDiff} with {@link DiffRecord}s of the given files
+	 * whose sources are read from the given {@link ISourceStore}.
+	 */
+	private IDiff createDiff(final String locationHash, final int revision,
+			ISourceStore sourceStore, String... filenames) {
+		final IDiff diff = this.context.mock(IDiff.class, "diff"
+				+ this.numDiffs);
+		final DiffRecords diffRecords = this.context.mock(DiffRecords.class,
+				"diffRecords" + this.numDiffs);
+		this.numDiffs++;
+
+		final List<IDiffRecord> records = new ArrayList<IDiffRecord>();
+		for (String filename : filenames) {
+			records.add(new DiffRecord(diff, null, sourceStore, filename,
+					null, null));
+		}
+		this.context.checking(new Expectations() {
+			{
+				this.allowing(diff).getIdentifier();
+				this.will(returnValue(SourceWarmUpJobTest.this.id));
+				this.allowing(diff).getLocationHash();
+				this.will(returnValue(locationHash));
+				this.allowing(diff).getRevision();
+				this.will(returnValue(Integer.toString(revision)));
+				this.allowing(diff).getCalculatedRevision();
+				this.will(returnValue(revision));
+				this.allowing(diff).getDiffFileRecords();
+				this.will(returnValue(diffRecords));
+				this.allowing(diffRecords).iterator();
+				this.will(returnIterator(records));
+			}
+		});
+		return diff;
+	}
+
+	private IDiffs createDiffs(final IDiff... diffs) {
+		final IDiffs mock = this.context.mock(IDiffs.class);
+		this.context.checking(new Expectations() {
+			{
+				this.allowing(mock).iterator();
+				this.will(returnIterator(diffs));
+			}
+		});
+		return mock;
+	}
+
+	private SourceWarmUpJob createJob(final IDiffs diffs) {
+		final DiffContainer diffContainer = this.context
+				.mock(DiffContainer.class);
+		this.context.checking(new Expectations() {
+			{
+				this.allowing(diffContainer).getIDs();
+				this.will(returnValue(Collections
+						.singleton(SourceWarmUpJobTest.this.id)));
+				this.allowing(diffContainer).createDiffFiles(
+						with(SourceWarmUpJobTest.this.id),
+						with(any(IProgressMonitor.class)));
+				this.will(returnValue(diffs));
+			}
+		});
+		return new SourceWarmUpJob(diffContainer);
+	}
+
+	@Test
+	public void testGetChains() {
+		SourceStore sourceStore = new SourceStore();
+		IDiffs diffs = this.createDiffs(
+				this.createDiff("x", 2, sourceStore, "a.cpp", "b.cpp"),
+				this.createDiff("y", 1, sourceStore, "a.cpp"),
+				this.createDiff("x", 0, sourceStore, "a.cpp"));
+
+		Collection<List<IDiffRecord>> chains = SourceWarmUpJob
+				.getChains(diffs);
+		assertEquals(3, chains.size());
+		Iterator<List<IDiffRecord>> iterator = chains.iterator();
+
+		List<IDiffRecord> chain = iterator.next();
+		assertEquals(2, chain.size());
+		assertEquals("a.cpp", chain.get(0).getFilename());
+		assertEquals(0, chain.get(0).getDiffFile().getCalculatedRevision());
+		assertEquals(2, chain.get(1).getDiffFile().getCalculatedRevision());
+
+		chain = iterator.next();
+		assertEquals(1, chain.size());
+		assertEquals("b.cpp", chain.get(0).getFilename());
+
+		chain = iterator.next();
+		assertEquals(1, chain.size());
+		assertEquals("y", chain.get(0).getDiffFile().getLocationHash());
+	}
+
+	@Test
+	public void testRun() {
+		SourceStore sourceStore = new SourceStore("1/a.cpp");
+		IDiffs diffs = this.createDiffs(
+				this.createDiff("x", 2, sourceStore, "a.cpp", "b.cpp"),
+				this.createDiff("x", 0, sourceStore, "a.cpp"),
+				this.createDiff("x", 1, sourceStore, "a.cpp", "b.cpp"),
+				this.createDiff("x", 3, sourceStore, "a.cpp"));
+
+		RecordingMonitor monitor = new RecordingMonitor();
+		IStatus status = this.createJob(diffs).run(monitor);
+		assertEquals(IStatus.OK, status.getSeverity());
+		assertTrue(monitor.done);
+
+		// existing sources are skipped
+		assertEquals(Arrays.asList("0/a.cpp", "2/a.cpp", "3/a.cpp"),
+				sourceStore.getRequested("a.cpp"));
+		assertEquals(Arrays.asList("1/b.cpp", "2/b.cpp"),
+				sourceStore.getRequested("b.cpp"));
+	}
+
+	@Test
+	public void testCancel() {
+		final RecordingMonitor monitor = new RecordingMonitor();
+		SourceStore sourceStore = new SourceStore() {
+			@Override
+			public String getSource(IIdentifier id, String revision,
+					String filename) throws IOException {
+				monitor.setCanceled(true);
+				return super.getSource(id, revision, filename);
+			}
+		};
+		IDiffs diffs = this.createDiffs(
+				this.createDiff("x", 0, sourceStore, "a.cpp"),
+				this.createDiff("x", 1, sourceStore, "a.cpp"),
+				this.createDiff("x", 2, sourceStore, "a.cpp"));
+
+		SourceWarmUpJob job = this.createJob(diffs);
+		IStatus status = job.run(monitor);
+		assertEquals(IStatus.CANCEL, status.getSeverity());
+		assertTrue(monitor.done);
+		assertEquals(Arrays.asList("0/a.cpp"),
+				sourceStore.getRequested("a.cpp"));
+
+		// canceled before loading
+		monitor.done = false;
+		status = job.run(monitor);
+		assertEquals(IStatus.CANCEL, status.getSeverity());
+		assertTrue(monitor.done);
+		assertEquals(Arrays.asList("0/a.cpp"),
+				sourceStore.getRequested("a.cpp"));
+	}
+
+}
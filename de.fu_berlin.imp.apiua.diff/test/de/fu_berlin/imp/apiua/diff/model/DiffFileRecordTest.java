@@ -24,6 +24,7 @@ import de.fu_berlin.imp.apiua.diff.model.impl.Diff;
 import de.fu_berlin.imp.apiua.diff.util.DiffRecordUtils;
 import de.fu_berlin.imp.apiua.diff.util.ISourceStore;
 import de.fu_berlin.imp.apiua.diff.util.ITrunk;
+import de.fu_berlin.imp.apiua.diff.util.PatchStatusIndex;
 
 @RunWith(Parameterized.class)
 public class DiffFileRecordTest {
@@ -186,22 +187,52 @@ public class DiffFileRecordTest {
 			}
 		};
 		final ISourceStore sourceCache = new ISourceStore() {
+			private final PatchStatusIndex patchStatusIndex = new PatchStatusIndex();
+
 			@Override
 			public void setSourceFile(IIdentifier id, String revision,
 					String filename, File file) throws IOException {
 				return;
 			}
 
+			@Override
+			public void setSource(IIdentifier id, String revision,
+					String filename, List<String> lines) throws IOException {
+				return;
+			}
+
 			@Override
 			public File getSourceFile(IIdentifier id, String revision,
 					String filename) throws IOException {
 				return null;
 			}
 
+			@Override
+			public long getSourceLength(IIdentifier id, String revision,
+					String filename) throws IOException {
+				return -1;
+			}
+
+			@Override
+			public String getSource(IIdentifier id, String revision,
+					String filename) throws IOException {
+				return null;
+			}
+
+			@Override
+			public PatchStatusIndex getPatchStatusIndex() {
+				return this.patchStatusIndex;
+			}
+
 			@Override
 			public void clear() {
 				return;
 			}
+
+			@Override
+			public void dispose() {
+				return;
+			}
 		};
 		final Diff diff = new Diff(data, null, trunk, sourceCache,
 				new NullProgressMonitor()) {
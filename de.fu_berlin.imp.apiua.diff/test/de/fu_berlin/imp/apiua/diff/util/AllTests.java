@@ -6,7 +6,8 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
 @SuiteClasses({ TrunkUtilsTest.class, DiffUtilsTest.class, DiffCacheTest.class,
-		DiffRecordUtilsTest.class })
+		DiffRecordUtilsTest.class, PatchUtilsTest.class,
+		PatchStatusIndexTest.class, SourceCacheTest.class })
 public class AllTests {
 
 }
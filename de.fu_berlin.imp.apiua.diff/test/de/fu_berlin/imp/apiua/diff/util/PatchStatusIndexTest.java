@@ -0,0 +1,92 @@
+package de.fu_berlin.imp.apiua.diff.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.data.impl.FileBaseDataContainer;
+
+public class PatchStatusIndexTest {
+
+	@Test
+	public void testPersistence() throws IOException {
+		File dir = File.createTempFile("patch-status", "");
+		dir.delete();
+		dir.mkdir();
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			FileBaseDataContainer baseDataContainer = new FileBaseDataContainer(
+					dir);
+			URI a = new URI("apiua://diff/a/1/file.cpp");
+			URI b = new URI("apiua://diff/b/1/file.cpp");
+
+			PatchStatusIndex patchStatusIndex = new PatchStatusIndex(
+					baseDataContainer, "sources");
+			assertFalse(patchStatusIndex.isFailed(a));
+			patchStatusIndex.setFailed(a);
+			patchStatusIndex.setFailed(b);
+			assertTrue(patchStatusIndex.isFailed(a));
+			assertTrue(patchStatusIndex.isFailed(b));
+
+			// the first change is saved immediately, the second one is pending
+			PatchStatusIndex loaded = new PatchStatusIndex(baseDataContainer,
+					"sources");
+			assertTrue(loaded.isFailed(a));
+			assertFalse(loaded.isFailed(b));
+
+			patchStatusIndex.flush();
+			loaded = new PatchStatusIndex(baseDataContainer, "sources");
+			assertTrue(loaded.isFailed(a));
+			assertTrue(loaded.isFailed(b));
+
+			loaded.reset("apiua://diff/a/");
+			assertFalse(loaded.isFailed(a));
+			assertTrue(loaded.isFailed(b));
+			loaded.flush();
+			assertFalse(new PatchStatusIndex(baseDataContainer, "sources")
+					.isFailed(a));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testSetBaseDataContainer() throws IOException {
+		File dir1 = File.createTempFile("patch-status", "");
+		File dir2 = File.createTempFile("patch-status", "");
+		dir1.delete();
+		dir1.mkdir();
+		dir2.delete();
+		dir2.mkdir();
+		try {
+			new File(dir1, "__dataset.txt").createNewFile();
+			new File(dir2, "__dataset.txt").createNewFile();
+			FileBaseDataContainer baseDataContainer1 = new FileBaseDataContainer(
+					dir1);
+			FileBaseDataContainer baseDataContainer2 = new FileBaseDataContainer(
+					dir2);
+			URI a = new URI("apiua://diff/a/1/file.cpp");
+
+			PatchStatusIndex patchStatusIndex = new PatchStatusIndex(
+					baseDataContainer1, "sources");
+			patchStatusIndex.setFailed(a);
+
+			// failed patches are kept and saved to the new container
+			patchStatusIndex.setBaseDataContainer(baseDataContainer2);
+			assertTrue(patchStatusIndex.isFailed(a));
+			patchStatusIndex.flush();
+			assertTrue(new PatchStatusIndex(baseDataContainer2, "sources")
+					.isFailed(a));
+		} finally {
+			FileUtils.deleteDirectory(dir1);
+			FileUtils.deleteDirectory(dir2);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package de.fu_berlin.imp.apiua.diff.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.util.FileUtils;
+import difflib.PatchFailedException;
+
+public class PatchUtilsTest {
+
+	private static final String root = "/"
+			+ PatchUtilsTest.class.getPackage().getName().replace('.', '/')
+			+ "/..";
+
+	private static final String FILENAME = "./sandbox/mordor/apps/exastellar/exastellar.cpp";
+
+	/**
+	 * Returns the patch of {@link #FILENAME} contained in the given diff file.
+	 */
+	private static List<String> readPatch(File diffFile) throws IOException {
+		List<String> patch = new ArrayList<String>();
+		boolean inPatch = false;
+		for (String line : org.apache.commons.io.FileUtils.readLines(diffFile,
+				"UTF-8")) {
+			if (line.startsWith("diff ")) {
+				inPatch = line.endsWith(" " + FILENAME);
+			} else if (inPatch) {
+				patch.add(line);
+			}
+		}
+		return patch;
+	}
+
+	@Test
+	public void testPatch() throws PatchFailedException, IOException {
+		List<String> lines = PatchUtils.toLines("a\nb\nc\nd\n");
+		assertEquals(Arrays.asList("a", "b", "c", "d", ""), lines);
+
+		List<String> patched = PatchUtils.patch(lines, Arrays.asList(
+				"--- old", "+++ new", "@@ -1,3 +1,3 @@", " a", "-b", "+B",
+				" c", "@@ -4 +4,2 @@", " d", "+e",
+				"\\ No newline at end of file"));
+		assertEquals("a\nB\nc\nd\ne", PatchUtils.toSource(patched));
+		assertEquals(Arrays.asList("a", "b", "c", "d", ""), lines);
+
+		StringWriter writer = new StringWriter();
+		PatchUtils.write(patched, writer);
+		assertEquals(PatchUtils.toSource(patched), writer.toString());
+
+		assertEquals("x\ny\n", PatchUtils.toSource(PatchUtils.patch(
+				PatchUtils.toLines(""),
+				Arrays.asList("@@ -0,0 +1,2 @@", "+x", "+y"))));
+	}
+
+	@Test
+	public void testLines() {
+		for (String source : new String[] { "", "\n", "x", "x\n", "x\n\n\n",
+				"\n\nx\n\n" }) {
+			assertEquals(source, PatchUtils.toSource(PatchUtils.toLines(source)));
+		}
+		assertEquals(Arrays.asList("x", "", "", ""),
+				PatchUtils.toLines("x\n\n\n"));
+	}
+
+	@Test
+	public void testPatchTrailingBlankLines() throws PatchFailedException {
+		assertEquals("x\n\n\ny\n", PatchUtils.toSource(PatchUtils.patch(
+				PatchUtils.toLines("x\n\n\n"),
+				Arrays.asList("@@ -1,3 +1,4 @@", " x", "", " ", "+y"))));
+	}
+
+	@Test
+	public void testPatchFinalNewline() throws PatchFailedException {
+		// unchanged end keeps the final newline
+		assertEquals("A\nb\n", PatchUtils.toSource(PatchUtils.patch(
+				PatchUtils.toLines("a\nb\n"),
+				Arrays.asList("@@ -1 +1 @@", "-a", "+A"))));
+		assertEquals("A\nb", PatchUtils.toSource(PatchUtils.patch(
+				PatchUtils.toLines("a\nb"),
+				Arrays.asList("@@ -1 +1 @@", "-a", "+A"))));
+
+		// adding and removing the final newline
+		assertEquals("a\nb\n", PatchUtils.toSource(PatchUtils.patch(
+				PatchUtils.toLines("a\nb"), Arrays.asList("@@ -2 +2 @@",
+						"-b", "\\ No newline at end of file", "+b"))));
+		assertEquals("a\nb", PatchUtils.toSource(PatchUtils.patch(
+				PatchUtils.toLines("a\nb\n"), Arrays.asList("@@ -2 +2 @@",
+						"-b", "+b", "\\ No newline at end of file"))));
+
+		// context without final newline
+		assertEquals("A\nb", PatchUtils.toSource(PatchUtils.patch(
+				PatchUtils.toLines("a\nb"), Arrays.asList("@@ -1,2 +1,2 @@",
+						"-a", "+A", " b", "\\ No newline at end of file"))));
+	}
+
+	@Test(expected = PatchFailedException.class)
+	public void testPatchMismatch() throws PatchFailedException {
+		PatchUtils.patch(PatchUtils.toLines("a\nb"),
+				Arrays.asList("@@ -1,2 +1,1 @@", " a", "-c"));
+	}
+
+	@Test
+	public void testPatchChain() throws IOException, PatchFailedException {
+		File directory = new File(FileUtils.getFile(root),
+				"diff/amudto8y1mzxaebv");
+		String[] diffFiles = new String[] {
+				"amudto8y1mzxaebv_r00000002_2011-09-13T09-59-50.diff",
+				"amudto8y1mzxaebv_r00000004_2011-09-13T10-06-31.diff",
+				"amudto8y1mzxaebv_r00000005_2011-09-13T11-55-46.diff" };
+
+		List<String> lines = PatchUtils.toLines("");
+		for (int i = 0; i < diffFiles.length; i++) {
+			lines = PatchUtils.patch(lines,
+					readPatch(new File(directory, diffFiles[i])));
+			String expected = org.apache.commons.io.FileUtils
+					.readFileToString(FileUtils.getFile(root
+							+ "/trunk/sandbox/mordor/apps/exastellar/exastellar.r"
+							+ i + ".cpp"));
+			// the patches lack "\ No newline at end of file" markers while
+			// the expected files were stored without the final newline
+			assertEquals(expected + "\n", PatchUtils.toSource(lines));
+		}
+	}
+
+}
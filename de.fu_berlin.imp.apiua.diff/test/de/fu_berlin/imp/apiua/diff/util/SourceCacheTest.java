@@ -0,0 +1,120 @@
+package de.fu_berlin.imp.apiua.diff.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.data.impl.FileBaseDataContainer;
+import de.fu_berlin.imp.apiua.core.model.identifier.ID;
+
+public class SourceCacheTest {
+
+	@Test
+	public void testDeduplication() throws IOException {
+		File dir = File.createTempFile("source-cache", "");
+		dir.delete();
+		dir.mkdir();
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			FileBaseDataContainer baseDataContainer = new FileBaseDataContainer(
+					dir);
+			ID id = new ID("theID");
+
+			SourceCache sourceCache = new SourceCache(baseDataContainer);
+			assertEquals(-1, sourceCache.getSourceLength(id, "1", "a.cpp"));
+			assertNull(sourceCache.getSource(id, "1", "a.cpp"));
+
+			sourceCache.setSource(id, "00001", "a.cpp", Arrays.asList("a", "b"));
+			sourceCache.setSource(id, "2", "a.cpp", Arrays.asList("a", "b"));
+			sourceCache.setSource(id, "2", "dir/b.cpp", Arrays.asList("c"));
+			assertEquals(2, FileUtils.listFiles(
+					new File(dir, "sources/" + SourceCache.BLOBS), null, true)
+					.size());
+
+			SourceCache loaded = new SourceCache(baseDataContainer);
+			assertEquals("a\nb", loaded.getSource(id, "1", "a.cpp"));
+			assertEquals(3, loaded.getSourceLength(id, "2", "a.cpp"));
+			assertEquals("c", loaded.getSource(id, "2", "dir/b.cpp"));
+			File file = loaded.getSourceFile(id, "2", "dir/b.cpp");
+			assertEquals("b.cpp", file.getName());
+			assertEquals("c", FileUtils.readFileToString(file));
+
+			loaded.setSourceFile(id, "2", "dir/b.cpp", null);
+			assertNull(loaded.getSource(id, "2", "dir/b.cpp"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testMigration() throws IOException {
+		File dir = File.createTempFile("source-cache", "");
+		dir.delete();
+		dir.mkdir();
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			File legacyFile = new File(dir, "sources/theID/3/dir/a.cpp");
+			FileUtils.write(legacyFile, "legacy");
+			FileBaseDataContainer baseDataContainer = new FileBaseDataContainer(
+					dir);
+
+			SourceCache sourceCache = new SourceCache(baseDataContainer);
+			assertEquals("legacy",
+					sourceCache.getSource(new ID("theID"), "3", "dir/a.cpp"));
+			assertFalse(legacyFile.exists());
+			assertEquals("legacy", new SourceCache(baseDataContainer)
+					.getSource(new ID("theID"), "3", "dir/a.cpp"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testSourceFiles() throws IOException {
+		File dir = File.createTempFile("source-cache", "");
+		dir.delete();
+		dir.mkdir();
+		try {
+			new File(dir, "__dataset.txt").createNewFile();
+			FileBaseDataContainer baseDataContainer = new FileBaseDataContainer(
+					dir);
+			ID id = new ID("theID");
+
+			// room for two sources of three bytes
+			SourceCache sourceCache = new SourceCache(baseDataContainer,
+					"sources", 6);
+			sourceCache.setSource(id, "1", "a.cpp", Arrays.asList("a", "a"));
+			sourceCache.setSource(id, "1", "b.cpp", Arrays.asList("b", "b"));
+			sourceCache.setSource(id, "1", "c.cpp", Arrays.asList("c", "c"));
+
+			File a = sourceCache.getSourceFile(id, "1", "a.cpp");
+			File b = sourceCache.getSourceFile(id, "1", "b.cpp");
+			assertEquals(a, sourceCache.getSourceFile(id, "1", "a.cpp"));
+			File c = sourceCache.getSourceFile(id, "1", "c.cpp");
+			assertTrue(a.exists());
+			assertFalse(b.exists());
+			assertEquals("c\nc", FileUtils.readFileToString(c));
+			assertFalse(a.getAbsolutePath().startsWith(dir.getAbsolutePath()));
+
+			assertEquals("b\nb", FileUtils.readFileToString(sourceCache
+					.getSourceFile(id, "1", "b.cpp")));
+			assertFalse(a.exists());
+
+			sourceCache.dispose();
+			assertFalse(c.exists());
+			assertFalse(c.getParentFile().getParentFile().exists());
+			assertEquals("a\na", sourceCache.getSource(id, "1", "a.cpp"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+}
@@ -2,7 +2,10 @@ package de.fu_berlin.imp.apiua.doclog.gt;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -83,18 +86,8 @@ public class DoclogLocatorProvider extends AdaptingLocatorProvider {
 		String[] path = uri.getRawPath().substring(1).split("/");
 
 		// 0: ID / Fingerprint
-		IIdentifier identifier = IdentifierFactory.createFrom(path[0]);
-		Doclog doclog = Activator.getDefault().getDoclogContainer()
-				.getDoclogFile(identifier, monitor);
+		Doclog doclog = this.getDoclog(path[0], monitor);
 		if (doclog == null) {
-			identifier = IdentifierFactory.createFrom(path[0]);
-			doclog = Activator.getDefault().getDoclogContainer()
-					.getDoclogFile(identifier, monitor);
-		}
-		if (doclog == null) {
-			LOGGER.error(Doclog.class.getSimpleName()
-					+ " missing for coded object retrieval for "
-					+ identifier.toString());
 			return null;
 		}
 
@@ -102,12 +95,8 @@ public class DoclogLocatorProvider extends AdaptingLocatorProvider {
 		if (path.length <= 1) {
 			return doclog;
 		}
-		String doclogRecordRawContent;
-		try {
-			doclogRecordRawContent = URLDecoder.decode(path[1], "UTF-8");
-		} catch (UnsupportedEncodingException e) {
-			LOGGER.error("Could no decode name of "
-					+ Doclog.class.getSimpleName());
+		String doclogRecordRawContent = this.decode(path[1]);
+		if (doclogRecordRawContent == null) {
 			return null;
 		}
 		for (DoclogRecord doclogRecord : doclog.getDoclogRecords()) {
@@ -118,6 +107,83 @@ public class DoclogLocatorProvider extends AdaptingLocatorProvider {
 		return null;
 	}
 
+	/**
+	 * Looks up each {@link Doclog} only once and finds the
+	 * {@link DoclogRecord}s using an index instead of scanning the
+	 * {@link Doclog} once per {@link URI}.
+	 */
+	@Override
+	public List<ILocatable> getObjects(List<URI> uris, IProgressMonitor monitor) {
+		List<ILocatable> locatables = new ArrayList<ILocatable>(uris.size());
+		if (Activator.getDefault() == null
+				|| Activator.getDefault().getDoclogContainer() == null) {
+			for (int i = 0, m = uris.size(); i < m; i++) {
+				locatables.add(null);
+			}
+			return locatables;
+		}
+
+		SubMonitor subMonitor = SubMonitor.convert(monitor, uris.size());
+		Map<String, Doclog> doclogs = new HashMap<String, Doclog>();
+		Map<Doclog, Map<String, DoclogRecord>> doclogRecords = new HashMap<Doclog, Map<String, DoclogRecord>>();
+		for (URI uri : uris) {
+			ILocatable locatable = null;
+			if (!this.isResolvabilityImpossible(uri)) {
+				String[] path = uri.getRawPath().substring(1).split("/");
+				if (!doclogs.containsKey(path[0])) {
+					doclogs.put(path[0],
+							this.getDoclog(path[0], subMonitor.newChild(0)));
+				}
+				Doclog doclog = doclogs.get(path[0]);
+				if (doclog != null && path.length <= 1) {
+					locatable = doclog;
+				} else if (doclog != null) {
+					Map<String, DoclogRecord> index = doclogRecords.get(doclog);
+					if (index == null) {
+						index = new HashMap<String, DoclogRecord>();
+						for (DoclogRecord doclogRecord : doclog
+								.getDoclogRecords()) {
+							if (!index.containsKey(doclogRecord.getRawContent())) {
+								index.put(doclogRecord.getRawContent(),
+										doclogRecord);
+							}
+						}
+						doclogRecords.put(doclog, index);
+					}
+					String doclogRecordRawContent = this.decode(path[1]);
+					if (doclogRecordRawContent != null) {
+						locatable = index.get(doclogRecordRawContent);
+					}
+				}
+			}
+			locatables.add(locatable);
+			subMonitor.worked(1);
+		}
+		return locatables;
+	}
+
+	private Doclog getDoclog(String id, IProgressMonitor monitor) {
+		IIdentifier identifier = IdentifierFactory.createFrom(id);
+		Doclog doclog = Activator.getDefault().getDoclogContainer()
+				.getDoclogFile(identifier, monitor);
+		if (doclog == null) {
+			LOGGER.error(Doclog.class.getSimpleName()
+					+ " missing for coded object retrieval for "
+					+ identifier.toString());
+		}
+		return doclog;
+	}
+
+	private String decode(String doclogRecordRawContent) {
+		try {
+			return URLDecoder.decode(doclogRecordRawContent, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			LOGGER.error("Could no decode name of "
+					+ Doclog.class.getSimpleName());
+			return null;
+		}
+	}
+
 	@Override
 	public boolean showInWorkspace(URI[] uris, boolean open,
 			IProgressMonitor monitor) {
@@ -1,5 +1,6 @@
 package de.fu_berlin.imp.apiua.doclog.model;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -72,10 +73,15 @@ public class Doclog extends WrappingData implements IData, HasDateRange,
 
 	private URI uri;
 	private final IIdentifier identifier;
-	private final TimeZoneDateRange dateRange;
+	private volatile TimeZoneDateRange dateRange;
 	private final Token token;
 
-	private DoclogRecordList doclogRecords;
+	private volatile DoclogRecordList doclogRecords;
+
+	/**
+	 * Number of bytes of the underlying {@link IData} that were parsed.
+	 */
+	private long scannedLength;
 
 	/**
 	 * Creates a new {@link Doclog} instance.
@@ -117,6 +123,7 @@ public class Doclog extends WrappingData implements IData, HasDateRange,
 	public void scanRecords() {
 		this.doclogRecords = new DoclogRecordList();
 		try {
+			this.scannedLength = this.getLength();
 			for (String line : this) {
 				try {
 					DoclogRecord record = new DoclogRecord(this, line);
@@ -131,16 +138,88 @@ public class Doclog extends WrappingData implements IData, HasDateRange,
 		}
 	}
 
+	/**
+	 * Parses the lines that were appended to the underlying {@link IData}
+	 * since it was last scanned and adds the resulting {@link DoclogRecord}s.
+	 * An incomplete last line is left for the next call.
+	 * <p>
+	 * Readers of {@link #getDoclogRecords()} are not affected since a new
+	 * {@link DoclogRecordList} is created.
+	 * 
+	 * @return the number of lines parsed; -1 if the {@link IData} shrank and
+	 *         the {@link Doclog} needs to be created anew
+	 */
+	public synchronized int appendRecords() {
+		long length = this.getLength();
+		if (length < this.scannedLength) {
+			return -1;
+		}
+
+		ByteBuffer appended = this.readBytes(this.scannedLength, length);
+		int end = appended.limit() - 1;
+		while (end >= 0 && appended.get(end) != '\n') {
+			end--;
+		}
+		if (end < 0) {
+			return 0;
+		}
+		String[] lines = this.read(this.scannedLength,
+				this.scannedLength + end + 1).split("\r?\n");
+		this.scannedLength += end + 1;
+
+		DoclogRecordList doclogRecords = new DoclogRecordList();
+		doclogRecords.addAll(this.doclogRecords);
+		int first = doclogRecords.size();
+		for (String line : lines) {
+			try {
+				doclogRecords.add(new DoclogRecord(this, line));
+			} catch (DataSourceInvalidException e) {
+				this.logger.warn(
+						"Skipped " + DoclogRecord.class.getSimpleName(), e);
+			}
+		}
+		if (doclogRecords.size() == first) {
+			return lines.length;
+		}
+
+		if (first > 0
+				&& doclogRecords.get(first).compareTo(
+						doclogRecords.get(first - 1)) < 0) {
+			this.calculateRecordMillisecondsPassed(doclogRecords);
+		} else {
+			for (int i = Math.max(0, first - 1); i < doclogRecords.size(); i++) {
+				this.calculateRecordMillisecondsPassed(doclogRecords, i);
+			}
+		}
+
+		this.doclogRecords = doclogRecords;
+		this.dateRange = new TimeZoneDateRange(
+				this.dateRange != null ? this.dateRange.getStartDate()
+						: doclogRecords.get(0).getDate(), doclogRecords.get(
+						doclogRecords.size() - 1).getDate());
+		return lines.length;
+	}
+
 	private void calculateRecordMillisecondsPassed() {
-		Collections.sort(this.doclogRecords);
-		for (int i = 0; i < this.doclogRecords.size(); i++) {
-			this.calculateRecordMillisecondsPassed(i);
+		calculateRecordMillisecondsPassed(this.doclogRecords);
+	}
+
+	private void calculateRecordMillisecondsPassed(
+			DoclogRecordList doclogRecords) {
+		Collections.sort(doclogRecords);
+		for (int i = 0; i < doclogRecords.size(); i++) {
+			this.calculateRecordMillisecondsPassed(doclogRecords, i);
 		}
 	}
 
 	public void calculateRecordMillisecondsPassed(int i) {
-		DoclogRecord doclogRecord = this.doclogRecords.get(i);
-		DoclogRecord successor = (this.doclogRecords.size() > i + 1) ? this.doclogRecords
+		this.calculateRecordMillisecondsPassed(this.doclogRecords, i);
+	}
+
+	private void calculateRecordMillisecondsPassed(
+			DoclogRecordList doclogRecords, int i) {
+		DoclogRecord doclogRecord = doclogRecords.get(i);
+		DoclogRecord successor = (doclogRecords.size() > i + 1) ? doclogRecords
 				.get(i + 1) : null;
 		if (successor != null) {
 			Long millisecondsPassed = successor.getDate().getTime()
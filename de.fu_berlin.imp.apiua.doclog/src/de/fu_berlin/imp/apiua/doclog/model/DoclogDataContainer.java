@@ -2,9 +2,11 @@ package de.fu_berlin.imp.apiua.doclog.model;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -16,8 +18,11 @@ import com.bkahlert.nebula.utils.ExecUtils;
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDateRange;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
+import de.fu_berlin.imp.apiua.core.model.data.IDataChangeListener;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.IWatchableDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.impl.AggregatedBaseDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.impl.ScanCatalog;
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.core.model.identifier.Token;
 import de.fu_berlin.imp.apiua.doclog.util.DoclogCache;
@@ -29,6 +34,18 @@ public class DoclogDataContainer extends AggregatedBaseDataContainer {
 
 	public static final int DOCLOG_CACHE_SIZE = 10;
 
+	/**
+	 * Maximum estimated number of bytes held by the {@link DoclogCache}.
+	 */
+	public static final long DOCLOG_CACHE_WEIGHT = 128l * 1024 * 1024;
+
+	/**
+	 * Name of the {@link ScanCatalog} the date ranges and {@link Token}s of
+	 * the {@link Doclog} files are stored in.
+	 */
+	private static final String SCAN_CATALOG = "doclog";
+	private static final String TOKEN = "token";
+
 	private static Map<IIdentifier, IData> readDoclogFileMappings(
 			DoclogDataContainer directory) {
 		Map<IIdentifier, IData> rawDataResource = new HashMap<IIdentifier, IData>();
@@ -44,20 +61,58 @@ public class DoclogDataContainer extends AggregatedBaseDataContainer {
 		return rawDataResource;
 	}
 
-	private Map<IIdentifier, IData> datas;
-	private Map<IIdentifier, TimeZoneDateRange> fileDateRanges;
-	private Map<IIdentifier, Token> fileToken;
+	private volatile Map<IIdentifier, IData> datas;
+	private volatile Map<IIdentifier, TimeZoneDateRange> fileDateRanges;
+	private volatile Map<IIdentifier, Token> fileToken;
+	private volatile Map<IIdentifier, Long> fileLengths;
 
 	private final IDataContainer doclogDirectory;
 	private final IData mappingFile;
 	private final DoclogCache doclogCache;
 
+	private DoclogDataContainer previous;
+
+	private final IDataChangeListener doclogListener = new IDataChangeListener() {
+		@Override
+		public void dataAdded(IData data) {
+			DoclogDataContainer.this.doclogChanged(data, false);
+		}
+
+		@Override
+		public void dataModified(IData data) {
+			DoclogDataContainer.this.doclogChanged(data, false);
+		}
+
+		@Override
+		public void dataRemoved(IData data) {
+			DoclogDataContainer.this.doclogChanged(data, true);
+		}
+	};
+
 	public DoclogDataContainer(
 			List<? extends IBaseDataContainer> baseDataContainers) {
 		super(baseDataContainers);
 		this.doclogDirectory = this.getSubContainer("doclog");
 		this.mappingFile = this.getResource("mapping.xml");
-		this.doclogCache = new DoclogCache(this, DOCLOG_CACHE_SIZE);
+		this.doclogCache = new DoclogCache(this, DOCLOG_CACHE_SIZE,
+				DOCLOG_CACHE_WEIGHT);
+	}
+
+	/**
+	 * Creates a {@link DoclogDataContainer} that takes over the scan results
+	 * and cached {@link Doclog}s of the given previous
+	 * {@link DoclogDataContainer} for all {@link IIdentifier}s whose
+	 * {@link IData} did not change.
+	 * 
+	 * @param baseDataContainers
+	 * @param previous
+	 *            may be null
+	 */
+	public DoclogDataContainer(
+			List<? extends IBaseDataContainer> baseDataContainers,
+			DoclogDataContainer previous) {
+		this(baseDataContainers);
+		this.previous = previous;
 	}
 
 	public DoclogDataContainer(IBaseDataContainer dataResourceContainer) {
@@ -77,20 +132,46 @@ public class DoclogDataContainer extends AggregatedBaseDataContainer {
 		this.fileDateRanges = new HashMap<IIdentifier, TimeZoneDateRange>(
 				this.datas.size());
 		this.fileToken = new HashMap<IIdentifier, Token>(this.datas.size());
+		this.fileLengths = new HashMap<IIdentifier, Long>(this.datas.size());
 
 		long size = 0;
-		for (Object key : this.datas.keySet()) {
-			size += this.datas.get(key).getLength();
+		for (IIdentifier identifier : this.datas.keySet()) {
+			long length = this.datas.get(identifier).getLength();
+			this.fileLengths.put(identifier, length);
+			size += length;
 		}
 		monitor.beginTask("Loading " + this.getName(), (int) (size / 1000l));
 
+		Set<IIdentifier> unchanged = new HashSet<IIdentifier>();
+		Set<IIdentifier> changed = new HashSet<IIdentifier>(
+				this.datas.keySet());
+		DoclogDataContainer previous = this.previous;
+		if (previous != null && previous.datas != null) {
+			for (IIdentifier identifier : this.datas.keySet()) {
+				IData data = this.datas.get(identifier);
+				if (data.equals(previous.datas.get(identifier))
+						&& this.fileLengths.get(identifier).equals(
+								previous.fileLengths.get(identifier))) {
+					this.fileDateRanges.put(identifier,
+							previous.fileDateRanges.get(identifier));
+					this.fileToken.put(identifier,
+							previous.fileToken.get(identifier));
+					unchanged.add(identifier);
+					changed.remove(identifier);
+					monitor.worked((int) (this.fileLengths.get(identifier) / 1000l));
+				}
+			}
+			LOGGER.info("Taking over " + unchanged.size() + " of "
+					+ this.datas.size() + " unchanged "
+					+ Doclog.class.getSimpleName() + "s");
+		}
+
 		// force class loading since DoclogRecord is used in the Callable
 		DoclogAction.class.getClass();
 		DoclogRecord.class.getClass();
 		for (int worked : ExecUtils.nonUIAsyncExecMerged(
 				DoclogDataContainer.class,
-				"Loading " + StringUtils.join(this.datas.keySet(), ", "),
-				this.datas.keySet(),
+				"Loading " + StringUtils.join(changed, ", "), changed,
 				new ExecUtils.ParametrizedCallable<IIdentifier, Integer>() {
 					@Override
 					public Integer call(IIdentifier identifier)
@@ -99,12 +180,32 @@ public class DoclogDataContainer extends AggregatedBaseDataContainer {
 								.get(identifier);
 						long length = data.getLength();
 						if (length == 0l) {
-							return null;
+							return 0;
 						}
 						try {
-							TimeZoneDateRange dateRange = Doclog
-									.getDateRange(data);
-							Token token = Doclog.getToken(data);
+							TimeZoneDateRange dateRange;
+							Token token;
+							ScanCatalog scanCatalog = ScanCatalog.get(data,
+									SCAN_CATALOG);
+							Map<String, String> metadata = scanCatalog != null ? scanCatalog
+									.get(data) : null;
+							if (metadata != null) {
+								dateRange = ScanCatalog.getDateRange(metadata);
+								token = metadata.containsKey(TOKEN) ? new Token(
+										metadata.get(TOKEN)) : null;
+							} else {
+								dateRange = Doclog.getDateRange(data);
+								token = Doclog.getToken(data);
+								if (scanCatalog != null) {
+									metadata = new HashMap<String, String>();
+									ScanCatalog.putDateRange(metadata,
+											dateRange);
+									if (token != null) {
+										metadata.put(TOKEN, token.toString());
+									}
+									scanCatalog.put(data, metadata);
+								}
+							}
 							synchronized (DoclogDataContainer.this.fileDateRanges) {
 								DoclogDataContainer.this.fileDateRanges.put(
 										identifier, dateRange);
@@ -121,9 +222,113 @@ public class DoclogDataContainer extends AggregatedBaseDataContainer {
 				})) {
 			monitor.worked(worked);
 		}
+
+		Set<ScanCatalog> scanCatalogs = new HashSet<ScanCatalog>();
+		for (IData data : this.datas.values()) {
+			ScanCatalog scanCatalog = ScanCatalog.get(data, SCAN_CATALOG);
+			if (scanCatalog != null && scanCatalogs.add(scanCatalog)) {
+				scanCatalog.saveQuietly();
+			}
+		}
+
+		for (IIdentifier identifier : unchanged) {
+			Doclog doclog = previous.doclogCache.getCachedPayload(identifier);
+			if (doclog != null) {
+				this.doclogCache.putPayload(identifier, doclog);
+			}
+		}
+		this.previous = null;
 		monitor.done();
 	}
 
+	/**
+	 * Keeps this {@link DoclogDataContainer} up to date by watching for added,
+	 * modified and removed {@link Doclog} files.
+	 */
+	public void watch() {
+		if (this.doclogDirectory instanceof IWatchableDataContainer) {
+			((IWatchableDataContainer) this.doclogDirectory)
+					.addDataChangeListener(this.doclogListener);
+		}
+	}
+
+	/**
+	 * Stops watching for changed {@link Doclog} files.
+	 */
+	public void unwatch() {
+		if (this.doclogDirectory instanceof IWatchableDataContainer) {
+			((IWatchableDataContainer) this.doclogDirectory)
+					.removeDataChangeListener(this.doclogListener);
+		}
+	}
+
+	/**
+	 * Updates the scan results of the {@link IIdentifier} the given
+	 * {@link Doclog} file belongs to. If the {@link Doclog} is cached and the
+	 * file only grew, the appended {@link DoclogRecord}s are parsed; otherwise
+	 * the {@link Doclog} is evicted from the {@link DoclogCache}.
+	 * <p>
+	 * The maps are replaced rather than modified so readers never see them in
+	 * an intermediate state.
+	 * 
+	 * @param data
+	 * @param removed
+	 */
+	private synchronized void doclogChanged(IData data, boolean removed) {
+		if (this.datas == null
+				|| !Doclog.IDENTIFIER_PATTERN.matcher(data.getName()).matches()) {
+			return;
+		}
+		IIdentifier identifier = Doclog.getIdentifier(data);
+		if (identifier == null) {
+			return;
+		}
+
+		Map<IIdentifier, IData> datas = new HashMap<IIdentifier, IData>(
+				this.datas);
+		Map<IIdentifier, TimeZoneDateRange> fileDateRanges = new HashMap<IIdentifier, TimeZoneDateRange>(
+				this.fileDateRanges);
+		Map<IIdentifier, Token> fileToken = new HashMap<IIdentifier, Token>(
+				this.fileToken);
+		Map<IIdentifier, Long> fileLengths = new HashMap<IIdentifier, Long>(
+				this.fileLengths);
+		if (removed) {
+			datas.remove(identifier);
+			fileDateRanges.remove(identifier);
+			fileToken.remove(identifier);
+			fileLengths.remove(identifier);
+			this.doclogCache.removeKey(identifier);
+		} else {
+			Doclog doclog = this.doclogCache.getCachedPayload(identifier);
+			if (doclog != null && data.equals(datas.get(identifier))
+					&& doclog.appendRecords() >= 0) {
+				fileDateRanges.put(identifier, doclog.getDateRange());
+			} else {
+				this.doclogCache.removeKey(identifier);
+				datas.put(identifier, data);
+				try {
+					fileDateRanges.put(identifier, Doclog.getDateRange(data));
+				} catch (Exception e) {
+					LOGGER.error(e);
+				}
+			}
+			if (fileToken.get(identifier) == null) {
+				try {
+					fileToken.put(identifier, Doclog.getToken(data));
+				} catch (Exception e) {
+					LOGGER.error(e);
+				}
+			}
+			fileLengths.put(identifier, data.getLength());
+		}
+		this.datas = datas;
+		this.fileDateRanges = fileDateRanges;
+		this.fileToken = fileToken;
+		this.fileLengths = fileLengths;
+
+		LOGGER.info((removed ? "Removed " : "Updated ") + data.getName());
+	}
+
 	/**
 	 * Returns a list of all {@link IIdentifier}s occurring in the managed
 	 * {@link Doclog}s
@@ -6,12 +6,12 @@ import org.apache.commons.lang.StringUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 
-import de.fu_berlin.imp.apiua.core.extensionPoints.IDataLoadProvider;
+import de.fu_berlin.imp.apiua.core.extensionPoints.IIncrementalDataLoadProvider;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
 import de.fu_berlin.imp.apiua.doclog.Activator;
 
-public class DoclogDataLoader implements IDataLoadProvider {
+public class DoclogDataLoader implements IIncrementalDataLoadProvider {
 
 	@Override
 	public String getLoaderJobName(
@@ -36,12 +36,47 @@ public class DoclogDataLoader implements IDataLoadProvider {
 				dataResourceContainers);
 		doclogDataContainer.scan(subMonitor);
 		subMonitor.done();
+		this.replace(doclogDataContainer);
+		Activator.getDefault().setDoclogDataDirectory(doclogDataContainer);
+		return doclogDataContainer;
+	}
+
+	@Override
+	public IDataContainer update(
+			List<? extends IBaseDataContainer> baseDataContainers,
+			List<? extends IBaseDataContainer> added,
+			List<? extends IBaseDataContainer> removed,
+			IProgressMonitor progressMonitor) {
+		SubMonitor subMonitor = SubMonitor.convert(progressMonitor);
+		DoclogDataContainer doclogDataContainer = new DoclogDataContainer(
+				baseDataContainers, Activator.getDefault().getDoclogContainer());
+		doclogDataContainer.scan(subMonitor);
+		subMonitor.done();
+		this.replace(doclogDataContainer);
 		Activator.getDefault().setDoclogDataDirectory(doclogDataContainer);
 		return doclogDataContainer;
 	}
 
 	@Override
 	public void unload(IProgressMonitor progressMonitor) {
+		this.replace(null);
+	}
+
+	/**
+	 * Stops watching the currently active {@link DoclogDataContainer} and starts
+	 * watching the given one.
+	 * 
+	 * @param doclogDataContainer
+	 *            may be null
+	 */
+	private void replace(DoclogDataContainer doclogDataContainer) {
+		DoclogDataContainer previous = Activator.getDefault().getDoclogContainer();
+		if (previous != null && previous != doclogDataContainer) {
+			previous.unwatch();
+		}
+		if (doclogDataContainer != null) {
+			doclogDataContainer.watch();
+		}
 	}
 
 }
@@ -9,8 +9,31 @@ import de.fu_berlin.imp.apiua.doclog.model.DoclogDataContainer;
 
 public class DoclogCache extends Cache<IIdentifier, Doclog> {
 
+	/**
+	 * Estimates the memory footprint of a {@link Doclog} by the size of its
+	 * data. Its content is held as UTF-16 and therefore weighs twice its
+	 * length.
+	 */
+	public static final Weigher<IIdentifier, Doclog> WEIGHER = new Weigher<IIdentifier, Doclog>() {
+		@Override
+		public long weigh(IIdentifier identifier, Doclog doclog) {
+			return doclog != null ? doclog.getLength() * 2 : 0;
+		}
+	};
+
 	public DoclogCache(final DoclogDataContainer doclogFileDirectory,
 			int cacheSize) {
+		this(doclogFileDirectory, cacheSize, 0);
+	}
+
+	/**
+	 * @param doclogFileDirectory
+	 * @param cacheSize
+	 * @param maxWeight
+	 *            maximum estimated number of bytes; 0 if unbounded
+	 */
+	public DoclogCache(final DoclogDataContainer doclogFileDirectory,
+			int cacheSize, long maxWeight) {
 		super(new CacheFetcher<IIdentifier, Doclog>() {
 			@Override
 			public Doclog fetch(IIdentifier identifier,
@@ -18,7 +41,7 @@ public class DoclogCache extends Cache<IIdentifier, Doclog> {
 				return doclogFileDirectory.readDoclogFromSource(identifier,
 						progressMonitor);
 			}
-		}, cacheSize);
+		}, cacheSize, WEIGHER, maxWeight);
 	}
 
 }
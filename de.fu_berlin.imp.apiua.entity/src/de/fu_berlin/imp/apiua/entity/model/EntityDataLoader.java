@@ -67,6 +67,8 @@ public class EntityDataLoader implements IDataLoadProvider {
 					baseDataContainers, diffContainer, doclogDataContainer,
 					surveyContainer);
 			entityDataContainer.scan(subMonitor);
+			this.unwatchStatsFiles();
+			entityDataContainer.getStatsFileManager().watch();
 			Activator.getDefault().setLoadedData(entityDataContainer);
 			return entityDataContainer;
 		} catch (EntityDataException e) {
@@ -88,5 +90,15 @@ public class EntityDataLoader implements IDataLoadProvider {
 
 	@Override
 	public void unload(IProgressMonitor progressMonitor) {
+		this.unwatchStatsFiles();
+	}
+
+	private void unwatchStatsFiles() {
+		EntityDataContainer entityDataContainer = Activator.getDefault()
+				.getLoadedData();
+		if (entityDataContainer != null
+				&& entityDataContainer.getStatsFileManager() != null) {
+			entityDataContainer.getStatsFileManager().unwatch();
+		}
 	}
 }
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.log4j.Logger;
 import org.apache.log4j.xml.DOMConfigurator;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.jface.window.Window;
@@ -20,6 +21,7 @@ import de.fu_berlin.imp.apiua.core.services.ILabelProviderService.ILabelProvider
 import de.fu_berlin.imp.apiua.core.services.ILabelProviderService.ILabelProviderFactory;
 import de.fu_berlin.imp.apiua.groundedtheory.model.ICodeInstance;
 import de.fu_berlin.imp.apiua.groundedtheory.services.CodeServiceAdapter;
+import de.fu_berlin.imp.apiua.groundedtheory.services.CodeServiceException;
 import de.fu_berlin.imp.apiua.groundedtheory.services.ICodeService;
 import de.fu_berlin.imp.apiua.groundedtheory.services.ICodeServiceListener;
 import de.fu_berlin.imp.apiua.groundedtheory.ui.DimensionValuesDialog;
@@ -27,6 +29,8 @@ import de.fu_berlin.imp.apiua.groundedtheory.ui.GTLabelProvider;
 
 public class Activator extends AbstractUIPlugin {
 
+	private static final Logger LOGGER = Logger.getLogger(Activator.class);
+
 	public static final String PLUGIN_ID = "de.fu_berlin.imp.apiua.groundedtheory"; //$NON-NLS-1$
 	private static Activator plugin;
 
@@ -111,6 +115,11 @@ public class Activator extends AbstractUIPlugin {
 	@Override
 	public void stop(BundleContext context) throws Exception {
 		this.codeService.removeCodeServiceListener(this.codeServiceListener);
+		try {
+			this.codeService.flush();
+		} catch (CodeServiceException e) {
+			LOGGER.error("Error writing pending changes", e);
+		}
 
 		this.labelProviderService
 				.removeLabelProviderFactory(this.labelProviderFactory);
@@ -30,11 +30,30 @@ public class Episode implements IEpisode {
 
 	public Episode(IIdentifier identifier, TimeZoneDateRange range,
 			String caption) {
+		this(identifier, range, caption, new TimeZoneDate());
+	}
+
+	/**
+	 * Recreates a persisted {@link Episode} including its creation date.
+	 *
+	 * @param identifier
+	 * @param range
+	 * @param caption
+	 * @param creation
+	 * @return
+	 */
+	public static Episode restore(IIdentifier identifier,
+			TimeZoneDateRange range, String caption, TimeZoneDate creation) {
+		return new Episode(identifier, range, caption, creation);
+	}
+
+	private Episode(IIdentifier identifier, TimeZoneDateRange range,
+			String caption, TimeZoneDate creation) {
 		assert identifier != null;
 		this.identifier = identifier;
 		this.range = range;
 		this.caption = caption;
-		this.creation = new TimeZoneDate();
+		this.creation = creation;
 	}
 
 	private Episode(IEpisode episode) {
@@ -24,6 +24,11 @@ public class Relation implements ILocatable, IRelation {
 	}
 
 	public Relation(URI uri, URI from, URI to, String name) {
+		this(uri, from, to, name, new TimeZoneDate());
+	}
+
+	public Relation(URI uri, URI from, URI to, String name,
+			TimeZoneDate creation) {
 		super();
 		Assert.isLegal(uri != null);
 		Assert.isLegal(to != null);
@@ -34,7 +39,7 @@ public class Relation implements ILocatable, IRelation {
 		this.from = from;
 		this.to = to;
 		this.name = name;
-		this.timeZoneDate = new TimeZoneDate();
+		this.timeZoneDate = creation;
 	}
 
 	@Override
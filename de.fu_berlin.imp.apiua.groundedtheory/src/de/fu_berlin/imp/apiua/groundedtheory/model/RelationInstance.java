@@ -22,6 +22,11 @@ public class RelationInstance implements IRelationInstance {
 	}
 
 	public RelationInstance(URI uri, IRelation relation, URI phenomenon) {
+		this(uri, relation, phenomenon, new TimeZoneDate());
+	}
+
+	public RelationInstance(URI uri, IRelation relation, URI phenomenon,
+			TimeZoneDate creation) {
 		super();
 		Assert.isLegal(uri != null);
 		Assert.isLegal(relation != null);
@@ -29,7 +34,7 @@ public class RelationInstance implements IRelationInstance {
 		this.uri = uri;
 		this.relation = relation;
 		this.phenomenon = phenomenon;
-		this.creation = new TimeZoneDate();
+		this.creation = creation;
 	}
 
 	@Override
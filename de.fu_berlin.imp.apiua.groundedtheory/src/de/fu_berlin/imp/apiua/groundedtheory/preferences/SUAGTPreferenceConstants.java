@@ -9,6 +9,12 @@ public class SUAGTPreferenceConstants {
 
 	public static final String MEMO_AUTOSAVE_AFTER_MILLISECONDS = "memo_autosave_after_milliseconds";
 
+	public static final String BACKUPS_KEEP_LATEST = "backups_keep_latest";
+
+	public static final String BACKUPS_KEEP_HOURLY = "backups_keep_hourly";
+
+	public static final String BACKUPS_KEEP_DAILY = "backups_keep_daily";
+
 	public static final String LAST_OPENED_MEMOS = "last_opened_memos";
 
 	public static final String LAST_USED_CODES = "last_used_codes";
@@ -22,5 +22,9 @@ public class SUAGTPreferenceInitializer extends AbstractPreferenceInitializer {
 
 		store.setDefault(
 				SUAGTPreferenceConstants.MEMO_AUTOSAVE_AFTER_MILLISECONDS, 1000);
+
+		store.setDefault(SUAGTPreferenceConstants.BACKUPS_KEEP_LATEST, 10);
+		store.setDefault(SUAGTPreferenceConstants.BACKUPS_KEEP_HOURLY, 24);
+		store.setDefault(SUAGTPreferenceConstants.BACKUPS_KEEP_DAILY, 30);
 	}
 }
@@ -57,6 +57,38 @@ public class SUAGTPreferenceUtil extends EclipsePreferenceUtil {
 				SUAGTPreferenceConstants.MEMO_AUTOSAVE_AFTER_MILLISECONDS);
 	}
 
+	/**
+	 * Returns the number of most recent backups to keep.
+	 *
+	 * @return
+	 */
+	public int getBackupsKeepLatest() {
+		return this.getPreferenceStore().getInt(
+				SUAGTPreferenceConstants.BACKUPS_KEEP_LATEST);
+	}
+
+	/**
+	 * Returns the number of hours for each of which the most recent backup is
+	 * kept.
+	 *
+	 * @return
+	 */
+	public int getBackupsKeepHourly() {
+		return this.getPreferenceStore().getInt(
+				SUAGTPreferenceConstants.BACKUPS_KEEP_HOURLY);
+	}
+
+	/**
+	 * Returns the number of days for each of which the most recent backup is
+	 * kept.
+	 *
+	 * @return
+	 */
+	public int getBackupsKeepDaily() {
+		return this.getPreferenceStore().getInt(
+				SUAGTPreferenceConstants.BACKUPS_KEEP_DAILY);
+	}
+
 	public void setLastOpenedMemos(List<URI> uris) {
 		String pref = de.fu_berlin.imp.apiua.core.util.SerializationUtils
 				.serialize(uris != null ? uris : new LinkedList<>());
@@ -2,6 +2,7 @@ package de.fu_berlin.imp.apiua.groundedtheory.preferences;
 
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.FileFieldEditor;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
@@ -18,6 +19,15 @@ public class SUAGTPreferences extends FieldEditorPreferencePage implements
 	public void createFieldEditors() {
 		addField(new FileFieldEditor(SUAGTPreferenceConstants.CODESTORE_FILE,
 				"&Code store file:", getFieldEditorParent()));
+		addField(new IntegerFieldEditor(
+				SUAGTPreferenceConstants.BACKUPS_KEEP_LATEST,
+				"Keep &latest backups:", getFieldEditorParent()));
+		addField(new IntegerFieldEditor(
+				SUAGTPreferenceConstants.BACKUPS_KEEP_HOURLY,
+				"Keep one backup per hour for &hours:", getFieldEditorParent()));
+		addField(new IntegerFieldEditor(
+				SUAGTPreferenceConstants.BACKUPS_KEEP_DAILY,
+				"Keep one backup per day for &days:", getFieldEditorParent()));
 	}
 
 	public void init(IWorkbench workbench) {
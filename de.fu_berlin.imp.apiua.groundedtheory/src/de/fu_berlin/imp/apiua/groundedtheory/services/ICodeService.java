@@ -3,6 +3,7 @@ package de.fu_berlin.imp.apiua.groundedtheory.services;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
 import com.bkahlert.nebula.utils.Pair;
@@ -10,6 +11,7 @@ import com.bkahlert.nebula.utils.Triple;
 import com.bkahlert.nebula.utils.colors.RGB;
 
 import de.fu_berlin.imp.apiua.core.model.ILocatable;
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
 import de.fu_berlin.imp.apiua.core.model.URI;
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.groundedtheory.model.IAxialCodingModel;
@@ -33,6 +35,72 @@ public interface ICodeService {
 
 	public ICodeStore getCodeStore();
 
+	/**
+	 * Starts a batch. Until the matching {@link #commit()} all changes are
+	 * written at once and {@link ICodeServiceListener}s are notified only
+	 * after the batch was committed. Notifications are fired in the order
+	 * they occurred; adjacent notifications of the same kind are coalesced
+	 * into one.
+	 * <p>
+	 * Batches may be nested; only the outermost one is written. Every
+	 * {@link #beginBatch()} must be followed by either {@link #commit()} or
+	 * {@link #rollback()} on the same thread. Other threads wait for the batch
+	 * to end before changing codes.
+	 */
+	public void beginBatch();
+
+	/**
+	 * Ends the current batch.
+	 *
+	 * @throws CodeServiceException
+	 *             if the batch could not be written or a nested batch was
+	 *             rolled back; all changes of the batch are rolled back in
+	 *             that case
+	 */
+	public void commit() throws CodeServiceException;
+
+	/**
+	 * Ends the current batch and discards its changes without notifying any
+	 * {@link ICodeServiceListener}s. If the batch is nested its changes are
+	 * discarded as soon as the outermost batch ends, whose {@link #commit()}
+	 * then fails.
+	 *
+	 * @throws CodeServiceException
+	 */
+	public void rollback() throws CodeServiceException;
+
+	/**
+	 * Runs the given {@link Callable} in a batch that is committed if the
+	 * {@link Callable} succeeds and rolled back otherwise.
+	 *
+	 * @param transaction
+	 * @return the result of the {@link Callable}
+	 * @throws CodeServiceException
+	 */
+	public <T> T runInTransaction(Callable<T> transaction)
+			throws CodeServiceException;
+
+	/**
+	 * Blocks until all changes are written. Should be called before shutdown.
+	 *
+	 * @throws CodeServiceException
+	 */
+	public void flush() throws CodeServiceException;
+
+	/**
+	 * Returns true if changes exist that are not yet written.
+	 *
+	 * @return
+	 */
+	public boolean isDirty();
+
+	/**
+	 * Returns the time changes were last written.
+	 *
+	 * @return null if nothing was written yet
+	 */
+	public TimeZoneDate getLastSaved();
+
 	/**
 	 * Returns all {@link ICode}s associated with the given {@link URI}.
 	 *
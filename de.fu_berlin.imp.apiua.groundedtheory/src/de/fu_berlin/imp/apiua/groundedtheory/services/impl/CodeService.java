@@ -5,11 +5,14 @@ import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -35,7 +38,7 @@ import com.bkahlert.nebula.utils.Triple;
 import com.bkahlert.nebula.utils.colors.RGB;
 
 import de.fu_berlin.imp.apiua.core.model.ILocatable;
-import de.fu_berlin.imp.apiua.core.model.IdentifierFactory;
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
 import de.fu_berlin.imp.apiua.core.model.URI;
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.core.services.IImportanceService;
@@ -117,6 +120,11 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public void dispose() {
+		try {
+			this.codeStore.flush();
+		} catch (CodeStoreWriteException e) {
+			LOGGER.error("Error writing pending changes", e);
+		}
 		if (this.importanceService != null) {
 			this.importanceService
 					.removeImportanceInterceptor(this.importanceInterceptor);
@@ -141,6 +149,75 @@ public class CodeService implements ICodeService, IDisposable {
 		return this.codeStore;
 	}
 
+	@Override
+	public void beginBatch() {
+		this.codeStore.beginBatch();
+		this.codeServiceListenerNotifier.beginBatch();
+	}
+
+	@Override
+	public void commit() throws CodeServiceException {
+		try {
+			this.codeStore.commitBatch();
+		} catch (CodeStoreWriteException e) {
+			this.codeServiceListenerNotifier.discardBatch();
+			throw new CodeServiceException(e);
+		}
+		this.codeServiceListenerNotifier.commitBatch();
+	}
+
+	@Override
+	public void rollback() throws CodeServiceException {
+		this.codeServiceListenerNotifier.discardBatch();
+		try {
+			this.codeStore.rollbackBatch();
+		} catch (CodeStoreReadException e) {
+			throw new CodeServiceException(e);
+		}
+	}
+
+	@Override
+	public <T> T runInTransaction(Callable<T> transaction)
+			throws CodeServiceException {
+		this.beginBatch();
+		T result;
+		try {
+			result = transaction.call();
+		} catch (Exception e) {
+			try {
+				this.rollback();
+			} catch (CodeServiceException e1) {
+				LOGGER.error("Error rolling back transaction", e1);
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
+			throw e instanceof CodeServiceException ? (CodeServiceException) e
+					: new CodeServiceException(e);
+		}
+		this.commit();
+		return result;
+	}
+
+	@Override
+	public void flush() throws CodeServiceException {
+		try {
+			this.codeStore.flush();
+		} catch (CodeStoreWriteException e) {
+			throw new CodeServiceException(e);
+		}
+	}
+
+	@Override
+	public boolean isDirty() {
+		return this.codeStore.isDirty();
+	}
+
+	@Override
+	public TimeZoneDate getLastSaved() {
+		return this.codeStore.getLastSaved();
+	}
+
 	@Override
 	public ICode createCode(String caption, RGB color)
 			throws CodeServiceException {
@@ -149,6 +226,8 @@ public class CodeService implements ICodeService, IDisposable {
 			code = this.codeStore.createCode(caption, color);
 		} catch (CodeStoreFullException e) {
 			throw new CodeServiceException(e);
+		} catch (CodeStoreWriteException e) {
+			throw new CodeServiceException(e);
 		}
 		this.codeServiceListenerNotifier.codesCreated(Arrays.asList(code));
 		return code;
@@ -161,11 +240,10 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public List<ICode> getCodes(URI uri) {
-		LinkedList<ICode> codes = new LinkedList<ICode>();
-		for (ICodeInstance codeInstance : this.codeStore.getInstances()) {
-			if (codeInstance.getId().equals(uri)) {
-				codes.add(codeInstance.getCode());
-			}
+		List<ICodeInstance> codeInstances = this.codeStore.getInstances(uri);
+		List<ICode> codes = new ArrayList<ICode>(codeInstances.size());
+		for (ICodeInstance codeInstance : codeInstances) {
+			codes.add(codeInstance.getCode());
 		}
 		return codes;
 	}
@@ -186,45 +264,41 @@ public class CodeService implements ICodeService, IDisposable {
 	@Override
 	public URI[] addCodes(List<ICode> codes, List<URI> uris)
 			throws CodeServiceException {
-		try {
-			for (ICode code : codes) {
-				if (!this.codeStore.codeExists(code)) {
-					this.codeStore.addAndSaveCode(code);
-					this.codeServiceListenerNotifier.codesCreated(codes);
+		return this.runInTransaction(() -> {
+			try {
+				for (ICode code : codes) {
+					if (!this.codeStore.codeExists(code)) {
+						this.codeStore.addAndSaveCode(code);
+						this.codeServiceListenerNotifier.codesCreated(codes);
+					}
 				}
+				ICodeInstance[] codeInstances = this.codeStore
+						.createCodeInstances(codes.toArray(new ICode[0]),
+								uris.toArray(new URI[0]));
+				this.codeStore.addAndSaveCodeInstances(codeInstances);
+				this.codeServiceListenerNotifier.codesAssigned(codes, uris);
+				URI[] codeInstanceUris = new URI[codeInstances.length];
+				for (int i = 0; i < codeInstanceUris.length; i++) {
+					codeInstanceUris[i] = codeInstances[i].getUri();
+				}
+				return codeInstanceUris;
+			} catch (CodeStoreWriteException e) {
+				throw new CodeServiceException(e);
+			} catch (CodeStoreReadException e) {
+				throw new CodeServiceException(e);
+			} catch (DuplicateCodeInstanceException e) {
+				throw new CodeServiceException(e);
+			} catch (InvalidParameterException e) {
+				throw new CodeServiceException(e);
+			} catch (CodeStoreFullException e) {
+				throw new CodeServiceException(e);
 			}
-			ICodeInstance[] codeInstances = this.codeStore.createCodeInstances(
-					codes.toArray(new ICode[0]), uris.toArray(new URI[0]));
-			this.codeStore.addAndSaveCodeInstances(codeInstances);
-			this.codeServiceListenerNotifier.codesAssigned(codes, uris);
-			URI[] codeInstanceUris = new URI[codeInstances.length];
-			for (int i = 0; i < codeInstanceUris.length; i++) {
-				codeInstanceUris[i] = codeInstances[i].getUri();
-			}
-			return codeInstanceUris;
-		} catch (CodeStoreWriteException e) {
-			throw new CodeServiceException(e);
-		} catch (CodeStoreReadException e) {
-			throw new CodeServiceException(e);
-		} catch (DuplicateCodeInstanceException e) {
-			throw new CodeServiceException(e);
-		} catch (InvalidParameterException e) {
-			throw new CodeServiceException(e);
-		} catch (CodeStoreFullException e) {
-			throw new CodeServiceException(e);
-		}
+		});
 	}
 
 	@Override
 	public Set<URI> getCodedIDs() {
-		Set<URI> codedIDs = new HashSet<URI>();
-		for (ICodeInstance instance : this.codeStore.getInstances()) {
-			URI id = instance.getId();
-			if (!codedIDs.contains(id)) {
-				codedIDs.add(id);
-			}
-		}
-		return codedIDs;
+		return this.codeStore.getCodedIds();
 	}
 
 	@Override
@@ -238,43 +312,25 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public List<ICodeInstance> getInstances(IIdentifier identifier) {
-		ArrayList<ICodeInstance> codeInstances = new ArrayList<ICodeInstance>();
-		for (ICodeInstance codeInstance : this.codeStore.getInstances()) {
-			String[] uriParts = codeInstance.getId().toString().split("/");
-			if (identifier.equals(IdentifierFactory.createFrom(uriParts[3]))) {
-				codeInstances.add(codeInstance);
-			}
-		}
-		return codeInstances;
+		return this.codeStore.getInstances(identifier);
 	}
 
 	@Override
 	public List<ICodeInstance> getInstances(URI uri) {
-		ArrayList<ICodeInstance> codeInstances = new ArrayList<ICodeInstance>();
-		for (ICodeInstance codeInstance : this.codeStore.getInstances()) {
-			if (codeInstance.getId().equals(uri)) {
-				codeInstances.add(codeInstance);
-			}
-		}
-		return codeInstances;
+		return this.codeStore.getInstances(uri);
 	}
 
 	@Override
 	public List<ICodeInstance> getInstances(ICode code) {
-		ArrayList<ICodeInstance> codeInstances = new ArrayList<ICodeInstance>();
-		for (ICodeInstance codeInstance : this.codeStore.getInstances()) {
-			if (codeInstance.getCode().equals(code)) {
-				codeInstances.add(codeInstance);
-			}
-		}
-		return codeInstances;
+		return this.codeStore.getInstances(code);
 	}
 
 	@Override
 	public Collection<? extends ICodeInstance> getAllInstances(ICode code) {
-		List<ICodeInstance> instances = this.getInstances(code);
+		List<ICodeInstance> instances = new ArrayList<ICodeInstance>(
+				this.getInstances(code));
 		for (ICode subCode : this.getSubCodes(code)) {
-			instances.addAll(this.getAllInstances(subCode));
+			instances.addAll(this.getInstances(subCode));
 		}
 		return instances;
 	}
@@ -416,26 +472,29 @@ public class CodeService implements ICodeService, IDisposable {
 		if (codes.size() == 0) {
 			return;
 		}
-		try {
-			List<ICode> removedCodes = new LinkedList<ICode>();
-			for (ICodeInstance codeInstance : this.codeStore.getInstances()) {
-				if (codes.contains(codeInstance.getCode())
-						&& codeInstance.getId().equals(uri)) {
-					this.codeStore.deleteCodeInstance(codeInstance);
-					removedCodes.add(codeInstance.getCode());
+		this.runInTransaction(() -> {
+			try {
+				List<ICode> removedCodes = new LinkedList<ICode>();
+				for (ICodeInstance codeInstance : new ArrayList<ICodeInstance>(
+						this.codeStore.getInstances(uri))) {
+					if (codes.contains(codeInstance.getCode())) {
+						this.codeStore.deleteCodeInstance(codeInstance);
+						removedCodes.add(codeInstance.getCode());
+					}
+				}
+				if (removedCodes.size() == 0) {
+					throw new CodeInstanceDoesNotExistException();
 				}
-			}
-			if (removedCodes.size() == 0) {
-				throw new CodeInstanceDoesNotExistException();
-			}
 
-			this.codeServiceListenerNotifier.codesRemoved(removedCodes,
-					Arrays.asList(uri));
-		} catch (CodeStoreWriteException e) {
-			throw new CodeServiceException(e);
-		} catch (CodeInstanceDoesNotExistException e) {
-			throw new CodeServiceException(e);
-		}
+				this.codeServiceListenerNotifier.codesRemoved(removedCodes,
+						Arrays.asList(uri));
+			} catch (CodeStoreWriteException e) {
+				throw new CodeServiceException(e);
+			} catch (CodeInstanceDoesNotExistException e) {
+				throw new CodeServiceException(e);
+			}
+			return null;
+		});
 	}
 
 	// TODO check if removed is also fired to allow viewers to only listen to
@@ -463,18 +522,21 @@ public class CodeService implements ICodeService, IDisposable {
 		for (ICode propertyCode : properties) {
 			propertyUris.add(propertyCode.getUri());
 		}
-		try {
-			this.codeStore.removeAndSaveCode(code, forceDelete);
-			this.codeServiceListenerNotifier.propertiesChanged(code.getUri(),
-					new LinkedList<URI>(), propertyUris);
-			this.codeServiceListenerNotifier.codeDeleted(code);
-		} catch (CodeStoreWriteException e) {
-			throw new CodeServiceException(e);
-		} catch (CodeDoesNotExistException e) {
-			throw new CodeServiceException(e);
-		} catch (CodeHasChildCodesException e) {
-			throw new CodeServiceException(e);
-		}
+		this.runInTransaction(() -> {
+			try {
+				this.codeStore.removeAndSaveCode(code, forceDelete);
+				this.codeServiceListenerNotifier.propertiesChanged(
+						code.getUri(), new LinkedList<URI>(), propertyUris);
+				this.codeServiceListenerNotifier.codeDeleted(code);
+			} catch (CodeStoreWriteException e) {
+				throw new CodeServiceException(e);
+			} catch (CodeDoesNotExistException e) {
+				throw new CodeServiceException(e);
+			} catch (CodeHasChildCodesException e) {
+				throw new CodeServiceException(e);
+			}
+			return null;
+		});
 	}
 
 	@Override
@@ -494,12 +556,7 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public IRelation getRelation(URI uri) {
-		for (IRelation relation : this.codeStore.getRelations()) {
-			if (ObjectUtils.equals(relation.getUri(), uri)) {
-				return relation;
-			}
-		}
-		return null;
+		return this.codeStore.getRelation(uri);
 	}
 
 	@Override
@@ -513,34 +570,26 @@ public class CodeService implements ICodeService, IDisposable {
 		IIdentifier id = URIUtils.getIdentifier(phenomenon);
 		Set<IRelation> relations = new HashSet<>();
 		for (IRelationInstance relationInstance : this.codeStore
-				.getRelationInstances()) {
-			IIdentifier id2 = URIUtils.getIdentifier(relationInstance
-					.getPhenomenon());
-			if (id.equals(id2)) {
-				relations.add(relationInstance.getRelation());
-			}
+				.getRelationInstances(id)) {
+			relations.add(relationInstance.getRelation());
 		}
 		return relations;
 	}
 
 	@Override
 	public Set<IRelation> getRelations(URI from, URI to) {
-		return this.getRelations().stream()
-				.filter(r -> r.getFrom().equals(from) && r.getTo().equals(to))
-				.collect(Collectors.toSet());
+		return this.codeStore.getRelationsStartingFrom(from).stream()
+				.filter(r -> r.getTo().equals(to)).collect(Collectors.toSet());
 	}
 
 	@Override
 	public Set<IRelation> getRelationsStartingFrom(URI from) {
-		return this.codeStore.getRelations().stream()
-				.filter(r -> r.getFrom().equals(from))
-				.collect(Collectors.toSet());
+		return new HashSet<>(this.codeStore.getRelationsStartingFrom(from));
 	}
 
 	@Override
 	public Set<IRelation> getRelationsEndingAt(URI to) {
-		return this.codeStore.getRelations().stream()
-				.filter(r -> r.getTo().equals(to)).collect(Collectors.toSet());
+		return new HashSet<>(this.codeStore.getRelationsEndingAt(to));
 	}
 
 	@Override
@@ -556,7 +605,6 @@ public class CodeService implements ICodeService, IDisposable {
 			} catch (DuplicateRelationException e) {
 			}
 		}
-		this.codeStore.save();
 		Set<IRelation> set = new HashSet<IRelation>();
 		set.add(relation);
 		this.codeServiceListenerNotifier.relationsAdded(set);
@@ -579,7 +627,6 @@ public class CodeService implements ICodeService, IDisposable {
 			}
 		}
 		this.codeStore.deleteRelation(relation);
-		this.codeStore.save();
 		LocatorService.INSTANCE.uncache(relation.getUri());
 		Set<IRelation> set = new HashSet<IRelation>();
 		set.add(relation);
@@ -597,7 +644,6 @@ public class CodeService implements ICodeService, IDisposable {
 		Relation newRelation = new Relation(relation.getUri(),
 				relation.getFrom(), relation.getTo(), newName);
 		this.codeStore.replaceRelation(relation, newRelation);
-		this.codeStore.save();
 		Set<IRelation> set = new HashSet<IRelation>();
 		set.add(relation);
 		this.codeServiceListenerNotifier.relationsRenamed(set);
@@ -605,14 +651,7 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public Set<IRelationInstance> getRelationInstances(IRelation relation) {
-		Set<IRelationInstance> relationInstances = new HashSet<>();
-		for (IRelationInstance relationInstance : this.codeStore
-				.getRelationInstances()) {
-			if (relationInstance.getRelation().equals(relation)) {
-				relationInstances.add(relationInstance);
-			}
-		}
-		return relationInstances;
+		return new HashSet<>(this.codeStore.getRelationInstances(relation));
 	}
 
 	@Override
@@ -625,14 +664,14 @@ public class CodeService implements ICodeService, IDisposable {
 		Set<URI> tos = new LinkedHashSet<>();
 		tos.add(relation.getTo());
 		tos.addAll(this.getAscendants(relation.getTo()));
-		for (IRelationInstance relationInstance : this.codeStore
-				.getRelationInstances()) {
-			if (froms.contains(relationInstance.getRelation().getFrom())
-					&& tos.contains(relationInstance.getRelation().getTo())
-					&& relation.getName().equals(
-							relationInstance.getRelation().getName())) {
-				relationInstances.add(relationInstance);
-			} else {
+		for (URI from : froms) {
+			for (IRelation candidate : this.codeStore
+					.getRelationsStartingFrom(from)) {
+				if (tos.contains(candidate.getTo())
+						&& relation.getName().equals(candidate.getName())) {
+					relationInstances.addAll(this.codeStore
+							.getRelationInstances(candidate));
+				}
 			}
 		}
 		return relationInstances;
@@ -649,20 +688,13 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public Set<IRelationInstance> getRelationInstances(URI uri) {
-		Set<IRelationInstance> relationInstances = new HashSet<>();
-		for (IRelationInstance relationInstance : this.codeStore
-				.getRelationInstances()) {
-			if (relationInstance.getPhenomenon().equals(uri)) {
-				relationInstances.add(relationInstance);
-			}
-		}
-		return relationInstances;
+		return new HashSet<>(this.codeStore.getRelationInstances(uri));
 	}
 
 	@Override
 	public Set<IRelationInstance> getRelationInstancesStartingFrom(URI from) {
-		return this.codeStore.getRelationInstances().stream()
-				.filter(r -> r.getRelation().getFrom().equals(from))
+		return this.codeStore.getRelationsStartingFrom(from).stream()
+				.flatMap(r -> this.codeStore.getRelationInstances(r).stream())
 				.collect(Collectors.toSet());
 	}
 
@@ -671,15 +703,16 @@ public class CodeService implements ICodeService, IDisposable {
 			throws CodeDoesNotExistException {
 		Set<URI> froms = this.getAscendants(from);
 		froms.add(from);
-		return this.codeStore.getRelationInstances().stream()
-				.filter(r -> froms.contains(r.getRelation().getFrom()))
+		return froms.stream()
+				.flatMap(f -> this.codeStore.getRelationsStartingFrom(f).stream())
+				.flatMap(r -> this.codeStore.getRelationInstances(r).stream())
 				.collect(Collectors.toSet());
 	}
 
 	@Override
 	public Set<IRelationInstance> getRelationInstancesEndingAt(URI to) {
-		return this.codeStore.getRelationInstances().stream()
-				.filter(r -> r.getRelation().getTo().equals(to))
+		return this.codeStore.getRelationsEndingAt(to).stream()
+				.flatMap(r -> this.codeStore.getRelationInstances(r).stream())
 				.collect(Collectors.toSet());
 	}
 
@@ -688,8 +721,9 @@ public class CodeService implements ICodeService, IDisposable {
 			throws CodeDoesNotExistException {
 		Set<URI> tos = this.getAscendants(to);
 		tos.add(to);
-		return this.codeStore.getRelationInstances().stream()
-				.filter(r -> tos.contains(r.getRelation().getTo()))
+		return tos.stream()
+				.flatMap(t -> this.codeStore.getRelationsEndingAt(t).stream())
+				.flatMap(r -> this.codeStore.getRelationInstances(r).stream())
 				.collect(Collectors.toSet());
 	}
 
@@ -709,7 +743,6 @@ public class CodeService implements ICodeService, IDisposable {
 			} catch (DuplicateRelationInstanceException e) {
 			}
 		}
-		this.codeStore.save();
 		Set<IRelationInstance> set = new HashSet<IRelationInstance>();
 		set.add(relationInstance);
 		this.codeServiceListenerNotifier.relationInstancesAdded(set);
@@ -721,7 +754,6 @@ public class CodeService implements ICodeService, IDisposable {
 			throws RelationInstanceDoesNotExistException,
 			CodeStoreWriteException {
 		this.codeStore.deleteRelationInstance(relationInstance);
-		this.codeStore.save();
 		LocatorService.INSTANCE.uncache(relationInstance.getUri());
 		Set<IRelationInstance> set = new HashSet<IRelationInstance>();
 		set.add(relationInstance);
@@ -730,7 +762,7 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public boolean isGrounded(IRelation relation) {
-		return this.getRelationInstances(relation).size() > 0;
+		return !this.codeStore.getRelationInstances(relation).isEmpty();
 	}
 
 	@Override
@@ -741,7 +773,7 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public boolean isGrounded(URI phenomenon, URI from, URI to) {
-		for (IRelationInstance relationInstance : this
+		for (IRelationInstance relationInstance : this.codeStore
 				.getRelationInstances(phenomenon)) {
 			if (relationInstance.getRelation().getFrom().equals(from)
 					&& relationInstance.getRelation().getTo().equals(to)) {
@@ -758,11 +790,7 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public String loadMemoPlain(URI uri) {
-		String htmlMemo = this.loadMemo(uri);
-		if (htmlMemo != null && !htmlMemo.trim().isEmpty()) {
-			return StringUtils.htmlToPlain(htmlMemo);
-		}
-		return null;
+		return this.codeStore.getMemoPlain(uri);
 	}
 
 	@Override
@@ -826,9 +854,7 @@ public class CodeService implements ICodeService, IDisposable {
 
 	@Override
 	public void addEpisodeAndSave(IEpisode episode) throws CodeServiceException {
-		Set<IEpisode> episodes = this.codeStore.getEpisodes();
-		if (!episodes.contains(episode)) {
-			episodes.add(episode);
+		if (this.codeStore.addEpisode(episode)) {
 			try {
 				this.codeStore.save();
 				this.codeServiceListenerNotifier.episodeAdded(episode);
@@ -847,18 +873,27 @@ public class CodeService implements ICodeService, IDisposable {
 			throw new CodeServiceException(new IllegalArgumentException(
 					"Arguments must not be null"));
 		}
-		Set<IEpisode> episodes = this.codeStore.getEpisodes();
-		if (episodes.contains(oldEpisode)) {
+		if (this.codeStore.getEpisodes().contains(oldEpisode)) {
 			if (LocatorService.INSTANCE != null) {
 				LocatorService.INSTANCE.uncache(oldEpisode.getUri());
 			}
-			episodes.remove(oldEpisode);
-			episodes.add(newEpisode);
+			this.runInTransaction(() -> {
+				if (!this.codeStore.removeEpisode(oldEpisode)) {
+					throw new EpisodeDoesNotExistException(oldEpisode);
+				}
+				this.codeStore.addEpisode(newEpisode);
 
-			this.reattachAndSave(oldEpisode.getUri(), newEpisode.getUri());
+				this.reattachAndSave(oldEpisode.getUri(), newEpisode.getUri());
+				try {
+					this.codeStore.save();
+				} catch (CodeStoreWriteException e) {
+					throw new CodeServiceException(e);
+				}
 
-			this.codeServiceListenerNotifier.episodeReplaced(oldEpisode,
-					newEpisode);
+				this.codeServiceListenerNotifier.episodeReplaced(oldEpisode,
+						newEpisode);
+				return null;
+			});
 		} else {
 			throw new EpisodeDoesNotExistException(oldEpisode);
 		}
@@ -867,26 +902,29 @@ public class CodeService implements ICodeService, IDisposable {
 	@Override
 	public void deleteEpisodeAndSave(List<IEpisode> episodesToDelete)
 			throws CodeServiceException {
-		Set<IEpisode> episodes = this.codeStore.getEpisodes();
 		Set<IEpisode> deletedEpisodes = new NoNullSet<IEpisode>();
-		for (IEpisode episodeToDelete : episodesToDelete) {
-			if (episodes.contains(episodeToDelete)) {
-				if (LocatorService.INSTANCE != null) {
-					LocatorService.INSTANCE.uncache(episodeToDelete.getUri());
+		this.runInTransaction(() -> {
+			for (IEpisode episodeToDelete : episodesToDelete) {
+				if (this.codeStore.removeEpisode(episodeToDelete)) {
+					if (LocatorService.INSTANCE != null) {
+						LocatorService.INSTANCE.uncache(episodeToDelete
+								.getUri());
+					}
+					this.removeCodes(this.getCodes(episodeToDelete.getUri()),
+							episodeToDelete.getUri());
+					deletedEpisodes.add(episodeToDelete);
 				}
-				episodes.remove(episodeToDelete);
-				this.removeCodes(this.getCodes(episodeToDelete.getUri()),
-						episodeToDelete.getUri());
-				deletedEpisodes.add(episodeToDelete);
 			}
-		}
 
-		try {
-			this.codeStore.save();
-			this.codeServiceListenerNotifier.episodesDeleted(deletedEpisodes);
-		} catch (CodeStoreWriteException e) {
-			throw new CodeServiceException(e);
-		}
+			try {
+				this.codeStore.save();
+				this.codeServiceListenerNotifier
+						.episodesDeleted(deletedEpisodes);
+			} catch (CodeStoreWriteException e) {
+				throw new CodeServiceException(e);
+			}
+			return null;
+		});
 
 		@SuppressWarnings("unchecked")
 		Collection<IEpisode> notDeletedEpisodes = CollectionUtils.disjunction(
@@ -1001,15 +1039,15 @@ public class CodeService implements ICodeService, IDisposable {
 	@Override
 	public Pair<Set<String>, Set<String>> getDimensionValues(
 			Collection<IRelationInstance> relationInstances) {
-		List<URI> phenomena = relationInstances.stream()
-				.map(r -> r.getPhenomenon()).collect(Collectors.toList());
+		Set<URI> phenomena = relationInstances.stream()
+				.map(r -> r.getPhenomenon()).collect(Collectors.toSet());
 		List<URI> froms = relationInstances.stream()
 				.map(r -> r.getRelation().getFrom())
 				.collect(Collectors.toList());
 		List<URI> tos = relationInstances.stream()
 				.map(r -> r.getRelation().getTo()).collect(Collectors.toList());
-		List<ICodeInstance> codeInstances = this.getInstances().stream()
-				.filter(i -> phenomena.contains(i.getId()))
+		List<ICodeInstance> codeInstances = phenomena.stream()
+				.flatMap(p -> this.getInstances(p).stream())
 				.collect(Collectors.toList());
 
 		Set<String> fromDimensionValues = new HashSet<>();
@@ -1291,6 +1329,9 @@ public class CodeService implements ICodeService, IDisposable {
 	/**
 	 * Returns the elements that contained in the {@link IRelation}s that are
 	 * related without any gaps.
+	 * <p>
+	 * The elements are found by a breadth-first search that follows the given
+	 * {@link IRelation}s in both directions.
 	 *
 	 * @param code
 	 * @param relations
@@ -1303,20 +1344,25 @@ public class CodeService implements ICodeService, IDisposable {
 			return codes;
 		}
 
+		Map<URI, List<URI>> neighbours = new HashMap<>();
+		for (IRelation relation : relations) {
+			neighbours.computeIfAbsent(relation.getFrom(),
+					k -> new ArrayList<>()).add(relation.getTo());
+			neighbours.computeIfAbsent(relation.getTo(),
+					k -> new ArrayList<>()).add(relation.getFrom());
+		}
+
+		Queue<URI> queue = new LinkedList<>();
 		codes.add(element);
-		boolean codesAdded = true;
-		while (codesAdded) {
-			codesAdded = false;
-			for (IRelation relation : relations) {
-				if (codes.contains(relation.getFrom())
-						&& !codes.contains(relation.getTo())) {
-					codes.add(relation.getTo());
-					codesAdded = true;
-				}
-				if (codes.contains(relation.getTo())
-						&& !codes.contains(relation.getFrom())) {
-					codes.add(relation.getFrom());
-					codesAdded = true;
+		queue.add(element);
+		while (!queue.isEmpty()) {
+			List<URI> next = neighbours.get(queue.poll());
+			if (next == null) {
+				continue;
+			}
+			for (URI code : next) {
+				if (codes.add(code)) {
+					queue.add(code);
 				}
 			}
 		}
@@ -1359,17 +1405,15 @@ public class CodeService implements ICodeService, IDisposable {
 			LocatorService.INSTANCE.uncache(src);
 		}
 
-		List<ICode> codes = this.getCodes(src);
-		this.removeCodes(codes, src);
-		this.addCodes(codes, new LinkedList<URI>(Arrays.asList(dest)));
+		this.runInTransaction(() -> {
+			List<ICode> codes = this.getCodes(src);
+			this.removeCodes(codes, src);
+			this.addCodes(codes, new LinkedList<URI>(Arrays.asList(dest)));
 
-		String memo = this.loadMemo(src);
-		this.setMemo(src, null);
-		this.setMemo(dest, memo);
-		try {
-			this.codeStore.save();
-		} catch (CodeStoreWriteException e) {
-			throw new CodeServiceException(e);
-		}
+			String memo = this.loadMemo(src);
+			this.setMemo(src, null);
+			this.setMemo(dest, memo);
+			return null;
+		});
 	}
 }
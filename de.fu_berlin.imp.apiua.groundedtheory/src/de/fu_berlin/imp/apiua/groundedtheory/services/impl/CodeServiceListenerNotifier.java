@@ -1,10 +1,15 @@
 package de.fu_berlin.imp.apiua.groundedtheory.services.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import org.apache.log4j.Logger;
 
@@ -24,8 +29,166 @@ public class CodeServiceListenerNotifier {
 	private static final Logger LOGGER = Logger
 			.getLogger(CodeServiceListenerNotifier.class);
 
+	/**
+	 * Notification collected while a batch is running.
+	 */
+	private static abstract class Notification implements Runnable {
+		/**
+		 * Merges the given notification into this one if both are of the same
+		 * kind and the merged notification describes both.
+		 *
+		 * @param next
+		 *            notification that directly follows this one
+		 * @return true if the given notification was merged and must not be
+		 *         fired anymore
+		 */
+		public boolean merge(Notification next) {
+			return false;
+		}
+	}
+
+	/**
+	 * {@link Notification} about a set of elements. Merging joins the sets.
+	 */
+	private static class ElementsNotification<T> extends Notification {
+		private final String kind;
+		private final Set<T> elements;
+		private final Consumer<Set<T>> notifier;
+
+		public ElementsNotification(String kind, Collection<T> elements,
+				Consumer<Set<T>> notifier) {
+			this.kind = kind;
+			this.elements = new LinkedHashSet<T>(elements);
+			this.notifier = notifier;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean merge(Notification next) {
+			if (!(next instanceof ElementsNotification)
+					|| !this.kind.equals(((ElementsNotification<?>) next).kind)) {
+				return false;
+			}
+			this.elements.addAll(((ElementsNotification<T>) next).elements);
+			return true;
+		}
+
+		@Override
+		public void run() {
+			this.notifier.accept(this.elements);
+		}
+	}
+
+	/**
+	 * {@link Notification} about {@link ICode}s (un)assigned to {@link URI}s.
+	 * Each {@link ICode} is paired with each {@link URI}. To keep these pairs
+	 * two notifications are only merged if they share their {@link ICode}s or
+	 * their {@link URI}s.
+	 */
+	private static class AssignmentNotification extends Notification {
+		private final String kind;
+		private final Set<ICode> codes;
+		private final Set<URI> uris;
+		private final BiConsumer<List<ICode>, List<URI>> notifier;
+
+		public AssignmentNotification(String kind, List<ICode> codes,
+				List<URI> uris, BiConsumer<List<ICode>, List<URI>> notifier) {
+			this.kind = kind;
+			this.codes = new LinkedHashSet<ICode>(codes);
+			this.uris = new LinkedHashSet<URI>(uris);
+			this.notifier = notifier;
+		}
+
+		@Override
+		public boolean merge(Notification next) {
+			if (!(next instanceof AssignmentNotification)
+					|| !this.kind.equals(((AssignmentNotification) next).kind)) {
+				return false;
+			}
+			AssignmentNotification assignment = (AssignmentNotification) next;
+			if (this.codes.equals(assignment.codes)) {
+				this.uris.addAll(assignment.uris);
+				return true;
+			}
+			if (this.uris.equals(assignment.uris)) {
+				this.codes.addAll(assignment.codes);
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void run() {
+			this.notifier.accept(new ArrayList<ICode>(this.codes),
+					new ArrayList<URI>(this.uris));
+		}
+	}
+
+	/**
+	 * {@link Notification} about a memo. Repeated notifications of the same
+	 * kind about the same memo are fired once.
+	 */
+	private static class MemoNotification extends Notification {
+		private final String kind;
+		private final URI uri;
+		private final Runnable notifier;
+
+		public MemoNotification(String kind, URI uri, Runnable notifier) {
+			this.kind = kind;
+			this.uri = uri;
+			this.notifier = notifier;
+		}
+
+		@Override
+		public boolean merge(Notification next) {
+			return next instanceof MemoNotification
+					&& this.kind.equals(((MemoNotification) next).kind)
+					&& this.uri.equals(((MemoNotification) next).uri);
+		}
+
+		@Override
+		public void run() {
+			this.notifier.run();
+		}
+	}
+
+	/**
+	 * Notifications collected while a batch is running. They are fired in the
+	 * order they occurred. Adjacent notifications of the same kind are merged
+	 * into one.
+	 */
+	private static class Batch {
+		private int depth = 0;
+		/**
+		 * True if a nested batch was discarded and so is the outermost one.
+		 */
+		private boolean discarded = false;
+		private final List<Notification> notifications = new ArrayList<Notification>();
+
+		private void add(Notification notification) {
+			if (!this.notifications.isEmpty()
+					&& this.notifications.get(this.notifications.size() - 1)
+							.merge(notification)) {
+				return;
+			}
+			this.notifications.add(notification);
+		}
+
+		private void fire() {
+			for (Notification notification : this.notifications) {
+				notification.run();
+			}
+		}
+	}
+
 	private final Queue<ICodeServiceListener> codeServiceListeners = new ConcurrentLinkedQueue<ICodeServiceListener>();
 
+	/**
+	 * Batch of the current thread; notifications of other threads are fired
+	 * immediately.
+	 */
+	private final ThreadLocal<Batch> batch = new ThreadLocal<Batch>();
+
 	void addCodeServiceListener(ICodeServiceListener codeServiceListener) {
 		if (this.codeServiceListeners.contains(codeServiceListener)) {
 			LOGGER.warn("Tried to add an already registered listener");
@@ -44,7 +207,90 @@ public class CodeServiceListenerNotifier {
 
 	}
 
+	/**
+	 * Starts collecting the notifications of the current thread instead of
+	 * firing them. Batches may be nested.
+	 */
+	void beginBatch() {
+		Batch batch = this.batch.get();
+		if (batch == null) {
+			batch = new Batch();
+			this.batch.set(batch);
+		}
+		batch.depth++;
+	}
+
+	/**
+	 * Ends the current batch. If it is the outermost one the collected
+	 * notifications are fired unless a nested batch was discarded.
+	 */
+	void commitBatch() {
+		Batch batch = this.endBatch();
+		if (batch != null && !batch.discarded) {
+			batch.fire();
+		}
+	}
+
+	/**
+	 * Ends the current batch. The collected notifications of the outermost
+	 * batch are discarded.
+	 */
+	void discardBatch() {
+		Batch batch = this.batch.get();
+		if (batch == null) {
+			return;
+		}
+		batch.discarded = true;
+		this.endBatch();
+	}
+
+	/**
+	 * Ends the current batch.
+	 *
+	 * @return the outermost {@link Batch} if it ended; null otherwise
+	 */
+	private Batch endBatch() {
+		Batch batch = this.batch.get();
+		if (batch == null) {
+			throw new IllegalStateException("No batch running");
+		}
+		if (--batch.depth > 0) {
+			return null;
+		}
+		this.batch.remove();
+		return batch;
+	}
+
+	/**
+	 * Collects the given notification if a batch is running on the current
+	 * thread.
+	 *
+	 * @param notification
+	 * @return true if the notification was collected and must not be fired
+	 */
+	private boolean defer(Notification notification) {
+		Batch batch = this.batch.get();
+		if (batch == null) {
+			return false;
+		}
+		batch.add(notification);
+		return true;
+	}
+
+	private boolean defer(final Runnable notification) {
+		return this.defer(new Notification() {
+			@Override
+			public void run() {
+				notification.run();
+			}
+		});
+	}
+
 	void codesCreated(final List<ICode> codes) {
+		if (this.defer(new ElementsNotification<ICode>("codesCreated", codes,
+				created -> this.codesCreated(new ArrayList<ICode>(created))))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Codes Created Notification", new Callable<Void>() {
@@ -58,6 +304,10 @@ public class CodeServiceListenerNotifier {
 	}
 
 	void codesAssigned(final List<ICode> codes, final List<URI> uris) {
+		if (this.defer(new AssignmentNotification("codesAssigned", codes,
+				uris, this::codesAssigned))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Codes Assigned Notification", new Callable<Void>() {
@@ -72,6 +322,9 @@ public class CodeServiceListenerNotifier {
 
 	public void codeRenamed(final ICode code, final String oldCaption,
 			final String newCaption) {
+		if (this.defer(() -> this.codeRenamed(code, oldCaption, newCaption))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Code Renamed Notification", new Callable<Void>() {
@@ -87,6 +340,9 @@ public class CodeServiceListenerNotifier {
 
 	public void codeRecolored(final ICode code, final RGB oldColor,
 			final RGB newColor) {
+		if (this.defer(() -> this.codeRecolored(code, oldColor, newColor))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Code Recolored Notification", new Callable<Void>() {
@@ -101,6 +357,10 @@ public class CodeServiceListenerNotifier {
 	}
 
 	void codesRemoved(final List<ICode> removedCodes, final List<URI> uris) {
+		if (this.defer(new AssignmentNotification("codesRemoved",
+				removedCodes, uris, this::codesRemoved))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Codes Removed Notification", new Callable<Void>() {
@@ -116,6 +376,9 @@ public class CodeServiceListenerNotifier {
 
 	public void codeMoved(final ICode code, final ICode oldParentCode,
 			final ICode newParentCode) {
+		if (this.defer(() -> this.codeMoved(code, oldParentCode, newParentCode))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Code Moved Notification", new Callable<Void>() {
@@ -130,6 +393,9 @@ public class CodeServiceListenerNotifier {
 	}
 
 	void codeDeleted(final ICode code) {
+		if (this.defer(() -> this.codeDeleted(code))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Code Deleted Notification", new Callable<Void>() {
@@ -143,36 +409,60 @@ public class CodeServiceListenerNotifier {
 	}
 
 	public void relationsAdded(Set<IRelation> relations) {
+		if (this.defer(new ElementsNotification<IRelation>("relationsAdded", relations,
+				this::relationsAdded))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			codeServiceListener.relationsAdded(relations);
 		}
 	}
 
 	public void relationsDeleted(Set<IRelation> relations) {
+		if (this.defer(new ElementsNotification<IRelation>("relationsDeleted", relations,
+				this::relationsDeleted))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			codeServiceListener.relationsDeleted(relations);
 		}
 	}
 
 	public void relationsRenamed(Set<IRelation> relations) {
+		if (this.defer(new ElementsNotification<IRelation>("relationsRenamed", relations,
+				this::relationsRenamed))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			codeServiceListener.relationsRenamed(relations);
 		}
 	}
 
 	public void relationInstancesAdded(Set<IRelationInstance> relations) {
+		if (this.defer(new ElementsNotification<IRelationInstance>("relationInstancesAdded", relations,
+				this::relationInstancesAdded))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			codeServiceListener.relationInstancesAdded(relations);
 		}
 	}
 
 	public void relationInstancesDeleted(Set<IRelationInstance> relationInstances) {
+		if (this.defer(new ElementsNotification<IRelationInstance>("relationInstancesDeleted", relationInstances,
+				this::relationInstancesDeleted))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			codeServiceListener.relationInstancesDeleted(relationInstances);
 		}
 	}
 
 	void memoAdded(final URI uri, String html) {
+		if (this.defer(new MemoNotification("memoAdded", uri,
+				() -> this.memoAdded(uri, html)))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Memo Added Notification", new Callable<Void>() {
@@ -186,6 +476,10 @@ public class CodeServiceListenerNotifier {
 	}
 
 	void memoModified(final URI uri, String html) {
+		if (this.defer(new MemoNotification("memoModified", uri,
+				() -> this.memoModified(uri, html)))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Memo Modified Notification", new Callable<Void>() {
@@ -199,6 +493,10 @@ public class CodeServiceListenerNotifier {
 	}
 
 	void memoRemoved(final URI uri, String html) {
+		if (this.defer(new MemoNotification("memoRemoved", uri,
+				() -> this.memoRemoved(uri, html)))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Memo Removed Notification", new Callable<Void>() {
@@ -212,6 +510,9 @@ public class CodeServiceListenerNotifier {
 	}
 
 	public void episodeAdded(final IEpisode episode) {
+		if (this.defer(() -> this.episodeAdded(episode))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Episode Added Notification", new Callable<Void>() {
@@ -226,6 +527,9 @@ public class CodeServiceListenerNotifier {
 
 	public void episodeReplaced(final IEpisode oldEpisode,
 			final IEpisode newEpisode) {
+		if (this.defer(() -> this.episodeReplaced(oldEpisode, newEpisode))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Episode Replaced Notification", new Callable<Void>() {
@@ -240,6 +544,10 @@ public class CodeServiceListenerNotifier {
 	}
 
 	public void episodesDeleted(final Set<IEpisode> deletedEpisodes) {
+		if (this.defer(new ElementsNotification<IEpisode>("episodesDeleted", deletedEpisodes,
+				this::episodesDeleted))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Episodes Deleted Notification", new Callable<Void>() {
@@ -255,6 +563,9 @@ public class CodeServiceListenerNotifier {
 
 	public void dimensionChanged(final URI uri, final IDimension oldDimension,
 			final IDimension newDimension) {
+		if (this.defer(() -> this.dimensionChanged(uri, oldDimension, newDimension))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Dimension Changed Notification", new Callable<Void>() {
@@ -270,6 +581,9 @@ public class CodeServiceListenerNotifier {
 
 	public void dimensionValueChanged(final URI uri, final String oldValue,
 			final String value) {
+		if (this.defer(() -> this.dimensionValueChanged(uri, oldValue, value))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Dimension Value Change Notification",
@@ -286,6 +600,9 @@ public class CodeServiceListenerNotifier {
 
 	public void propertiesChanged(final URI uri,
 			final List<URI> addedProperties, final List<URI> removedProperties) {
+		if (this.defer(() -> this.propertiesChanged(uri, addedProperties, removedProperties))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			ExecUtils.nonUIAsyncExec(CodeServiceListenerNotifier.class,
 					"Properties Changed Notification", new Callable<Void>() {
@@ -300,18 +617,27 @@ public class CodeServiceListenerNotifier {
 	}
 
 	public void axialCodingModelAdded(final URI uri) {
+		if (this.defer(() -> this.axialCodingModelAdded(uri))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			codeServiceListener.axialCodingModelAdded(uri);
 		}
 	}
 
 	public void axialCodingModelUpdated(final URI uri) {
+		if (this.defer(() -> this.axialCodingModelUpdated(uri))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			codeServiceListener.axialCodingModelUpdated(uri);
 		}
 	}
 
 	public void axialCodingModelRemoved(final URI uri) {
+		if (this.defer(() -> this.axialCodingModelRemoved(uri))) {
+			return;
+		}
 		for (final ICodeServiceListener codeServiceListener : this.codeServiceListeners) {
 			codeServiceListener.axialCodingModelRemoved(uri);
 		}
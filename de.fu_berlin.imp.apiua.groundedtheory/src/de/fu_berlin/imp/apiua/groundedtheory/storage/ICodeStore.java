@@ -7,7 +7,9 @@ import java.util.Set;
 
 import com.bkahlert.nebula.utils.colors.RGB;
 
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
 import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.groundedtheory.model.ICode;
 import de.fu_berlin.imp.apiua.groundedtheory.model.ICodeInstance;
 import de.fu_berlin.imp.apiua.groundedtheory.model.IEpisode;
@@ -31,8 +33,46 @@ public interface ICodeStore {
 
 	public List<ICode> getTopLevelCodes();
 
+	/**
+	 * Returns all {@link ICodeInstance}s.
+	 *
+	 * @return a read-only snapshot that is not changed by later mutations
+	 */
 	public Set<ICodeInstance> getInstances();
 
+	/**
+	 * Returns the {@link ICodeInstance}s whose phenomenon is the given
+	 * {@link URI}.
+	 *
+	 * @param uri
+	 * @return a read-only snapshot; never returns null
+	 */
+	public List<ICodeInstance> getInstances(URI uri);
+
+	/**
+	 * Returns the {@link ICodeInstance}s of the given {@link ICode}.
+	 *
+	 * @param code
+	 * @return a read-only snapshot; never returns null
+	 */
+	public List<ICodeInstance> getInstances(ICode code);
+
+	/**
+	 * Returns the {@link ICodeInstance}s whose phenomenon belongs to the given
+	 * {@link IIdentifier}.
+	 *
+	 * @param identifier
+	 * @return a read-only snapshot; never returns null
+	 */
+	public List<ICodeInstance> getInstances(IIdentifier identifier);
+
+	/**
+	 * Returns the {@link URI}s of all coded phenomenons.
+	 *
+	 * @return a read-only snapshot
+	 */
+	public Set<URI> getCodedIds();
+
 	/**
 	 * Returns an existing {@link ICode} based on it's internal id
 	 *
@@ -46,7 +86,7 @@ public interface ICodeStore {
 	public ICode[] getCodes();
 
 	public ICode createCode(String caption, RGB color)
-			throws CodeStoreFullException;
+			throws CodeStoreFullException, CodeStoreWriteException;
 
 	public ICodeInstance[] createCodeInstances(ICode[] codes, URI[] uris)
 			throws InvalidParameterException, CodeStoreReadException,
@@ -68,7 +108,12 @@ public interface ICodeStore {
 	public void removeAndSaveCodeInstance(ICodeInstance codeInstance)
 			throws CodeStoreWriteException, CodeStoreReadException;
 
-	public File getBackupFile();
+	/**
+	 * Returns the compressed backups of previous snapshots.
+	 *
+	 * @return the backups ordered from the most recent to the oldest one
+	 */
+	public List<File> getBackupFiles();
 
 	/**
 	 * Saves the {@link ICodeStore} and creates a backup.
@@ -78,6 +123,70 @@ public interface ICodeStore {
 	 */
 	public void save() throws CodeStoreWriteException;
 
+	/**
+	 * Writes the {@link ICodeStore} in the XML format used by former versions.
+	 * The {@link ICodeStore} itself is saved in a binary format but XML
+	 * snapshots can still be loaded.
+	 *
+	 * @param file
+	 * @throws CodeStoreWriteException
+	 */
+	public void exportXML(File file) throws CodeStoreWriteException;
+
+	/**
+	 * Writes all changes not yet written. Changes may be written in the
+	 * background; this method blocks until they are on disk.
+	 *
+	 * @throws CodeStoreWriteException
+	 */
+	public void flush() throws CodeStoreWriteException;
+
+	/**
+	 * Returns true if changes exist that are not yet written.
+	 *
+	 * @return
+	 */
+	public boolean isDirty();
+
+	/**
+	 * Returns the time changes were last written.
+	 *
+	 * @return null if nothing was written yet
+	 */
+	public TimeZoneDate getLastSaved();
+
+	/**
+	 * Starts a batch. Until the matching {@link #commitBatch()} mutations are
+	 * only applied in memory and calls to {@link #save()} are deferred.
+	 * Batches may be nested; only the outermost one is written.
+	 * <p>
+	 * A batch belongs to the thread that started it. Other threads wait until
+	 * it ended and thus never see uncommitted mutations.
+	 */
+	public void beginBatch();
+
+	/**
+	 * Ends the current batch. If it is the outermost one all its mutations
+	 * are written at once.
+	 *
+	 * @throws CodeStoreWriteException
+	 *             if the batch could not be written; the in-memory state is
+	 *             rolled back to the state before the batch in that case
+	 */
+	public void commitBatch() throws CodeStoreWriteException;
+
+	/**
+	 * Ends the current batch and discards its mutations. If it is nested the
+	 * mutations are discarded as soon as the outermost batch ends, whose
+	 * {@link #commitBatch()} then fails. The discarded mutations are undone by
+	 * restoring the state last written.
+	 * <p>
+	 * Memos are saved immediately and therefore not rolled back.
+	 *
+	 * @throws CodeStoreReadException
+	 */
+	public void rollbackBatch() throws CodeStoreReadException;
+
 	public void deleteCodeInstance(ICodeInstance codeInstance)
 			throws CodeInstanceDoesNotExistException, CodeStoreWriteException;
 
@@ -138,8 +247,37 @@ public interface ICodeStore {
 	 */
 	public void setPosition(ICode code, int pos);
 
+	/**
+	 * Returns all {@link IRelation}s.
+	 *
+	 * @return a read-only snapshot that is not changed by later mutations
+	 */
 	public Set<IRelation> getRelations();
 
+	/**
+	 * Returns the {@link IRelation} with the given {@link URI}.
+	 *
+	 * @param uri
+	 * @return null if no such {@link IRelation} exists
+	 */
+	public IRelation getRelation(URI uri);
+
+	/**
+	 * Returns the {@link IRelation}s starting from the given {@link URI}.
+	 *
+	 * @param from
+	 * @return a read-only snapshot; never returns null
+	 */
+	public List<IRelation> getRelationsStartingFrom(URI from);
+
+	/**
+	 * Returns the {@link IRelation}s ending at the given {@link URI}.
+	 *
+	 * @param to
+	 * @return a read-only snapshot; never returns null
+	 */
+	public List<IRelation> getRelationsEndingAt(URI to);
+
 	public void addRelation(IRelation relation) throws CodeStoreWriteException,
 			DuplicateRelationException;
 
@@ -149,8 +287,39 @@ public interface ICodeStore {
 	public void deleteRelation(IRelation relation)
 			throws RelationDoesNotExistException, CodeStoreWriteException;
 
+	/**
+	 * Returns all {@link IRelationInstance}s.
+	 *
+	 * @return a read-only snapshot that is not changed by later mutations
+	 */
 	public Set<IRelationInstance> getRelationInstances();
 
+	/**
+	 * Returns the {@link IRelationInstance}s of the given {@link IRelation}.
+	 *
+	 * @param relation
+	 * @return a read-only snapshot; never returns null
+	 */
+	public List<IRelationInstance> getRelationInstances(IRelation relation);
+
+	/**
+	 * Returns the {@link IRelationInstance}s whose phenomenon is the given
+	 * {@link URI}.
+	 *
+	 * @param phenomenon
+	 * @return a read-only snapshot; never returns null
+	 */
+	public List<IRelationInstance> getRelationInstances(URI phenomenon);
+
+	/**
+	 * Returns the {@link IRelationInstance}s whose phenomenon belongs to the
+	 * given {@link IIdentifier}.
+	 *
+	 * @param identifier
+	 * @return a read-only snapshot; never returns null
+	 */
+	public List<IRelationInstance> getRelationInstances(IIdentifier identifier);
+
 	public void addRelationInstance(IRelationInstance relationInstance)
 			throws CodeStoreWriteException, RelationDoesNotExistException,
 			DuplicateRelationInstanceException;
@@ -165,6 +334,14 @@ public interface ICodeStore {
 
 	public String getMemo(URI uri);
 
+	/**
+	 * Returns the memo for the given {@link URI} in plain text.
+	 *
+	 * @param uri
+	 * @return null if no memo exists
+	 */
+	public String getMemoPlain(URI uri);
+
 	public void setMemo(ICode code, String html) throws CodeStoreWriteException;
 
 	public void setMemo(ICodeInstance codeInstance, String html)
@@ -234,8 +411,33 @@ public interface ICodeStore {
 	 */
 	public String getRaw(String type, URI uri) throws CodeStoreReadException;
 
+	/**
+	 * Returns a snapshot of all {@link IEpisode}s.
+	 *
+	 * @return
+	 */
 	public Set<IEpisode> getEpisodes();
 
+	/**
+	 * Adds the given {@link IEpisode}. Call {@link #save()} to persist the
+	 * change.
+	 *
+	 * @param episode
+	 * @return true if the {@link IEpisode} was not already contained
+	 * @throws IllegalArgumentException
+	 *             if the {@link IEpisode} is null
+	 */
+	public boolean addEpisode(IEpisode episode);
+
+	/**
+	 * Removes the given {@link IEpisode}. Call {@link #save()} to persist the
+	 * change.
+	 *
+	 * @param episode
+	 * @return true if the {@link IEpisode} was contained
+	 */
+	public boolean removeEpisode(IEpisode episode);
+
 	/**
 	 * Returns the {@link URI}s that serve as properties for the given
 	 * {@link URI}.
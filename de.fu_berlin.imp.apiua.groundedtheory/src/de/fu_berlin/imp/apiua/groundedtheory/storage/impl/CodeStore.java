@@ -10,32 +10,45 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.Assert;
 
 import com.bkahlert.nebula.data.TreeNode;
-import com.bkahlert.nebula.utils.CalendarUtils;
+import com.bkahlert.nebula.utils.ExecUtils;
 import com.bkahlert.nebula.utils.IteratorUtils;
 import com.bkahlert.nebula.utils.ListUtils;
 import com.bkahlert.nebula.utils.Pair;
+import com.bkahlert.nebula.utils.StringUtils;
 import com.bkahlert.nebula.utils.colors.RGB;
 import com.bkahlert.nebula.utils.selection.ArrayUtils;
 import com.thoughtworks.xstream.XStream;
@@ -48,8 +61,11 @@ import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 
 import de.fu_berlin.imp.apiua.core.model.ILocatable;
+import de.fu_berlin.imp.apiua.core.model.IdentifierFactory;
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
 import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
+import de.fu_berlin.imp.apiua.core.services.location.URIUtils;
 import de.fu_berlin.imp.apiua.core.util.NoNullSet;
 import de.fu_berlin.imp.apiua.groundedtheory.LocatorService;
 import de.fu_berlin.imp.apiua.groundedtheory.model.Code;
@@ -103,9 +119,177 @@ class CodeStore implements ICodeStore {
 
 	}
 
+	/**
+	 * Number of journaled mutations after which the {@link CodeStoreJournal}
+	 * is compacted into a new snapshot.
+	 */
+	private static final int COMPACTION_THRESHOLD = 500;
+
 	@XStreamOmitField
 	private File codeStoreFile;
 
+	@XStreamOmitField
+	private CodeStoreJournal journal;
+
+	@XStreamOmitField
+	private boolean replaying = false;
+
+	@XStreamOmitField
+	private AtomicBoolean compacting;
+
+	@XStreamOmitField
+	private MemoStore memoStore;
+
+	/**
+	 * Nesting depth of the current batch; 0 if no batch is running. The batch
+	 * state is only accessed by the thread running the batch since it holds
+	 * the write lock until the batch ends.
+	 */
+	@XStreamOmitField
+	private int batchDepth = 0;
+
+	@XStreamOmitField
+	private List<CodeStoreJournal.Entry> batchEntries;
+
+	@XStreamOmitField
+	private boolean batchSaveRequested;
+
+	/**
+	 * True if a nested batch was rolled back and so must be the outermost
+	 * one.
+	 */
+	@XStreamOmitField
+	private boolean batchRollbackOnly;
+
+	/**
+	 * Sections of a binary snapshot that are still being read in the
+	 * background; null if everything is loaded.
+	 *
+	 * @see #awaitSections()
+	 */
+	@XStreamOmitField
+	private volatile Future<CodeStoreBinaryFormat.Snapshot> pendingSections;
+
+	/**
+	 * Writes the changes in the background; null if changes are written
+	 * synchronously.
+	 */
+	@XStreamOmitField
+	private volatile CodeStoreWriter writer;
+
+	@XStreamOmitField
+	private volatile long lastSaved;
+
+	@XStreamOmitField
+	private CodeStoreBackups backups;
+
+	/**
+	 * Readers hold the read lock, mutators the write lock. Collections handed
+	 * out are never modified afterwards so they can be used without holding
+	 * the lock.
+	 */
+	@XStreamOmitField
+	private ReentrantReadWriteLock lock;
+
+	/**
+	 * Serializes writing the snapshot and the {@link CodeStoreJournal}. It is
+	 * acquired while holding {@link #lock} so that writes happen in the order
+	 * of the mutations, but kept while writing after {@link #lock} was
+	 * released so that other threads are not blocked by the IO.
+	 */
+	@XStreamOmitField
+	private ReentrantLock ioLock;
+
+	/**
+	 * Captured by {@link #persist(CodeStoreJournal.Entry)} and
+	 * {@link #save()} and written by {@link #unlockWrite()}. Only accessed by
+	 * the thread holding the write lock.
+	 */
+	@XStreamOmitField
+	private List<CodeStoreJournal.Entry> pendingEntries;
+
+	@XStreamOmitField
+	private CodeStoreBinaryFormat.Snapshot pendingSnapshot;
+
+	/**
+	 * Unmodifiable copies handed out until the next mutation.
+	 */
+	@XStreamOmitField
+	private volatile Set<ICodeInstance> codeInstancesView;
+
+	@XStreamOmitField
+	private volatile Set<URI> codedIdsView;
+
+	@XStreamOmitField
+	private volatile Set<IRelation> relationsView;
+
+	@XStreamOmitField
+	private volatile Set<IRelationInstance> relationInstancesView;
+
+	/**
+	 * ID of the snapshot this instance was last saved to or loaded from. The
+	 * {@link CodeStoreJournal} is only replayed if it was written for the very
+	 * same snapshot.
+	 */
+	@XStreamAlias("snapshotId")
+	private String snapshotId = null;
+
+	/**
+	 * Index of the {@link TreeNode}s contained in {@link #codeTrees} by the
+	 * {@link ICode} they describe.
+	 */
+	@XStreamOmitField
+	private Map<ICode, TreeNode<ICode>> codeNodes;
+
+	@XStreamOmitField
+	private Map<Long, ICode> codesById;
+
+	@XStreamOmitField
+	private Map<Long, ICodeInstance> codeInstancesById;
+
+	/**
+	 * Indexes of the {@link ICodeInstance}s contained in
+	 * {@link #codeInstances} by their phenomenon, {@link ICode} and the
+	 * {@link IIdentifier} their phenomenon belongs to. Keys without
+	 * {@link ICodeInstance}s are removed.
+	 */
+	@XStreamOmitField
+	private Map<URI, List<ICodeInstance>> codeInstancesByUri;
+
+	@XStreamOmitField
+	private Map<ICode, List<ICodeInstance>> codeInstancesByCode;
+
+	@XStreamOmitField
+	private Map<IIdentifier, List<ICodeInstance>> codeInstancesByIdentifier;
+
+	/**
+	 * Directed graph of the {@link IRelation}s contained in {@link #relations}
+	 * by their {@link URI} and the {@link URI}s they start from and end at.
+	 */
+	@XStreamOmitField
+	private Map<URI, IRelation> relationsByUri;
+
+	@XStreamOmitField
+	private Map<URI, List<IRelation>> relationsByFrom;
+
+	@XStreamOmitField
+	private Map<URI, List<IRelation>> relationsByTo;
+
+	/**
+	 * Indexes of the {@link IRelationInstance}s contained in
+	 * {@link #relationInstances} by the {@link URI} of their {@link IRelation},
+	 * their phenomenon and the {@link IIdentifier} their phenomenon belongs
+	 * to.
+	 */
+	@XStreamOmitField
+	private Map<URI, List<IRelationInstance>> relationInstancesByRelation;
+
+	@XStreamOmitField
+	private Map<URI, List<IRelationInstance>> relationInstancesByPhenomenon;
+
+	@XStreamOmitField
+	private Map<IIdentifier, List<IRelationInstance>> relationInstancesByIdentifier;
+
 	@XStreamAlias("createdIDs")
 	private Set<Long> createdIds = null;
 
@@ -158,11 +342,45 @@ class CodeStore implements ICodeStore {
 		return new CodeStore(codeStoreFile);
 	}
 
+	/**
+	 * Loads the {@link ICodeStore} of the given {@link File}.
+	 * <p>
+	 * Snapshots are written in the {@link CodeStoreBinaryFormat} to a
+	 * separate {@link CodeStoreBinaryFormat#getSnapshotFile(File) file} that
+	 * is loaded instead of the given one. The given {@link File} is only
+	 * loaded if it was modified after the last snapshot had been written,
+	 * e.g. because it was replaced by an XML export.
+	 *
+	 * @param codeStoreFile
+	 * @return
+	 * @throws CodeStoreReadException
+	 */
 	public static ICodeStore load(File codeStoreFile)
 			throws CodeStoreReadException {
-		if (codeStoreFile == null || !codeStoreFile.exists()) {
+		if (codeStoreFile == null || !exists(codeStoreFile)) {
 			throw new CodeStoreReadException(new FileNotFoundException(
-					codeStoreFile.getAbsolutePath()));
+					codeStoreFile != null ? codeStoreFile.getAbsolutePath()
+							: null));
+		}
+
+		try {
+			File snapshotFile = CodeStoreBinaryFormat
+					.getSnapshotFile(codeStoreFile);
+			if (snapshotFile.exists()) {
+				if (!codeStoreFile.exists()
+						|| codeStoreFile.lastModified() <= snapshotFile
+								.lastModified()) {
+					return loadBinary(codeStoreFile, snapshotFile);
+				}
+				logger.warn(codeStoreFile + " was modified after "
+						+ snapshotFile + " had been written and replaces it");
+			}
+			if (CodeStoreBinaryFormat.isBinary(codeStoreFile)) {
+				return loadBinary(codeStoreFile, codeStoreFile);
+			}
+		} catch (IOException e) {
+			logger.error(e);
+			throw new CodeStoreReadException(e);
 		}
 
 		try {
@@ -205,6 +423,9 @@ class CodeStore implements ICodeStore {
 			sanityCheckCodeIds(codeStore);
 			sanityCheckCodeInstanceIds(codeStore);
 
+			codeStore.rebuildIndexes();
+			codeStore.replayJournal();
+
 			return codeStore;
 		} catch (ArrayIndexOutOfBoundsException e) {
 			return new CodeStore(codeStoreFile);
@@ -214,6 +435,127 @@ class CodeStore implements ICodeStore {
 		}
 	}
 
+	/**
+	 * Returns true if the given {@link File} or its snapshot exists.
+	 *
+	 * @param codeStoreFile
+	 * @return
+	 */
+	private static boolean exists(File codeStoreFile) {
+		return codeStoreFile.exists()
+				|| CodeStoreBinaryFormat.getSnapshotFile(codeStoreFile)
+						.exists();
+	}
+
+	/**
+	 * Loads a snapshot written in the {@link CodeStoreBinaryFormat}.
+	 * <p>
+	 * Only the {@link ICode}s are read immediately so the code tree can be
+	 * shown right away. The remaining sections are read in the background and
+	 * awaited on first access.
+	 *
+	 * @param codeStoreFile
+	 * @param snapshotFile
+	 *            the snapshot to read
+	 * @return
+	 * @throws CodeStoreReadException
+	 */
+	private static ICodeStore loadBinary(File codeStoreFile, File snapshotFile)
+			throws CodeStoreReadException {
+		final CodeStoreBinaryFormat.Snapshot snapshot = new CodeStoreBinaryFormat.Snapshot();
+		final CodeStoreBinaryFormat.Reader reader;
+		try {
+			reader = new CodeStoreBinaryFormat.Reader(snapshotFile);
+			try {
+				reader.readCodes(snapshot);
+			} catch (IOException e) {
+				reader.close();
+				throw e;
+			}
+		} catch (IOException e) {
+			logger.error(e);
+			throw new CodeStoreReadException(e);
+		}
+
+		CodeStore codeStore = new CodeStore(codeStoreFile);
+		codeStore.snapshotId = reader.getSnapshotId();
+		codeStore.createdIds = snapshot.createdIds;
+		codeStore.codeTrees = snapshot.codeTrees;
+		codeStore.rebuildIndexes();
+		sanityCheckCodeIds(codeStore);
+
+		final Map<Long, ICode> codes = new HashMap<Long, ICode>(
+				codeStore.codesById);
+		codeStore.pendingSections = ExecUtils.nonUIAsyncExec(CodeStore.class,
+				"Loading Code Store", () -> {
+					try {
+						reader.readInstances(snapshot, codes);
+						reader.readRelations(snapshot);
+						reader.readEpisodes(snapshot);
+						reader.readDimensions(snapshot, xstream);
+						return snapshot;
+					} finally {
+						reader.close();
+					}
+				});
+
+		codeStore.replayJournal();
+		return codeStore;
+	}
+
+	/**
+	 * Waits until the sections of a binary snapshot still being read in the
+	 * background are loaded. Must be called by all methods that access more
+	 * than the {@link ICode}s.
+	 *
+	 * @throws IllegalStateException
+	 *             if the sections could not be read
+	 */
+	void awaitSections() {
+		if (this.pendingSections == null) {
+			return;
+		}
+		this.lock.writeLock().lock();
+		try {
+			Future<CodeStoreBinaryFormat.Snapshot> pendingSections = this.pendingSections;
+			if (pendingSections == null) {
+				return;
+			}
+			CodeStoreBinaryFormat.Snapshot snapshot;
+			try {
+				snapshot = pendingSections.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while loading "
+						+ this.codeStoreFile, e);
+			} catch (ExecutionException e) {
+				// keep failing instead of saving an incomplete store
+				logger.error("Error loading " + this.codeStoreFile,
+						e.getCause());
+				throw new IllegalStateException("Could not load "
+						+ this.codeStoreFile, e.getCause());
+			}
+			this.createdCodeInstanceIds = snapshot.createdCodeInstanceIds;
+			this.codeInstances = snapshot.codeInstances;
+			this.relations = snapshot.relations;
+			this.relationInstances = snapshot.relationInstances;
+			this.episodes = snapshot.episodes;
+			this.dimensions = snapshot.dimensions;
+			this.dimensionValues = snapshot.dimensionValues;
+			this.properties = snapshot.properties;
+			this.memos = snapshot.memos;
+			this.pendingSections = null;
+			this.rebuildIndexes();
+			try {
+				sanityCheckCodeInstanceIds(this);
+			} catch (CodeStoreReadException e) {
+				throw new IllegalStateException(e);
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
 	private static Set<Long> sanityCheckCodeIds(CodeStore codeStore)
 			throws CodeStoreReadException {
 		Set<Long> codeIds = new HashSet<Long>();
@@ -258,60 +600,416 @@ class CodeStore implements ICodeStore {
 	}
 
 	private CodeStore(File codeStoreFile) {
-		this.codeStoreFile = codeStoreFile;
+		this.setCodeStoreFile(codeStoreFile);
 		this.createdIds = new TreeSet<Long>();
 		this.createdCodeInstanceIds = new HashSet<Long>();
 		this.codeTrees = new LinkedList<TreeNode<ICode>>();
 		this.codeInstances = new HashSet<ICodeInstance>();
+		this.relations = new HashSet<IRelation>();
+		this.relationInstances = new HashSet<IRelationInstance>();
 		this.episodes = new NoNullSet<IEpisode>();
+		this.rebuildIndexes();
 	}
 
-	@Override
-	public ICode getCode(long id) {
+	/**
+	 * Rebuilds the ID, node and relation indexes. Must be called whenever
+	 * {@link #codeTrees}, {@link #codeInstances}, {@link #relations} or
+	 * {@link #relationInstances} were set without maintaining the indexes
+	 * (e.g. after deserialization).
+	 */
+	private void rebuildIndexes() {
+		this.codeInstancesView = null;
+		this.codedIdsView = null;
+		this.relationsView = null;
+		this.relationInstancesView = null;
+
+		this.codeNodes = new HashMap<ICode, TreeNode<ICode>>();
+		this.codesById = new HashMap<Long, ICode>();
 		for (TreeNode<ICode> codeTree : this.codeTrees) {
-			for (ICode code : codeTree) {
-				if (code.getId() == id) {
-					return code;
+			this.index(codeTree);
+		}
+
+		this.codeInstancesById = new HashMap<Long, ICodeInstance>();
+		for (ICodeInstance codeInstance : this.codeInstances) {
+			this.codeInstancesById.put(codeInstance.getCodeInstanceID(),
+					codeInstance);
+		}
+		this.codeInstancesByUri = index(this.codeInstances,
+				ICodeInstance::getId);
+		this.codeInstancesByCode = index(this.codeInstances,
+				ICodeInstance::getCode);
+		this.codeInstancesByIdentifier = index(this.codeInstances,
+				CodeStore::getIdentifier);
+
+		this.relationsByUri = new HashMap<URI, IRelation>();
+		for (IRelation relation : this.relations) {
+			this.relationsByUri.put(relation.getUri(), relation);
+		}
+		this.relationsByFrom = index(this.relations, IRelation::getFrom);
+		this.relationsByTo = index(this.relations, IRelation::getTo);
+
+		this.relationInstancesByRelation = index(this.relationInstances,
+				relationInstance -> relationInstance.getRelation().getUri());
+		this.relationInstancesByPhenomenon = index(this.relationInstances,
+				IRelationInstance::getPhenomenon);
+		this.relationInstancesByIdentifier = index(this.relationInstances,
+				relationInstance -> URIUtils.getIdentifier(relationInstance
+						.getPhenomenon()));
+	}
+
+	/**
+	 * Adds the given {@link TreeNode} and all its descendants to the code
+	 * indexes.
+	 *
+	 * @param codeNode
+	 */
+	private void index(TreeNode<ICode> codeNode) {
+		ICode code = codeNode.getData();
+		this.codeNodes.put(code, codeNode);
+		this.codesById.put(code.getId(), code);
+		for (TreeNode<ICode> childNode : codeNode.children()) {
+			this.index(childNode);
+		}
+	}
+
+	private void index(ICodeInstance codeInstance) {
+		this.codeInstancesView = null;
+		this.codedIdsView = null;
+		this.codeInstancesById.put(codeInstance.getCodeInstanceID(),
+				codeInstance);
+		put(this.codeInstancesByUri, codeInstance.getId(), codeInstance);
+		put(this.codeInstancesByCode, codeInstance.getCode(), codeInstance);
+		put(this.codeInstancesByIdentifier, getIdentifier(codeInstance),
+				codeInstance);
+	}
+
+	private void unindex(ICodeInstance codeInstance) {
+		this.codeInstancesView = null;
+		this.codedIdsView = null;
+		ICodeInstance indexed = this.codeInstancesById.remove(codeInstance
+				.getCodeInstanceID());
+		if (indexed != null) {
+			remove(this.codeInstancesByUri, indexed.getId(), indexed);
+			remove(this.codeInstancesByCode, indexed.getCode(), indexed);
+			remove(this.codeInstancesByIdentifier, getIdentifier(indexed),
+					indexed);
+		}
+	}
+
+	private void index(IRelation relation) {
+		this.relationsView = null;
+		this.relationsByUri.put(relation.getUri(), relation);
+		put(this.relationsByFrom, relation.getFrom(), relation);
+		put(this.relationsByTo, relation.getTo(), relation);
+	}
+
+	private void unindex(IRelation relation) {
+		this.relationsView = null;
+		IRelation indexed = this.relationsByUri.remove(relation.getUri());
+		if (indexed != null) {
+			remove(this.relationsByFrom, indexed.getFrom(), indexed);
+			remove(this.relationsByTo, indexed.getTo(), indexed);
+		}
+	}
+
+	private void index(IRelationInstance relationInstance) {
+		this.relationInstancesView = null;
+		put(this.relationInstancesByRelation, relationInstance.getRelation()
+				.getUri(), relationInstance);
+		put(this.relationInstancesByPhenomenon,
+				relationInstance.getPhenomenon(), relationInstance);
+		put(this.relationInstancesByIdentifier,
+				URIUtils.getIdentifier(relationInstance.getPhenomenon()),
+				relationInstance);
+	}
+
+	private void unindex(IRelationInstance relationInstance) {
+		this.relationInstancesView = null;
+		remove(this.relationInstancesByRelation, relationInstance
+				.getRelation().getUri(), relationInstance);
+		remove(this.relationInstancesByPhenomenon,
+				relationInstance.getPhenomenon(), relationInstance);
+		remove(this.relationInstancesByIdentifier,
+				URIUtils.getIdentifier(relationInstance.getPhenomenon()),
+				relationInstance);
+	}
+
+	/**
+	 * Returns the {@link IIdentifier} the phenomenon of the given
+	 * {@link ICodeInstance} belongs to.
+	 *
+	 * @param codeInstance
+	 * @return null if the phenomenon does not belong to an {@link IIdentifier}
+	 */
+	private static IIdentifier getIdentifier(ICodeInstance codeInstance) {
+		String[] uriParts = codeInstance.getId().toString().split("/");
+		return uriParts.length > 3 ? IdentifierFactory.createFrom(uriParts[3])
+				: null;
+	}
+
+	/**
+	 * Adds the given value to the index. Must only be called while holding
+	 * the write lock.
+	 * <p>
+	 * The lists of the index are {@link CopyOnWriteArrayList}s so that
+	 * {@link #get(Map, Object)} can hand them out without copying.
+	 *
+	 * @param index
+	 * @param key
+	 * @param value
+	 */
+	private static <K, V> void put(Map<K, List<V>> index, K key, V value) {
+		if (key != null) {
+			List<V> values = index.get(key);
+			if (values == null) {
+				values = new CopyOnWriteArrayList<V>();
+				index.put(key, values);
+			}
+			values.add(value);
+		}
+	}
+
+	private static <K, V> void remove(Map<K, List<V>> index, K key, V value) {
+		List<V> values = key != null ? index.get(key) : null;
+		if (values != null && values.remove(value) && values.isEmpty()) {
+			index.remove(key);
+		}
+	}
+
+	private static <K, V> Map<K, List<V>> index(Collection<V> values,
+			Function<V, K> key) {
+		Map<K, List<V>> lists = new HashMap<K, List<V>>();
+		for (V value : values) {
+			K k = key.apply(value);
+			if (k != null) {
+				List<V> list = lists.get(k);
+				if (list == null) {
+					list = new ArrayList<V>(1);
+					lists.put(k, list);
 				}
+				list.add(value);
 			}
 		}
-		return null;
+		// copies each list once instead of once per value
+		Map<K, List<V>> index = new HashMap<K, List<V>>();
+		for (Entry<K, List<V>> entry : lists.entrySet()) {
+			index.put(entry.getKey(),
+					new CopyOnWriteArrayList<V>(entry.getValue()));
+		}
+		return index;
+	}
+
+	/**
+	 * Returns an unmodifiable view of the indexed values. Since the lists of
+	 * the index are copied on write the view is a stable snapshot that may
+	 * leave the read lock.
+	 *
+	 * @param index
+	 * @param key
+	 * @return
+	 */
+	private static <K, V> List<V> get(Map<K, List<V>> index, K key) {
+		List<V> values = index.get(key);
+		return values != null ? Collections.unmodifiableList(values)
+				: Collections.<V> emptyList();
+	}
+
+	@Override
+	public ICode getCode(long id) {
+		this.lock.readLock().lock();
+		try {
+			return this.codesById.get(id);
+		} finally {
+			this.lock.readLock().unlock();
+		}
 	}
 
 	@Override
 	public ICodeInstance getCodeInstance(long id) {
-		for (ICodeInstance codeInstance : this.codeInstances) {
-			if (codeInstance.getCodeInstanceID() == id) {
-				return codeInstance;
-			}
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return this.codeInstancesById.get(id);
+		} finally {
+			this.lock.readLock().unlock();
 		}
-		return null;
 	}
 
 	@Override
 	public ICode[] getCodes() {
-		List<ICode> codes = new ArrayList<ICode>();
-		for (TreeNode<ICode> codeTree : this.codeTrees) {
-			for (Iterator<ICode> iterator = codeTree.bfs(); iterator.hasNext();) {
-				ICode code = iterator.next();
-				codes.add(code);
+		this.lock.readLock().lock();
+		try {
+			List<ICode> codes = new ArrayList<ICode>();
+			for (TreeNode<ICode> codeTree : this.codeTrees) {
+				for (Iterator<ICode> iterator = codeTree.bfs(); iterator.hasNext();) {
+					ICode code = iterator.next();
+					codes.add(code);
+				}
 			}
+			return codes.toArray(new ICode[0]);
+		} finally {
+			this.lock.readLock().unlock();
 		}
-		return codes.toArray(new ICode[0]);
 	}
 
 	@Override
 	public boolean codeExists(ICode code) {
-		for (TreeNode<ICode> codeTree : this.codeTrees) {
-			if (codeTree.find(code).size() > 0) {
-				return true;
-			}
+		this.lock.readLock().lock();
+		try {
+			return code != null && this.codeNodes.containsKey(code);
+		} finally {
+			this.lock.readLock().unlock();
 		}
-		return false;
 	}
 
 	private void setCodeStoreFile(File codeStoreFile) {
 		this.codeStoreFile = codeStoreFile;
+		this.journal = new CodeStoreJournal(codeStoreFile);
+		this.compacting = new AtomicBoolean(false);
+		this.memoStore = MemoStore.get(codeStoreFile.getAbsoluteFile()
+				.getParentFile());
+		this.lastSaved = Math.max(codeStoreFile.lastModified(),
+				CodeStoreBinaryFormat.getSnapshotFile(codeStoreFile)
+						.lastModified());
+		this.backups = new CodeStoreBackups(codeStoreFile);
+		this.lock = new ReentrantReadWriteLock();
+		this.ioLock = new ReentrantLock();
+		this.pendingEntries = new ArrayList<CodeStoreJournal.Entry>();
+	}
+
+	/**
+	 * Applies all mutations that were journaled since the snapshot this
+	 * instance was loaded from.
+	 *
+	 * @throws CodeStoreReadException
+	 */
+	private void replayJournal() throws CodeStoreReadException {
+		List<CodeStoreJournal.Entry> entries;
+		try {
+			entries = this.journal.read(this.snapshotId);
+		} catch (IOException e) {
+			throw new CodeStoreReadException(e);
+		}
+		if (entries.isEmpty()) {
+			return;
+		}
+
+		this.awaitSections();
+		this.replaying = true;
+		try {
+			for (CodeStoreJournal.Entry entry : entries) {
+				entry.replay(this);
+			}
+		} catch (Exception e) {
+			throw new CodeStoreReadException(e);
+		} finally {
+			this.replaying = false;
+		}
+		logger.info("Replayed " + entries.size() + " journaled mutations of "
+				+ this.codeStoreFile);
+	}
+
+	/**
+	 * Persists a mutation that has already been applied in memory. Must be
+	 * called while holding the write lock which must then be released using
+	 * {@link #unlockWrite()}.
+	 * <p>
+	 * Instead of rewriting the whole snapshot only the given
+	 * {@link CodeStoreJournal.Entry} is appended to the journal. If no
+	 * snapshot exists yet a journal could refer to, a full snapshot is
+	 * written instead. Both happen in {@link #unlockWrite()} after the write
+	 * lock was released. Within a batch the {@link CodeStoreJournal.Entry} is
+	 * collected and written on {@link #commitBatch()}. If writing in the
+	 * background the {@link CodeStoreJournal.Entry} is handed to the
+	 * {@link CodeStoreWriter}.
+	 *
+	 * @param entry
+	 * @throws CodeStoreWriteException
+	 */
+	private void persist(CodeStoreJournal.Entry entry)
+			throws CodeStoreWriteException {
+		if (this.replaying) {
+			return;
+		}
+		if (this.batchDepth > 0) {
+			this.batchEntries.add(entry);
+			return;
+		}
+		if (this.writer != null) {
+			this.writer.append(entry);
+			return;
+		}
+		// waits for the writes of preceding mutations
+		this.lockIO();
+		if (this.pendingSnapshot != null) {
+			// already contains the mutation
+			return;
+		}
+		if (this.snapshotId == null) {
+			// journal entries need a snapshot to refer to
+			this.pendingSnapshot = this.captureSnapshot();
+			this.pendingEntries.clear();
+			return;
+		}
+		this.pendingEntries.add(entry);
+	}
+
+	/**
+	 * Acquires {@link #ioLock} unless the current thread already holds it.
+	 */
+	private void lockIO() {
+		if (!this.ioLock.isHeldByCurrentThread()) {
+			this.ioLock.lock();
+		}
+	}
+
+	/**
+	 * Releases the write lock. If this was the outermost hold, whatever
+	 * {@link #persist(CodeStoreJournal.Entry)} and {@link #save()} captured
+	 * is written afterwards.
+	 *
+	 * @throws CodeStoreWriteException
+	 */
+	private void unlockWrite() throws CodeStoreWriteException {
+		if (this.lock.getWriteHoldCount() > 1
+				|| !this.ioLock.isHeldByCurrentThread()) {
+			this.lock.writeLock().unlock();
+			return;
+		}
+		List<CodeStoreJournal.Entry> entries = this.pendingEntries;
+		CodeStoreBinaryFormat.Snapshot snapshot = this.pendingSnapshot;
+		this.pendingEntries = new ArrayList<CodeStoreJournal.Entry>();
+		this.pendingSnapshot = null;
+		this.lock.writeLock().unlock();
+		try {
+			this.write(entries, snapshot);
+		} finally {
+			this.ioLock.unlock();
+		}
+		if (this.needsCompaction()) {
+			this.compact();
+		}
+	}
+
+	/**
+	 * Writes a new snapshot in the background and thereby truncates the
+	 * {@link CodeStoreJournal}.
+	 */
+	private void compact() {
+		if (!this.compacting.compareAndSet(false, true)) {
+			return;
+		}
+		ExecUtils.nonUIAsyncExec(CodeStore.class, "Compacting Code Store",
+				() -> {
+					try {
+						CodeStore.this.save();
+					} catch (CodeStoreWriteException e) {
+						logger.error("Error compacting " + CodeStore.this.codeStoreFile, e);
+					} finally {
+						CodeStore.this.compacting.set(false);
+					}
+					return null;
+				});
 	}
 
 	public File getCodeStoreFile() {
@@ -320,11 +1018,16 @@ class CodeStore implements ICodeStore {
 
 	@Override
 	public List<ICode> getTopLevelCodes() {
-		List<ICode> topLevelCodes = new ArrayList<ICode>();
-		for (TreeNode<ICode> codeTree : this.codeTrees) {
-			topLevelCodes.add(codeTree.getData());
+		this.lock.readLock().lock();
+		try {
+			List<ICode> topLevelCodes = new ArrayList<ICode>();
+			for (TreeNode<ICode> codeTree : this.codeTrees) {
+				topLevelCodes.add(codeTree.getData());
+			}
+			return topLevelCodes;
+		} finally {
+			this.lock.readLock().unlock();
 		}
-		return topLevelCodes;
 	}
 
 	/**
@@ -335,8 +1038,9 @@ class CodeStore implements ICodeStore {
 	 */
 	protected List<TreeNode<ICode>> find(ICode code) {
 		List<TreeNode<ICode>> treeNodes = new ArrayList<TreeNode<ICode>>();
-		for (TreeNode<ICode> codeTree : this.codeTrees) {
-			treeNodes.addAll(codeTree.find(code));
+		TreeNode<ICode> treeNode = this.assertiveFind(code);
+		if (treeNode != null) {
+			treeNodes.add(treeNode);
 		}
 		return treeNodes;
 	}
@@ -344,130 +1048,210 @@ class CodeStore implements ICodeStore {
 	/**
 	 * Returns the {@link TreeNode} that describes the given {@link ICode}.
 	 * <p>
-	 * In contrast to {@link #find(ICode)} this method checks via
-	 * <code>assert</code> if no more than one {@link TreeNode} is found.
+	 * Since {@link ICode}s are unique within a {@link CodeStore} the lookup is
+	 * done using the node index.
 	 *
 	 * @param code
 	 * @return
 	 */
 	protected TreeNode<ICode> assertiveFind(ICode code) {
-		List<TreeNode<ICode>> treeNodes = this.find(code);
-		assert treeNodes.size() < 2;
-		return treeNodes.size() == 0 ? null : treeNodes.get(0);
+		return code != null ? this.codeNodes.get(code) : null;
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public Set<ICodeInstance> getInstances() {
-		return (Set<ICodeInstance>) this.codeInstances.clone();
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			Set<ICodeInstance> view = this.codeInstancesView;
+			if (view == null) {
+				view = Collections.unmodifiableSet(new HashSet<ICodeInstance>(
+						this.codeInstances));
+				this.codeInstancesView = view;
+			}
+			return view;
+		} finally {
+			this.lock.readLock().unlock();
+		}
 	}
 
 	@Override
-	public ICode createCode(String caption, RGB color)
-			throws CodeStoreFullException {
-		for (TreeNode<ICode> codeTree : this.codeTrees) {
-			for (ICode code : codeTree) {
-				if (code.getId() == Long.MAX_VALUE) {
-					throw new CodeStoreFullException();
-				}
+	public List<ICodeInstance> getInstances(URI uri) {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return get(this.codeInstancesByUri, uri);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<ICodeInstance> getInstances(ICode code) {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return get(this.codeInstancesByCode, code);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<ICodeInstance> getInstances(IIdentifier identifier) {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return get(this.codeInstancesByIdentifier, identifier);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<URI> getCodedIds() {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			Set<URI> view = this.codedIdsView;
+			if (view == null) {
+				view = Collections.unmodifiableSet(new HashSet<URI>(
+						this.codeInstancesByUri.keySet()));
+				this.codedIdsView = view;
 			}
+			return view;
+		} finally {
+			this.lock.readLock().unlock();
 		}
-		long id = Code.calculateId(this.createdIds);
-		this.createdIds.add(id);
+	}
 
-		ICode code = new Code(id, caption, color, new TimeZoneDate());
-		this.codeTrees.add(new TreeNode<ICode>(code));
-		return code;
+	@Override
+	public ICode createCode(String caption, RGB color)
+			throws CodeStoreFullException, CodeStoreWriteException {
+		this.lock.writeLock().lock();
+		try {
+			if (this.codesById.containsKey(Long.MAX_VALUE)) {
+				throw new CodeStoreFullException();
+			}
+			long id = Code.calculateId(this.createdIds);
+			this.createdIds.add(id);
+
+			ICode code = new Code(id, caption, color, new TimeZoneDate());
+			TreeNode<ICode> codeNode = new TreeNode<ICode>(code);
+			this.codeTrees.add(codeNode);
+			this.index(codeNode);
+			this.persist(new CodeStoreJournal.AddCode(code));
+			return code;
+		} finally {
+			this.unlockWrite();
+		}
 	}
 
 	@Override
 	public ICodeInstance[] createCodeInstances(ICode[] codes, URI[] uris)
 			throws InvalidParameterException, CodeStoreReadException,
 			DuplicateCodeInstanceException, CodeStoreFullException {
-		for (ICode code : codes) {
-			Assert.isNotNull(code);
-		}
-		for (URI uri : uris) {
-			Assert.isNotNull(uri);
-		}
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			for (ICode code : codes) {
+				Assert.isNotNull(code);
+			}
+			for (URI uri : uris) {
+				Assert.isNotNull(uri);
+			}
 
-		for (ICodeInstance codeInstance : this.codeInstances) {
-			if (codeInstance.getCodeInstanceID() == Long.MAX_VALUE) {
+			if (this.codeInstancesById.containsKey(Long.MAX_VALUE)) {
 				throw new CodeStoreFullException();
 			}
-		}
 
-		List<ICodeInstance> duplicateCodeInstances = new LinkedList<ICodeInstance>();
-		List<ICodeInstance> generatedCodeInstances = new LinkedList<ICodeInstance>();
-		for (ICode code : codes) {
-			if (this.assertiveFind(code) != null) {
-				for (URI uri : uris) {
-					long codeInstanceID = Code
-							.calculateId(this.createdCodeInstanceIds);
-					this.createdIds.add(codeInstanceID);
-
-					ICodeInstance codeInstance = new CodeInstance(
-							codeInstanceID, code, uri, new TimeZoneDate(
-									new Date(), TimeZone.getDefault()));
-
-					boolean successful = true;
-					for (ICodeInstance existing : this.codeInstances) {
-						if (existing.getCode().equals(codeInstance.getCode())
-								&& existing.getId()
-										.equals(codeInstance.getId())) {
-							duplicateCodeInstances.add(existing);
-							duplicateCodeInstances.add(codeInstance);
-							successful = false;
+			List<ICodeInstance> duplicateCodeInstances = new LinkedList<ICodeInstance>();
+			List<ICodeInstance> generatedCodeInstances = new LinkedList<ICodeInstance>();
+			for (ICode code : codes) {
+				if (this.assertiveFind(code) != null) {
+					for (URI uri : uris) {
+						long codeInstanceID = Code
+								.calculateId(this.createdCodeInstanceIds);
+						this.createdCodeInstanceIds.add(codeInstanceID);
+
+						ICodeInstance codeInstance = new CodeInstance(
+								codeInstanceID, code, uri, new TimeZoneDate(
+										new Date(), TimeZone.getDefault()));
+
+						boolean successful = true;
+						for (ICodeInstance existing : this.getInstances(uri)) {
+							if (existing.getCode().equals(codeInstance.getCode())) {
+								duplicateCodeInstances.add(existing);
+								duplicateCodeInstances.add(codeInstance);
+								successful = false;
+							}
 						}
-					}
 
-					if (successful) {
-						generatedCodeInstances.add(codeInstance);
+						if (successful) {
+							generatedCodeInstances.add(codeInstance);
+						}
 					}
+				} else {
+					throw new InvalidParameterException(
+							"Could not find a matching "
+									+ ICode.class.getSimpleName() + " for " + code);
 				}
-			} else {
-				throw new InvalidParameterException(
-						"Could not find a matching "
-								+ ICode.class.getSimpleName() + " for " + code);
-			}
 
-			if (duplicateCodeInstances.size() > 0) {
-				throw new DuplicateCodeInstanceException(duplicateCodeInstances);
+				if (duplicateCodeInstances.size() > 0) {
+					throw new DuplicateCodeInstanceException(duplicateCodeInstances);
+				}
 			}
-		}
 
-		return generatedCodeInstances.toArray(new ICodeInstance[0]);
+			return generatedCodeInstances.toArray(new ICodeInstance[0]);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
 	}
 
 	@Override
 	public void addAndSaveCode(ICode code) throws CodeStoreWriteException,
 			CodeStoreReadException {
-		this.createdIds.add(code.getId());
-		this.codeTrees.add(new TreeNode<ICode>(code));
-		this.save();
+		this.lock.writeLock().lock();
+		try {
+			this.createdIds.add(code.getId());
+			TreeNode<ICode> codeNode = new TreeNode<ICode>(code);
+			this.codeTrees.add(codeNode);
+			this.index(codeNode);
+			this.persist(new CodeStoreJournal.AddCode(code));
+		} finally {
+			this.unlockWrite();
+		}
 	}
 
 	@Override
 	public void addAndSaveCodeInstances(ICodeInstance[] codeInstances)
 			throws CodeStoreWriteException {
-		List<ICodeInstance> abandondedCodeInstances = new LinkedList<ICodeInstance>();
-		for (ICodeInstance codeInstance : codeInstances) {
-			if (!this.codeExists(codeInstance.getCode())) {
-				abandondedCodeInstances.add(codeInstance);
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			List<ICodeInstance> abandondedCodeInstances = new LinkedList<ICodeInstance>();
+			for (ICodeInstance codeInstance : codeInstances) {
+				if (!this.codeExists(codeInstance.getCode())) {
+					abandondedCodeInstances.add(codeInstance);
+				}
 			}
-		}
 
-		if (abandondedCodeInstances.size() > 0) {
-			throw new CodeStoreWriteAbandonedCodeInstancesException(
-					abandondedCodeInstances);
-		}
+			if (abandondedCodeInstances.size() > 0) {
+				throw new CodeStoreWriteAbandonedCodeInstancesException(
+						abandondedCodeInstances);
+			}
 
-		for (ICodeInstance codeInstance : codeInstances) {
-			this.createdCodeInstanceIds.add(codeInstance.getCodeInstanceID());
-			this.codeInstances.add(codeInstance);
-		}
+			for (ICodeInstance codeInstance : codeInstances) {
+				this.createdCodeInstanceIds.add(codeInstance.getCodeInstanceID());
+				if (this.codeInstances.add(codeInstance)) {
+					this.index(codeInstance);
+				}
+			}
 
-		this.save();
+			this.persist(new CodeStoreJournal.AddCodeInstances(codeInstances));
+		} finally {
+			this.unlockWrite();
+		}
 	}
 
 	@Override
@@ -480,356 +1264,922 @@ class CodeStore implements ICodeStore {
 	public void removeAndSaveCode(ICode code, boolean deleteInstance)
 			throws CodeStoreWriteException, CodeHasChildCodesException,
 			CodeDoesNotExistException {
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
 
-		if (LocatorService.INSTANCE != null) {
-			LocatorService.INSTANCE.uncache(code.getUri());
-		}
+			if (LocatorService.INSTANCE != null) {
+				LocatorService.INSTANCE.uncache(code.getUri());
+			}
 
-		List<ICodeInstance> abandoned = new LinkedList<ICodeInstance>();
-		for (ICodeInstance instance : this.codeInstances) {
-			if (instance.getCode().equals(code)) {
-				abandoned.add(instance);
+			List<ICodeInstance> abandoned = new ArrayList<ICodeInstance>(
+					this.getInstances(code));
+			if (deleteInstance) {
+				for (ICodeInstance instance : abandoned) {
+					this.codeInstances.remove(instance);
+					this.unindex(instance);
+					this.setMemo(instance, null);
+				}
+			} else if (abandoned.size() > 0) {
+				throw new CodeStoreWriteAbandonedCodeInstancesException(abandoned);
 			}
-		}
-		if (deleteInstance) {
-			for (ICodeInstance instance : abandoned) {
-				this.codeInstances.remove(instance);
-				this.setMemo(instance, null);
+
+			TreeNode<ICode> codeNode = this.assertiveFind(code);
+			if (codeNode == null) {
+				throw new CodeDoesNotExistException(code);
+			}
+
+			if (codeNode.hasChildren()) {
+				throw new CodeHasChildCodesException();
+			}
+
+			if (codeNode.getParent() == null) {
+				this.codeTrees.remove(codeNode);
+			} else {
+				codeNode.removeFromParent();
+			}
+			this.codeNodes.remove(code);
+			this.codesById.remove(code.getId());
+
+			this.setMemo(code, null);
+
+			this.dimensions.remove(code.getUri());
+			for (Iterator<Entry<Pair<URI, URI>, String>> iterator = this.dimensionValues
+					.entrySet().iterator(); iterator.hasNext();) {
+				Entry<Pair<URI, URI>, String> entry = iterator.next();
+				if (entry.getKey().getSecond().equals(code.getUri())) {
+					iterator.remove();
+				}
+			}
+
+			for (Iterator<Entry<URI, List<URI>>> iterator = this.properties
+					.entrySet().iterator(); iterator.hasNext();) {
+				Entry<URI, List<URI>> entry = iterator.next();
+				// delete code's property associations
+				if (entry.getKey().equals(code.getUri())) {
+					iterator.remove();
+				} else {
+					// delete all property associations pointing to the delete code
+					for (Iterator<URI> iterator2 = entry.getValue().iterator(); iterator2
+							.hasNext();) {
+						URI property = iterator2.next();
+						if (property.equals(code.getUri())) {
+							iterator2.remove();
+						}
+					}
+				}
 			}
-		} else if (abandoned.size() > 0) {
-			throw new CodeStoreWriteAbandonedCodeInstancesException(abandoned);
+
+			this.persist(new CodeStoreJournal.RemoveCode(code, deleteInstance));
+		} finally {
+			this.unlockWrite();
 		}
+	}
 
-		List<TreeNode<ICode>> codeNodes = this.find(code);
-		assert codeNodes.size() < 2;
-		if (codeNodes.size() == 0) {
-			throw new CodeDoesNotExistException(code);
+	@Override
+	public void removeAndSaveCodeInstance(ICodeInstance codeInstance)
+			throws CodeStoreWriteException, CodeStoreReadException {
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			this.codeInstances.remove(codeInstance);
+			this.unindex(codeInstance);
+			this.persist(new CodeStoreJournal.RemoveCodeInstance(codeInstance));
+		} finally {
+			this.unlockWrite();
 		}
+	}
 
-		if (codeNodes.get(0).hasChildren()) {
-			throw new CodeHasChildCodesException();
+	@Override
+	public ICode getParent(ICode code) {
+		this.lock.readLock().lock();
+		try {
+			TreeNode<ICode> foundNode = this.assertiveFind(code);
+			if (foundNode != null) {
+				TreeNode<ICode> parent = foundNode.getParent();
+				return parent != null ? parent.getData() : null;
+			}
+			return null;
+		} finally {
+			this.lock.readLock().unlock();
 		}
+	}
 
-		if (this.codeTrees.contains(codeNodes.get(0))) {
-			this.codeTrees.remove(codeNodes.get(0));
-		} else {
-			codeNodes.get(0).removeFromParent();
+	@Override
+	public ICode setParent(ICode code, ICode parentCode)
+			throws CodeDoesNotExistException, CodeStoreWriteException {
+		this.lock.writeLock().lock();
+		try {
+			TreeNode<ICode> futureChildNode = this.assertiveFind(code);
+
+			if (futureChildNode == null) {
+				throw new CodeDoesNotExistException(code);
+			}
+
+			TreeNode<ICode> futureParentNode = this.assertiveFind(parentCode);
+			TreeNode<ICode> currentParentNode = futureChildNode.getParent();
+
+			if (futureChildNode == futureParentNode) {
+				throw new CodeStoreIntegrityProtectionException("Child node"
+						+ futureChildNode + " can't be his own parent node");
+			}
+			if (futureChildNode.isAncestorOf(futureParentNode)) {
+				throw new CodeStoreIntegrityProtectionException("Node"
+						+ futureChildNode
+						+ " can't be made a child node of its current child node "
+						+ parentCode);
+			}
+
+			// TODO: Komplexe Schleife
+
+			// remove from old parent
+			if (currentParentNode != null) {
+				futureChildNode.removeFromParent();
+			} else if (this.codeTrees.contains(futureChildNode)) {
+				this.codeTrees.remove(futureChildNode);
+			} else {
+				assert false;
+			}
+
+			// add to new parent
+			if (futureParentNode != null) {
+				futureParentNode.add(futureChildNode);
+			} else {
+				this.codeTrees.add(futureChildNode);
+			}
+
+			this.persist(new CodeStoreJournal.SetParent(code, parentCode));
+			return (currentParentNode != null) ? currentParentNode.getData() : null;
+		} finally {
+			this.unlockWrite();
 		}
+	}
 
-		this.setMemo(code, null);
+	@Override
+	public List<ICode> getChildren(ICode code) {
+		this.lock.readLock().lock();
+		try {
+			List<ICode> childCodes = new ArrayList<ICode>();
+			TreeNode<ICode> foundNode = this.assertiveFind(code);
+			if (foundNode != null) {
+				for (TreeNode<ICode> childNode : foundNode.children()) {
+					childCodes.add(childNode.getData());
+				}
+			}
+			return childCodes;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
 
-		this.dimensions.remove(code.getUri());
-		for (Iterator<Entry<Pair<URI, URI>, String>> iterator = this.dimensionValues
-				.entrySet().iterator(); iterator.hasNext();) {
-			Entry<Pair<URI, URI>, String> entry = iterator.next();
-			if (entry.getKey().getSecond().equals(code.getUri())) {
-				iterator.remove();
+	@Override
+	public List<ICode> getSubCodes(ICode code) {
+		this.lock.readLock().lock();
+		try {
+			List<ICode> subCodes = new ArrayList<ICode>();
+			TreeNode<ICode> foundNode = this.assertiveFind(code);
+			if (foundNode != null) {
+				for (Iterator<ICode> iterator = foundNode.bfs(); iterator.hasNext();) {
+					ICode subCode = iterator.next();
+					if (!subCode.equals(foundNode.getData())) {
+						subCodes.add(subCode);
+					}
+				}
 			}
+			return subCodes;
+		} finally {
+			this.lock.readLock().unlock();
 		}
+	}
 
-		for (Iterator<Entry<URI, List<URI>>> iterator = this.properties
-				.entrySet().iterator(); iterator.hasNext();) {
-			Entry<URI, List<URI>> entry = iterator.next();
-			// delete code's property associations
-			if (entry.getKey().equals(code.getUri())) {
-				iterator.remove();
+	@Override
+	public int getPosition(ICode code) {
+		this.lock.readLock().lock();
+		try {
+			TreeNode<ICode> treeNode = this.assertiveFind(code);
+			if (treeNode.getParent() == null) {
+				for (int i = 0; i < this.codeTrees.size(); i++) {
+					if (this.codeTrees.get(i).getData().equals(code)) {
+						return i;
+					}
+				}
 			} else {
-				// delete all property associations pointing to the delete code
-				for (Iterator<URI> iterator2 = entry.getValue().iterator(); iterator2
-						.hasNext();) {
-					URI property = iterator2.next();
-					if (property.equals(code.getUri())) {
-						iterator2.remove();
+				TreeNode<ICode>[] siblings = treeNode.getParent().children();
+				for (int i = 0; i < siblings.length; i++) {
+					if (siblings[i].getData().equals(code)) {
+						return i;
 					}
 				}
 			}
+			throw new RuntimeException("Implementation error");
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void setPosition(ICode code, int pos) {
+		this.lock.writeLock().lock();
+		try {
+			TreeNode<ICode> treeNode = this.assertiveFind(code);
+			if (treeNode.getParent() == null) {
+				for (int i = 0; i < this.codeTrees.size(); i++) {
+					if (this.codeTrees.get(i).getData().equals(code)) {
+						ListUtils.moveElement(this.codeTrees, i, pos);
+						return;
+					}
+				}
+			} else {
+				TreeNode<ICode>[] siblings = treeNode.getParent().children();
+				for (int i = 0; i < siblings.length; i++) {
+					if (siblings[i].getData().equals(code)) {
+						ArrayUtils.moveElement(siblings, i, pos);
+						return;
+					}
+				}
+			}
+			throw new RuntimeException("Implementation error");
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public List<File> getBackupFiles() {
+		List<File> backupFiles = new ArrayList<File>();
+		for (CodeStoreBackups.Backup backup : this.backups.getBackups()) {
+			backupFiles.add(backup.getFile());
+		}
+		return backupFiles;
+	}
+
+	void setBackupRetention(CodeStoreBackups.RetentionPolicy retentionPolicy) {
+		this.backups.setRetentionPolicy(retentionPolicy);
+	}
+
+	/**
+	 * Captures the snapshot under the read lock and writes it after
+	 * releasing it. If the current thread holds the write lock the snapshot
+	 * is written once {@link #unlockWrite()} releases it.
+	 */
+	@Override
+	public void save() throws CodeStoreWriteException {
+		try {
+			this.awaitSections();
+		} catch (IllegalStateException e) {
+			throw new CodeStoreWriteException(e);
+		}
+		CodeStoreBinaryFormat.Snapshot snapshot;
+		this.lock.readLock().lock();
+		try {
+			if (this.batchDepth > 0) {
+				this.batchSaveRequested = true;
+				return;
+			}
+			if (this.writer != null) {
+				this.writer.requestSave();
+				return;
+			}
+			snapshot = this.captureSnapshot();
+			// waits for the writes of preceding mutations
+			this.lockIO();
+			if (this.lock.isWriteLockedByCurrentThread()) {
+				this.pendingSnapshot = snapshot;
+				this.pendingEntries.clear();
+				return;
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		try {
+			this.writeSnapshot(snapshot);
+		} finally {
+			this.ioLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the given {@link CodeStoreBinaryFormat.Snapshot} to the
+	 * {@link CodeStoreBinaryFormat#getSnapshotFile(File) snapshot file} of
+	 * {@link #codeStoreFile} and thereby truncates the
+	 * {@link CodeStoreJournal}.
+	 *
+	 * @param snapshot
+	 * @throws CodeStoreWriteException
+	 */
+	private void writeSnapshot(CodeStoreBinaryFormat.Snapshot snapshot)
+			throws CodeStoreWriteException {
+		String previousSnapshotId = this.snapshotId;
+		File snapshotFile = CodeStoreBinaryFormat
+				.getSnapshotFile(this.codeStoreFile);
+		File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+		try {
+			this.snapshotId = UUID.randomUUID().toString();
+			snapshot.snapshotId = this.snapshotId;
+			CodeStoreBinaryFormat.write(snapshot, tmpFile, xstream);
+
+			// back up the replaced snapshot unless nothing changed
+			if (snapshotFile.length() > 0) {
+				String previousHash = CodeStoreBinaryFormat
+						.contentHash(snapshotFile);
+				if (!previousHash.equals(CodeStoreBinaryFormat
+						.contentHash(tmpFile))) {
+					this.backups.backup(snapshotFile, previousHash,
+							System.currentTimeMillis());
+				}
+			}
+			try {
+				Files.move(tmpFile.toPath(), snapshotFile.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile.toPath(), snapshotFile.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			// the new snapshot contains all journaled mutations
+			this.journal.reset(this.snapshotId);
+			this.lastSaved = System.currentTimeMillis();
+		} catch (IOException e) {
+			// the journal still refers to the unchanged previous snapshot
+			this.snapshotId = previousSnapshotId;
+			tmpFile.delete();
+			throw new CodeStoreWriteException(e);
+		}
+	}
+
+	/**
+	 * Copies the persistent state so it can be written while this instance is
+	 * modified further.
+	 *
+	 * @return
+	 * @throws CodeStoreWriteException
+	 *             if the state is not completely loaded
+	 */
+	CodeStoreBinaryFormat.Snapshot captureSnapshot()
+			throws CodeStoreWriteException {
+		try {
+			this.awaitSections();
+		} catch (IllegalStateException e) {
+			throw new CodeStoreWriteException(e);
+		}
+		this.lock.readLock().lock();
+		try {
+			CodeStoreBinaryFormat.Snapshot snapshot = new CodeStoreBinaryFormat.Snapshot();
+			snapshot.snapshotId = this.snapshotId;
+			snapshot.createdIds = new TreeSet<Long>(this.createdIds);
+			snapshot.codeTrees = new LinkedList<TreeNode<ICode>>();
+			for (TreeNode<ICode> codeTree : this.codeTrees) {
+				snapshot.codeTrees.add(copy(codeTree));
+			}
+			snapshot.createdCodeInstanceIds = new HashSet<Long>(
+					this.createdCodeInstanceIds);
+			snapshot.codeInstances = new HashSet<ICodeInstance>(this.codeInstances);
+			snapshot.relations = new HashSet<IRelation>(this.relations);
+			snapshot.relationInstances = new HashSet<IRelationInstance>(
+					this.relationInstances);
+			snapshot.episodes = new HashSet<IEpisode>(this.episodes);
+			snapshot.dimensions = this.dimensions != null ? new HashMap<URI, IDimension>(
+					this.dimensions) : new HashMap<URI, IDimension>();
+			snapshot.dimensionValues = this.dimensionValues != null ? new HashMap<Pair<URI, URI>, String>(
+					this.dimensionValues) : new HashMap<Pair<URI, URI>, String>();
+			snapshot.properties = new HashMap<URI, List<URI>>();
+			if (this.properties != null) {
+				for (Entry<URI, List<URI>> properties : this.properties.entrySet()) {
+					snapshot.properties.put(properties.getKey(), new ArrayList<URI>(
+							properties.getValue()));
+				}
+			}
+			snapshot.memos = this.memos != null ? new HashMap<Object, String>(
+					this.memos) : new HashMap<Object, String>();
+			return snapshot;
+		} finally {
+			this.lock.readLock().unlock();
 		}
-
-		this.save();
 	}
 
-	@Override
-	public void removeAndSaveCodeInstance(ICodeInstance codeInstance)
-			throws CodeStoreWriteException, CodeStoreReadException {
-		this.codeInstances.remove(codeInstance);
-		this.save();
+	private static TreeNode<ICode> copy(TreeNode<ICode> codeNode) {
+		TreeNode<ICode> copy = new TreeNode<ICode>(codeNode.getData());
+		for (TreeNode<ICode> child : codeNode.children()) {
+			copy.add(copy(child));
+		}
+		return copy;
 	}
 
-	@Override
-	public ICode getParent(ICode code) {
-		List<TreeNode<ICode>> foundNodes = this.find(code);
-		assert foundNodes.size() < 2;
-		if (foundNodes.size() == 1) {
-			TreeNode<ICode> parent = foundNodes.get(0).getParent();
-			return parent != null ? parent.getData() : null;
-		}
-		return null;
+	ReadWriteLock getLock() {
+		return this.lock;
 	}
 
-	@Override
-	public ICode setParent(ICode code, ICode parentCode)
-			throws CodeDoesNotExistException, CodeStoreWriteException {
-		TreeNode<ICode> futureChildNode = this.assertiveFind(code);
+	String getSnapshotId() {
+		return this.snapshotId;
+	}
 
-		if (futureChildNode == null) {
-			throw new CodeDoesNotExistException(code);
+	boolean isBatchRunning() {
+		this.lock.readLock().lock();
+		try {
+			return this.batchDepth > 0;
+		} finally {
+			this.lock.readLock().unlock();
 		}
+	}
 
-		TreeNode<ICode> futureParentNode = this.assertiveFind(parentCode);
-		TreeNode<ICode> currentParentNode = futureChildNode.getParent();
+	boolean needsCompaction() {
+		return this.journal.size() >= COMPACTION_THRESHOLD;
+	}
 
-		if (futureChildNode == futureParentNode) {
-			throw new CodeStoreIntegrityProtectionException("Child node"
-					+ futureChildNode + " can't be his own parent node");
-		}
-		if (futureChildNode.isAncestorOf(futureParentNode)) {
-			throw new CodeStoreIntegrityProtectionException("Node"
-					+ futureChildNode
-					+ " can't be made a child node of its current child node "
-					+ parentCode);
+	/**
+	 * Writes what the {@link CodeStoreWriter} or {@link #unlockWrite()}
+	 * collected. Must not be called while holding the {@link #getLock() lock}
+	 * unless writing a batch.
+	 *
+	 * @param entries
+	 *            journal entries to append if no snapshot is given
+	 * @param snapshot
+	 *            contains all mutations of the given entries; may be null
+	 * @throws CodeStoreWriteException
+	 */
+	void write(List<CodeStoreJournal.Entry> entries,
+			CodeStoreBinaryFormat.Snapshot snapshot)
+			throws CodeStoreWriteException {
+		this.ioLock.lock();
+		try {
+			if (snapshot != null) {
+				this.writeSnapshot(snapshot);
+			} else if (!entries.isEmpty()) {
+				try {
+					this.journal.append(entries.size() == 1 ? entries.get(0)
+							: new CodeStoreJournal.Batch(entries));
+					this.lastSaved = System.currentTimeMillis();
+				} catch (IOException e) {
+					throw new CodeStoreWriteException(e);
+				}
+			}
+		} finally {
+			this.ioLock.unlock();
 		}
+	}
 
-		// TODO: Komplexe Schleife
-
-		// remove from old parent
-		if (currentParentNode != null) {
-			futureChildNode.removeFromParent();
-		} else if (this.codeTrees.contains(futureChildNode)) {
-			this.codeTrees.remove(futureChildNode);
-		} else {
-			assert false;
+	/**
+	 * Moves writing to a background thread. Mutations are then only applied
+	 * in memory and written by a {@link CodeStoreWriter} shortly after.
+	 * <p>
+	 * Must not be called while holding the {@link #getLock() lock} of this
+	 * instance.
+	 *
+	 * @param backgroundWriting
+	 * @throws CodeStoreWriteException
+	 *             if pending changes could not be written on disabling
+	 */
+	void setBackgroundWriting(boolean backgroundWriting)
+			throws CodeStoreWriteException {
+		if (backgroundWriting) {
+			this.lock.writeLock().lock();
+			try {
+				if (this.writer == null) {
+					this.writer = new CodeStoreWriter(this);
+				}
+			} finally {
+				this.lock.writeLock().unlock();
+			}
+		} else if (this.writer != null) {
+			CodeStoreWriter writer = this.writer;
+			writer.close();
+			this.writer = null;
 		}
+	}
 
-		// add to new parent
-		if (futureParentNode != null) {
-			futureParentNode.add(futureChildNode);
-		} else {
-			this.codeTrees.add(futureChildNode);
+	@Override
+	public void flush() throws CodeStoreWriteException {
+		CodeStoreWriter writer = this.writer;
+		if (writer != null) {
+			writer.flush();
 		}
-
-		this.save();
-		return (currentParentNode != null) ? currentParentNode.getData() : null;
 	}
 
 	@Override
-	public List<ICode> getChildren(ICode code) {
-		List<ICode> childCodes = new ArrayList<ICode>();
-		for (TreeNode<ICode> codeTree : this.codeTrees) {
-			List<TreeNode<ICode>> foundNodes = codeTree.find(code);
-			assert foundNodes.size() < 2;
-			if (foundNodes.size() == 1) {
-				for (TreeNode<ICode> childNode : foundNodes.get(0).children()) {
-					childCodes.add(childNode.getData());
-				}
+	public boolean isDirty() {
+		this.lock.readLock().lock();
+		try {
+			if (this.batchDepth > 0
+					&& (!this.batchEntries.isEmpty() || this.batchSaveRequested)) {
+				return true;
 			}
+			return this.writer != null && this.writer.isDirty();
+		} finally {
+			this.lock.readLock().unlock();
 		}
-		return childCodes;
 	}
 
 	@Override
-	public List<ICode> getSubCodes(ICode code) {
-		List<ICode> subCodes = new ArrayList<ICode>();
-		for (TreeNode<ICode> codeTree : this.codeTrees) {
-			List<TreeNode<ICode>> foundNodes = codeTree.find(code);
-			assert foundNodes.size() < 2;
-			if (foundNodes.size() == 1) {
-				for (Iterator<ICode> iterator = foundNodes.get(0).bfs(); iterator
-						.hasNext();) {
-					ICode subCode = iterator.next();
-					if (!subCode.equals(foundNodes.get(0).getData())) {
-						subCodes.add(subCode);
-					}
-				}
+	public TimeZoneDate getLastSaved() {
+		long lastSaved = this.lastSaved;
+		return lastSaved > 0 ? new TimeZoneDate(new Date(lastSaved),
+				TimeZone.getDefault()) : null;
+	}
+
+	@Override
+	public void exportXML(File file)
+			throws CodeStoreWriteException {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			try (OutputStreamWriter writer = new OutputStreamWriter(
+					new FileOutputStream(file), "UTF-8")) {
+				xstream.toXML(this, writer);
+			} catch (IOException e) {
+				throw new CodeStoreWriteException(e);
 			}
+		} finally {
+			this.lock.readLock().unlock();
 		}
-		return subCodes;
 	}
 
 	@Override
-	public int getPosition(ICode code) {
-		TreeNode<ICode> treeNode = this.assertiveFind(code);
-		if (treeNode.getParent() == null) {
-			for (int i = 0; i < this.codeTrees.size(); i++) {
-				if (this.codeTrees.get(i).getData().equals(code)) {
-					return i;
-				}
-			}
-		} else {
-			TreeNode<ICode>[] siblings = treeNode.getParent().children();
-			for (int i = 0; i < siblings.length; i++) {
-				if (siblings[i].getData().equals(code)) {
-					return i;
-				}
-			}
+	public void beginBatch() {
+		// held until the batch ends so that other threads neither see nor
+		// interleave with uncommitted mutations
+		this.lock.writeLock().lock();
+		if (this.batchDepth++ == 0) {
+			this.batchEntries = new ArrayList<CodeStoreJournal.Entry>();
+			this.batchSaveRequested = false;
+			this.batchRollbackOnly = false;
 		}
-		throw new RuntimeException("Implementation error");
 	}
 
 	@Override
-	public void setPosition(ICode code, int pos) {
-		TreeNode<ICode> treeNode = this.assertiveFind(code);
-		if (treeNode.getParent() == null) {
-			for (int i = 0; i < this.codeTrees.size(); i++) {
-				if (this.codeTrees.get(i).getData().equals(code)) {
-					ListUtils.moveElement(this.codeTrees, i, pos);
-					return;
+	public void commitBatch() throws CodeStoreWriteException {
+		if (!this.lock.isWriteLockedByCurrentThread() || this.batchDepth == 0) {
+			throw new IllegalStateException("No batch running");
+		}
+		try {
+			if (this.batchDepth > 1) {
+				this.batchDepth--;
+				return;
+			}
+			if (this.batchRollbackOnly) {
+				try {
+					this.discardBatch();
+				} catch (CodeStoreReadException e) {
+					logger.error("Error rolling back " + this.codeStoreFile, e);
 				}
+				throw new CodeStoreWriteException(
+						"A nested batch was rolled back");
 			}
-		} else {
-			TreeNode<ICode>[] siblings = treeNode.getParent().children();
-			for (int i = 0; i < siblings.length; i++) {
-				if (siblings[i].getData().equals(code)) {
-					ArrayUtils.moveElement(siblings, i, pos);
-					return;
+			List<CodeStoreJournal.Entry> entries = this.batchEntries;
+			this.batchDepth = 0;
+			this.batchEntries = null;
+			if (this.writer != null) {
+				if (this.batchSaveRequested) {
+					this.writer.requestSave();
+				} else if (!entries.isEmpty()) {
+					this.writer.append(new CodeStoreJournal.Batch(entries));
+				}
+				return;
+			}
+			// written while still holding the write lock so that the batch
+			// can be rolled back if writing fails
+			this.ioLock.lock();
+			try {
+				if (this.batchSaveRequested || this.snapshotId == null) {
+					this.writeSnapshot(this.captureSnapshot());
+				} else if (!entries.isEmpty()) {
+					try {
+						this.journal.append(new CodeStoreJournal.Batch(entries));
+						this.lastSaved = System.currentTimeMillis();
+					} catch (IOException e) {
+						throw new CodeStoreWriteException(e);
+					}
+				}
+			} catch (CodeStoreWriteException e) {
+				try {
+					this.restore();
+				} catch (CodeStoreReadException e1) {
+					logger.error("Error rolling back " + this.codeStoreFile, e1);
 				}
+				throw e;
+			} finally {
+				this.ioLock.unlock();
 			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+		if (this.journal.size() >= COMPACTION_THRESHOLD) {
+			this.compact();
 		}
-		throw new RuntimeException("Implementation error");
 	}
 
 	@Override
-	public File getBackupFile() {
-		int tries = 0;
-		File backupFile;
-		do {
-			String absPath = this.codeStoreFile.getAbsolutePath();
-			String extension = FilenameUtils.getExtension(absPath);
-			String date = CalendarUtils.toISO8601FileSystemCompatible(Calendar
-					.getInstance());
-			backupFile = new File(absPath.substring(0, absPath.length()
-					- extension.length())
-					+ date + "." + (tries == 0 ? "" : tries + ".") + extension);
-			tries++;
-		} while (backupFile.exists());
-		return backupFile;
+	public void rollbackBatch() throws CodeStoreReadException {
+		if (!this.lock.isWriteLockedByCurrentThread() || this.batchDepth == 0) {
+			return;
+		}
+		try {
+			if (this.batchDepth > 1) {
+				// restoring is left to the outermost batch
+				this.batchDepth--;
+				this.batchRollbackOnly = true;
+				return;
+			}
+			this.discardBatch();
+		} finally {
+			this.lock.writeLock().unlock();
+		}
 	}
 
-	@Override
-	public void save() throws CodeStoreWriteException {
+	/**
+	 * Ends the outermost batch and restores the state last written.
+	 *
+	 * @throws CodeStoreReadException
+	 */
+	private void discardBatch() throws CodeStoreReadException {
 		try {
-			File backupFile = this.getBackupFile();
-			FileUtils.moveFile(this.codeStoreFile, backupFile);
-			xstream.toXML(this, new OutputStreamWriter(new FileOutputStream(
-					this.codeStoreFile), "UTF-8"));
-
-			if (FileUtils.readFileToString(backupFile).equals(
-					FileUtils.readFileToString(this.codeStoreFile))) {
-				backupFile.delete();
-			}
-		} catch (IOException e) {
-			throw new CodeStoreWriteException(e);
+			// what was committed before must be on disk to be restored; the
+			// running batch keeps the writer from saving uncommitted mutations
+			this.flush();
+		} catch (CodeStoreWriteException e) {
+			throw new CodeStoreReadException(e);
+		} finally {
+			this.batchDepth = 0;
+			this.batchEntries = null;
+			this.batchRollbackOnly = false;
 		}
+		this.restore();
+	}
+
+	/**
+	 * Replaces the in-memory state with the state last written to
+	 * {@link #codeStoreFile} and its {@link CodeStoreJournal}.
+	 *
+	 * @throws CodeStoreReadException
+	 */
+	private void restore() throws CodeStoreReadException {
+		File file = this.codeStoreFile;
+		CodeStore persisted;
+		this.ioLock.lock();
+		try {
+			persisted = (CodeStore) (exists(file) ? load(file) : create(file));
+		} finally {
+			this.ioLock.unlock();
+		}
+		persisted.awaitSections();
+		this.pendingSections = null;
+		this.snapshotId = persisted.snapshotId;
+		this.createdIds = persisted.createdIds;
+		this.createdCodeInstanceIds = persisted.createdCodeInstanceIds;
+		this.codeTrees = persisted.codeTrees;
+		this.codeInstances = persisted.codeInstances;
+		this.relations = persisted.relations;
+		this.relationInstances = persisted.relationInstances;
+		this.memos = persisted.memos;
+		this.episodes = persisted.episodes;
+		this.dimensions = persisted.dimensions;
+		this.dimensionValues = persisted.dimensionValues;
+		this.properties = persisted.properties;
+		this.rebuildIndexes();
 	}
 
 	@Override
 	public void deleteCodeInstance(ICodeInstance codeInstance)
 			throws CodeInstanceDoesNotExistException, CodeStoreWriteException {
-		if (!this.codeInstances.contains(codeInstance)) {
-			throw new CodeInstanceDoesNotExistException();
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			if (!this.codeInstances.contains(codeInstance)) {
+				throw new CodeInstanceDoesNotExistException();
+			}
+			this.codeInstances.remove(codeInstance);
+			this.unindex(codeInstance);
+			this.persist(new CodeStoreJournal.RemoveCodeInstance(codeInstance));
+		} finally {
+			this.unlockWrite();
 		}
-		this.codeInstances.remove(codeInstance);
-		this.save();
 	}
 
 	@Override
 	public void deleteCodeInstances(ICode code) throws CodeStoreReadException,
 			CodeStoreWriteException {
-		for (Iterator<ICodeInstance> iter = this.codeInstances.iterator(); iter
-				.hasNext();) {
-			if (iter.next().getCode().equals(code)) {
-				iter.remove();
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			for (ICodeInstance codeInstance : new ArrayList<ICodeInstance>(
+					this.getInstances(code))) {
+				this.codeInstances.remove(codeInstance);
+				this.unindex(codeInstance);
 			}
+			this.persist(new CodeStoreJournal.RemoveCodeInstances(code));
+		} finally {
+			this.unlockWrite();
 		}
-		this.save();
 	}
 
 	@Override
 	public Set<IRelation> getRelations() {
-		return new HashSet<>(this.relations);
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			Set<IRelation> view = this.relationsView;
+			if (view == null) {
+				view = Collections.unmodifiableSet(new HashSet<IRelation>(
+						this.relations));
+				this.relationsView = view;
+			}
+			return view;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public IRelation getRelation(URI uri) {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return this.relationsByUri.get(uri);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<IRelation> getRelationsStartingFrom(URI from) {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return get(this.relationsByFrom, from);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<IRelation> getRelationsEndingAt(URI to) {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return get(this.relationsByTo, to);
+		} finally {
+			this.lock.readLock().unlock();
+		}
 	}
 
 	@Override
 	public void addRelation(IRelation relation) throws CodeStoreWriteException,
 			DuplicateRelationException {
-		if (!this.relations.contains(relation)) {
-			this.relations.add(relation);
-			this.save();
-		} else {
-			IRelation duplicate = null;
-			for (IRelation r : this.relations) {
-				if (r.equals(relation)) {
-					duplicate = r;
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			if (!this.relations.contains(relation)) {
+				this.relations.add(relation);
+				this.index(relation);
+				this.persist(new CodeStoreJournal.AddRelation(relation));
+			} else {
+				IRelation duplicate = null;
+				for (IRelation r : this.relations) {
+					if (r.equals(relation)) {
+						duplicate = r;
+					}
 				}
+				throw new DuplicateRelationException(Arrays.asList(relation,
+						duplicate));
 			}
-			throw new DuplicateRelationException(Arrays.asList(relation,
-					duplicate));
+		} finally {
+			this.unlockWrite();
 		}
 	}
 
 	@Override
 	public void replaceRelation(IRelation relation, Relation newRelation)
 			throws CodeStoreWriteException, RelationDoesNotExistException {
-		this.deleteRelation(relation);
+		this.awaitSections();
+		this.lock.writeLock().lock();
 		try {
-			this.addRelation(newRelation);
-		} catch (DuplicateRelationException e1) {
-			throw new RuntimeException("Implementation error", e1);
-		}
-		for (IRelationInstance relationInstance : this.relationInstances) {
-			if (!relationInstance.getRelation().getUri()
-					.equals(relation.getUri())) {
-				continue;
-			}
-			if (!(relationInstance instanceof RelationInstance)) {
-				throw new RuntimeException("Implementation error");
+			if (!this.relations.contains(relation)) {
+				throw new RelationDoesNotExistException();
 			}
-			try {
-				Field relationField = RelationInstance.class
-						.getDeclaredField("relation");
-				relationField.setAccessible(true);
-				relationField.set(relationInstance, newRelation);
-				relationField.setAccessible(false);
-			} catch (NoSuchFieldException | SecurityException
-					| IllegalArgumentException | IllegalAccessException e) {
-				throw new RuntimeException("Implementation error", e);
+			this.relations.remove(relation);
+			this.unindex(relation);
+			this.relations.add(newRelation);
+			this.index(newRelation);
+			for (IRelationInstance relationInstance : this
+					.getRelationInstances(relation)) {
+				if (!(relationInstance instanceof RelationInstance)) {
+					throw new RuntimeException("Implementation error");
+				}
+				try {
+					Field relationField = RelationInstance.class
+							.getDeclaredField("relation");
+					relationField.setAccessible(true);
+					relationField.set(relationInstance, newRelation);
+					relationField.setAccessible(false);
+				} catch (NoSuchFieldException | SecurityException
+						| IllegalArgumentException | IllegalAccessException e) {
+					throw new RuntimeException("Implementation error", e);
+				}
 			}
+			this.persist(new CodeStoreJournal.ReplaceRelation(relation,
+					newRelation));
+		} finally {
+			this.unlockWrite();
 		}
 	}
 
 	@Override
 	public void deleteRelation(IRelation relation)
 			throws RelationDoesNotExistException, CodeStoreWriteException {
-		if (!this.relations.contains(relation)) {
-			throw new RelationDoesNotExistException();
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			if (!this.relations.contains(relation)) {
+				throw new RelationDoesNotExistException();
+			}
+			this.relations.remove(relation);
+			this.unindex(relation);
+			this.persist(new CodeStoreJournal.DeleteRelation(relation));
+		} finally {
+			this.unlockWrite();
 		}
-		this.relations.remove(relation);
-		this.save();
 	}
 
 	@Override
 	public Set<IRelationInstance> getRelationInstances() {
-		return new HashSet<>(this.relationInstances);
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			Set<IRelationInstance> view = this.relationInstancesView;
+			if (view == null) {
+				view = Collections
+						.unmodifiableSet(new HashSet<IRelationInstance>(
+								this.relationInstances));
+				this.relationInstancesView = view;
+			}
+			return view;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<IRelationInstance> getRelationInstances(IRelation relation) {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return relation != null ? get(this.relationInstancesByRelation,
+					relation.getUri()) : Collections
+					.<IRelationInstance> emptyList();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<IRelationInstance> getRelationInstances(URI phenomenon) {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return get(this.relationInstancesByPhenomenon, phenomenon);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<IRelationInstance> getRelationInstances(IIdentifier identifier) {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return get(this.relationInstancesByIdentifier, identifier);
+		} finally {
+			this.lock.readLock().unlock();
+		}
 	}
 
 	@Override
 	public void addRelationInstance(IRelationInstance relationInstance)
 			throws CodeStoreWriteException, RelationDoesNotExistException,
 			DuplicateRelationInstanceException {
-		if (!this.relations.contains(relationInstance.getRelation())) {
-			throw new RelationDoesNotExistException();
-		}
-		if (!this.relationInstances.contains(relationInstance)) {
-			this.relationInstances.add(relationInstance);
-			this.save();
-		} else {
-			IRelationInstance duplicate = null;
-			for (IRelationInstance r : this.relationInstances) {
-				if (r.equals(relationInstance)) {
-					duplicate = r;
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			if (!this.relations.contains(relationInstance.getRelation())) {
+				throw new RelationDoesNotExistException();
+			}
+			if (!this.relationInstances.contains(relationInstance)) {
+				this.relationInstances.add(relationInstance);
+				this.index(relationInstance);
+				this.persist(new CodeStoreJournal.AddRelationInstance(
+						relationInstance));
+			} else {
+				IRelationInstance duplicate = null;
+				for (IRelationInstance r : this.relationInstances) {
+					if (r.equals(relationInstance)) {
+						duplicate = r;
+					}
 				}
+				throw new DuplicateRelationInstanceException(Arrays.asList(
+						relationInstance, duplicate));
 			}
-			throw new DuplicateRelationInstanceException(Arrays.asList(
-					relationInstance, duplicate));
+		} finally {
+			this.unlockWrite();
 		}
 	}
 
@@ -837,34 +2187,24 @@ class CodeStore implements ICodeStore {
 	public void deleteRelationInstance(IRelationInstance relationInstance)
 			throws RelationInstanceDoesNotExistException,
 			CodeStoreWriteException {
-		if (!this.relationInstances.contains(relationInstance)) {
-			throw new RelationInstanceDoesNotExistException();
-		}
-		this.relationInstances.remove(relationInstance);
-		this.save();
-	}
-
-	/**
-	 * Returns the location of a memo {@link File} for a given basename.
-	 *
-	 * @param basename
-	 * @return
-	 */
-	protected File getMemoLocation(String basename) {
-		File file = new File(this.codeStoreFile.getParentFile(),
-				DigestUtils.md5Hex(basename) + ".memo.html");
-		if (file.exists()) {
-			return file;
-		} else {
-			return new File(this.codeStoreFile.getParentFile(), basename
-					+ ".memo.html");
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			if (!this.relationInstances.contains(relationInstance)) {
+				throw new RelationInstanceDoesNotExistException();
+			}
+			this.relationInstances.remove(relationInstance);
+			this.unindex(relationInstance);
+			this.persist(new CodeStoreJournal.DeleteRelationInstance(
+					relationInstance));
+		} finally {
+			this.unlockWrite();
 		}
-
 	}
 
 	/**
 	 * Returns the basename for the given {@link ICode} for use in conjunction
-	 * {@link #getMemoLocation(String)}.
+	 * {@link #loadMemo(String)}.
 	 *
 	 * @param code
 	 * @return
@@ -878,7 +2218,7 @@ class CodeStore implements ICodeStore {
 
 	/**
 	 * Returns the basename for the given {@link ICodeInstance} for use in
-	 * conjunction {@link #getMemoLocation(String)}.
+	 * conjunction {@link #loadMemo(String)}.
 	 *
 	 * @param codeInstance
 	 * @return
@@ -900,7 +2240,7 @@ class CodeStore implements ICodeStore {
 
 	/**
 	 * Returns the basename for the given {@link ILocatable} for use in
-	 * conjunction {@link #getMemoLocation(String)}.
+	 * conjunction {@link #loadMemo(String)}.
 	 *
 	 * @param uri
 	 * @return
@@ -924,16 +2264,13 @@ class CodeStore implements ICodeStore {
 	 * @throws IOException
 	 */
 	protected String loadMemo(String basename) throws IOException {
-		File memoFile = this.getMemoLocation(basename);
-		if (memoFile.exists()) {
-			try {
-				return FileUtils.readFileToString(memoFile, "UTF-8");
-			} catch (FileNotFoundException e) {
-				return this.loadMemo(DigestUtils.md5Hex(basename));
-			}
-		} else {
-			return null;
+		CodeStoreWriter writer = this.writer;
+		String pending = writer != null ? writer.getPendingMemo(basename)
+				: null;
+		if (pending != null) {
+			return pending.isEmpty() ? null : pending;
 		}
+		return this.memoStore.load(basename);
 	}
 
 	/**
@@ -945,20 +2282,37 @@ class CodeStore implements ICodeStore {
 	 * @throws IOException
 	 */
 	protected void saveMemo(String basename, String memo) throws IOException {
-		File memoFile = this.getMemoLocation(basename);
-		if ((memo == null || memo.trim().equals("")) && memoFile.exists()) {
-			memoFile.delete();
+		CodeStoreWriter writer = this.writer;
+		if (writer != null) {
+			writer.saveMemo(basename, memo);
 		} else {
-			try {
-				FileUtils.writeStringToFile(memoFile, memo, "UTF-8");
-			} catch (FileNotFoundException e) {
-				this.saveMemo(DigestUtils.md5Hex(basename), memo);
-			}
+			this.writeMemo(basename, memo);
+		}
+	}
+
+	void writeMemo(String basename, String memo) throws IOException {
+		this.memoStore.save(basename, memo);
+		this.lastSaved = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the memo saved as part of the snapshot by former versions.
+	 *
+	 * @param key
+	 * @return
+	 */
+	private String getLegacyMemo(Object key) {
+		this.lock.readLock().lock();
+		try {
+			return this.memos != null ? this.memos.get(key) : null;
+		} finally {
+			this.lock.readLock().unlock();
 		}
 	}
 
 	@Override
 	public String getMemo(ICode code) {
+		this.awaitSections();
 		String memo = null;
 		try {
 			memo = this.loadMemo(getMemoBasename(code));
@@ -966,7 +2320,7 @@ class CodeStore implements ICodeStore {
 			logger.error("Error reading memo for " + code);
 		}
 		if (memo == null) {
-			return this.memos != null ? this.memos.get(code) : null;
+			return this.getLegacyMemo(code);
 		} else {
 			return memo;
 		}
@@ -974,6 +2328,7 @@ class CodeStore implements ICodeStore {
 
 	@Override
 	public String getMemo(ICodeInstance codeInstance) {
+		this.awaitSections();
 		String memo = null;
 		try {
 			memo = this.loadMemo(getMemoBasename(codeInstance));
@@ -981,7 +2336,7 @@ class CodeStore implements ICodeStore {
 			logger.error("Error reading memo for " + codeInstance);
 		}
 		if (memo == null) {
-			return this.memos != null ? this.memos.get(codeInstance) : null;
+			return this.getLegacyMemo(codeInstance);
 		} else {
 			return memo;
 		}
@@ -989,6 +2344,7 @@ class CodeStore implements ICodeStore {
 
 	@Override
 	public String getMemo(URI uri) {
+		this.awaitSections();
 		String memo = null;
 		try {
 			memo = this.loadMemo(getMemoBasename(uri));
@@ -996,82 +2352,156 @@ class CodeStore implements ICodeStore {
 			logger.error("Error reading memo for " + uri);
 		}
 		if (memo == null) {
-			return this.memos != null ? this.memos.get(uri) : null;
+			return this.getLegacyMemo(uri);
 		} else {
 			return memo;
 		}
 	};
 
-	// TODO remove
 	@Override
-	public void setMemo(ICode code, String html) throws CodeStoreWriteException {
+	public String getMemoPlain(URI uri) {
+		this.awaitSections();
+		String memo = null;
 		try {
-			this.saveMemo(getMemoBasename(code), html);
+			String basename = getMemoBasename(uri);
+			CodeStoreWriter writer = this.writer;
+			String pending = writer != null ? writer.getPendingMemo(basename)
+					: null;
+			if (pending != null) {
+				return pending.trim().isEmpty() ? null : StringUtils
+						.htmlToPlain(pending);
+			}
+			memo = this.memoStore.loadPlain(basename);
 		} catch (IOException e) {
-			throw new CodeStoreWriteException(e);
+			logger.error("Error reading memo for " + uri);
+		}
+		if (memo == null) {
+			String html = this.getLegacyMemo(uri);
+			return html != null && !html.trim().isEmpty() ? StringUtils
+					.htmlToPlain(html) : null;
+		} else {
+			return memo;
 		}
-		if (this.memos != null) {
-			this.memos.remove(code);
+	}
+
+	// TODO remove
+	@Override
+	public void setMemo(ICode code, String html) throws CodeStoreWriteException {
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			try {
+				this.saveMemo(getMemoBasename(code), html);
+			} catch (IOException e) {
+				throw new CodeStoreWriteException(e);
+			}
+			// only legacy memos are part of the snapshot
+			if (this.memos != null && this.memos.remove(code) != null) {
+				this.save();
+			}
+		} finally {
+			this.unlockWrite();
 		}
-		this.save();
 	}
 
 	// TODO remove
 	@Override
 	public void setMemo(ICodeInstance codeInstance, String html)
 			throws CodeStoreWriteException {
+		this.awaitSections();
+		this.lock.writeLock().lock();
 		try {
-			this.saveMemo(getMemoBasename(codeInstance), html);
-		} catch (IOException e) {
-			throw new CodeStoreWriteException(e);
-		}
-		if (this.memos != null) {
-			this.memos.remove(codeInstance);
+			try {
+				this.saveMemo(getMemoBasename(codeInstance), html);
+			} catch (IOException e) {
+				throw new CodeStoreWriteException(e);
+			}
+			// only legacy memos are part of the snapshot
+			if (this.memos != null && this.memos.remove(codeInstance) != null) {
+				this.save();
+			}
+		} finally {
+			this.unlockWrite();
 		}
-		this.save();
 	}
 
 	@Override
 	public void setMemo(URI uri, String html) throws CodeStoreWriteException {
+		this.awaitSections();
+		this.lock.writeLock().lock();
 		try {
-			this.saveMemo(getMemoBasename(uri), html);
-		} catch (IOException e) {
-			throw new CodeStoreWriteException(e);
-		}
-		if (this.memos != null) {
-			this.memos.remove(uri);
+			try {
+				this.saveMemo(getMemoBasename(uri), html);
+			} catch (IOException e) {
+				throw new CodeStoreWriteException(e);
+			}
+			// only legacy memos are part of the snapshot
+			if (this.memos != null && this.memos.remove(uri) != null) {
+				this.save();
+			}
+		} finally {
+			this.unlockWrite();
 		}
-		this.save();
 	}
 
 	@Override
 	public IDimension getDimension(URI uri) {
-		return this.dimensions.get(uri);
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return this.dimensions.get(uri);
+		} finally {
+			this.lock.readLock().unlock();
+		}
 	}
 
 	@Override
 	public void setDimension(URI uri, IDimension dimension) {
-		this.dimensions.put(uri, dimension);
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			this.dimensions.put(uri, dimension);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
 	}
 
 	@Override
 	public String getDimensionValue(URI valueUri, URI dimensionalizedUri) {
-		return this.dimensionValues.get(new Pair<URI, URI>(valueUri,
-				dimensionalizedUri));
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return this.dimensionValues.get(new Pair<URI, URI>(valueUri,
+					dimensionalizedUri));
+		} finally {
+			this.lock.readLock().unlock();
+		}
 	}
 
 	@Override
 	public void setDimensionValue(URI valueUri, URI dimensionalizedUri,
 			String value) {
-		this.dimensionValues.put(new Pair<URI, URI>(valueUri,
-				dimensionalizedUri), value);
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			this.dimensionValues.put(new Pair<URI, URI>(valueUri,
+					dimensionalizedUri), value);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
 	}
 
 	@Override
 	public List<URI> getProperties(URI uri) {
-		Assert.isNotNull(uri);
-		return this.properties.containsKey(uri) ? new ArrayList<URI>(
-				this.properties.get(uri)) : new LinkedList<URI>();
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			Assert.isNotNull(uri);
+			return this.properties.containsKey(uri) ? new ArrayList<URI>(
+					this.properties.get(uri)) : new LinkedList<URI>();
+		} finally {
+			this.lock.readLock().unlock();
+		}
 	}
 
 	private boolean isPartOfPropertyHierarchy(final URI uri, URI property) {
@@ -1087,18 +2517,24 @@ class CodeStore implements ICodeStore {
 	@Override
 	public void setProperties(URI uri, List<URI> properties)
 			throws CodeStoreWriteException {
-		Assert.isNotNull(uri);
-		if (properties == null) {
-			properties = new LinkedList<URI>();
-		}
-		for (URI property : properties) {
-			if (this.isPartOfPropertyHierarchy(uri, property)) {
-				throw new CodeStoreWriteException("Saving " + property
-						+ " as a property for " + uri
-						+ " would lead to a cyclic graph.");
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			Assert.isNotNull(uri);
+			if (properties == null) {
+				properties = new LinkedList<URI>();
 			}
+			for (URI property : properties) {
+				if (this.isPartOfPropertyHierarchy(uri, property)) {
+					throw new CodeStoreWriteException("Saving " + property
+							+ " as a property for " + uri
+							+ " would lead to a cyclic graph.");
+				}
+			}
+			this.properties.put(uri, properties);
+		} finally {
+			this.lock.writeLock().unlock();
 		}
-		this.properties.put(uri, properties);
 	}
 
 	private String getRawBasename(String type, URI uri)
@@ -1188,26 +2624,61 @@ class CodeStore implements ICodeStore {
 
 	@Override
 	public Set<IEpisode> getEpisodes() {
-		return this.episodes;
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			return Collections.unmodifiableSet(new HashSet<IEpisode>(
+					this.episodes));
+		} finally {
+			this.lock.readLock().unlock();
+		}
 	}
 
 	@Override
-	public String toString() {
-		ICode[] codes = this.getCodes();
-
-		StringBuilder sb = new StringBuilder("Code Store - #codes: "
-				+ codes.length + ", #instances: " + this.codeInstances.size());
-		sb.append("\n");
-		sb.append("- Codes IDs:");
-		for (ICode code : codes) {
-			sb.append(" " + code.getId());
+	public boolean addEpisode(IEpisode episode) {
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			return this.episodes.add(episode);
+		} finally {
+			this.lock.writeLock().unlock();
 		}
-		sb.append("\n");
-		sb.append("- Instance IDs:");
-		for (ICodeInstance codeInstance : this.codeInstances) {
-			sb.append(" " + codeInstance.getCodeInstanceID());
+	}
+
+	@Override
+	public boolean removeEpisode(IEpisode episode) {
+		this.awaitSections();
+		this.lock.writeLock().lock();
+		try {
+			return this.episodes.remove(episode);
+		} finally {
+			this.lock.writeLock().unlock();
 		}
+	}
+
+	@Override
+	public String toString() {
+		this.awaitSections();
+		this.lock.readLock().lock();
+		try {
+			ICode[] codes = this.getCodes();
+
+			StringBuilder sb = new StringBuilder("Code Store - #codes: "
+					+ codes.length + ", #instances: " + this.codeInstances.size());
+			sb.append("\n");
+			sb.append("- Codes IDs:");
+			for (ICode code : codes) {
+				sb.append(" " + code.getId());
+			}
+			sb.append("\n");
+			sb.append("- Instance IDs:");
+			for (ICodeInstance codeInstance : this.codeInstances) {
+				sb.append(" " + codeInstance.getCodeInstanceID());
+			}
 
-		return sb.toString();
+			return sb.toString();
+		} finally {
+			this.lock.readLock().unlock();
+		}
 	}
 }
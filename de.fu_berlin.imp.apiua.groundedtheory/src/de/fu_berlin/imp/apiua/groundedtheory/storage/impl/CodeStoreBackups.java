@@ -0,0 +1,261 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps compressed generations of a {@link CodeStore} file in a sibling
+ * directory.
+ * <p>
+ * Each generation is named after the time it was created and the
+ * {@link CodeStoreBinaryFormat#contentHash(File) hash} of its content. A
+ * content that is already backed up is not stored again; its generation is
+ * moved to the new time instead. After each backup the {@link RetentionPolicy}
+ * decides which generations are kept.
+ *
+ * @author bkahlert
+ */
+class CodeStoreBackups {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(CodeStoreBackups.class);
+
+	private static final String EXTENSION = ".gz";
+
+	/**
+	 * Decides which backups are kept: the {@link #getLatest()} most recent
+	 * ones plus the most recent backup of each of the last
+	 * {@link #getHourly()} hours and {@link #getDaily()} days.
+	 */
+	static class RetentionPolicy {
+
+		public static final RetentionPolicy DEFAULT = new RetentionPolicy(10,
+				24, 30);
+
+		private final int latest;
+		private final int hourly;
+		private final int daily;
+
+		public RetentionPolicy(int latest, int hourly, int daily) {
+			this.latest = latest;
+			this.hourly = hourly;
+			this.daily = daily;
+		}
+
+		public int getLatest() {
+			return this.latest;
+		}
+
+		public int getHourly() {
+			return this.hourly;
+		}
+
+		public int getDaily() {
+			return this.daily;
+		}
+
+		/**
+		 * Returns the backups to keep.
+		 *
+		 * @param backups
+		 *            ordered from the most recent to the oldest one
+		 * @param now
+		 * @return
+		 */
+		Set<Backup> retain(List<Backup> backups, long now) {
+			Set<Backup> retained = new HashSet<Backup>();
+			for (int i = 0; i < Math.min(this.latest, backups.size()); i++) {
+				retained.add(backups.get(i));
+			}
+			this.retainPerPeriod(backups, now, TimeUnit.HOURS.toMillis(1),
+					this.hourly, retained);
+			this.retainPerPeriod(backups, now, TimeUnit.DAYS.toMillis(1),
+					this.daily, retained);
+			return retained;
+		}
+
+		private void retainPerPeriod(List<Backup> backups, long now,
+				long period, int periods, Set<Backup> retained) {
+			int offset = TimeZone.getDefault().getOffset(now);
+			long currentPeriod = (now + offset) / period;
+			long lastPeriod = Long.MIN_VALUE;
+			for (Backup backup : backups) {
+				long backupPeriod = (backup.getTime() + offset) / period;
+				if (currentPeriod - backupPeriod >= periods) {
+					break;
+				}
+				if (backupPeriod != lastPeriod) {
+					retained.add(backup);
+					lastPeriod = backupPeriod;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A single backed up generation.
+	 */
+	static class Backup implements Comparable<Backup> {
+		private final File file;
+		private final long time;
+		private final String hash;
+
+		private Backup(File file, long time, String hash) {
+			this.file = file;
+			this.time = time;
+			this.hash = hash;
+		}
+
+		public File getFile() {
+			return this.file;
+		}
+
+		public long getTime() {
+			return this.time;
+		}
+
+		public String getHash() {
+			return this.hash;
+		}
+
+		@Override
+		public int compareTo(Backup backup) {
+			return Long.compare(backup.time, this.time);
+		}
+	}
+
+	private final File directory;
+	private RetentionPolicy retentionPolicy = RetentionPolicy.DEFAULT;
+
+	CodeStoreBackups(File codeStoreFile) {
+		File absoluteFile = codeStoreFile.getAbsoluteFile();
+		this.directory = new File(absoluteFile.getParentFile(),
+				absoluteFile.getName() + ".backups");
+	}
+
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+		this.retentionPolicy = retentionPolicy != null ? retentionPolicy
+				: RetentionPolicy.DEFAULT;
+	}
+
+	private static SimpleDateFormat getDateFormat() {
+		SimpleDateFormat dateFormat = new SimpleDateFormat(
+				"yyyyMMdd'T'HHmmssSSS'Z'");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return dateFormat;
+	}
+
+	private File getFile(long time, String hash) {
+		return new File(this.directory, getDateFormat().format(time) + "_"
+				+ hash + EXTENSION);
+	}
+
+	/**
+	 * Returns all backups ordered from the most recent to the oldest one.
+	 *
+	 * @return
+	 */
+	public List<Backup> getBackups() {
+		List<Backup> backups = new ArrayList<Backup>();
+		File[] files = this.directory.listFiles();
+		if (files == null) {
+			return backups;
+		}
+		SimpleDateFormat dateFormat = getDateFormat();
+		for (File file : files) {
+			String name = file.getName();
+			int separator = name.indexOf('_');
+			if (separator < 0 || !name.endsWith(EXTENSION)) {
+				continue;
+			}
+			try {
+				long time = dateFormat.parse(name.substring(0, separator))
+						.getTime();
+				String hash = name.substring(separator + 1, name.length()
+						- EXTENSION.length());
+				backups.add(new Backup(file, time, hash));
+			} catch (ParseException e) {
+				LOGGER.warn("Ignoring unknown file " + file);
+			}
+		}
+		Collections.sort(backups);
+		return backups;
+	}
+
+	/**
+	 * Backs up the given file.
+	 *
+	 * @param file
+	 * @param hash
+	 *            the {@link CodeStoreBinaryFormat#contentHash(File) hash} of
+	 *            the file
+	 * @param time
+	 * @return the created or moved backup
+	 * @throws IOException
+	 */
+	public File backup(File file, String hash, long time) throws IOException {
+		List<Backup> backups = this.getBackups();
+		File backupFile = this.getFile(time, hash);
+		for (int tries = 1; backupFile.exists(); tries++) {
+			backupFile = this.getFile(time + tries, hash);
+		}
+
+		Backup existing = null;
+		for (Backup backup : backups) {
+			if (backup.getHash().equals(hash)) {
+				existing = backup;
+				break;
+			}
+		}
+		if (existing != null) {
+			FileUtils.moveFile(existing.getFile(), backupFile);
+			backups.remove(existing);
+		} else {
+			FileUtils.forceMkdir(this.directory);
+			File tmpFile = new File(this.directory, backupFile.getName()
+					+ ".tmp");
+			try (OutputStream out = new GZIPOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				FileUtils.copyFile(file, out);
+			} catch (IOException e) {
+				tmpFile.delete();
+				throw e;
+			}
+			FileUtils.moveFile(tmpFile, backupFile);
+		}
+		backups.add(0, new Backup(backupFile, time, hash));
+		Collections.sort(backups);
+
+		this.prune(backups, time);
+		return backupFile;
+	}
+
+	private void prune(List<Backup> backups, long now) {
+		Set<Backup> retained = this.retentionPolicy.retain(backups, now);
+		for (Backup backup : backups) {
+			if (!retained.contains(backup) && !backup.getFile().delete()) {
+				LOGGER.warn("Could not delete backup " + backup.getFile());
+			}
+		}
+	}
+}
@@ -0,0 +1,745 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+import com.bkahlert.nebula.data.TreeNode;
+import com.bkahlert.nebula.utils.Pair;
+import com.bkahlert.nebula.utils.colors.RGB;
+import com.thoughtworks.xstream.XStream;
+
+import de.fu_berlin.imp.apiua.core.model.IdentifierFactory;
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDateRange;
+import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
+import de.fu_berlin.imp.apiua.core.util.NoNullSet;
+import de.fu_berlin.imp.apiua.groundedtheory.model.Code;
+import de.fu_berlin.imp.apiua.groundedtheory.model.Episode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICodeInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IEpisode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IRelation;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IRelationInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.model.Relation;
+import de.fu_berlin.imp.apiua.groundedtheory.model.RelationInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.model.dimension.IDimension;
+
+/**
+ * Compact binary snapshot format of a {@link CodeStore}.
+ * <p>
+ * A snapshot consists of a header, a table of contents and the
+ * {@link Section}s. Each {@link Section} starts with its own dictionary of the
+ * strings and {@link URI}s it refers to and can therefore be read without
+ * reading the others. IDs are stored as longs and dates as milliseconds plus
+ * time zone. The rarely used and polymorphic {@link IDimension}s and legacy
+ * memos are embedded as XML.
+ *
+ * @author bkahlert
+ */
+class CodeStoreBinaryFormat {
+
+	/**
+	 * <code>GTCS</code>
+	 */
+	static final int MAGIC = 0x47544353;
+
+	static final int VERSION = 1;
+
+	private static final String EXTENSION = ".bin";
+
+	enum Section {
+		CODES, INSTANCES, RELATIONS, EPISODES, DIMENSIONS
+	}
+
+	/**
+	 * The persistent state of a {@link CodeStore}. The fields of a
+	 * {@link Section} are null until it was read.
+	 */
+	static class Snapshot {
+		String snapshotId;
+
+		// CODES
+		Set<Long> createdIds;
+		LinkedList<TreeNode<ICode>> codeTrees;
+
+		// INSTANCES
+		Set<Long> createdCodeInstanceIds;
+		HashSet<ICodeInstance> codeInstances;
+
+		// RELATIONS
+		Set<IRelation> relations;
+		Set<IRelationInstance> relationInstances;
+
+		// EPISODES
+		Set<IEpisode> episodes;
+
+		// DIMENSIONS
+		HashMap<URI, IDimension> dimensions;
+		HashMap<Pair<URI, URI>, String> dimensionValues;
+		HashMap<URI, List<URI>> properties;
+		HashMap<Object, String> memos;
+	}
+
+	/**
+	 * Returns the snapshot {@link File} that belongs to the given
+	 * {@link CodeStore} {@link File}. The latter is left untouched so that
+	 * it stays readable by former versions.
+	 *
+	 * @param codeStoreFile
+	 * @return
+	 */
+	static File getSnapshotFile(File codeStoreFile) {
+		return new File(codeStoreFile.getAbsolutePath() + EXTENSION);
+	}
+
+	/**
+	 * Checks if the given file starts with {@link #MAGIC}.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static boolean isBinary(File file) throws IOException {
+		if (file.length() < 4) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new FileInputStream(
+				file))) {
+			return in.readInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Computes a SHA-1 hash of the given file. The snapshot id of a binary
+	 * snapshot is left out so two snapshots of the same state have the same
+	 * hash.
+	 *
+	 * @param file
+	 * @return the hash as a hex string
+	 * @throws IOException
+	 */
+	static String contentHash(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		boolean binary = isBinary(file);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			if (binary) {
+				in.readInt();
+				in.readInt();
+				if (in.readBoolean()) {
+					in.readUTF();
+				}
+			}
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		StringBuilder hash = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hash.append(String.format("%02x", b));
+		}
+		return hash.toString();
+	}
+
+	/**
+	 * Writes the given {@link Snapshot} which must be completely read.
+	 *
+	 * @param snapshot
+	 * @param file
+	 * @param xstream
+	 *            used to embed the {@link Section#DIMENSIONS}
+	 * @throws IOException
+	 */
+	static void write(Snapshot snapshot, File file, XStream xstream)
+			throws IOException {
+		Map<Section, byte[]> sections = new EnumMap<Section, byte[]>(
+				Section.class);
+		sections.put(Section.CODES, writeCodes(snapshot));
+		sections.put(Section.INSTANCES, writeInstances(snapshot));
+		sections.put(Section.RELATIONS, writeRelations(snapshot));
+		sections.put(Section.EPISODES, writeEpisodes(snapshot));
+		sections.put(Section.DIMENSIONS, writeDimensions(snapshot, xstream));
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeBoolean(snapshot.snapshotId != null);
+			if (snapshot.snapshotId != null) {
+				out.writeUTF(snapshot.snapshotId);
+			}
+			out.writeInt(sections.size());
+			for (Map.Entry<Section, byte[]> section : sections.entrySet()) {
+				out.writeByte(section.getKey().ordinal());
+				out.writeInt(section.getValue().length);
+			}
+			for (byte[] section : sections.values()) {
+				out.write(section);
+			}
+		}
+	}
+
+	private static byte[] writeCodes(Snapshot snapshot) throws IOException {
+		SectionOutput out = new SectionOutput();
+		out.writeIds(snapshot.createdIds);
+		out.writeInt(snapshot.codeTrees.size());
+		for (TreeNode<ICode> codeTree : snapshot.codeTrees) {
+			writeCodeTree(out, codeTree);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeCodeTree(SectionOutput out,
+			TreeNode<ICode> codeNode) throws IOException {
+		writeCode(out, codeNode.getData());
+		TreeNode<ICode>[] children = codeNode.children();
+		out.writeInt(children.length);
+		for (TreeNode<ICode> child : children) {
+			writeCodeTree(out, child);
+		}
+	}
+
+	private static void writeCode(SectionOutput out, ICode code)
+			throws IOException {
+		out.writeLong(code.getId());
+		out.writeString(code.getCaption());
+		RGB color = code.getColor();
+		out.writeBoolean(color != null);
+		if (color != null) {
+			out.writeDouble(color.getRed());
+			out.writeDouble(color.getGreen());
+			out.writeDouble(color.getBlue());
+			out.writeDouble(color.getAlpha());
+		}
+		out.writeDate(code.getCreation());
+	}
+
+	private static byte[] writeInstances(Snapshot snapshot) throws IOException {
+		Set<Long> codeIds = new HashSet<Long>();
+		for (TreeNode<ICode> codeTree : snapshot.codeTrees) {
+			for (ICode code : codeTree) {
+				codeIds.add(code.getId());
+			}
+		}
+
+		SectionOutput out = new SectionOutput();
+		out.writeIds(snapshot.createdCodeInstanceIds);
+		out.writeInt(snapshot.codeInstances.size());
+		for (ICodeInstance codeInstance : snapshot.codeInstances) {
+			out.writeLong(codeInstance.getCodeInstanceID());
+			ICode code = codeInstance.getCode();
+			// codes no longer part of the tree are stored inline
+			boolean known = codeIds.contains(code.getId());
+			out.writeBoolean(known);
+			if (known) {
+				out.writeLong(code.getId());
+			} else {
+				writeCode(out, code);
+			}
+			out.writeUri(codeInstance.getId());
+			out.writeDate(codeInstance.getCreation());
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] writeRelations(Snapshot snapshot) throws IOException {
+		SectionOutput out = new SectionOutput();
+		out.writeInt(snapshot.relations.size());
+		for (IRelation relation : snapshot.relations) {
+			writeRelation(out, relation);
+		}
+		out.writeInt(snapshot.relationInstances.size());
+		for (IRelationInstance relationInstance : snapshot.relationInstances) {
+			out.writeUri(relationInstance.getUri());
+			IRelation relation = relationInstance.getRelation();
+			// relations no longer part of the store are stored inline
+			boolean known = snapshot.relations.contains(relation);
+			out.writeBoolean(known);
+			if (known) {
+				out.writeUri(relation.getUri());
+			} else {
+				writeRelation(out, relation);
+			}
+			out.writeUri(relationInstance.getPhenomenon());
+			out.writeDate(relationInstance.getCreation());
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeRelation(SectionOutput out, IRelation relation)
+			throws IOException {
+		out.writeUri(relation.getUri());
+		out.writeUri(relation.getFrom());
+		out.writeUri(relation.getTo());
+		out.writeString(relation.getName());
+		out.writeDate(relation.getCreation());
+	}
+
+	private static byte[] writeEpisodes(Snapshot snapshot) throws IOException {
+		SectionOutput out = new SectionOutput();
+		out.writeInt(snapshot.episodes.size());
+		for (IEpisode episode : snapshot.episodes) {
+			out.writeString(episode.getIdentifier().getIdentifier());
+			TimeZoneDateRange range = episode.getDateRange();
+			out.writeBoolean(range != null);
+			if (range != null) {
+				out.writeDate(range.getStartDate());
+				out.writeDate(range.getEndDate());
+			}
+			out.writeString(episode.getCaption());
+			out.writeDate(episode.getCreation());
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] writeDimensions(Snapshot snapshot, XStream xstream)
+			throws IOException {
+		SectionOutput out = new SectionOutput();
+		out.writeInt(snapshot.dimensions.size());
+		for (Map.Entry<URI, IDimension> dimension : snapshot.dimensions
+				.entrySet()) {
+			out.writeUri(dimension.getKey());
+			out.writeString(xstream.toXML(dimension.getValue()));
+		}
+		out.writeInt(snapshot.dimensionValues.size());
+		for (Map.Entry<Pair<URI, URI>, String> dimensionValue : snapshot.dimensionValues
+				.entrySet()) {
+			out.writeUri(dimensionValue.getKey().getFirst());
+			out.writeUri(dimensionValue.getKey().getSecond());
+			out.writeString(dimensionValue.getValue());
+		}
+		out.writeInt(snapshot.properties.size());
+		for (Map.Entry<URI, List<URI>> properties : snapshot.properties
+				.entrySet()) {
+			out.writeUri(properties.getKey());
+			out.writeInt(properties.getValue().size());
+			for (URI property : properties.getValue()) {
+				out.writeUri(property);
+			}
+		}
+		out.writeString(snapshot.memos.isEmpty() ? null : xstream
+				.toXML(snapshot.memos));
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads the {@link Section}s of a binary snapshot. Each {@link Section} is
+	 * only read on request.
+	 */
+	static class Reader implements Closeable {
+
+		private final RandomAccessFile file;
+		private final String snapshotId;
+		private final Map<Section, long[]> sections = new EnumMap<Section, long[]>(
+				Section.class);
+
+		public Reader(File file) throws IOException {
+			this.file = new RandomAccessFile(file, "r");
+			try {
+				if (this.file.readInt() != MAGIC) {
+					throw new IOException(file + " is no binary code store");
+				}
+				int version = this.file.readInt();
+				if (version != VERSION) {
+					throw new IOException("Unsupported code store version "
+							+ version + " of " + file);
+				}
+				this.snapshotId = this.file.readBoolean() ? this.file
+						.readUTF() : null;
+				int count = this.file.readInt();
+				int[] ordinals = new int[count];
+				int[] lengths = new int[count];
+				for (int i = 0; i < count; i++) {
+					ordinals[i] = this.file.readUnsignedByte();
+					lengths[i] = this.file.readInt();
+				}
+				long offset = this.file.getFilePointer();
+				for (int i = 0; i < count; i++) {
+					if (ordinals[i] < Section.values().length) {
+						this.sections.put(Section.values()[ordinals[i]],
+								new long[] { offset, lengths[i] });
+					}
+					offset += lengths[i];
+				}
+			} catch (IOException e) {
+				this.file.close();
+				throw e;
+			}
+		}
+
+		public String getSnapshotId() {
+			return this.snapshotId;
+		}
+
+		private synchronized SectionInput open(Section section)
+				throws IOException {
+			long[] position = this.sections.get(section);
+			if (position == null) {
+				throw new IOException("Section " + section + " missing");
+			}
+			byte[] bytes = new byte[(int) position[1]];
+			this.file.seek(position[0]);
+			this.file.readFully(bytes);
+			return new SectionInput(bytes);
+		}
+
+		/**
+		 * Reads {@link Section#CODES}.
+		 */
+		public void readCodes(Snapshot snapshot) throws IOException {
+			SectionInput in = this.open(Section.CODES);
+			snapshot.createdIds = in.readIds(new TreeSet<Long>());
+			snapshot.codeTrees = new LinkedList<TreeNode<ICode>>();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				snapshot.codeTrees.add(readCodeTree(in));
+			}
+		}
+
+		private static TreeNode<ICode> readCodeTree(SectionInput in)
+				throws IOException {
+			TreeNode<ICode> codeNode = new TreeNode<ICode>(readCode(in));
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				codeNode.add(readCodeTree(in));
+			}
+			return codeNode;
+		}
+
+		private static ICode readCode(SectionInput in) throws IOException {
+			long id = in.readLong();
+			String caption = in.readString();
+			RGB color = in.readBoolean() ? new RGB(in.readDouble(),
+					in.readDouble(), in.readDouble(), in.readDouble()) : null;
+			return new Code(id, caption, color, in.readDate());
+		}
+
+		/**
+		 * Reads {@link Section#INSTANCES}.
+		 *
+		 * @param codes
+		 *            the {@link ICode}s read from {@link Section#CODES} by
+		 *            their ID
+		 */
+		public void readInstances(Snapshot snapshot, Map<Long, ICode> codes)
+				throws IOException {
+			SectionInput in = this.open(Section.INSTANCES);
+			snapshot.createdCodeInstanceIds = in
+					.readIds(new HashSet<Long>());
+			int count = in.readInt();
+			snapshot.codeInstances = new HashSet<ICodeInstance>(
+					Math.max(16, count * 4 / 3 + 1));
+			for (int i = 0; i < count; i++) {
+				long codeInstanceId = in.readLong();
+				ICode code;
+				if (in.readBoolean()) {
+					long codeId = in.readLong();
+					code = codes.get(codeId);
+					if (code == null) {
+						throw new IOException("Unknown "
+								+ ICode.class.getSimpleName() + " ID "
+								+ codeId);
+					}
+				} else {
+					code = readCode(in);
+				}
+				snapshot.codeInstances.add(new CodeInstance(codeInstanceId,
+						code, in.readUri(), in.readDate()));
+			}
+		}
+
+		/**
+		 * Reads {@link Section#RELATIONS}.
+		 */
+		public void readRelations(Snapshot snapshot) throws IOException {
+			SectionInput in = this.open(Section.RELATIONS);
+			int count = in.readInt();
+			Map<URI, IRelation> relations = new HashMap<URI, IRelation>();
+			for (int i = 0; i < count; i++) {
+				IRelation relation = readRelation(in);
+				relations.put(relation.getUri(), relation);
+			}
+			snapshot.relations = new HashSet<IRelation>(
+					relations.values());
+
+			count = in.readInt();
+			snapshot.relationInstances = new HashSet<IRelationInstance>();
+			for (int i = 0; i < count; i++) {
+				URI uri = in.readUri();
+				IRelation relation;
+				if (in.readBoolean()) {
+					URI relationUri = in.readUri();
+					relation = relations.get(relationUri);
+					if (relation == null) {
+						throw new IOException("Unknown "
+								+ IRelation.class.getSimpleName() + " "
+								+ relationUri);
+					}
+				} else {
+					relation = readRelation(in);
+				}
+				snapshot.relationInstances.add(new RelationInstance(uri,
+						relation, in.readUri(), in.readDate()));
+			}
+		}
+
+		private static IRelation readRelation(SectionInput in)
+				throws IOException {
+			return new Relation(in.readUri(), in.readUri(), in.readUri(),
+					in.readString(), in.readDate());
+		}
+
+		/**
+		 * Reads {@link Section#EPISODES}.
+		 */
+		public void readEpisodes(Snapshot snapshot) throws IOException {
+			SectionInput in = this.open(Section.EPISODES);
+			int count = in.readInt();
+			snapshot.episodes = new NoNullSet<IEpisode>();
+			for (int i = 0; i < count; i++) {
+				IIdentifier identifier = IdentifierFactory.createFrom(in
+						.readString());
+				TimeZoneDateRange range = in.readBoolean() ? new TimeZoneDateRange(
+						in.readDate(), in.readDate()) : null;
+				snapshot.episodes.add(Episode.restore(identifier, range,
+						in.readString(), in.readDate()));
+			}
+		}
+
+		/**
+		 * Reads {@link Section#DIMENSIONS}.
+		 *
+		 * @param xstream
+		 *            used to read the embedded XML
+		 */
+		public void readDimensions(Snapshot snapshot, XStream xstream)
+				throws IOException {
+			SectionInput in = this.open(Section.DIMENSIONS);
+			int count = in.readInt();
+			snapshot.dimensions = new HashMap<URI, IDimension>();
+			for (int i = 0; i < count; i++) {
+				snapshot.dimensions.put(in.readUri(),
+						(IDimension) xstream.fromXML(in.readString()));
+			}
+			count = in.readInt();
+			snapshot.dimensionValues = new HashMap<Pair<URI, URI>, String>();
+			for (int i = 0; i < count; i++) {
+				snapshot.dimensionValues.put(
+						new Pair<URI, URI>(in.readUri(), in.readUri()),
+						in.readString());
+			}
+			count = in.readInt();
+			snapshot.properties = new HashMap<URI, List<URI>>();
+			for (int i = 0; i < count; i++) {
+				URI uri = in.readUri();
+				int size = in.readInt();
+				List<URI> properties = new ArrayList<URI>(size);
+				for (int j = 0; j < size; j++) {
+					properties.add(in.readUri());
+				}
+				snapshot.properties.put(uri, properties);
+			}
+			String memos = in.readString();
+			snapshot.memos = new HashMap<Object, String>();
+			if (memos != null) {
+				@SuppressWarnings("unchecked")
+				Map<Object, String> legacyMemos = (Map<Object, String>) xstream
+						.fromXML(memos);
+				snapshot.memos.putAll(legacyMemos);
+			}
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			this.file.close();
+		}
+	}
+
+	/**
+	 * Collects the content of a {@link Section} and replaces strings by their
+	 * index in the dictionary written in front of it.
+	 */
+	private static class SectionOutput {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(this.bytes);
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+
+		public void writeInt(int value) throws IOException {
+			this.out.writeInt(value);
+		}
+
+		public void writeLong(long value) throws IOException {
+			this.out.writeLong(value);
+		}
+
+		public void writeDouble(double value) throws IOException {
+			this.out.writeDouble(value);
+		}
+
+		public void writeBoolean(boolean value) throws IOException {
+			this.out.writeBoolean(value);
+		}
+
+		public void writeString(String string) throws IOException {
+			if (string == null) {
+				this.out.writeInt(-1);
+				return;
+			}
+			Integer index = this.indexes.get(string);
+			if (index == null) {
+				index = this.strings.size();
+				this.strings.add(string);
+				this.indexes.put(string, index);
+			}
+			this.out.writeInt(index);
+		}
+
+		public void writeUri(URI uri) throws IOException {
+			this.writeString(uri != null ? uri.getRawURI().toString() : null);
+		}
+
+		public void writeDate(TimeZoneDate date) throws IOException {
+			this.out.writeBoolean(date != null);
+			if (date != null) {
+				this.out.writeLong(date.getTime());
+				this.writeString(date.getTimeZone().getID());
+			}
+		}
+
+		public void writeIds(Set<Long> ids) throws IOException {
+			this.out.writeInt(ids.size());
+			for (long id : ids) {
+				this.out.writeLong(id);
+			}
+		}
+
+		public byte[] toByteArray() throws IOException {
+			ByteArrayOutputStream section = new ByteArrayOutputStream(
+					this.bytes.size() + this.strings.size() * 32);
+			DataOutputStream out = new DataOutputStream(section);
+			out.writeInt(this.strings.size());
+			for (String string : this.strings) {
+				byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(utf8.length);
+				out.write(utf8);
+			}
+			this.out.flush();
+			this.bytes.writeTo(out);
+			out.flush();
+			return section.toByteArray();
+		}
+	}
+
+	/**
+	 * Reads a {@link Section} written by {@link SectionOutput}.
+	 */
+	private static class SectionInput {
+		private final DataInputStream in;
+		private final String[] strings;
+		private final URI[] uris;
+		private final Map<String, TimeZone> timeZones = new HashMap<String, TimeZone>();
+
+		public SectionInput(byte[] bytes) throws IOException {
+			this.in = new DataInputStream(new ByteArrayInputStream(bytes));
+			int count = this.in.readInt();
+			this.strings = new String[count];
+			this.uris = new URI[count];
+			for (int i = 0; i < count; i++) {
+				byte[] utf8 = new byte[this.in.readInt()];
+				this.in.readFully(utf8);
+				this.strings[i] = new String(utf8, StandardCharsets.UTF_8);
+			}
+		}
+
+		public int readInt() throws IOException {
+			return this.in.readInt();
+		}
+
+		public long readLong() throws IOException {
+			return this.in.readLong();
+		}
+
+		public double readDouble() throws IOException {
+			return this.in.readDouble();
+		}
+
+		public boolean readBoolean() throws IOException {
+			return this.in.readBoolean();
+		}
+
+		public String readString() throws IOException {
+			int index = this.in.readInt();
+			return index >= 0 ? this.strings[index] : null;
+		}
+
+		/**
+		 * Returns the {@link URI} with the read index. Equal {@link URI}s
+		 * share one instance.
+		 */
+		public URI readUri() throws IOException {
+			int index = this.in.readInt();
+			if (index < 0) {
+				return null;
+			}
+			if (this.uris[index] == null) {
+				this.uris[index] = new URI(this.strings[index]);
+			}
+			return this.uris[index];
+		}
+
+		public TimeZoneDate readDate() throws IOException {
+			if (!this.in.readBoolean()) {
+				return null;
+			}
+			long time = this.in.readLong();
+			String id = this.readString();
+			TimeZone timeZone = this.timeZones.get(id);
+			if (timeZone == null) {
+				timeZone = TimeZone.getTimeZone(id);
+				this.timeZones.put(id, timeZone);
+			}
+			return new TimeZoneDate(new Date(time), timeZone);
+		}
+
+		public <T extends Set<Long>> T readIds(T ids) throws IOException {
+			int count = this.in.readInt();
+			for (int i = 0; i < count; i++) {
+				ids.add(this.in.readLong());
+			}
+			return ids;
+		}
+	}
+}
@@ -75,7 +75,14 @@ public class CodeStoreFactory {
 		while (CODE_STORE == null) {
 			File codeServiceFile = this.getCodeStoreFile();
 			try {
-				CODE_STORE = CodeStore.load(codeServiceFile);
+				CodeStore codeStore = (CodeStore) CodeStore
+						.load(codeServiceFile);
+				codeStore.setBackupRetention(new CodeStoreBackups.RetentionPolicy(
+						preferenceUtil.getBackupsKeepLatest(), preferenceUtil
+								.getBackupsKeepHourly(), preferenceUtil
+								.getBackupsKeepDaily()));
+				codeStore.setBackgroundWriting(true);
+				CODE_STORE = codeStore;
 			} catch (CodeStoreReadException e) {
 				MessageDialog messageDialog = new MessageDialog(shell,
 						"Grounded Theory File", null,
@@ -0,0 +1,518 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
+import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICodeInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IRelation;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IRelationInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.model.Relation;
+import de.fu_berlin.imp.apiua.groundedtheory.storage.ICodeStore;
+
+/**
+ * Append-only log of the mutations applied to a {@link CodeStore} since its
+ * last snapshot was written.
+ * <p>
+ * The journal lives next to the snapshot (<code>CodeStore.xml.journal</code>)
+ * and starts with the ID of the snapshot it continues. Each record is length
+ * prefixed and protected by a checksum so a torn write at the end of the file
+ * is detected and ignored on replay. Records only reference {@link ICode}s and
+ * {@link ICodeInstance}s by their IDs and are written in a way that replaying
+ * an already applied record has no effect.
+ *
+ * @author bkahlert
+ */
+class CodeStoreJournal {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(CodeStoreJournal.class);
+
+	private static final String EXTENSION = ".journal";
+	private static final int MAGIC = 0x43534A31; // CSJ1
+
+	/**
+	 * A single mutation of a {@link CodeStore}.
+	 */
+	static interface Entry {
+		/**
+		 * Applies this {@link Entry} to the given {@link CodeStore} unless it
+		 * has already been applied.
+		 *
+		 * @param codeStore
+		 * @throws Exception
+		 */
+		void replay(CodeStore codeStore) throws Exception;
+	}
+
+	static class AddCode implements Entry {
+		private final ICode code;
+
+		AddCode(ICode code) {
+			this.code = code;
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			if (!codeStore.codeExists(this.code)) {
+				codeStore.addAndSaveCode(this.code);
+			}
+		}
+	}
+
+	static class AddCodeInstances implements Entry {
+		private final long[] codeInstanceIds;
+		private final long[] codeIds;
+		private final String[] ids;
+		private final TimeZoneDate[] creations;
+
+		AddCodeInstances(ICodeInstance[] codeInstances) {
+			this.codeInstanceIds = new long[codeInstances.length];
+			this.codeIds = new long[codeInstances.length];
+			this.ids = new String[codeInstances.length];
+			this.creations = new TimeZoneDate[codeInstances.length];
+			for (int i = 0; i < codeInstances.length; i++) {
+				this.codeInstanceIds[i] = codeInstances[i].getCodeInstanceID();
+				this.codeIds[i] = codeInstances[i].getCode().getId();
+				this.ids[i] = codeInstances[i].getId().toString();
+				this.creations[i] = codeInstances[i].getCreation();
+			}
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			List<ICodeInstance> codeInstances = new ArrayList<ICodeInstance>();
+			for (int i = 0; i < this.codeInstanceIds.length; i++) {
+				if (codeStore.getCodeInstance(this.codeInstanceIds[i]) != null) {
+					continue;
+				}
+				ICode code = codeStore.getCode(this.codeIds[i]);
+				if (code == null) {
+					LOGGER.warn("Skipping journaled "
+							+ ICodeInstance.class.getSimpleName() + " "
+							+ this.codeInstanceIds[i] + " of missing "
+							+ ICode.class.getSimpleName() + " "
+							+ this.codeIds[i]);
+					continue;
+				}
+				codeInstances.add(new CodeInstance(this.codeInstanceIds[i],
+						code, new URI(this.ids[i]), this.creations[i]));
+			}
+			if (codeInstances.size() > 0) {
+				codeStore.addAndSaveCodeInstances(codeInstances
+						.toArray(new ICodeInstance[0]));
+			}
+		}
+	}
+
+	static class RemoveCode implements Entry {
+		private final long codeId;
+		private final boolean deleteInstances;
+
+		RemoveCode(ICode code, boolean deleteInstances) {
+			this.codeId = code.getId();
+			this.deleteInstances = deleteInstances;
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			ICode code = codeStore.getCode(this.codeId);
+			if (code != null) {
+				codeStore.removeAndSaveCode(code, this.deleteInstances);
+			}
+		}
+	}
+
+	static class RemoveCodeInstance implements Entry {
+		private final long codeInstanceId;
+
+		RemoveCodeInstance(ICodeInstance codeInstance) {
+			this.codeInstanceId = codeInstance.getCodeInstanceID();
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			ICodeInstance codeInstance = codeStore
+					.getCodeInstance(this.codeInstanceId);
+			if (codeInstance != null) {
+				codeStore.deleteCodeInstance(codeInstance);
+			}
+		}
+	}
+
+	static class RemoveCodeInstances implements Entry {
+		private final long codeId;
+
+		RemoveCodeInstances(ICode code) {
+			this.codeId = code.getId();
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			ICode code = codeStore.getCode(this.codeId);
+			if (code != null) {
+				codeStore.deleteCodeInstances(code);
+			}
+		}
+	}
+
+	static class SetParent implements Entry {
+		private final long codeId;
+		private final Long parentCodeId;
+
+		SetParent(ICode code, ICode parentCode) {
+			this.codeId = code.getId();
+			this.parentCodeId = parentCode != null ? parentCode.getId() : null;
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			ICode code = codeStore.getCode(this.codeId);
+			ICode parentCode = this.parentCodeId != null ? codeStore
+					.getCode(this.parentCodeId) : null;
+			if (code == null
+					|| (this.parentCodeId != null && parentCode == null)) {
+				return;
+			}
+			ICode currentParentCode = codeStore.getParent(code);
+			if (currentParentCode == null ? parentCode != null
+					: !currentParentCode.equals(parentCode)) {
+				codeStore.setParent(code, parentCode);
+			}
+		}
+	}
+
+	static class AddRelation implements Entry {
+		private final IRelation relation;
+
+		AddRelation(IRelation relation) {
+			this.relation = relation;
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			if (!codeStore.getRelations().contains(this.relation)) {
+				codeStore.addRelation(this.relation);
+			}
+		}
+	}
+
+	static class ReplaceRelation implements Entry {
+		private final IRelation relation;
+		private final Relation newRelation;
+
+		ReplaceRelation(IRelation relation, Relation newRelation) {
+			this.relation = relation;
+			this.newRelation = newRelation;
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			if (codeStore.getRelations().contains(this.relation)) {
+				codeStore.replaceRelation(this.relation, this.newRelation);
+			}
+		}
+	}
+
+	static class DeleteRelation implements Entry {
+		private final IRelation relation;
+
+		DeleteRelation(IRelation relation) {
+			this.relation = relation;
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			if (codeStore.getRelations().contains(this.relation)) {
+				codeStore.deleteRelation(this.relation);
+			}
+		}
+	}
+
+	static class AddRelationInstance implements Entry {
+		private final IRelationInstance relationInstance;
+
+		AddRelationInstance(IRelationInstance relationInstance) {
+			this.relationInstance = relationInstance;
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			if (!codeStore.getRelationInstances().contains(
+					this.relationInstance)) {
+				codeStore.addRelationInstance(this.relationInstance);
+			}
+		}
+	}
+
+	static class DeleteRelationInstance implements Entry {
+		private final IRelationInstance relationInstance;
+
+		DeleteRelationInstance(IRelationInstance relationInstance) {
+			this.relationInstance = relationInstance;
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			if (codeStore.getRelationInstances().contains(
+					this.relationInstance)) {
+				codeStore.deleteRelationInstance(this.relationInstance);
+			}
+		}
+	}
+
+	/**
+	 * Mutations of a batch that are written as one record so that they are
+	 * either replayed completely or not at all.
+	 */
+	static class Batch implements Entry {
+		private final List<Entry> entries;
+
+		Batch(List<Entry> entries) {
+			this.entries = new ArrayList<Entry>(entries);
+		}
+
+		int size() {
+			return this.entries.size();
+		}
+
+		@Override
+		public void replay(CodeStore codeStore) throws Exception {
+			for (Entry entry : this.entries) {
+				entry.replay(codeStore);
+			}
+		}
+	}
+
+	private static XStream xstream;
+
+	static {
+		xstream = new XStream();
+		xstream.alias("addCode", AddCode.class);
+		xstream.alias("addCodeInstances", AddCodeInstances.class);
+		xstream.alias("removeCode", RemoveCode.class);
+		xstream.alias("removeCodeInstance", RemoveCodeInstance.class);
+		xstream.alias("removeCodeInstances", RemoveCodeInstances.class);
+		xstream.alias("setParent", SetParent.class);
+		xstream.alias("addRelation", AddRelation.class);
+		xstream.alias("replaceRelation", ReplaceRelation.class);
+		xstream.alias("deleteRelation", DeleteRelation.class);
+		xstream.alias("addRelationInstance", AddRelationInstance.class);
+		xstream.alias("deleteRelationInstance", DeleteRelationInstance.class);
+		xstream.alias("batch", Batch.class);
+		xstream.registerConverter(new CodeStore.URIConverter());
+	}
+
+	/**
+	 * Returns the journal {@link File} that belongs to the given
+	 * {@link ICodeStore} {@link File}.
+	 *
+	 * @param codeStoreFile
+	 * @return
+	 */
+	static File getJournalFile(File codeStoreFile) {
+		return new File(codeStoreFile.getAbsolutePath() + EXTENSION);
+	}
+
+	private final File journalFile;
+	private int size = 0;
+
+	CodeStoreJournal(File codeStoreFile) {
+		this.journalFile = getJournalFile(codeStoreFile);
+	}
+
+	File getFile() {
+		return this.journalFile;
+	}
+
+	/**
+	 * Returns the number of mutations appended since the last
+	 * {@link #reset(String)}.
+	 *
+	 * @return
+	 */
+	synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Reads all intact records written for the snapshot with the given ID.
+	 * <p>
+	 * A journal that was written for another snapshot is stale and deleted.
+	 *
+	 * @param snapshotId
+	 * @return the records in the order they were appended
+	 * @throws IOException
+	 */
+	synchronized List<Entry> read(String snapshotId) throws IOException {
+		List<Entry> entries = new LinkedList<Entry>();
+		this.size = 0;
+		if (!this.journalFile.exists()) {
+			return entries;
+		}
+
+		long validLength = 0;
+		boolean stale = false;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(this.journalFile)))) {
+			if (in.readInt() != MAGIC || snapshotId == null
+					|| !snapshotId.equals(in.readUTF())) {
+				stale = true;
+			} else {
+				validLength = 4 + 2 + snapshotId
+						.getBytes(StandardCharsets.UTF_8).length;
+				validLength += this.readEntries(in, entries);
+			}
+		} catch (EOFException e) {
+			LOGGER.warn("Ignoring journal with incomplete header "
+					+ this.journalFile);
+			this.delete();
+			return entries;
+		}
+
+		if (stale) {
+			LOGGER.warn("Ignoring stale journal " + this.journalFile);
+			this.delete();
+			return entries;
+		}
+
+		if (validLength < this.journalFile.length()) {
+			try (RandomAccessFile file = new RandomAccessFile(this.journalFile,
+					"rw")) {
+				file.setLength(validLength);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Reads the records following the header until the first incomplete,
+	 * corrupt or unreadable one.
+	 *
+	 * @param in
+	 * @param entries
+	 *            the read records are added to
+	 * @return the number of bytes of the intact records
+	 * @throws IOException
+	 */
+	private long readEntries(DataInputStream in, List<Entry> entries)
+			throws IOException {
+		long validLength = 0;
+		while (true) {
+			int length;
+			try {
+				length = in.readInt();
+			} catch (EOFException e) {
+				break;
+			}
+			byte[] payload = new byte[length];
+			long checksum;
+			try {
+				in.readFully(payload);
+				checksum = in.readLong();
+			} catch (EOFException e) {
+				LOGGER.warn("Truncating incomplete record in "
+						+ this.journalFile);
+				break;
+			}
+			if (checksum(payload) != checksum) {
+				LOGGER.warn("Truncating corrupt record in "
+						+ this.journalFile);
+				break;
+			}
+			Entry entry;
+			try {
+				entry = (Entry) xstream.fromXML(new String(payload,
+						StandardCharsets.UTF_8));
+			} catch (XStreamException | ClassCastException e) {
+				LOGGER.error("Truncating unreadable record in "
+						+ this.journalFile, e);
+				break;
+			}
+			entries.add(entry);
+			this.size += size(entry);
+			validLength += 4 + length + 8;
+		}
+		return validLength;
+	}
+
+	/**
+	 * Appends the given {@link Entry} and forces it to disk.
+	 *
+	 * @param entry
+	 * @throws IOException
+	 */
+	synchronized void append(Entry entry) throws IOException {
+		byte[] payload = xstream.toXML(entry).getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream record = new ByteArrayOutputStream(
+				payload.length + 12);
+		DataOutputStream out = new DataOutputStream(record);
+		out.writeInt(payload.length);
+		out.write(payload);
+		out.writeLong(checksum(payload));
+		out.flush();
+
+		try (FileOutputStream journal = new FileOutputStream(this.journalFile,
+				true)) {
+			journal.write(record.toByteArray());
+			journal.getFD().sync();
+		}
+		this.size += size(entry);
+	}
+
+	/**
+	 * Discards all records and starts a new journal for the snapshot with the
+	 * given ID.
+	 *
+	 * @param snapshotId
+	 * @throws IOException
+	 */
+	synchronized void reset(String snapshotId) throws IOException {
+		try (FileOutputStream journal = new FileOutputStream(this.journalFile,
+				false)) {
+			DataOutputStream out = new DataOutputStream(journal);
+			out.writeInt(MAGIC);
+			out.writeUTF(snapshotId);
+			out.flush();
+			journal.getFD().sync();
+		}
+		this.size = 0;
+	}
+
+	synchronized void delete() {
+		if (this.journalFile.exists() && !this.journalFile.delete()) {
+			LOGGER.error("Could not delete " + this.journalFile);
+		}
+		this.size = 0;
+	}
+
+	private static int size(Entry entry) {
+		return entry instanceof Batch ? ((Batch) entry).size() : 1;
+	}
+
+	private static long checksum(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return crc.getValue();
+	}
+}
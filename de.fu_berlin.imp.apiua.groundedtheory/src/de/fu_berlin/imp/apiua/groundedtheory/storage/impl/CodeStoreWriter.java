@@ -0,0 +1,304 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.log4j.Logger;
+
+import de.fu_berlin.imp.apiua.groundedtheory.storage.exceptions.CodeStoreWriteException;
+
+/**
+ * Writes the changes of a {@link CodeStore} on a background thread.
+ * <p>
+ * Changes are collected and written together as soon as no further change
+ * occurred for {@link #DEBOUNCE} milliseconds but at the latest after
+ * {@link #MAX_DELAY} milliseconds. Collected {@link CodeStoreJournal.Entry}s
+ * are appended as one record, repeated changes of the same memo only write the
+ * last version and a requested snapshot makes all collected
+ * {@link CodeStoreJournal.Entry}s obsolete.
+ * <p>
+ * Lock order is {@link CodeStore#getLock()}, {@link #writeLock}, {@link #lock}.
+ * The {@link CodeStore#getLock() lock} of the {@link CodeStore} is only held
+ * while collecting the changes, not while writing them.
+ *
+ * @author bkahlert
+ */
+class CodeStoreWriter {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(CodeStoreWriter.class);
+
+	static final long DEBOUNCE = 500;
+	static final long MAX_DELAY = 5000;
+
+	/**
+	 * Time to wait after a failed write before trying again.
+	 */
+	static final long RETRY_DELAY = 5000;
+
+	private final CodeStore codeStore;
+
+	/**
+	 * Guards the pending changes.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Serializes the writes of the background thread and {@link #flush()}.
+	 */
+	private final Object writeLock = new Object();
+
+	private List<CodeStoreJournal.Entry> entries = new ArrayList<CodeStoreJournal.Entry>();
+
+	/**
+	 * Memos to be written by their basename; an empty string removes a memo.
+	 */
+	private Map<String, String> memos = new LinkedHashMap<String, String>();
+
+	private boolean saveRequested = false;
+
+	/**
+	 * Time of the first and last change still pending; 0 if nothing is
+	 * pending.
+	 */
+	private long firstChange = 0;
+	private long lastChange = 0;
+
+	private long retryAfter = 0;
+	private boolean writing = false;
+	private boolean closed = false;
+
+	private final Thread thread;
+
+	CodeStoreWriter(CodeStore codeStore) {
+		this.codeStore = codeStore;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				CodeStoreWriter.this.run();
+			}
+		}, CodeStoreWriter.class.getSimpleName() + " "
+				+ codeStore.getCodeStoreFile());
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public void append(CodeStoreJournal.Entry entry) {
+		synchronized (this.lock) {
+			this.entries.add(entry);
+			this.changed();
+		}
+	}
+
+	public void saveMemo(String basename, String html) {
+		synchronized (this.lock) {
+			// re-insert so memos are written in the order of their last change
+			this.memos.remove(basename);
+			this.memos.put(basename, html != null ? html : "");
+			this.changed();
+		}
+	}
+
+	public void requestSave() {
+		synchronized (this.lock) {
+			this.saveRequested = true;
+			this.changed();
+		}
+	}
+
+	/**
+	 * Returns the memo not yet written for the given basename.
+	 *
+	 * @param basename
+	 * @return null if no change is pending; an empty string if the memo is to
+	 *         be removed
+	 */
+	public String getPendingMemo(String basename) {
+		synchronized (this.lock) {
+			return this.memos.get(basename);
+		}
+	}
+
+	/**
+	 * Returns true if changes are pending or currently written.
+	 *
+	 * @return
+	 */
+	public boolean isDirty() {
+		synchronized (this.lock) {
+			return this.firstChange != 0 || this.writing;
+		}
+	}
+
+	private void changed() {
+		long now = System.currentTimeMillis();
+		if (this.firstChange == 0) {
+			this.firstChange = now;
+		}
+		this.lastChange = now;
+		this.lock.notifyAll();
+	}
+
+	/**
+	 * Writes all pending changes on the calling thread.
+	 *
+	 * @throws CodeStoreWriteException
+	 */
+	public void flush() throws CodeStoreWriteException {
+		this.write();
+	}
+
+	/**
+	 * Writes all pending changes and stops the background thread.
+	 *
+	 * @throws CodeStoreWriteException
+	 */
+	public void close() throws CodeStoreWriteException {
+		synchronized (this.lock) {
+			this.closed = true;
+			this.lock.notifyAll();
+		}
+		this.flush();
+	}
+
+	private void run() {
+		try {
+			while (true) {
+				synchronized (this.lock) {
+					while (!this.closed) {
+						if (this.firstChange == 0) {
+							this.lock.wait();
+							continue;
+						}
+						long due = Math.max(Math.min(this.lastChange
+								+ DEBOUNCE, this.firstChange + MAX_DELAY),
+								this.retryAfter);
+						long now = System.currentTimeMillis();
+						if (now >= due) {
+							break;
+						}
+						this.lock.wait(due - now);
+					}
+					if (this.closed) {
+						return;
+					}
+				}
+				try {
+					this.write();
+				} catch (CodeStoreWriteException e) {
+					LOGGER.error("Error writing "
+							+ this.codeStore.getCodeStoreFile()
+							+ "; retrying in " + RETRY_DELAY + "ms", e);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes the pending changes. A snapshot is postponed while a batch is
+	 * running since it must not contain uncommitted changes.
+	 *
+	 * @throws CodeStoreWriteException
+	 */
+	private void write() throws CodeStoreWriteException {
+		try {
+			// needs the write lock
+			this.codeStore.awaitSections();
+		} catch (IllegalStateException e) {
+			throw new CodeStoreWriteException(e);
+		}
+		Lock storeLock = this.codeStore.getLock().readLock();
+		storeLock.lock();
+		boolean storeLocked = true;
+		try {
+			synchronized (this.writeLock) {
+				List<CodeStoreJournal.Entry> entries;
+				Map<String, String> memos;
+				CodeStoreBinaryFormat.Snapshot snapshot = null;
+				boolean save;
+				synchronized (this.lock) {
+					if (this.firstChange == 0) {
+						return;
+					}
+					save = this.saveRequested
+							|| this.codeStore.getSnapshotId() == null;
+					boolean postpone = save && this.codeStore.isBatchRunning();
+					if (postpone && this.codeStore.getSnapshotId() == null) {
+						// journal entries need a snapshot to refer to
+						this.lastChange = System.currentTimeMillis();
+						return;
+					}
+					entries = this.entries;
+					memos = this.memos;
+					this.entries = new ArrayList<CodeStoreJournal.Entry>();
+					this.memos = new LinkedHashMap<String, String>();
+					if (postpone) {
+						save = false;
+						this.lastChange = System.currentTimeMillis();
+					} else {
+						this.saveRequested = false;
+						this.firstChange = 0;
+					}
+					this.writing = true;
+				}
+				if (save) {
+					snapshot = this.codeStore.captureSnapshot();
+				}
+				storeLock.unlock();
+				storeLocked = false;
+
+				boolean written = false;
+				try {
+					for (Map.Entry<String, String> memo : memos.entrySet()) {
+						this.codeStore.writeMemo(memo.getKey(), memo.getValue());
+					}
+					this.codeStore.write(entries, snapshot);
+					written = true;
+				} catch (IOException e) {
+					throw new CodeStoreWriteException(e);
+				} finally {
+					synchronized (this.lock) {
+						if (!written) {
+							this.requeue(memos);
+						}
+						this.retryAfter = written ? 0 : System
+								.currentTimeMillis() + RETRY_DELAY;
+						this.writing = false;
+						this.lock.notifyAll();
+					}
+				}
+			}
+		} finally {
+			if (storeLocked) {
+				storeLock.unlock();
+			}
+		}
+
+		if (this.codeStore.needsCompaction()) {
+			this.requestSave();
+		}
+	}
+
+	/**
+	 * Puts back the changes of a failed write. Newer changes of the same memo
+	 * win. As the journal might have been left incomplete, a snapshot is
+	 * requested instead of appending the {@link CodeStoreJournal.Entry}s
+	 * again.
+	 */
+	private void requeue(Map<String, String> memos) {
+		for (Map.Entry<String, String> memo : memos.entrySet()) {
+			if (!this.memos.containsKey(memo.getKey())) {
+				this.memos.put(memo.getKey(), memo.getValue());
+			}
+		}
+		this.entries.clear();
+		this.saveRequested = true;
+		this.changed();
+	}
+}
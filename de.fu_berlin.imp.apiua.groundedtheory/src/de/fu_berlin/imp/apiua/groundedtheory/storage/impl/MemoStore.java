@@ -0,0 +1,311 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.bkahlert.nebula.utils.StringUtils;
+
+/**
+ * Reads and writes the <code>.memo.html</code> files a {@link CodeStore}
+ * keeps next to its snapshot.
+ * <p>
+ * The memo directory is listed once. Afterwards the existence of a memo is
+ * answered by a filename index and the most recently used memos are kept in
+ * memory together with their plain text form. Changes made by other programs
+ * are picked up by watching the directory.
+ * <p>
+ * There is only one {@link MemoStore} per directory so that all
+ * {@link CodeStore}s working on the same directory see each other's changes
+ * immediately.
+ *
+ * @author bkahlert
+ */
+class MemoStore {
+
+	private static final Logger LOGGER = Logger.getLogger(MemoStore.class);
+
+	static final String EXTENSION = ".memo.html";
+
+	/**
+	 * Maximum number of memos kept in memory per directory.
+	 */
+	static final int CACHE_SIZE = 1000;
+
+	private static final Map<File, MemoStore> INSTANCES = new HashMap<File, MemoStore>();
+
+	/**
+	 * Returns the {@link MemoStore} responsible for the given directory.
+	 *
+	 * @param directory
+	 * @return
+	 */
+	static MemoStore get(File directory) {
+		File key = directory.getAbsoluteFile();
+		synchronized (INSTANCES) {
+			MemoStore memoStore = INSTANCES.get(key);
+			if (memoStore == null) {
+				memoStore = new MemoStore(key);
+				INSTANCES.put(key, memoStore);
+			}
+			return memoStore;
+		}
+	}
+
+	private static class Memo {
+		private final String html;
+		private String plain;
+
+		public Memo(String html) {
+			this.html = html;
+		}
+
+		public String getPlain() {
+			if (this.plain == null && !this.html.trim().isEmpty()) {
+				this.plain = StringUtils.htmlToPlain(this.html);
+			}
+			return this.plain;
+		}
+	}
+
+	private final File directory;
+
+	/**
+	 * Names of the memo files contained in {@link #directory}; null until the
+	 * directory was listed.
+	 */
+	private Set<String> filenames = null;
+
+	private final Map<String, Memo> memos = new LinkedHashMap<String, Memo>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Memo> eldest) {
+			return this.size() > CACHE_SIZE;
+		}
+	};
+
+	private WatchService watchService = null;
+
+	private MemoStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the memo saved for the given basename.
+	 *
+	 * @param basename
+	 * @return null if no memo exists
+	 * @throws IOException
+	 */
+	public String load(String basename) throws IOException {
+		Memo memo = this.getMemo(basename);
+		return memo != null ? memo.html : null;
+	}
+
+	/**
+	 * Returns the plain text form of the memo saved for the given basename.
+	 *
+	 * @param basename
+	 * @return null if no or only an empty memo exists
+	 * @throws IOException
+	 */
+	public String loadPlain(String basename) throws IOException {
+		Memo memo = this.getMemo(basename);
+		return memo != null ? memo.getPlain() : null;
+	}
+
+	/**
+	 * Saves the memo for the given basename.
+	 *
+	 * @param basename
+	 * @param html
+	 *            if null or empty the memo is removed
+	 * @throws IOException
+	 */
+	public synchronized void save(String basename, String html)
+			throws IOException {
+		this.index();
+		String filename = this.getFilename(basename);
+		if (filename == null) {
+			filename = basename + EXTENSION;
+		}
+		File memoFile = new File(this.directory, filename);
+		if (html == null || html.trim().equals("")) {
+			if (memoFile.exists()) {
+				memoFile.delete();
+			}
+			this.filenames.remove(filename);
+			this.memos.remove(filename);
+		} else {
+			try {
+				FileUtils.writeStringToFile(memoFile, html, "UTF-8");
+			} catch (FileNotFoundException e) {
+				// basename not suitable as a filename
+				this.save(DigestUtils.md5Hex(basename), html);
+				return;
+			}
+			this.filenames.add(filename);
+			this.memos.put(filename, new Memo(html));
+			this.watch();
+		}
+	}
+
+	private synchronized Memo getMemo(String basename) throws IOException {
+		this.index();
+		String filename = this.getFilename(basename);
+		if (filename == null) {
+			return null;
+		}
+		Memo memo = this.memos.get(filename);
+		if (memo == null) {
+			try {
+				memo = new Memo(FileUtils.readFileToString(new File(
+						this.directory, filename), "UTF-8"));
+			} catch (FileNotFoundException e) {
+				this.filenames.remove(filename);
+				return null;
+			}
+			this.memos.put(filename, memo);
+		}
+		return memo;
+	}
+
+	/**
+	 * Returns the name of the existing memo file for the given basename.
+	 *
+	 * @param basename
+	 * @return null if no memo file exists
+	 */
+	private String getFilename(String basename) {
+		String hashed = DigestUtils.md5Hex(basename) + EXTENSION;
+		if (this.filenames.contains(hashed)) {
+			return hashed;
+		}
+		String plain = basename + EXTENSION;
+		if (this.filenames.contains(plain)) {
+			return plain;
+		}
+		return null;
+	}
+
+	/**
+	 * Lists the memo files of {@link #directory} if not already done.
+	 */
+	private void index() {
+		if (this.filenames != null) {
+			return;
+		}
+		this.filenames = new HashSet<String>();
+		String[] filenames = this.directory.list();
+		if (filenames != null) {
+			for (String filename : filenames) {
+				if (filename.endsWith(EXTENSION)) {
+					this.filenames.add(filename);
+				}
+			}
+		}
+		this.watch();
+	}
+
+	/**
+	 * Starts watching {@link #directory} for changes made by other programs
+	 * if not already done.
+	 */
+	private void watch() {
+		if (this.watchService != null || !this.directory.isDirectory()) {
+			return;
+		}
+		try {
+			final WatchService watchService = this.directory.toPath()
+					.getFileSystem().newWatchService();
+			this.directory.toPath().register(watchService, ENTRY_CREATE,
+					ENTRY_DELETE, ENTRY_MODIFY);
+			this.watchService = watchService;
+			Thread watcher = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					MemoStore.this.processEvents(watchService);
+				}
+			}, MemoStore.class.getSimpleName() + " " + this.directory);
+			watcher.setDaemon(true);
+			watcher.start();
+		} catch (IOException e) {
+			LOGGER.warn("Could not watch " + this.directory
+					+ " for memo changes", e);
+		}
+	}
+
+	private void processEvents(WatchService watchService) {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == OVERFLOW) {
+						this.invalidate();
+					} else {
+						this.invalidate(((Path) event.context()).toString());
+					}
+				}
+				if (!key.reset()) {
+					// directory no longer accessible
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+		}
+
+		// the directory is listed and watched again on next access
+		synchronized (this) {
+			this.invalidate();
+			this.watchService = null;
+		}
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			LOGGER.warn("Error closing memo watcher for " + this.directory, e);
+		}
+	}
+
+	private synchronized void invalidate(String filename) {
+		if (!filename.endsWith(EXTENSION) || this.filenames == null) {
+			return;
+		}
+		if (new File(this.directory, filename).exists()) {
+			this.filenames.add(filename);
+		} else {
+			this.filenames.remove(filename);
+		}
+		this.memos.remove(filename);
+	}
+
+	/**
+	 * Drops the filename index and all cached memos.
+	 */
+	private synchronized void invalidate() {
+		this.filenames = null;
+		this.memos.clear();
+	}
+}
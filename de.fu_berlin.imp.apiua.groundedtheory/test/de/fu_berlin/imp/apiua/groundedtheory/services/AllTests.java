@@ -4,8 +4,11 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import de.fu_berlin.imp.apiua.groundedtheory.services.impl.CodeServiceListenerNotifierTest;
+
 @RunWith(Suite.class)
-@SuiteClasses({ CodeServiceTest.class })
+@SuiteClasses({ CodeServiceTest.class,
+		CodeServiceListenerNotifierTest.class })
 public class AllTests {
 
 }
@@ -0,0 +1,115 @@
+package de.fu_berlin.imp.apiua.groundedtheory.services.impl;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.groundedtheory.model.IRelation;
+import de.fu_berlin.imp.apiua.groundedtheory.services.ICodeServiceListener;
+
+public class CodeServiceListenerNotifierTest {
+
+	@Rule
+	public JUnitRuleMockery context = new JUnitRuleMockery() {
+		{
+			this.setThreadingPolicy(new Synchroniser());
+		}
+	};
+
+	private static Set<IRelation> set(IRelation... relations) {
+		return new HashSet<IRelation>(Arrays.asList(relations));
+	}
+
+	@Test
+	public void testBatch() {
+		final IRelation a = this.context.mock(IRelation.class, "a");
+		final IRelation b = this.context.mock(IRelation.class, "b");
+		final IRelation c = this.context.mock(IRelation.class, "c");
+		final ICodeServiceListener listener = this.context
+				.mock(ICodeServiceListener.class);
+		final Sequence sequence = this.context.sequence("notifications");
+		this.context.checking(new Expectations() {
+			{
+				this.oneOf(listener).relationsAdded(set(a, b));
+				this.inSequence(sequence);
+				this.oneOf(listener).relationsDeleted(set(a));
+				this.inSequence(sequence);
+				this.oneOf(listener).relationsAdded(set(c));
+				this.inSequence(sequence);
+			}
+		});
+
+		CodeServiceListenerNotifier notifier = new CodeServiceListenerNotifier();
+		notifier.addCodeServiceListener(listener);
+		notifier.beginBatch();
+		notifier.relationsAdded(set(a));
+		notifier.beginBatch();
+		notifier.relationsAdded(set(b));
+		notifier.commitBatch();
+		notifier.relationsDeleted(set(a));
+		notifier.relationsAdded(set(c));
+		notifier.commitBatch();
+	}
+
+	@Test
+	public void testDiscardBatch() {
+		final IRelation a = this.context.mock(IRelation.class, "a");
+		final ICodeServiceListener listener = this.context
+				.mock(ICodeServiceListener.class);
+		this.context.checking(new Expectations() {
+			{
+				this.oneOf(listener).relationsAdded(set(a));
+			}
+		});
+
+		CodeServiceListenerNotifier notifier = new CodeServiceListenerNotifier();
+		notifier.addCodeServiceListener(listener);
+		notifier.beginBatch();
+		notifier.relationsDeleted(set(a));
+		notifier.discardBatch();
+		notifier.relationsAdded(set(a));
+
+		// a discarded nested batch discards the outermost one
+		notifier.beginBatch();
+		notifier.relationsDeleted(set(a));
+		notifier.beginBatch();
+		notifier.relationsDeleted(set(a));
+		notifier.discardBatch();
+		notifier.relationsDeleted(set(a));
+		notifier.commitBatch();
+	}
+
+	@Test
+	public void testBatchOfOtherThread() throws InterruptedException {
+		final IRelation a = this.context.mock(IRelation.class, "a");
+		final ICodeServiceListener listener = this.context
+				.mock(ICodeServiceListener.class);
+		this.context.checking(new Expectations() {
+			{
+				this.oneOf(listener).relationsAdded(set(a));
+			}
+		});
+
+		final CodeServiceListenerNotifier notifier = new CodeServiceListenerNotifier();
+		notifier.addCodeServiceListener(listener);
+		notifier.beginBatch();
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				notifier.relationsAdded(set(a));
+			}
+		});
+		thread.start();
+		thread.join();
+		this.context.assertIsSatisfied();
+		notifier.commitBatch();
+	}
+
+}
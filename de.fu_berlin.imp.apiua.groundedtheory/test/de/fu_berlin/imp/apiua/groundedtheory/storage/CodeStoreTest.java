@@ -10,7 +10,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -43,6 +43,7 @@ import de.fu_berlin.imp.apiua.core.model.IdentifierFactory;
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
 import de.fu_berlin.imp.apiua.core.model.TimeZoneDateRange;
 import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.identifier.ID;
 import de.fu_berlin.imp.apiua.groundedtheory.model.Code;
 import de.fu_berlin.imp.apiua.groundedtheory.model.Episode;
 import de.fu_berlin.imp.apiua.groundedtheory.model.ICode;
@@ -420,6 +421,98 @@ public class CodeStoreTest extends CodeStoreHelper {
 				codeInstance });
 	}
 
+	@Test
+	public void testSmallCreateCodeInstancesUniqueIds() throws IOException,
+	InvalidParameterException, DuplicateCodeInstanceException,
+	URISyntaxException, CodeStoreFullException, CodeStoreWriteException {
+		ICodeStore codeStore = this.getSmallCodeStore();
+
+		ICodeInstance[] codeInstances = codeStore.createCodeInstances(
+				new ICode[] { this.code1 }, new URI[] {
+						new URI("apiua://new_id1"), new URI("apiua://new_id2") });
+		assertEquals(2, codeInstances.length);
+		assertFalse(codeInstances[0].getCodeInstanceID() == codeInstances[1]
+				.getCodeInstanceID());
+
+		codeStore.addAndSaveCodeInstances(codeInstances);
+		for (ICodeInstance codeInstance : codeInstances) {
+			assertEquals(codeInstance, codeStore.getCodeInstance(codeInstance
+					.getCodeInstanceID()));
+		}
+	}
+
+	@Test
+	public void testIndexes() throws Exception {
+		ICodeStore codeStore = this.getSmallCodeStore();
+		assertEquals(this.code1, codeStore.getCode(this.code1.getId()));
+		assertEquals(this.codeInstance3, codeStore
+				.getCodeInstance(this.codeInstance3.getCodeInstanceID()));
+
+		ICode code3 = codeStore.createCode("Code #3", RGB.WHITE);
+		codeStore.setParent(this.code1, this.code2);
+		codeStore.setParent(code3, this.code1);
+		assertEquals(code3, codeStore.getCode(code3.getId()));
+		assertEquals(this.code1, codeStore.getParent(code3));
+		assertEquals(this.code2, codeStore.getParent(this.code1));
+		assertEquals(1, codeStore.getChildren(this.code2).size());
+		assertEquals(2, codeStore.getSubCodes(this.code2).size());
+
+		codeStore.deleteCodeInstance(this.codeInstance3);
+		assertNull(codeStore.getCodeInstance(this.codeInstance3
+				.getCodeInstanceID()));
+
+		codeStore.setParent(code3, null);
+		codeStore.removeAndSaveCode(code3);
+		assertNull(codeStore.getCode(code3.getId()));
+		assertNull(codeStore.getParent(code3));
+		assertEquals(0, codeStore.getChildren(this.code1).size());
+
+		ICodeStore loaded = this.loadFromCodeStore(codeStore);
+		assertEquals(this.code1, loaded.getCode(this.code1.getId()));
+		assertEquals(this.code2, loaded.getParent(this.code1));
+		assertEquals(1, loaded.getSubCodes(this.code2).size());
+		assertNull(loaded.getCodeInstance(this.codeInstance3
+				.getCodeInstanceID()));
+	}
+
+	@Test
+	public void testInstanceIndexes() throws Exception {
+		ICodeStore codeStore = this.getSmallCodeStore();
+		assertEquals(Arrays.asList(this.codeInstance1),
+				codeStore.getInstances(this.locatable1.getUri()));
+		assertEquals(2, codeStore.getInstances(this.code2).size());
+		assertEquals(3, codeStore.getCodedIds().size());
+
+		URI uri = new URI("apiua://diff/abc123/file.java");
+		ICodeInstance[] codeInstances = codeStore.createCodeInstances(
+				new ICode[] { this.code1, this.code2 }, new URI[] { uri });
+		codeStore.addAndSaveCodeInstances(codeInstances);
+		assertEquals(2, codeStore.getInstances(uri).size());
+		assertEquals(2, codeStore.getInstances(this.code1).size());
+		assertEquals(2, codeStore.getInstances(new ID("abc123")).size());
+		assertTrue(codeStore.getCodedIds().contains(uri));
+
+		codeStore.deleteCodeInstance(this.codeInstance1);
+		codeStore.deleteCodeInstances(this.code1);
+		assertEquals(0, codeStore.getInstances(this.locatable1.getUri())
+				.size());
+		assertEquals(0, codeStore.getInstances(this.code1).size());
+		assertEquals(Arrays.asList(codeInstances[1]),
+				codeStore.getInstances(new ID("abc123")));
+		assertFalse(codeStore.getCodedIds().contains(
+				this.locatable1.getUri()));
+
+		try {
+			codeStore.getInstances(uri).clear();
+			assertTrue("view must be read-only", false);
+		} catch (UnsupportedOperationException e) {
+		}
+
+		ICodeStore loaded = this.loadFromCodeStore(codeStore);
+		assertEquals(2, loaded.getInstances(this.code2).size());
+		assertEquals(1, loaded.getInstances(uri).size());
+	}
+
 	@Test
 	public void testLoadInstances() throws IOException {
 		ICodeStore codeStore = this.getSmallCodeStore();
@@ -689,6 +782,56 @@ public class CodeStoreTest extends CodeStoreHelper {
 				new ArrayList<>(codeStore2.getRelationInstances()));
 	}
 
+	@Test
+	public void testRelationIndexes() throws Exception {
+		ICodeStore codeStore = this.getSmallCodeStore();
+		IRelation relation1 = new Relation(new URI("apiua://relation/1"),
+				this.code1.getUri(), this.code2.getUri(), "Code Relation");
+		IRelation relation2 = new Relation(new URI("apiua://relation/2"),
+				this.code2.getUri(), this.code1.getUri(), "Back Relation");
+		codeStore.addRelation(relation1);
+		codeStore.addRelation(relation2);
+		assertEquals(relation1, codeStore.getRelation(relation1.getUri()));
+		assertEquals(Arrays.asList(relation1),
+				codeStore.getRelationsStartingFrom(this.code1.getUri()));
+		assertEquals(Arrays.asList(relation2),
+				codeStore.getRelationsEndingAt(this.code1.getUri()));
+
+		URI phenomenon = new URI("apiua://diff/abc123/file.java");
+		IRelationInstance relationInstance = new RelationInstance(new URI(
+				"apiua://relationInstance/1"), relation1, phenomenon);
+		codeStore.addRelationInstance(relationInstance);
+		assertEquals(Arrays.asList(relationInstance),
+				codeStore.getRelationInstances(relation1));
+		assertEquals(Arrays.asList(relationInstance),
+				codeStore.getRelationInstances(phenomenon));
+		assertEquals(Arrays.asList(relationInstance),
+				codeStore.getRelationInstances(new ID("abc123")));
+		assertEquals(0, codeStore.getRelationInstances(relation2).size());
+
+		Relation renamed = new Relation(relation1.getUri(),
+				relation1.getFrom(), relation1.getTo(), "Renamed Relation");
+		codeStore.replaceRelation(relation1, renamed);
+		assertEquals("Renamed Relation",
+				codeStore.getRelation(relation1.getUri()).getName());
+		assertEquals("Renamed Relation", codeStore
+				.getRelationsStartingFrom(this.code1.getUri()).get(0)
+				.getName());
+
+		ICodeStore loaded = this.loadFromCodeStore(codeStore);
+		assertEquals(Arrays.asList(relationInstance),
+				loaded.getRelationInstances(relation1));
+		assertEquals(Arrays.asList(relation2),
+				loaded.getRelationsStartingFrom(this.code2.getUri()));
+
+		codeStore.deleteRelationInstance(relationInstance);
+		codeStore.deleteRelation(relation1);
+		assertNull(codeStore.getRelation(relation1.getUri()));
+		assertEquals(0,
+				codeStore.getRelationsStartingFrom(this.code1.getUri()).size());
+		assertEquals(0, codeStore.getRelationInstances(phenomenon).size());
+	}
+
 	@Test
 	public void testSaveMemo() throws Exception {
 		ICodeStore codeStore = this.getSmallCodeStore();
@@ -727,7 +870,7 @@ public class CodeStoreTest extends CodeStoreHelper {
 				new TimeZoneDateRange(new TimeZoneDate(
 						"2000-01-02T14:00:00.000+02:00"), new TimeZoneDate(
 								"2000-01-02T14:30:00.000+02:00")), "TimelineViewer");
-		codeStore.getEpisodes().add(episode);
+		assertTrue(codeStore.addEpisode(episode));
 		assertEquals(1, codeStore.getEpisodes().size());
 		assertEquals(episode, codeStore.getEpisodes().iterator().next());
 
@@ -735,13 +878,13 @@ public class CodeStoreTest extends CodeStoreHelper {
 		assertEquals(1, codeStore2.getEpisodes().size());
 		assertEquals(episode, codeStore2.getEpisodes().iterator().next());
 
-		codeStore2.getEpisodes().remove(episode);
+		assertTrue(codeStore2.removeEpisode(episode));
 		assertEquals(0, codeStore2.getEpisodes().size());
 	}
 
 	@Test(expected = IllegalArgumentException.class)
 	public void testSaveEpisodeIllegalArgumentException() throws IOException {
-		this.getSmallCodeStore().getEpisodes().add(null);
+		this.getSmallCodeStore().addEpisode(null);
 	}
 
 	@SuppressWarnings("unused")
@@ -828,18 +971,21 @@ public class CodeStoreTest extends CodeStoreHelper {
 	}
 
 	@Test
-	public void testBackup() throws IOException, CodeHasChildCodesException,
-	CodeDoesNotExistException {
+	public void testBackup() throws IOException, CodeStoreWriteException,
+	CodeStoreReadException {
 		ICodeStore codeStore = this.getSmallCodeStore();
-		Calendar now = Calendar.getInstance();
 
-		File backupFile1 = codeStore.getBackupFile();
-		assertTrue(backupFile1.createNewFile());
-		assertTrue(backupFile1.toString().contains(now.get(Calendar.YEAR) + ""));
+		codeStore.save();
+		List<File> backupFiles = codeStore.getBackupFiles();
+		assertTrue(backupFiles.get(0).getName().endsWith(".gz"));
 
-		File backupFile2 = codeStore.getBackupFile();
-		assertTrue(backupFile1.toString().contains(now.get(Calendar.YEAR) + ""));
+		codeStore.save();
+		assertEquals("unchanged snapshots must not be backed up", backupFiles,
+				codeStore.getBackupFiles());
 
-		assertFalse(backupFile1.equals(backupFile2));
+		codeStore.removeAndSaveCodeInstance(this.codeInstance1);
+		codeStore.save();
+		assertFalse(backupFiles.get(0).equals(
+				codeStore.getBackupFiles().get(0)));
 	}
 }
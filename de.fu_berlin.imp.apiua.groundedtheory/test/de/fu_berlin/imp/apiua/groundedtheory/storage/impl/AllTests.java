@@ -5,7 +5,9 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ CodeStoreSaveTest.class })
+@SuiteClasses({ CodeStoreSaveTest.class, CodeStoreJournalTest.class,
+		CodeStoreBinaryFormatTest.class, CodeStoreWriterTest.class,
+		CodeStoreBackupsTest.class, CodeStoreConcurrencyTest.class })
 public class AllTests {
 
 }
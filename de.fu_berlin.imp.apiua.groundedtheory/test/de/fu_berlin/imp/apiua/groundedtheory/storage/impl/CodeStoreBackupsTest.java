@@ -0,0 +1,94 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.groundedtheory.storage.impl.CodeStoreBackups.Backup;
+import de.fu_berlin.imp.apiua.groundedtheory.storage.impl.CodeStoreBackups.RetentionPolicy;
+
+public class CodeStoreBackupsTest {
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	private static File getFile(String content) throws IOException {
+		File file = File.createTempFile("CodeStore", ".xml");
+		file.deleteOnExit();
+		FileUtils.writeStringToFile(file, content, "UTF-8");
+		return file;
+	}
+
+	private static void backup(CodeStoreBackups backups, File file, long time)
+			throws IOException {
+		backups.backup(file, CodeStoreBinaryFormat.contentHash(file), time);
+	}
+
+	@Test
+	public void testCompressedBackup() throws IOException {
+		File file = getFile("<codeStore/>");
+		CodeStoreBackups backups = new CodeStoreBackups(file);
+		backup(backups, file, System.currentTimeMillis());
+
+		List<Backup> list = backups.getBackups();
+		assertEquals(1, list.size());
+		try (GZIPInputStream in = new GZIPInputStream(new FileInputStream(
+				list.get(0).getFile()))) {
+			assertEquals("<codeStore/>", IOUtils.toString(in, "UTF-8"));
+		}
+	}
+
+	@Test
+	public void testDeduplication() throws IOException {
+		File file = getFile("<codeStore/>");
+		CodeStoreBackups backups = new CodeStoreBackups(file);
+		long now = System.currentTimeMillis();
+		backup(backups, file, now - 2 * HOUR);
+		backup(backups, getFile("<codeStore>1</codeStore>"), now - HOUR);
+		backup(backups, file, now);
+
+		List<Backup> list = backups.getBackups();
+		assertEquals(2, list.size());
+		assertEquals(now, list.get(0).getTime());
+		assertEquals(CodeStoreBinaryFormat.contentHash(file), list.get(0)
+				.getHash());
+	}
+
+	@Test
+	public void testRetention() throws IOException {
+		File file = getFile("0");
+		CodeStoreBackups backups = new CodeStoreBackups(file);
+		backups.setRetentionPolicy(new RetentionPolicy(2, 3, 0));
+		// middle of the current local hour
+		long now = System.currentTimeMillis();
+		int offset = TimeZone.getDefault().getOffset(now);
+		now = (now + offset) / HOUR * HOUR - offset + HOUR / 2;
+		for (int i = 9; i >= 0; i--) {
+			// two backups per hour
+			backup(backups, getFile(i + "a"), now - i * HOUR - 1);
+			backup(backups, getFile(i + "b"), now - i * HOUR);
+		}
+
+		List<Backup> list = backups.getBackups();
+		assertEquals(
+				"2 latest plus the latest of each of the 2 hours before", 4,
+				list.size());
+		assertEquals(now, list.get(0).getTime());
+		assertEquals(now - 1, list.get(1).getTime());
+		assertEquals(now - HOUR, list.get(2).getTime());
+		assertEquals(now - 2 * HOUR, list.get(3).getTime());
+		for (Backup backup : list) {
+			assertTrue(backup.getFile().exists());
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
+import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.identifier.ID;
+import de.fu_berlin.imp.apiua.groundedtheory.model.Episode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICodeInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IEpisode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IRelation;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IRelationInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.model.Relation;
+import de.fu_berlin.imp.apiua.groundedtheory.model.RelationInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.storage.ICodeStore;
+
+public class CodeStoreBinaryFormatTest extends CodeStoreHelper {
+
+	public CodeStoreBinaryFormatTest() throws URISyntaxException {
+		super();
+	}
+
+	private CodeStore getPopulatedCodeStore() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		codeStore.setParent(this.code1, this.code2);
+		IRelation relation = new Relation(new URI("apiua://relation/1"),
+				this.code1.getUri(), this.code2.getUri(), "Relation");
+		codeStore.addRelation(relation);
+		codeStore.addRelationInstance(new RelationInstance(new URI(
+				"apiua://relationInstance/1"), relation, new URI(
+				"apiua://phenomenon")));
+		codeStore.addEpisode(
+				new Episode(new ID("0meio6dzt3eo1wj7"), new TimeZoneDate(),
+						new TimeZoneDate(), "Episode"));
+		codeStore.setDimensionValue(this.code1.getUri(), this.code2.getUri(),
+				"Value");
+		codeStore.setProperties(this.code2.getUri(),
+				Arrays.asList(this.code1.getUri()));
+		codeStore.save();
+		return codeStore;
+	}
+
+	private void testEquals(ICodeStore expected, ICodeStore actual)
+			throws Exception {
+		this.testCodes(actual,
+				expected.getTopLevelCodes().toArray(new ICode[0]));
+		this.testCodeInstances(actual, expected.getInstances().toArray(
+				new ICodeInstance[0]));
+		for (ICode code : expected.getCodes()) {
+			assertEquals(expected.getParent(code), actual.getParent(code));
+			assertEquals(code.getCaption(), actual.getCode(code.getId())
+					.getCaption());
+			assertEquals(String.valueOf(code.getCreation()),
+					String.valueOf(actual.getCode(code.getId()).getCreation()));
+		}
+		assertEquals(expected.getRelations(), actual.getRelations());
+		assertEquals(expected.getRelationInstances(),
+				actual.getRelationInstances());
+		assertEquals(expected.getEpisodes().size(), actual.getEpisodes()
+				.size());
+		Set<URI> episodeUris = new HashSet<URI>();
+		for (IEpisode episode : actual.getEpisodes()) {
+			episodeUris.add(episode.getUri());
+		}
+		for (IEpisode episode : expected.getEpisodes()) {
+			assertTrue(episodeUris.contains(episode.getUri()));
+		}
+		assertEquals("Value", actual.getDimensionValue(this.code1.getUri(),
+				this.code2.getUri()));
+		assertEquals(Arrays.asList(this.code1.getUri()),
+				actual.getProperties(this.code2.getUri()));
+	}
+
+	@Test
+	public void testSaveIsBinary() throws Exception {
+		CodeStore codeStore = this.getPopulatedCodeStore();
+		assertTrue(CodeStoreBinaryFormat.isBinary(CodeStoreBinaryFormat
+				.getSnapshotFile(codeStore.getCodeStoreFile())));
+		// the original file stays readable
+		assertFalse(CodeStoreBinaryFormat.isBinary(codeStore
+				.getCodeStoreFile()));
+
+		CodeStore loaded = (CodeStore) CodeStore.load(codeStore
+				.getCodeStoreFile());
+		this.testEquals(codeStore, loaded);
+
+		IRelationInstance relationInstance = loaded.getRelationInstances()
+				.iterator().next();
+		assertTrue(loaded.getRelations().iterator().next() == relationInstance
+				.getRelation());
+	}
+
+	@Test
+	public void testCodesBeforeSections() throws Exception {
+		CodeStore codeStore = this.getPopulatedCodeStore();
+		ICodeStore loaded = CodeStore.load(codeStore.getCodeStoreFile());
+		assertEquals(this.code2, loaded.getParent(this.code1));
+		assertEquals(this.code1, loaded.getCode(this.code1.getId()));
+		this.testCodeInstances(loaded, this.codeInstances);
+	}
+
+	@Test
+	public void testReplacedXML() throws Exception {
+		CodeStore codeStore = this.getPopulatedCodeStore();
+		File codeStoreFile = codeStore.getCodeStoreFile();
+		File emptyFile = File.createTempFile("CodeStore", ".xml");
+		emptyFile.deleteOnExit();
+		((CodeStore) CodeStore.create(emptyFile)).exportXML(codeStoreFile);
+		codeStoreFile.setLastModified(CodeStoreBinaryFormat.getSnapshotFile(
+				codeStoreFile).lastModified() + 1000);
+
+		ICodeStore loaded = CodeStore.load(codeStoreFile);
+		assertEquals(0, loaded.getTopLevelCodes().size());
+	}
+
+	@Test
+	public void testExportAndImportXML() throws Exception {
+		CodeStore codeStore = this.getPopulatedCodeStore();
+		File xml = File.createTempFile("CodeStore", ".xml");
+		xml.deleteOnExit();
+		codeStore.exportXML(xml);
+		assertFalse(CodeStoreBinaryFormat.isBinary(xml));
+
+		ICodeStore imported = CodeStore.load(xml);
+		this.testEquals(codeStore, imported);
+	}
+}
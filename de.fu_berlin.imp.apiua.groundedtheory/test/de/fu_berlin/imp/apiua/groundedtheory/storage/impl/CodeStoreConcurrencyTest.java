@@ -0,0 +1,205 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.core.model.identifier.ID;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICode;
+import de.fu_berlin.imp.apiua.core.model.TimeZoneDate;
+import de.fu_berlin.imp.apiua.groundedtheory.model.Episode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICodeInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IEpisode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IRelation;
+import de.fu_berlin.imp.apiua.groundedtheory.model.Relation;
+import de.fu_berlin.imp.apiua.groundedtheory.storage.ICodeStore;
+
+public class CodeStoreConcurrencyTest extends CodeStoreHelper {
+
+	private static final int READERS = 4;
+	private static final long DURATION = 2000;
+
+	public CodeStoreConcurrencyTest() throws URISyntaxException {
+		super();
+	}
+
+	@Test
+	public void testParallelReadersAndWriter() throws Exception {
+		final CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		codeStore.setBackgroundWriting(true);
+		final AtomicBoolean running = new AtomicBoolean(true);
+
+		ExecutorService executorService = Executors
+				.newFixedThreadPool(READERS + 1);
+		List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < READERS; i++) {
+			readers.add(executorService.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					int reads = 0;
+					while (running.get()) {
+						Set<ICodeInstance> instances = codeStore.getInstances();
+						int size = 0;
+						for (@SuppressWarnings("unused")
+						ICodeInstance instance : instances) {
+							size++;
+						}
+						assertEquals(instances.size(), size);
+						for (URI uri : codeStore.getCodedIds()) {
+							assertTrue(uri != null);
+						}
+
+						for (ICode code : codeStore.getCodes()) {
+							for (ICodeInstance instance : codeStore
+									.getInstances(code)) {
+								assertEquals(code, instance.getCode());
+							}
+						}
+						for (IRelation relation : codeStore.getRelations()) {
+							for (IRelation from : codeStore
+									.getRelationsStartingFrom(relation
+											.getFrom())) {
+								assertEquals(relation.getFrom(),
+										from.getFrom());
+							}
+						}
+						reads++;
+					}
+					return reads;
+				}
+			}));
+		}
+
+		Future<Integer> writer = executorService.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				int writes = 0;
+				long end = System.currentTimeMillis() + DURATION;
+				try {
+					while (System.currentTimeMillis() < end) {
+						URI uri = new URI("apiua://concurrency/" + writes);
+						ICodeInstance[] instances = codeStore
+								.createCodeInstances(
+										new ICode[] { CodeStoreConcurrencyTest.this.code1 },
+										new URI[] { uri });
+						codeStore.addAndSaveCodeInstances(instances);
+						IRelation relation = new Relation(new URI(
+								"apiua://relation/" + writes),
+								CodeStoreConcurrencyTest.this.code1.getUri(),
+								CodeStoreConcurrencyTest.this.code2.getUri(),
+								"Relation");
+						codeStore.addRelation(relation);
+						if (writes % 2 == 0) {
+							codeStore.deleteCodeInstance(instances[0]);
+							codeStore.deleteRelation(relation);
+						}
+						writes++;
+					}
+				} finally {
+					running.set(false);
+				}
+				return writes;
+			}
+		});
+
+		int writes = writer.get();
+		for (Future<Integer> reader : readers) {
+			assertTrue(reader.get() > 0);
+		}
+		executorService.shutdown();
+		assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(this.codeInstances.length + writes / 2, codeStore
+				.getInstances().size());
+		assertEquals(writes / 2, codeStore.getRelations().size());
+
+		codeStore.setBackgroundWriting(false);
+		ICodeStore loaded = CodeStore.load(codeStore.getCodeStoreFile());
+		assertEquals(codeStore.getInstances(), loaded.getInstances());
+		assertEquals(codeStore.getRelations(), loaded.getRelations());
+	}
+
+	@Test
+	public void testParallelEpisodeReadersAndWriter() throws Exception {
+		final CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		final AtomicBoolean running = new AtomicBoolean(true);
+
+		ExecutorService executorService = Executors
+				.newFixedThreadPool(READERS + 1);
+		List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < READERS; i++) {
+			readers.add(executorService.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					int reads = 0;
+					while (running.get()) {
+						Set<IEpisode> episodes = codeStore.getEpisodes();
+						int size = 0;
+						for (IEpisode episode : episodes) {
+							assertTrue(episode != null);
+							size++;
+						}
+						assertEquals(episodes.size(), size);
+						reads++;
+					}
+					return reads;
+				}
+			}));
+		}
+
+		Future<Integer> writer = executorService.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				int writes = 0;
+				long end = System.currentTimeMillis() + DURATION;
+				try {
+					while (System.currentTimeMillis() < end) {
+						IEpisode episode = new Episode(
+								new ID("id"),
+								new TimeZoneDate(), new TimeZoneDate(),
+								"Episode " + writes);
+						assertTrue(codeStore.addEpisode(episode));
+						assertFalse(codeStore.addEpisode(episode));
+						if (writes % 2 == 0) {
+							assertTrue(codeStore.removeEpisode(episode));
+						}
+						writes++;
+					}
+				} finally {
+					running.set(false);
+				}
+				return writes;
+			}
+		});
+
+		int writes = writer.get();
+		for (Future<Integer> reader : readers) {
+			assertTrue(reader.get() > 0);
+		}
+		executorService.shutdown();
+		assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(writes / 2, codeStore.getEpisodes().size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testEpisodesSnapshotIsUnmodifiable() throws Exception {
+		this.getSmallCodeStore().getEpisodes()
+				.add(new Episode(new ID("id"), new TimeZoneDate(),
+						new TimeZoneDate(), "Episode"));
+	}
+}
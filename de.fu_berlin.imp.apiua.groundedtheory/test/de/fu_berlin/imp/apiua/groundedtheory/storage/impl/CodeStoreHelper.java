@@ -31,6 +31,8 @@ public class CodeStoreHelper {
 		File temp = new File(dir, CodeServiceTest.class.getSimpleName()
 				+ ".xml");
 		dir.deleteOnExit();
+		// a left over snapshot would be loaded instead
+		CodeStoreBinaryFormat.getSnapshotFile(temp).delete();
 		return temp;
 	}
 
@@ -0,0 +1,246 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.bkahlert.nebula.utils.colors.RGB;
+
+import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICode;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICodeInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.model.IRelation;
+import de.fu_berlin.imp.apiua.groundedtheory.model.Relation;
+import de.fu_berlin.imp.apiua.groundedtheory.storage.ICodeStore;
+import de.fu_berlin.imp.apiua.groundedtheory.storage.exceptions.CodeStoreWriteException;
+
+public class CodeStoreJournalTest extends CodeStoreHelper {
+
+	public CodeStoreJournalTest() throws URISyntaxException {
+		super();
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		File codeStoreFile = codeStore.getCodeStoreFile();
+
+		// first mutation creates the snapshot the journal refers to
+		codeStore.deleteCodeInstance(this.codeInstance3);
+		File snapshotFile = CodeStoreBinaryFormat
+				.getSnapshotFile(codeStoreFile);
+		String snapshot = FileUtils.readFileToString(snapshotFile);
+
+		IRelation relation = new Relation(new URI("apiua://relation/1"),
+				this.code1.getUri(), this.code2.getUri(), "Journaled Relation");
+		codeStore.addRelation(relation);
+		codeStore.setParent(this.code1, this.code2);
+		codeStore.removeAndSaveCodeInstance(this.codeInstance1);
+
+		assertEquals("mutations must not rewrite the snapshot", snapshot,
+				FileUtils.readFileToString(snapshotFile));
+		assertTrue(CodeStoreJournal.getJournalFile(codeStoreFile).exists());
+
+		ICodeStore loaded = CodeStore.load(codeStoreFile);
+		this.testCodeInstances(loaded,
+				new ICodeInstance[] { this.codeInstance2 });
+		assertTrue(loaded.getRelations().contains(relation));
+		assertEquals(this.code2, loaded.getParent(this.code1));
+	}
+
+	@Test
+	public void testReplayCreatedCode() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		codeStore.deleteCodeInstance(this.codeInstance3);
+
+		ICode code3 = codeStore.createCode("Code #3", RGB.WHITE);
+		ICodeInstance[] codeInstances = codeStore.createCodeInstances(
+				new ICode[] { code3 }, new URI[] { new URI("apiua://new_id") });
+		codeStore.addAndSaveCodeInstances(codeInstances);
+
+		ICodeStore loaded = CodeStore.load(codeStore.getCodeStoreFile());
+		assertEquals(code3, loaded.getCode(code3.getId()));
+		assertEquals(codeInstances[0], loaded.getCodeInstance(codeInstances[0]
+				.getCodeInstanceID()));
+	}
+
+	@Test
+	public void testCommitBatch() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		File codeStoreFile = codeStore.getCodeStoreFile();
+		File journalFile = CodeStoreJournal.getJournalFile(codeStoreFile);
+		codeStore.deleteCodeInstance(this.codeInstance3);
+		long journalLength = journalFile.length();
+
+		codeStore.beginBatch();
+		codeStore.removeAndSaveCodeInstance(this.codeInstance1);
+		codeStore.beginBatch();
+		codeStore.setParent(this.code1, this.code2);
+		codeStore.commitBatch();
+		assertEquals("batch must not be written before it is committed",
+				journalLength, journalFile.length());
+		codeStore.commitBatch();
+		assertTrue(journalFile.length() > journalLength);
+
+		ICodeStore loaded = CodeStore.load(codeStoreFile);
+		this.testCodeInstances(loaded,
+				new ICodeInstance[] { this.codeInstance2 });
+		assertEquals(this.code2, loaded.getParent(this.code1));
+	}
+
+	@Test
+	public void testRollbackBatch() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		codeStore.deleteCodeInstance(this.codeInstance3);
+
+		codeStore.beginBatch();
+		codeStore.removeAndSaveCodeInstance(this.codeInstance1);
+		codeStore.setParent(this.code1, this.code2);
+		codeStore.save();
+		codeStore.rollbackBatch();
+
+		this.testCodeInstances(codeStore, new ICodeInstance[] {
+				this.codeInstance1, this.codeInstance2 });
+		assertNull(codeStore.getParent(this.code1));
+		assertEquals(this.codeInstance1, codeStore.getCodeInstance(
+				this.codeInstance1.getCodeInstanceID()));
+		this.testCodeInstances(CodeStore.load(codeStore.getCodeStoreFile()),
+				new ICodeInstance[] { this.codeInstance1, this.codeInstance2 });
+	}
+
+	@Test
+	public void testRollbackNestedBatch() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		codeStore.deleteCodeInstance(this.codeInstance3);
+
+		codeStore.beginBatch();
+		codeStore.removeAndSaveCodeInstance(this.codeInstance1);
+		codeStore.beginBatch();
+		codeStore.setParent(this.code1, this.code2);
+		codeStore.rollbackBatch();
+		// restored as soon as the outermost batch ends
+		assertEquals(this.code2, codeStore.getParent(this.code1));
+		assertTrue(codeStore.isBatchRunning());
+		try {
+			codeStore.commitBatch();
+			fail();
+		} catch (CodeStoreWriteException e) {
+		}
+		assertFalse(codeStore.isBatchRunning());
+
+		this.testCodeInstances(codeStore, new ICodeInstance[] {
+				this.codeInstance1, this.codeInstance2 });
+		assertNull(codeStore.getParent(this.code1));
+		this.testCodeInstances(CodeStore.load(codeStore.getCodeStoreFile()),
+				new ICodeInstance[] { this.codeInstance1, this.codeInstance2 });
+	}
+
+	@Test
+	public void testBatchIsolation() throws Exception {
+		final CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		codeStore.beginBatch();
+		codeStore.setParent(this.code1, this.code2);
+
+		final ICode[] parent = new ICode[1];
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				parent[0] = codeStore.getParent(CodeStoreJournalTest.this.code1);
+			}
+		});
+		reader.start();
+		reader.join(200);
+		assertTrue("uncommitted mutations must not be visible",
+				reader.isAlive());
+
+		codeStore.rollbackBatch();
+		reader.join();
+		assertNull(parent[0]);
+	}
+
+	@Test
+	public void testSaveTruncatesJournal() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		File codeStoreFile = codeStore.getCodeStoreFile();
+		File journalFile = CodeStoreJournal.getJournalFile(codeStoreFile);
+
+		codeStore.deleteCodeInstance(this.codeInstance3);
+		codeStore.removeAndSaveCodeInstance(this.codeInstance1);
+		long journalLength = journalFile.length();
+		codeStore.save();
+		assertTrue(journalFile.length() < journalLength);
+
+		this.testCodeInstances(CodeStore.load(codeStoreFile),
+				new ICodeInstance[] { this.codeInstance2 });
+	}
+
+	@Test
+	public void testTornRecordIsIgnored() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		File codeStoreFile = codeStore.getCodeStoreFile();
+
+		codeStore.deleteCodeInstance(this.codeInstance3);
+		codeStore.removeAndSaveCodeInstance(this.codeInstance1);
+		try (FileOutputStream out = new FileOutputStream(
+				CodeStoreJournal.getJournalFile(codeStoreFile), true)) {
+			out.write(new byte[] { 0, 0, 1, 0, '<', 'a' });
+		}
+
+		ICodeStore loaded = CodeStore.load(codeStoreFile);
+		this.testCodeInstances(loaded,
+				new ICodeInstance[] { this.codeInstance2 });
+	}
+
+	@Test
+	public void testUnreadableRecordIsIgnored() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		File codeStoreFile = codeStore.getCodeStoreFile();
+		File journalFile = CodeStoreJournal.getJournalFile(codeStoreFile);
+
+		codeStore.deleteCodeInstance(this.codeInstance3);
+		codeStore.removeAndSaveCodeInstance(this.codeInstance1);
+		long journalLength = journalFile.length();
+		byte[] payload = "<unknownEntry/>".getBytes(StandardCharsets.UTF_8);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(
+				journalFile, true))) {
+			out.writeInt(payload.length);
+			out.write(payload);
+			out.writeLong(crc.getValue());
+		}
+
+		ICodeStore loaded = CodeStore.load(codeStoreFile);
+		this.testCodeInstances(loaded,
+				new ICodeInstance[] { this.codeInstance2 });
+		assertEquals(journalLength, journalFile.length());
+	}
+
+	@Test
+	public void testStaleJournalIsIgnored() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		File codeStoreFile = codeStore.getCodeStoreFile();
+		codeStore.deleteCodeInstance(this.codeInstance3);
+		codeStore.removeAndSaveCode(this.code1, true);
+
+		// replaces the snapshot but leaves the journal in place
+		CodeStore fresh = (CodeStore) this.getSmallCodeStore();
+		assertEquals(codeStoreFile, fresh.getCodeStoreFile());
+		this.testCodes(fresh, new ICode[] { this.code1, this.code2 });
+		this.testCodeInstances(fresh, this.codeInstances);
+		assertFalse(CodeStoreJournal.getJournalFile(codeStoreFile).exists());
+		assertNull(fresh.getParent(this.code1));
+	}
+}
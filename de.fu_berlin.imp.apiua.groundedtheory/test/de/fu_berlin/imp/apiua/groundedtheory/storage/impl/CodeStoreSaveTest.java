@@ -7,9 +7,12 @@ import de.fu_berlin.imp.apiua.groundedtheory.model.ICode;
 import de.fu_berlin.imp.apiua.groundedtheory.model.ICodeInstance;
 import de.fu_berlin.imp.apiua.groundedtheory.storage.impl.CodeStore;
 
+import java.io.File;
 import java.net.URISyntaxException;
 import java.security.InvalidParameterException;
 
+import org.apache.commons.io.FileUtils;
+
 import org.jmock.integration.junit4.JUnitRuleMockery;
 import org.jmock.lib.concurrent.Synchroniser;
 import org.junit.Rule;
@@ -132,4 +135,38 @@ public class CodeStoreSaveTest extends CodeStoreHelper {
 		assertNull(codeStore2.loadMemo(CodeStore
 				.getMemoBasename(this.locatable2.getUri())));
 	}
+
+	@Test
+	public void testMemoPlain() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		URI uri = this.locatable1.getUri();
+		assertNull(codeStore.getMemoPlain(uri));
+		codeStore.setMemo(uri, "<p>Lorem ipsum</p>");
+		assertEquals("Lorem ipsum", codeStore.getMemoPlain(uri).trim());
+		codeStore.setMemo(uri, null);
+		assertNull(codeStore.getMemoPlain(uri));
+	}
+
+	@Test
+	public void testExternalMemoChange() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		String basename = CodeStore.getMemoBasename(this.locatable2.getUri());
+		codeStore.saveMemo(basename, "Lorem ipsum");
+		assertEquals("Lorem ipsum", codeStore.loadMemo(basename));
+
+		File memoFile = new File(codeStore.getCodeStoreFile().getParentFile(),
+				basename + MemoStore.EXTENSION);
+		FileUtils.writeStringToFile(memoFile, "dolor sit amet", "UTF-8");
+		for (int i = 0; i < 100
+				&& !"dolor sit amet".equals(codeStore.loadMemo(basename)); i++) {
+			Thread.sleep(100);
+		}
+		assertEquals("dolor sit amet", codeStore.loadMemo(basename));
+
+		memoFile.delete();
+		for (int i = 0; i < 100 && codeStore.loadMemo(basename) != null; i++) {
+			Thread.sleep(100);
+		}
+		assertNull(codeStore.loadMemo(basename));
+	}
 }
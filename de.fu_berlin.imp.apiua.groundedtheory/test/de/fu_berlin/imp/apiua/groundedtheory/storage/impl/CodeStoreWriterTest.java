@@ -0,0 +1,104 @@
+package de.fu_berlin.imp.apiua.groundedtheory.storage.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+
+import org.junit.Test;
+
+import de.fu_berlin.imp.apiua.core.model.URI;
+import de.fu_berlin.imp.apiua.groundedtheory.model.ICodeInstance;
+import de.fu_berlin.imp.apiua.groundedtheory.storage.ICodeStore;
+
+public class CodeStoreWriterTest extends CodeStoreHelper {
+
+	public CodeStoreWriterTest() throws URISyntaxException {
+		super();
+	}
+
+	@Test
+	public void testFlush() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		File codeStoreFile = codeStore.getCodeStoreFile();
+		File snapshotFile = CodeStoreBinaryFormat
+				.getSnapshotFile(codeStoreFile);
+		codeStore.setBackgroundWriting(true);
+
+		assertFalse(codeStore.isDirty());
+		codeStore.deleteCodeInstance(this.codeInstance3);
+		codeStore.setParent(this.code1, this.code2);
+		assertTrue(codeStore.isDirty());
+		assertFalse("mutations must not be written synchronously",
+				snapshotFile.exists());
+
+		codeStore.flush();
+		assertFalse(codeStore.isDirty());
+		assertNotNull(codeStore.getLastSaved());
+
+		ICodeStore loaded = CodeStore.load(codeStoreFile);
+		this.testCodeInstances(loaded, new ICodeInstance[] {
+				this.codeInstance1, this.codeInstance2 });
+		assertEquals(this.code2, loaded.getParent(this.code1));
+		codeStore.setBackgroundWriting(false);
+	}
+
+	@Test
+	public void testPendingMemo() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		codeStore.setBackgroundWriting(true);
+		URI uri = new URI("apiua://memo/1");
+
+		codeStore.setMemo(uri, "<p>first</p>");
+		codeStore.setMemo(uri, "<p>second</p>");
+		assertEquals("<p>second</p>", codeStore.getMemo(uri));
+		assertTrue(codeStore.isDirty());
+
+		codeStore.setBackgroundWriting(false);
+		assertFalse(codeStore.isDirty());
+		assertEquals("<p>second</p>", codeStore.getMemo(uri));
+		assertEquals("<p>second</p>", CodeStore.load(
+				codeStore.getCodeStoreFile()).getMemo(uri));
+	}
+
+	@Test
+	public void testBackgroundWrite() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		codeStore.setBackgroundWriting(true);
+		codeStore.deleteCodeInstance(this.codeInstance3);
+
+		long timeout = System.currentTimeMillis() + CodeStoreWriter.MAX_DELAY
+				* 2;
+		while (codeStore.isDirty() && System.currentTimeMillis() < timeout) {
+			Thread.sleep(50);
+		}
+		assertFalse(codeStore.isDirty());
+		this.testCodeInstances(CodeStore.load(codeStore.getCodeStoreFile()),
+				new ICodeInstance[] { this.codeInstance1, this.codeInstance2 });
+		codeStore.setBackgroundWriting(false);
+	}
+
+	@Test
+	public void testBatchIsWrittenOnCommit() throws Exception {
+		CodeStore codeStore = (CodeStore) this.getSmallCodeStore();
+		codeStore.setBackgroundWriting(true);
+		codeStore.deleteCodeInstance(this.codeInstance3);
+		codeStore.flush();
+
+		codeStore.beginBatch();
+		codeStore.removeAndSaveCodeInstance(this.codeInstance1);
+		codeStore.save();
+		codeStore.flush();
+		this.testCodeInstances(CodeStore.load(codeStore.getCodeStoreFile()),
+				new ICodeInstance[] { this.codeInstance1, this.codeInstance2 });
+
+		codeStore.commitBatch();
+		codeStore.flush();
+		this.testCodeInstances(CodeStore.load(codeStore.getCodeStoreFile()),
+				new ICodeInstance[] { this.codeInstance2 });
+		codeStore.setBackgroundWriting(false);
+	}
+}
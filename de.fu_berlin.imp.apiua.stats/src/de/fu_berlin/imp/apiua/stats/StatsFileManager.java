@@ -2,15 +2,19 @@ package de.fu_berlin.imp.apiua.stats;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
 
 import org.apache.log4j.Logger;
 
 import de.fu_berlin.imp.apiua.core.model.IdentifierFactory;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
+import de.fu_berlin.imp.apiua.core.model.data.IDataChangeListener;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.IWatchableDataContainer;
 import de.fu_berlin.imp.apiua.core.model.identifier.ID;
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.stats.model.StatsFile;
@@ -20,7 +24,9 @@ public class StatsFileManager {
 	private static final Logger LOGGER = Logger
 			.getLogger(StatsFileManager.class);
 
-	private Map<IBaseDataContainer, List<StatsFile>> statsFiles;
+	private volatile Map<IBaseDataContainer, List<StatsFile>> statsFiles;
+
+	private final Map<IWatchableDataContainer, IDataChangeListener> dataChangeListeners = new IdentityHashMap<IWatchableDataContainer, IDataChangeListener>();
 
 	public StatsFileManager(
 			List<? extends IBaseDataContainer> baseDataContainers) {
@@ -64,6 +70,93 @@ public class StatsFileManager {
 		}
 	}
 
+	/**
+	 * Keeps the {@link StatsFile}s up to date by watching the diff directories
+	 * of all {@link IBaseDataContainer}s.
+	 */
+	public synchronized void watch() {
+		for (final IBaseDataContainer baseDataContainer : this.statsFiles
+				.keySet()) {
+			IDataContainer diffFileContainer = baseDataContainer
+					.getSubContainer("diff");
+			if (!(diffFileContainer instanceof IWatchableDataContainer)) {
+				continue;
+			}
+			IDataChangeListener dataChangeListener = new IDataChangeListener() {
+				@Override
+				public void dataAdded(IData data) {
+					StatsFileManager.this.statsFileChanged(baseDataContainer,
+							data, false);
+				}
+
+				@Override
+				public void dataModified(IData data) {
+					StatsFileManager.this.statsFileChanged(baseDataContainer,
+							data, false);
+				}
+
+				@Override
+				public void dataRemoved(IData data) {
+					StatsFileManager.this.statsFileChanged(baseDataContainer,
+							data, true);
+				}
+			};
+			((IWatchableDataContainer) diffFileContainer)
+					.addDataChangeListener(dataChangeListener);
+			this.dataChangeListeners.put(
+					(IWatchableDataContainer) diffFileContainer,
+					dataChangeListener);
+		}
+	}
+
+	/**
+	 * Stops watching for changed {@link StatsFile}s.
+	 */
+	public synchronized void unwatch() {
+		for (Map.Entry<IWatchableDataContainer, IDataChangeListener> entry : this.dataChangeListeners
+				.entrySet()) {
+			entry.getKey().removeDataChangeListener(entry.getValue());
+		}
+		this.dataChangeListeners.clear();
+	}
+
+	/**
+	 * Replaces the {@link StatsFile} of the {@link ID} the given {@link IData}
+	 * belongs to.
+	 * 
+	 * @param baseDataContainer
+	 * @param data
+	 * @param removed
+	 */
+	private synchronized void statsFileChanged(
+			IBaseDataContainer baseDataContainer, IData data, boolean removed) {
+		Matcher matcher = StatsFile.PATTERN.matcher(data.getName());
+		if (!matcher.matches()
+				|| this.statsFiles.get(baseDataContainer) == null) {
+			return;
+		}
+		ID id = new ID(matcher.group(1));
+
+		List<StatsFile> statsFiles = new ArrayList<StatsFile>();
+		for (StatsFile statsFile : this.statsFiles.get(baseDataContainer)) {
+			if (!id.equals(statsFile.getId())) {
+				statsFiles.add(statsFile);
+			}
+		}
+		if (!removed) {
+			try {
+				statsFiles.add(new StatsFile(data));
+			} catch (Exception e) {
+				LOGGER.warn("Could not process stats file", e);
+			}
+		}
+
+		Map<IBaseDataContainer, List<StatsFile>> allStatsFiles = new HashMap<IBaseDataContainer, List<StatsFile>>(
+				this.statsFiles);
+		allStatsFiles.put(baseDataContainer, statsFiles);
+		this.statsFiles = allStatsFiles;
+	}
+
 	/**
 	 * Returns a list of all {@link StatsFile}s
 	 * 
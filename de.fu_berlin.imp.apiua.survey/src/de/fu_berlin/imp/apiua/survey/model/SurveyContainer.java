@@ -2,6 +2,8 @@ package de.fu_berlin.imp.apiua.survey.model;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -10,7 +12,9 @@ import org.eclipse.core.runtime.SubMonitor;
 
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IData;
+import de.fu_berlin.imp.apiua.core.model.data.IDataChangeListener;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
+import de.fu_berlin.imp.apiua.core.model.data.IWatchableDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.impl.AggregatedBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.identifier.IIdentifier;
 import de.fu_berlin.imp.apiua.core.model.identifier.Token;
@@ -34,14 +38,38 @@ public class SurveyContainer extends AggregatedBaseDataContainer {
 
 	private List<? extends IBaseDataContainer> baseContainers;
 
-	private List<CSVSurveyManager> cSVSurveyManagers;
-	private List<CDDocumentManager> cdDocumentManagers;
+	private volatile List<CSVSurveyManager> cSVSurveyManagers;
+	private volatile List<CDDocumentManager> cdDocumentManagers;
+
+	private Map<IBaseDataContainer, CSVSurveyManager> cSVSurveyManagersByContainer = Collections
+			.emptyMap();
+	private Map<IBaseDataContainer, CDDocumentManager> cdDocumentManagersByContainer = Collections
+			.emptyMap();
+
+	private SurveyContainer previous;
+
+	private final Map<IBaseDataContainer, IDataChangeListener> dataChangeListeners = new IdentityHashMap<IBaseDataContainer, IDataChangeListener>();
 
 	public SurveyContainer(List<? extends IBaseDataContainer> baseContainers) {
 		super(baseContainers);
 		this.baseContainers = baseContainers;
 	}
 
+	/**
+	 * Creates a {@link SurveyContainer} that takes over the already scanned
+	 * surveys of those {@link IBaseDataContainer}s it shares with the given
+	 * previous {@link SurveyContainer}.
+	 * 
+	 * @param baseContainers
+	 * @param previous
+	 *            may be null
+	 */
+	public SurveyContainer(List<? extends IBaseDataContainer> baseContainers,
+			SurveyContainer previous) {
+		this(baseContainers);
+		this.previous = previous;
+	}
+
 	public IData getSurveyData(IBaseDataContainer baseDataContainer) {
 		IData surveyData = null;
 		Map<String, String> props = baseDataContainer.getInfo()
@@ -59,8 +87,24 @@ public class SurveyContainer extends AggregatedBaseDataContainer {
 		SubMonitor monitor = SubMonitor.convert(subMonitor,
 				this.baseContainers.size() * 2);
 
+		Map<IBaseDataContainer, CSVSurveyManager> previousCSVSurveyManagers = this.previous != null ? this.previous.cSVSurveyManagersByContainer
+				: Collections.<IBaseDataContainer, CSVSurveyManager> emptyMap();
+		Map<IBaseDataContainer, CDDocumentManager> previousCdDocumentManagers = this.previous != null ? this.previous.cdDocumentManagersByContainer
+				: Collections.<IBaseDataContainer, CDDocumentManager> emptyMap();
+		this.previous = null;
+
 		List<CSVSurveyManager> cSVSurveyManagers = new ArrayList<CSVSurveyManager>();
+		Map<IBaseDataContainer, CSVSurveyManager> cSVSurveyManagersByContainer = new IdentityHashMap<IBaseDataContainer, CSVSurveyManager>();
 		for (IBaseDataContainer baseDataContainer : this.baseContainers) {
+			if (previousCSVSurveyManagers.containsKey(baseDataContainer)) {
+				CSVSurveyManager cSVSurveyManager = previousCSVSurveyManagers
+						.get(baseDataContainer);
+				cSVSurveyManagers.add(cSVSurveyManager);
+				cSVSurveyManagersByContainer.put(baseDataContainer,
+						cSVSurveyManager);
+				monitor.worked(1);
+				continue;
+			}
 			IData surveyData = this.getSurveyData(baseDataContainer);
 			if (surveyData == null) {
 				LOGGER.error("Could not load survey data");
@@ -69,12 +113,25 @@ public class SurveyContainer extends AggregatedBaseDataContainer {
 						surveyData);
 				cSVSurveyManager.scanRecords(monitor.newChild(1));
 				cSVSurveyManagers.add(cSVSurveyManager);
+				cSVSurveyManagersByContainer.put(baseDataContainer,
+						cSVSurveyManager);
 			}
 		}
 		this.cSVSurveyManagers = cSVSurveyManagers;
+		this.cSVSurveyManagersByContainer = cSVSurveyManagersByContainer;
 
 		List<CDDocumentManager> cdDocumentManagers = new ArrayList<CDDocumentManager>();
+		Map<IBaseDataContainer, CDDocumentManager> cdDocumentManagersByContainer = new IdentityHashMap<IBaseDataContainer, CDDocumentManager>();
 		for (IBaseDataContainer baseDataContainer : this.baseContainers) {
+			if (previousCdDocumentManagers.containsKey(baseDataContainer)) {
+				CDDocumentManager cdDocumentManager = previousCdDocumentManagers
+						.get(baseDataContainer);
+				cdDocumentManagers.add(cdDocumentManager);
+				cdDocumentManagersByContainer.put(baseDataContainer,
+						cdDocumentManager);
+				monitor.worked(1);
+				continue;
+			}
 			IDataContainer cdContainer = baseDataContainer
 					.getSubContainer("cd");
 			if (cdContainer == null) {
@@ -84,13 +141,122 @@ public class SurveyContainer extends AggregatedBaseDataContainer {
 						cdContainer, "en");
 				cdDocumentManager.scan(monitor.newChild(1));
 				cdDocumentManagers.add(cdDocumentManager);
+				cdDocumentManagersByContainer.put(baseDataContainer,
+						cdDocumentManager);
 			}
 		}
 		this.cdDocumentManagers = cdDocumentManagers;
+		this.cdDocumentManagersByContainer = cdDocumentManagersByContainer;
 
 		monitor.done();
 	}
 
+	/**
+	 * Keeps this {@link SurveyContainer} up to date by watching the surveys and
+	 * CD documents of all {@link IWatchableDataContainer}s.
+	 */
+	public synchronized void watch() {
+		for (final IBaseDataContainer baseDataContainer : this.baseContainers) {
+			if (!(baseDataContainer instanceof IWatchableDataContainer)
+					|| this.dataChangeListeners.containsKey(baseDataContainer)) {
+				continue;
+			}
+			IDataChangeListener dataChangeListener = new IDataChangeListener() {
+				@Override
+				public void dataAdded(IData data) {
+					SurveyContainer.this.dataChanged(baseDataContainer, data,
+							false);
+				}
+
+				@Override
+				public void dataModified(IData data) {
+					SurveyContainer.this.dataChanged(baseDataContainer, data,
+							false);
+				}
+
+				@Override
+				public void dataRemoved(IData data) {
+					SurveyContainer.this.dataChanged(baseDataContainer, data,
+							true);
+				}
+			};
+			((IWatchableDataContainer) baseDataContainer)
+					.addDataChangeListener(dataChangeListener);
+			this.dataChangeListeners.put(baseDataContainer, dataChangeListener);
+		}
+	}
+
+	/**
+	 * Stops watching for changed surveys and CD documents.
+	 */
+	public synchronized void unwatch() {
+		for (Map.Entry<IBaseDataContainer, IDataChangeListener> entry : this.dataChangeListeners
+				.entrySet()) {
+			((IWatchableDataContainer) entry.getKey())
+					.removeDataChangeListener(entry.getValue());
+		}
+		this.dataChangeListeners.clear();
+	}
+
+	/**
+	 * Rescans the survey or the CD documents of the given
+	 * {@link IBaseDataContainer} if the given {@link IData} belongs to them.
+	 * 
+	 * @param baseDataContainer
+	 * @param data
+	 * @param removed
+	 */
+	private synchronized void dataChanged(IBaseDataContainer baseDataContainer,
+			IData data, boolean removed) {
+		if (this.cSVSurveyManagers == null || this.cdDocumentManagers == null) {
+			return;
+		}
+
+		IDataContainer cdContainer = baseDataContainer.getSubContainer("cd");
+		if (data.equals(this.getSurveyData(baseDataContainer))) {
+			Map<IBaseDataContainer, CSVSurveyManager> cSVSurveyManagersByContainer = new IdentityHashMap<IBaseDataContainer, CSVSurveyManager>(
+					this.cSVSurveyManagersByContainer);
+			if (removed) {
+				cSVSurveyManagersByContainer.remove(baseDataContainer);
+			} else {
+				CSVSurveyManager cSVSurveyManager = new CSVSurveyManager(data);
+				cSVSurveyManager.scanRecords(null);
+				cSVSurveyManagersByContainer.put(baseDataContainer,
+						cSVSurveyManager);
+			}
+			this.cSVSurveyManagersByContainer = cSVSurveyManagersByContainer;
+			this.cSVSurveyManagers = this.order(cSVSurveyManagersByContainer);
+		} else if (cdContainer != null
+				&& cdContainer.equals(data.getParentDataContainer())) {
+			Map<IBaseDataContainer, CDDocumentManager> cdDocumentManagersByContainer = new IdentityHashMap<IBaseDataContainer, CDDocumentManager>(
+					this.cdDocumentManagersByContainer);
+			CDDocumentManager cdDocumentManager = new CDDocumentManager(
+					cdContainer, "en");
+			cdDocumentManager.scan(null);
+			cdDocumentManagersByContainer.put(baseDataContainer,
+					cdDocumentManager);
+			this.cdDocumentManagersByContainer = cdDocumentManagersByContainer;
+			this.cdDocumentManagers = this.order(cdDocumentManagersByContainer);
+		} else {
+			return;
+		}
+		LOGGER.info("Rescanned " + data.getName() + " of " + baseDataContainer);
+	}
+
+	/**
+	 * Returns the values of the given map in the order of the
+	 * {@link IBaseDataContainer}s.
+	 */
+	private <T> List<T> order(Map<IBaseDataContainer, T> map) {
+		List<T> ordered = new ArrayList<T>();
+		for (IBaseDataContainer baseDataContainer : this.baseContainers) {
+			if (map.containsKey(baseDataContainer)) {
+				ordered.add(map.get(baseDataContainer));
+			}
+		}
+		return ordered;
+	}
+
 	/**
 	 * TODO aggregate in case of multiple hits
 	 * 
@@ -6,12 +6,12 @@ import org.apache.commons.lang.StringUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 
-import de.fu_berlin.imp.apiua.core.extensionPoints.IDataLoadProvider;
+import de.fu_berlin.imp.apiua.core.extensionPoints.IIncrementalDataLoadProvider;
 import de.fu_berlin.imp.apiua.core.model.data.IBaseDataContainer;
 import de.fu_berlin.imp.apiua.core.model.data.IDataContainer;
 import de.fu_berlin.imp.apiua.survey.Activator;
 
-public class SurveyLoader implements IDataLoadProvider {
+public class SurveyLoader implements IIncrementalDataLoadProvider {
 
 	@Override
 	public String getLoaderJobName(
@@ -36,12 +36,47 @@ public class SurveyLoader implements IDataLoadProvider {
 				baseDataContainers);
 		surveyContainer.scan(subMonitor);
 		subMonitor.done();
+		this.replace(surveyContainer);
+		Activator.getDefault().setSurveyContainer(surveyContainer);
+		return surveyContainer;
+	}
+
+	@Override
+	public IDataContainer update(
+			List<? extends IBaseDataContainer> baseDataContainers,
+			List<? extends IBaseDataContainer> added,
+			List<? extends IBaseDataContainer> removed,
+			IProgressMonitor progressMonitor) {
+		SubMonitor subMonitor = SubMonitor.convert(progressMonitor);
+		SurveyContainer surveyContainer = new SurveyContainer(
+				baseDataContainers, Activator.getDefault().getSurveyContainer());
+		surveyContainer.scan(subMonitor);
+		subMonitor.done();
+		this.replace(surveyContainer);
 		Activator.getDefault().setSurveyContainer(surveyContainer);
 		return surveyContainer;
 	}
 
 	@Override
 	public void unload(IProgressMonitor progressMonitor) {
+		this.replace(null);
+	}
+
+	/**
+	 * Stops watching the currently active {@link SurveyContainer} and starts
+	 * watching the given one.
+	 * 
+	 * @param surveyContainer
+	 *            may be null
+	 */
+	private void replace(SurveyContainer surveyContainer) {
+		SurveyContainer previous = Activator.getDefault().getSurveyContainer();
+		if (previous != null && previous != surveyContainer) {
+			previous.unwatch();
+		}
+		if (surveyContainer != null) {
+			surveyContainer.watch();
+		}
 	}
 
 }
@@ -45,6 +45,7 @@ public class UriLocatorProvider extends AdaptingLocatorProvider {
 	@SuppressWarnings("unchecked")
 	public UriLocatorProvider() {
 		super(IUri.class);
+		this.cache.setMetricsName(UriLocatorProvider.class.getSimpleName());
 	}
 
 	@Override